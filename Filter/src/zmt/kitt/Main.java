@@ -1,123 +1,551 @@
 package zmt.kitt;
 
-import java.io.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
-import java.util.Locale;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+/**
+ * Filters units out of tab-separated kitt output, converts steps to days,
+ * remaps IDs to sequential numbers and writes the result separated by
+ * semicolons to a file ending with {@value #OUTPUT_SUFFIX}.
+ * <p>
+ * The input is memory-mapped and split into chunks at line ends, which are
+ * filtered byte by byte in parallel and written in order. IDs are collected
+ * from all chunks first, so that they are numbered by first appearance in the
+ * file, like when filtering line by line.
+ * <p>
+ * If given a directory, all output files within its {@value #RUN_PREFIX}
+ * subdirectories are filtered concurrently.
+ */
 public class Main {
+    private static final byte OLD_COLUMN_SEPARATOR = '\t';
+    private static final byte NEW_COLUMN_SEPARATOR = ';';
+    private static final int SECONDS_PER_DAY = 86400;
+    /**
+     * Leading byte of the UTF-8 encoded square and plus-minus signs, read as
+     * 'A' with circumflex in Latin-1. Everything from it to the end of a
+     * column is skipped.
+     */
+    private static final byte UNIT_MARK = (byte) 0xC2;
+    /** Byte sequences removed from values. */
+    private static final byte[][] UNITS = { bytes("kJ"), bytes("g/m"), bytes("year") };
 
-    private static Map<String, Long> ids = new HashMap<>();
-    private static long counter = 0;
-    //using strings because string replace seems more reliable than char replace
-    private static String NEW_COLUMN_SEPARATOR = ";";
-    private static String OLD_COLUMN_SEPARATOR = "\t";
-    private static int IDIndex = -1;
+    /** Approximate size of the chunks a file is split into. */
+    private static final long CHUNK_SIZE = 1 << 23;
+    /** Size of the window searched for line ends at once. */
+    private static final int SEARCH_WINDOW = 1 << 16;
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+    /** Maximum number of filtered chunks held in memory per file. */
+    private static final int CHUNKS_IN_FLIGHT = THREADS * 2;
 
-    public static void main(String[] args) {
-        try{
-        long startTime = System.currentTimeMillis();
+    private static final String OUTPUT_SUFFIX = "WithoutUnits.csv";
+    private static final String INPUT_EXTENSION = ".csv";
+    private static final String RUN_PREFIX = "run_";
 
-        String filePath = args[0];
-            String out;
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: java -jar FilterForR.jar <file or directory>");
+            return;
+        }
+        Path path = Paths.get(args[0]);
+        ExecutorService chunkExecutor = Executors.newFixedThreadPool(THREADS, Main::createDaemon);
         try {
-           out = filePath.substring(0, filePath.lastIndexOf('.')) + "WithoutUnits.csv";
-        } catch (IndexOutOfBoundsException e){
-            System.out.println("Missing the specific filename?");
+            if (Files.isDirectory(path)) {
+                filterDirectory(path, chunkExecutor);
+            } else {
+                filter(path, chunkExecutor);
+            }
+        } catch (IOException | RuntimeException e) {
             e.printStackTrace();
+        } finally {
+            chunkExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Filters all output files in the run directories within {@code directory}
+     * concurrently. Failures are reported per file after all are done.
+     */
+    private static void filterDirectory(Path directory, ExecutorService chunkExecutor) throws IOException {
+        List<Path> inputs = new ArrayList<>();
+        try (Stream<Path> runs = Files.list(directory)) {
+            for (Path run : runs.filter(Files::isDirectory)
+                    .filter(run -> run.getFileName().toString().startsWith(RUN_PREFIX)).sorted()
+                    .collect(Collectors.toList())) {
+                try (Stream<Path> files = Files.list(run)) {
+                    files.filter(Files::isRegularFile).filter(Main::isInput).sorted().forEach(inputs::add);
+                }
+            }
+        }
+        if (inputs.isEmpty()) {
+            System.out.println("No output files found in " + RUN_PREFIX + "* directories of " + directory);
             return;
         }
-        PrintWriter writer = new PrintWriter(out, "UTF-8");
-
-
-        File inputF = new File(filePath);
-
-        InputStream inputFS = new FileInputStream(inputF);
-
-        BufferedReader br = new BufferedReader(new InputStreamReader(inputFS));
-
-        // skip the header of the csv and replace tabs with comma, as well spaces with
-            String header = br.readLine()
-                    .replace("steps","days")
-                    .replace(OLD_COLUMN_SEPARATOR,NEW_COLUMN_SEPARATOR)
-                    .replace(" ","")
-                    .replace("AGE","AGE(years)")
-                    .replace("Length","Length(cm)")
-                    .replace("Biomass","Biomass(g)")
-                    .replace("Ingested_Energy", "Ingested_Energy(kJ)")
-                    .replace("Gut", "Gut(kJ)")
-                    .replace("Fat","Fat(kJ)")
-                    .replace("Protein","Protein(kJ)")
-                    .replace("Excess","Excess(kJ)")
-                    .replace("Shortterm","Shortterm(kJ)")
-                    .replace("Netenergy","Netenergy(kJ)")
-                    .replace("Consumed_Energy","Consumed_Energy(kJ)")
-                    .replace("Food_Value","Food_Value(g/m^2)")
-                    .replace("Repro_Storage", "Repro_Storage(kJ)")
-                    .replace("Â","")
-                    .replace("mÂ²","m^2");
-            header = header.substring(0,header.length()-1);
-            String[] tmp = header.split(NEW_COLUMN_SEPARATOR);
-            for(int i=0; i<tmp.length; i++)
-                if(tmp[i].toUpperCase().equals("ID"))
-                {
-                    IDIndex = i;
-                    break;
+
+        long startTime = System.currentTimeMillis();
+        ExecutorService fileExecutor = Executors.newFixedThreadPool(Math.min(inputs.size(), THREADS),
+                Main::createDaemon);
+        Map<Path, Future<?>> results = new HashMap<>();
+        for (Path input : inputs) {
+            results.put(input, fileExecutor.submit(() -> {
+                filter(input, chunkExecutor);
+                return null;
+            }));
+        }
+        fileExecutor.shutdown();
+
+        int failures = 0;
+        for (Path input : inputs) {
+            try {
+                results.get(input).get();
+            } catch (ExecutionException e) {
+                failures++;
+                System.out.println("Failed to filter " + input + ": " + e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        System.out.println("Filtered " + (inputs.size() - failures) + " of " + inputs.size() + " files in "
+                + (System.currentTimeMillis() - startTime) / 1000 + " Seconds");
+    }
+
+    private static boolean isInput(Path file) {
+        String name = file.getFileName().toString();
+        return name.endsWith(INPUT_EXTENSION) && !name.endsWith(OUTPUT_SUFFIX);
+    }
+
+    /** Filters a single file. */
+    private static void filter(Path input, ExecutorService chunkExecutor) throws IOException {
+        long startTime = System.currentTimeMillis();
+        String fileName = input.getFileName().toString();
+        int extensionIndex = fileName.lastIndexOf('.');
+        if (extensionIndex < 0) {
+            throw new IllegalArgumentException("Missing the specific filename? " + input);
+        }
+        Path output = input.resolveSibling(fileName.substring(0, extensionIndex) + OUTPUT_SUFFIX);
+
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            long headerEnd = findLineStart(in, 0, size);
+            ByteBuffer headerBuffer = in.map(FileChannel.MapMode.READ_ONLY, 0, headerEnd);
+            byte[] headerBytes = new byte[(int) headerEnd];
+            headerBuffer.get(headerBytes);
+            String header = filterHeader(new String(headerBytes, StandardCharsets.ISO_8859_1));
+            int idIndex = findIdIndex(header);
+            writeFully(out, ByteBuffer.wrap((header + "\n").getBytes(StandardCharsets.UTF_8)));
+
+            List<long[]> chunks = split(in, headerEnd, size);
+            Map<String, Long> ids = idIndex >= 0 ? collectIds(in, chunks, idIndex, chunkExecutor)
+                    : new HashMap<>();
+
+            Deque<Future<ByteSink>> pending = new ArrayDeque<>();
+            for (long[] chunk : chunks) {
+                if (pending.size() >= CHUNKS_IN_FLIGHT) {
+                    writeFully(out, await(pending.poll()).toBuffer());
                 }
-        writer.println(header);
-        System.out.println("Header");
+                pending.add(chunkExecutor.submit(() -> new ChunkFilter(map(in, chunk), idIndex, ids).filter()));
+            }
+            while (!pending.isEmpty()) {
+                writeFully(out, await(pending.poll()).toBuffer());
+            }
+        }
+        System.out.println(input + ": " + (System.currentTimeMillis() - startTime) / 1000 + " Seconds needed");
+    }
 
+    /**
+     * Filters the header like the values, renaming steps to days and adding
+     * units to the column names.
+     */
+    private static String filterHeader(String line) {
+        String header = line.replace("\r", "").replace("\n", "").replace("steps", "days")
+                .replace((char) OLD_COLUMN_SEPARATOR, (char) NEW_COLUMN_SEPARATOR).replace(" ", "")
+                .replace("AGE", "AGE(years)").replace("Length", "Length(cm)").replace("Biomass", "Biomass(g)")
+                .replace("Ingested_Energy", "Ingested_Energy(kJ)").replace("Gut", "Gut(kJ)")
+                .replace("Fat", "Fat(kJ)").replace("Protein", "Protein(kJ)").replace("Excess", "Excess(kJ)")
+                .replace("Shortterm", "Shortterm(kJ)").replace("Netenergy", "Netenergy(kJ)")
+                .replace("Consumed_Energy", "Consumed_Energy(kJ)").replace("Food_Value", "Food_Value(g/m^2)")
+                .replace("Repro_Storage", "Repro_Storage(kJ)").replace("\u00C2", "");
+        // remove trailing separator
+        return header.isEmpty() ? header : header.substring(0, header.length() - 1);
+    }
 
-        String line = "";
-        while ((line = br.readLine()) != null) {
-            writeFilteredLine(writer, line
-                                        .replace("(","")
-                                        .replace("kJ","")
-                                        .replace("g/m","")
-                                        .replace("year","")
-                                        .replace(" ",""));
+    private static int findIdIndex(String header) {
+        String[] columns = header.split(String.valueOf((char) NEW_COLUMN_SEPARATOR));
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].toUpperCase().equals("ID")) {
+                return i;
+            }
         }
+        return -1;
+    }
 
+    /**
+     * Splits the range into chunks of about {@link #CHUNK_SIZE}, each ending
+     * after a line end.
+     *
+     * @return list of start and end positions
+     */
+    private static List<long[]> split(FileChannel in, long start, long size) throws IOException {
+        List<long[]> chunks = new ArrayList<>();
+        while (start < size) {
+            long end = start + CHUNK_SIZE;
+            // chunk needs to end after the line end at or behind the target
+            end = end >= size ? size : findLineStart(in, end - 1, size);
+            chunks.add(new long[] { start, end });
+            start = end;
+        }
+        return chunks;
+    }
 
-        br.close();
-        writer.close();
-        long endTime = System.currentTimeMillis() - startTime;
-        System.out.println(endTime/1000 + "Seconds needed");
-        } catch (IOException e) {
-            e.printStackTrace();
-        } catch (IndexOutOfBoundsException i){
-            i.printStackTrace();
+    /** @return the position after the first line end at or behind {@code from} */
+    private static long findLineStart(FileChannel in, long from, long size) throws IOException {
+        for (long position = from; position < size; position += SEARCH_WINDOW) {
+            MappedByteBuffer window = in.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(SEARCH_WINDOW, size - position));
+            for (int i = 0; i < window.limit(); i++) {
+                if (window.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Collects IDs of all chunks in parallel and numbers them in order of
+     * their first appearance.
+     */
+    private static Map<String, Long> collectIds(FileChannel in, List<long[]> chunks, int idIndex,
+            ExecutorService chunkExecutor) throws IOException {
+        List<Future<Set<String>>> chunkIds = new ArrayList<>(chunks.size());
+        for (long[] chunk : chunks) {
+            chunkIds.add(chunkExecutor.submit(() -> new ChunkFilter(map(in, chunk), idIndex, null).collectIds()));
+        }
+        Map<String, Long> ids = new HashMap<>();
+        long counter = 0;
+        for (Future<Set<String>> future : chunkIds) {
+            for (String id : await(future)) {
+                if (!ids.containsKey(id)) {
+                    ids.put(id, counter++);
+                }
+            }
         }
+        return ids;
     }
 
-    public static void writeFilteredLine(PrintWriter writer, String line){
-        boolean kill = false;
-        String[] parts = line.split(OLD_COLUMN_SEPARATOR);
-        parts[0] = Integer.toString(Integer.parseInt(parts[0]) / 86400);
+    private static MappedByteBuffer map(FileChannel in, long[] chunk) throws IOException {
+        return in.map(FileChannel.MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0]);
+    }
 
-        if(IDIndex >= 0) {
-            if (ids.containsKey(parts[IDIndex]))
-                parts[IDIndex] = Long.toString(ids.get(parts[IDIndex]));
-            else {
-                ids.put(parts[IDIndex], counter);
-                parts[IDIndex] = Long.toString(counter);
-                counter++;
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while filtering.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
             }
+            throw new IllegalStateException(e.getCause());
         }
+    }
 
-        char[] chars = String.join(NEW_COLUMN_SEPARATOR,parts).toCharArray();
-        for(int i=0, n=chars.length; i<n; i++){
-            if(chars[i] == 'Â') //get rid of stupid science unit
-                kill = true;
-            else if(chars[i] == NEW_COLUMN_SEPARATOR.charAt(0))
-                kill = false;
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private static Thread createDaemon(Runnable runnable) {
+        Thread thread = new Thread(runnable);
+        thread.setDaemon(true);
+        return thread;
+    }
 
-            if(!kill)
-                writer.append(chars[i]);
+    private static byte[] bytes(String string) {
+        return string.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Filters the lines within a chunk of the input.
+     */
+    private static class ChunkFilter {
+        private final ByteBuffer input;
+        private final int idIndex;
+        private final Map<String, Long> ids;
+        /** Buffer for the filtered ID column. */
+        private final ByteSink idSink = new ByteSink(64);
 
+        /**
+         * @param input
+         *            the chunk, consisting of whole lines
+         * @param idIndex
+         *            the index of the ID column, -1 if there is none
+         * @param ids
+         *            the sequential numbers of IDs
+         */
+        public ChunkFilter(ByteBuffer input, int idIndex, Map<String, Long> ids) {
+            this.input = input;
+            this.idIndex = idIndex;
+            this.ids = ids;
         }
 
-        writer.append("\n");
+        /** @return the filtered IDs of the chunk in order of appearance */
+        public Set<String> collectIds() {
+            Set<String> chunkIds = new LinkedHashSet<>();
+            int limit = input.limit();
+            for (int lineStart = 0; lineStart < limit;) {
+                int lineEnd = findLineEnd(lineStart, limit);
+                int column = 0;
+                for (int start = lineStart; start <= lineEnd && column <= idIndex; column++) {
+                    int end = findColumnEnd(start, lineEnd);
+                    if (column == idIndex) {
+                        idSink.clear();
+                        filterValue(start, end, idSink);
+                        chunkIds.add(idSink.toString());
+                    }
+                    start = end + 1;
+                }
+                lineStart = skipLineEnd(lineEnd, limit);
+            }
+            return chunkIds;
+        }
+
+        /** @return the filtered chunk */
+        public ByteSink filter() {
+            int limit = input.limit();
+            ByteSink output = new ByteSink(limit);
+            for (int lineStart = 0; lineStart < limit;) {
+                int lineEnd = findLineEnd(lineStart, limit);
+                if (lineEnd > lineStart) {
+                    filterLine(lineStart, lineEnd, output);
+                }
+                lineStart = skipLineEnd(lineEnd, limit);
+            }
+            return output;
+        }
+
+        private void filterLine(int lineStart, int lineEnd, ByteSink output) {
+            int outputLineStart = output.size();
+            int column = 0;
+            for (int start = lineStart; start <= lineEnd; column++) {
+                int end = findColumnEnd(start, lineEnd);
+                if (column > 0) {
+                    output.write(NEW_COLUMN_SEPARATOR);
+                }
+                if (column == 0) {
+                    filterSteps(start, end, output);
+                } else if (column == idIndex) {
+                    idSink.clear();
+                    filterValue(start, end, idSink);
+                    Long id = ids.get(idSink.toString());
+                    if (id != null) {
+                        output.writeLong(id);
+                    } else {
+                        output.write(idSink);
+                    }
+                } else {
+                    filterValue(start, end, output);
+                }
+                start = end + 1;
+            }
+            // drop trailing empty columns
+            while (output.size() > outputLineStart && output.last() == NEW_COLUMN_SEPARATOR) {
+                output.truncate(output.size() - 1);
+            }
+            output.write((byte) '\n');
+        }
+
+        /** Writes the steps as days, or filtered if not a number. */
+        private void filterSteps(int start, int end, ByteSink output) {
+            long steps = 0;
+            boolean negative = start < end && input.get(start) == '-';
+            int digitsStart = negative ? start + 1 : start;
+            boolean number = digitsStart < end;
+            for (int i = digitsStart; i < end && number; i++) {
+                byte value = input.get(i);
+                if (value >= '0' && value <= '9') {
+                    steps = steps * 10 + (value - '0');
+                } else {
+                    number = false;
+                }
+            }
+            if (number) {
+                output.writeLong((negative ? -steps : steps) / SECONDS_PER_DAY);
+            } else {
+                filterValue(start, end, output);
+            }
+        }
+
+        /**
+         * Writes a value without brackets, spaces and units. Everything behind
+         * {@link #UNIT_MARK} is skipped.
+         */
+        private void filterValue(int start, int end, ByteSink output) {
+            for (int i = start; i < end; i++) {
+                byte value = input.get(i);
+                if (value == UNIT_MARK) {
+                    return;
+                }
+                if (value == '(' || value == ' ') {
+                    continue;
+                }
+                int unitLength = matchUnit(i, end);
+                if (unitLength > 0) {
+                    i += unitLength - 1;
+                } else {
+                    output.write(value);
+                }
+            }
+        }
+
+        /** @return the length of the unit at {@code position}, 0 if none */
+        private int matchUnit(int position, int end) {
+            for (byte[] unit : UNITS) {
+                if (position + unit.length <= end && matches(unit, position)) {
+                    return unit.length;
+                }
+            }
+            return 0;
+        }
+
+        private boolean matches(byte[] unit, int position) {
+            for (int i = 0; i < unit.length; i++) {
+                if (input.get(position + i) != unit[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** @return the end of the line, excluding line terminators */
+        private int findLineEnd(int start, int limit) {
+            int end = start;
+            while (end < limit && input.get(end) != '\n') {
+                end++;
+            }
+            return end > start && input.get(end - 1) == '\r' ? end - 1 : end;
+        }
+
+        private int skipLineEnd(int lineEnd, int limit) {
+            int position = lineEnd;
+            if (position < limit && input.get(position) == '\r') {
+                position++;
+            }
+            return position + 1;
+        }
+
+        private int findColumnEnd(int start, int lineEnd) {
+            int end = start;
+            while (end < lineEnd && input.get(end) != OLD_COLUMN_SEPARATOR) {
+                end++;
+            }
+            return end;
+        }
+    }
+
+    /**
+     * Growable byte array for filtered output.
+     */
+    private static class ByteSink {
+        private static final byte[] LONG_MIN = bytes(Long.toString(Long.MIN_VALUE));
+
+        private byte[] bytes;
+        private int size = 0;
+
+        public ByteSink(int capacity) {
+            bytes = new byte[Math.max(capacity, 16)];
+        }
+
+        public void write(byte value) {
+            ensureCapacity(size + 1);
+            bytes[size++] = value;
+        }
+
+        public void write(ByteSink other) {
+            ensureCapacity(size + other.size);
+            System.arraycopy(other.bytes, 0, bytes, size, other.size);
+            size += other.size;
+        }
+
+        /** Writes the decimal digits of {@code value}. */
+        public void writeLong(long value) {
+            if (value == Long.MIN_VALUE) {
+                ensureCapacity(size + LONG_MIN.length);
+                System.arraycopy(LONG_MIN, 0, bytes, size, LONG_MIN.length);
+                size += LONG_MIN.length;
+                return;
+            }
+            if (value < 0) {
+                write((byte) '-');
+                value = -value;
+            }
+            int digits = 1;
+            for (long rest = value / 10; rest > 0; rest /= 10) {
+                digits++;
+            }
+            ensureCapacity(size + digits);
+            for (int i = size + digits - 1; i >= size; i--) {
+                bytes[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            size += digits;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public byte last() {
+            return bytes[size - 1];
+        }
+
+        public void truncate(int size) {
+            this.size = size;
+        }
+
+        public void clear() {
+            size = 0;
+        }
+
+        public ByteBuffer toBuffer() {
+            return ByteBuffer.wrap(bytes, 0, size);
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+            }
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, 0, size, StandardCharsets.ISO_8859_1);
+        }
     }
 }
@@ -0,0 +1,336 @@
+package de.zmt.ecs.component.agent;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import de.zmt.ecs.Component;
+import de.zmt.ecs.Entity;
+import de.zmt.ecs.component.agent.Metabolizing.BehaviorMode;
+import sim.util.IntBag;
+
+/**
+ * Dense structure-of-arrays store for the frequently accessed agent values of
+ * {@link Moving}, {@link Growing}, {@link Metabolizing} and
+ * {@link DynamicScheduling}. Each agent occupies a stable index into primitive
+ * arrays, which is shared by its components through a {@link Slot}. The
+ * components act as views over the store. Their getters returning vectors or
+ * amounts create them on every call and are meant for display and inspection.
+ * Systems updating agents use the primitive accessors instead, which read the
+ * arrays without allocating.
+ * <p>
+ * A shared store is held by the environment entity. Code processing all
+ * agents at once, like {@link de.zmt.output.LocationStayDurations}, can
+ * iterate the arrays directly, skipping indices that are not
+ * {@link #isUsed(int)}. Arrays are replaced when the store grows, so they
+ * should not be kept between updates.
+ * <p>
+ * Systems do not iterate the arrays. Each agent is updated on its own at its
+ * scheduled time, with its own delta time, and later systems of the same
+ * update depend on the position it has moved to. Systems reach the store
+ * through the components of the agent they update.
+ * <p>
+ * Slots must only be allocated and released while no agents are updated
+ * concurrently.
+ *
+ * @author mey
+ *
+ */
+public class AgentStore implements Component {
+    private static final long serialVersionUID = 1L;
+
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final BehaviorMode[] BEHAVIOR_MODES = BehaviorMode.values();
+
+    /** Continuous world position x (m). */
+    double[] worldX;
+    /** Continuous world position y (m). */
+    double[] worldY;
+    /** Discrete map position x. */
+    int[] mapX;
+    /** Discrete map position y. */
+    int[] mapY;
+    /** Direction x (unit vector). */
+    double[] directionX;
+    /** Direction y (unit vector). */
+    double[] directionY;
+    /** Speed (m/s). */
+    double[] speed;
+    /** Biomass (g). */
+    double[] biomass;
+    /** Expected biomass (g). */
+    double[] expectedBiomass;
+    /** Length (cm). */
+    double[] length;
+    /** Ordinals of {@link BehaviorMode}. */
+    byte[] behaviorMode;
+    /** Next schedule time. */
+    double[] nextTime;
+    /** <code>true</code> for indices occupied by an agent. */
+    private boolean[] used;
+
+    /** Indices below this have been allocated once. */
+    private int size = 0;
+    /** Released indices available for reuse. */
+    private final IntBag freeIndices = new IntBag();
+
+    /** Constructs an empty {@link AgentStore} with default capacity. */
+    public AgentStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty {@link AgentStore}.
+     *
+     * @param initialCapacity
+     *            the number of agents that can be stored before growing
+     */
+    public AgentStore(int initialCapacity) {
+        if (initialCapacity < 1) {
+            throw new IllegalArgumentException("Initial capacity must be positive: " + initialCapacity);
+        }
+        worldX = new double[initialCapacity];
+        worldY = new double[initialCapacity];
+        mapX = new int[initialCapacity];
+        mapY = new int[initialCapacity];
+        directionX = new double[initialCapacity];
+        directionY = new double[initialCapacity];
+        speed = new double[initialCapacity];
+        biomass = new double[initialCapacity];
+        expectedBiomass = new double[initialCapacity];
+        length = new double[initialCapacity];
+        behaviorMode = new byte[initialCapacity];
+        nextTime = new double[initialCapacity];
+        used = new boolean[initialCapacity];
+    }
+
+    /**
+     * Allocates a new slot for an agent, reusing released indices first.
+     *
+     * @return the allocated {@link Slot}
+     */
+    public Slot allocate() {
+        int index;
+        if (freeIndices.size() == 0) {
+            if (size == used.length) {
+                grow(size * 2);
+            }
+            index = size++;
+        } else {
+            index = freeIndices.pop();
+        }
+
+        used[index] = true;
+        behaviorMode[index] = (byte) BehaviorMode.RESTING.ordinal();
+        return new Slot(this, index);
+    }
+
+    private void grow(int capacity) {
+        worldX = Arrays.copyOf(worldX, capacity);
+        worldY = Arrays.copyOf(worldY, capacity);
+        mapX = Arrays.copyOf(mapX, capacity);
+        mapY = Arrays.copyOf(mapY, capacity);
+        directionX = Arrays.copyOf(directionX, capacity);
+        directionY = Arrays.copyOf(directionY, capacity);
+        speed = Arrays.copyOf(speed, capacity);
+        biomass = Arrays.copyOf(biomass, capacity);
+        expectedBiomass = Arrays.copyOf(expectedBiomass, capacity);
+        length = Arrays.copyOf(length, capacity);
+        behaviorMode = Arrays.copyOf(behaviorMode, capacity);
+        nextTime = Arrays.copyOf(nextTime, capacity);
+        used = Arrays.copyOf(used, capacity);
+    }
+
+    /**
+     * Copies the values at one index to another store.
+     *
+     * @param index
+     *            the index to copy from
+     * @param target
+     *            the store to copy to
+     * @param targetIndex
+     *            the index to copy to
+     */
+    private void copy(int index, AgentStore target, int targetIndex) {
+        target.worldX[targetIndex] = worldX[index];
+        target.worldY[targetIndex] = worldY[index];
+        target.mapX[targetIndex] = mapX[index];
+        target.mapY[targetIndex] = mapY[index];
+        target.directionX[targetIndex] = directionX[index];
+        target.directionY[targetIndex] = directionY[index];
+        target.speed[targetIndex] = speed[index];
+        target.biomass[targetIndex] = biomass[index];
+        target.expectedBiomass[targetIndex] = expectedBiomass[index];
+        target.length[targetIndex] = length[index];
+        target.behaviorMode[targetIndex] = behaviorMode[index];
+        target.nextTime[targetIndex] = nextTime[index];
+    }
+
+    /**
+     * Releases the slot shared by the components of given agent, if it has
+     * any. Needs to be called before the agent is stopped. The components keep
+     * their values.
+     *
+     * @param agent
+     *            the agent to release the slot of
+     */
+    public static void release(Entity agent) {
+        if (agent.has(Moving.class)) {
+            agent.get(Moving.class).getSlot().release();
+        }
+    }
+
+    /**
+     * Returns the upper bound of indices occupied by agents. Use
+     * {@link #isUsed(int)} to skip unoccupied ones.
+     *
+     * @return the upper bound of occupied indices
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index
+     *            the index to check
+     * @return <code>true</code> if the index is occupied by an agent
+     */
+    public boolean isUsed(int index) {
+        return used[index];
+    }
+
+    /** @return the number of agents in this store */
+    public int getAgentCount() {
+        return size - freeIndices.size();
+    }
+
+    /** @return world positions x (m) */
+    public double[] getWorldX() {
+        return worldX;
+    }
+
+    /** @return world positions y (m) */
+    public double[] getWorldY() {
+        return worldY;
+    }
+
+    /** @return map positions x */
+    public int[] getMapX() {
+        return mapX;
+    }
+
+    /** @return map positions y */
+    public int[] getMapY() {
+        return mapY;
+    }
+
+    /** @return directions x (unit vector) */
+    public double[] getDirectionX() {
+        return directionX;
+    }
+
+    /** @return directions y (unit vector) */
+    public double[] getDirectionY() {
+        return directionY;
+    }
+
+    /** @return speeds (m/s) */
+    public double[] getSpeed() {
+        return speed;
+    }
+
+    /** @return biomass values (g) */
+    public double[] getBiomass() {
+        return biomass;
+    }
+
+    /** @return expected biomass values (g) */
+    public double[] getExpectedBiomass() {
+        return expectedBiomass;
+    }
+
+    /** @return lengths (cm) */
+    public double[] getLength() {
+        return length;
+    }
+
+    /**
+     * @param index
+     *            the agent index
+     * @return the behavior mode of the agent at {@code index}
+     */
+    public BehaviorMode getBehaviorMode(int index) {
+        return BEHAVIOR_MODES[behaviorMode[index]];
+    }
+
+    /** @return next schedule times */
+    public double[] getNextTime() {
+        return nextTime;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[agentCount=" + getAgentCount() + ", capacity=" + used.length + "]";
+    }
+
+    /**
+     * Position of an agent within a store, shared by its components. When
+     * released, values are moved into a private store, so that the components
+     * stay valid.
+     *
+     * @author mey
+     *
+     */
+    public static class Slot implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private AgentStore store;
+        private int index;
+        /** <code>true</code> while {@link #store} is shared with other agents. */
+        private boolean shared = true;
+
+        private Slot(AgentStore store, int index) {
+            this.store = store;
+            this.index = index;
+        }
+
+        /**
+         * Creates a slot in a private store not shared with other agents.
+         *
+         * @return the created slot
+         */
+        public static Slot createPrivate() {
+            Slot slot = new AgentStore(1).allocate();
+            slot.shared = false;
+            return slot;
+        }
+
+        /** @return the store containing this slot */
+        AgentStore getStore() {
+            return store;
+        }
+
+        /** @return the index of this slot within its store */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Moves values into a private store and frees the index in the shared
+         * one. Does nothing if already private.
+         */
+        void release() {
+            if (!shared) {
+                return;
+            }
+            AgentStore privateStore = new AgentStore(1);
+            privateStore.allocate();
+            store.copy(index, privateStore, 0);
+            store.used[index] = false;
+            store.freeIndices.add(index);
+
+            store = privateStore;
+            index = 0;
+            shared = false;
+        }
+    }
+}
@@ -21,11 +21,14 @@ public class Aging implements Component, Proxiable {
 
     /** Age {@link Duration} of the fish. */
     private Amount<Duration> age;
+    /** Age of the fish (s), converted once when changed. */
+    private double ageValue;
     /** Maximum lifetime of the agent. */
     private final Amount<Duration> maxAge;
 
     public Aging(Amount<Duration> initialAge, Amount<Duration> maxAge) {
         this.age = initialAge;
+        this.ageValue = initialAge.doubleValue(UnitConstants.AGE);
         this.maxAge = maxAge;
     }
 
@@ -38,6 +41,7 @@ public class Aging implements Component, Proxiable {
      */
     public Amount<Duration> addAge(Amount<Duration> delta) {
         age = age.plus(delta);
+        ageValue = age.doubleValue(UnitConstants.AGE);
         return age;
     }
 
@@ -45,6 +49,11 @@ public class Aging implements Component, Proxiable {
         return age;
     }
 
+    /** @return the age (s) without creating an amount */
+    public double getAgeValue() {
+        return ageValue;
+    }
+
     public Amount<Duration> getMaxAge() {
         return maxAge;
     }
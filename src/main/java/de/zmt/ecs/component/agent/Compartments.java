@@ -25,6 +25,7 @@ import de.zmt.storage.ReproductionStorage;
 import de.zmt.storage.ShorttermStorage;
 import de.zmt.util.AmountUtil;
 import de.zmt.util.UnitConstants;
+import ec.util.MersenneTwisterFast;
 import sim.engine.Kitt;
 import sim.engine.SimState;
 import sim.util.AmountValuable;
@@ -53,6 +54,8 @@ public class Compartments implements LimitedStorage<Energy>, Proxiable, Componen
     @SuppressWarnings("unused")
     private static final Logger logger = Logger.getLogger(Compartments.class.getName());
 
+    private static final Amount<Energy> ZERO_ENERGY = AmountUtil.zero(UnitConstants.CELLULAR_ENERGY);
+
     /**
      * Compartments to consume from in depletion order.
      */
@@ -134,106 +137,108 @@ public class Compartments implements LimitedStorage<Energy>, Proxiable, Componen
     public TransferDigestedResult transferDigestedEnergyToCompartments(boolean adultFemale,
                                                                        Amount<Energy> totalEnergyCost, Entity entity,
                                                                        SimState state) {
-        Amount<Energy> netEnergyIngested = gut.getAndRemoveProcessed();
-        Amount<Energy> netEnergyGain = netEnergyIngested.minus(totalEnergyCost);
-        Amount<Energy> availableEnergyExcess = excess.clear();
+        double netEnergyIngested = gut.getAndRemoveProcessedValue();
+        double netEnergyGain = netEnergyIngested - totalEnergyCost.doubleValue(UnitConstants.CELLULAR_ENERGY);
+        double availableEnergyExcess = excess.clear().doubleValue(UnitConstants.CELLULAR_ENERGY);
         Growing growing = entity.get(Growing.class);
 
         //in case of energy loss: re-metabolize energy from compartments in following order:
         // excess (only RMR costs) -> shortterm -> fat -> protein
-        if (netEnergyGain.getEstimatedValue() < 0) {
+        if (netEnergyGain < 0) {
             //negative netEnergyGain = energyDeficit
-            Amount<Energy> energyDeficit = netEnergyGain;
+            double energyDeficit = netEnergyGain;
 
-            if (availableEnergyExcess.getEstimatedValue() > 0) {
+            if (availableEnergyExcess > 0) {
                 Metabolizing metabolizing = entity.get(Metabolizing.class);
                 Amount<Duration> deltaTime = entity.get(DynamicScheduling.class).getDeltaTime();
-                Amount<Energy> costRestingMetabolism = metabolizing.getRestingMetabolicRate().times(deltaTime)
-                        .to(UnitConstants.CELLULAR_ENERGY);
+                double costRestingMetabolism = metabolizing.getRestingMetabolicRate().times(deltaTime)
+                        .to(UnitConstants.CELLULAR_ENERGY).getEstimatedValue();
 
-                if (availableEnergyExcess.isGreaterThan(costRestingMetabolism)) {
-                    energyDeficit = energyDeficit.plus(costRestingMetabolism);
-                    availableEnergyExcess = availableEnergyExcess.minus(costRestingMetabolism);
+                if (availableEnergyExcess > costRestingMetabolism) {
+                    energyDeficit += costRestingMetabolism;
+                    availableEnergyExcess -= costRestingMetabolism;
                 } else {
-                    energyDeficit = energyDeficit.plus(availableEnergyExcess);
-                    availableEnergyExcess = availableEnergyExcess.minus(availableEnergyExcess);
+                    energyDeficit += availableEnergyExcess;
+                    availableEnergyExcess = 0;
                 }
             }
-            excess.add(availableEnergyExcess);
+            excess.add(toEnergy(availableEnergyExcess));
 
-            Amount<Energy> consumedFromCompartments = AmountUtil.zero(netEnergyGain);
-            for (int i = 0; energyDeficit.getEstimatedValue() < 0 && i < CONSUMABLE_COMPARTMENTS.length; i++) {
+            double consumedFromCompartments = 0;
+            for (int i = 0; energyDeficit < 0 && i < CONSUMABLE_COMPARTMENTS.length; i++) {
                 // take the next compartment until nothing gets rejected (= energyDeficit could be satisfied from compartments)
                 // if last compartment still rejects, the fish will die of starvation if biomass < 60% of expectedBiomass
-                ChangeResult<Energy> result = getStorage(CONSUMABLE_COMPARTMENTS[i]).add(energyDeficit);
+                ChangeResult<Energy> result = getStorage(CONSUMABLE_COMPARTMENTS[i]).add(toEnergy(energyDeficit));
                 // rejected because it surpasses lower limit-> rejected to provide requested energy
-                energyDeficit = result.getRejected();
-                consumedFromCompartments = consumedFromCompartments.plus(result.getStored());
+                energyDeficit = result.getRejected().doubleValue(UnitConstants.CELLULAR_ENERGY);
+                consumedFromCompartments += result.getStored().doubleValue(UnitConstants.CELLULAR_ENERGY);
             }
-            return new TransferDigestedResult(new ChangeResult<Energy>(consumedFromCompartments, energyDeficit),
-                    netEnergyIngested);
+            return new TransferDigestedResult(toEnergy(consumedFromCompartments), toEnergy(energyDeficit),
+                    toEnergy(netEnergyIngested));
         //energy gained in current time step
         } else {
             //fish only grows if biomass does not exceed 120% of expectedBiomass
             if (growing.isLower120ExpectedBiomass()) {
                 // add netEnergyGain to shortterm:
-                ChangeResult<Energy> shorttermResult = shortterm.add(netEnergyGain);
-                Amount<Energy> stored = shorttermResult.getStored();
+                ChangeResult<Energy> shorttermResult = shortterm.add(toEnergy(netEnergyGain));
+                double stored = shorttermResult.getStored().doubleValue(UnitConstants.CELLULAR_ENERGY);
                 //if shortterm is full, add additional energy to compartments with certain loss
                 //order: fat -> protein/repo -> excess
+                //each compartment gets its fraction of the whole surplus, which is not reduced by the amounts stored
                 Amount<Energy> surplus = shorttermResult.getRejected();
                 if (surplus.getEstimatedValue() > 0) {
-                    Amount<Energy> surplusFat = surplus.times(Compartment.Type.FAT.getGrowthFraction(adultFemale));
-                    ChangeResult<Energy> fatResult = fat.add(surplusFat);
-                    surplus.minus(surplusFat.minus(fatResult.getRejected()));
-
-                    Amount<Energy> surplusProtein = surplus.times(Compartment.Type.PROTEIN.getGrowthFraction(adultFemale));
-                    ChangeResult<Energy> proteinResult = protein.add(surplusProtein);
-                    surplus.minus(surplusProtein.minus(proteinResult.getRejected()));
-
-                    Amount<Energy> surplusRepro = surplus.times(Compartment.Type.REPRODUCTION.getGrowthFraction(adultFemale));
-                    ChangeResult<Energy> reproductionResult = reproduction.add(surplusRepro);
-                    surplus.minus(surplusRepro.minus(reproductionResult.getRejected()));
+                    ChangeResult<Energy> fatResult = fat
+                            .add(surplus.times(Compartment.Type.FAT.getGrowthFraction(adultFemale)));
+                    ChangeResult<Energy> proteinResult = protein
+                            .add(surplus.times(Compartment.Type.PROTEIN.getGrowthFraction(adultFemale)));
+                    ChangeResult<Energy> reproductionResult = reproduction
+                            .add(surplus.times(Compartment.Type.REPRODUCTION.getGrowthFraction(adultFemale)));
 
                     // energy surplus that cannot be stored in compartments -> stored in excess
                     ChangeResult<Energy> excessResult = excess.add(surplus);
 
                     // sum stored energy
-                    stored = stored.plus(fatResult.getStored()).plus(proteinResult.getStored())
-                            .plus(reproductionResult.getStored().plus(excessResult.getStored()));
+                    stored += fatResult.getStored().doubleValue(UnitConstants.CELLULAR_ENERGY)
+                            + proteinResult.getStored().doubleValue(UnitConstants.CELLULAR_ENERGY)
+                            + reproductionResult.getStored().doubleValue(UnitConstants.CELLULAR_ENERGY)
+                            + excessResult.getStored().doubleValue(UnitConstants.CELLULAR_ENERGY);
                 }
-                return new TransferDigestedResult(stored, AmountUtil.zero(totalEnergyCost), netEnergyIngested);
+                return new TransferDigestedResult(toEnergy(stored), ZERO_ENERGY, toEnergy(netEnergyIngested));
             }
-            return new TransferDigestedResult(AmountUtil.zero(totalEnergyCost), AmountUtil.zero(totalEnergyCost), netEnergyIngested);
+            return new TransferDigestedResult(ZERO_ENERGY, ZERO_ENERGY, toEnergy(netEnergyIngested));
         }
     }
 
+    private static Amount<Energy> toEnergy(double value) {
+        return Amount.valueOf(value, UnitConstants.CELLULAR_ENERGY);
+    }
+
     /**
-     * @return sum of mass amounts from all compartments excluding gut and
+     * @return sum of mass amounts (g) from all compartments excluding gut and
      * reproduction.
      */
-    private Amount<Mass> computeBiomass() {
-        Amount<Mass> biomass = AmountUtil.zero(UnitConstants.BIOMASS);
+    private double computeBiomass() {
+        double biomass = 0;
         for (Compartment.Type type : BIOMASS_COMPARTMENTS) {
-            biomass = biomass.plus(getStorage(type).toMass());
+            biomass += getStorage(type).toMassValue();
         }
         return biomass;
     }
 
     /**
-     * computes the energy of all biomass compartments
+     * computes the energy (kJ) of all biomass compartments
      */
-    private Amount<Energy> computeEnergy() {
-        Amount<Energy> result = AmountUtil.zero(UnitConstants.CELLULAR_ENERGY);
+    private double computeEnergy() {
+        double result = 0;
         for (Compartment.Type type : BIOMASS_COMPARTMENTS) {
-            result = result.plus(getStorageAmount(type));
+            result += getStorage(type).doubleValue();
         }
         return result;
     }
 
     public void computeBiomassAndEnergy(Growing growing) {
-        growing.setEnergy(computeEnergy());
-        growing.setBiomass(computeBiomass());
+        growing.setEnergyValue(computeEnergy());
+        growing.setBiomassValue(computeBiomass());
     }
 
     /**
@@ -246,19 +251,19 @@ public class Compartments implements LimitedStorage<Energy>, Proxiable, Componen
 
     public int getGutSize(){ return gut.getGutSize(); }
 
-    public void clearGut(){ gut.clearGut(); }
-
     /**
      * Triggers reproduction if possible. If the reproduction storage contains
      * enough energy it is cleared, i.e. the ovaries are released.
      *
+     * @param random
+     *            the random number generator used for refreshing limits
      * @return the amount cleared from the reproduction storage or
      * <code>null</code> if reproduction was not possible
      */
-    public Amount<Energy> tryReproduction() {
-        reproduction.refreshUpperLimit();
+    public Amount<Energy> tryReproduction(MersenneTwisterFast random) {
+        reproduction.refreshUpperLimit(random);
         if (reproduction.atUpperLimit()) {
-            reproduction.refreshLowerLimit();
+            reproduction.refreshLowerLimit(random);
             reproductionsSinceLastUpdate++;
             return reproduction.clear();
         }
@@ -320,13 +325,7 @@ public class Compartments implements LimitedStorage<Energy>, Proxiable, Componen
      */
     @Override
     public Amount<Energy> getAmount() {
-        Amount<Energy> sum = AmountUtil.zero(UnitConstants.CELLULAR_ENERGY);
-
-        for (Compartment.Type type : Compartment.Type.values()) {
-            sum = sum.plus(getStorageAmount(type));
-        }
-
-        return sum;
+        return toEnergy(doubleValue());
     }
 
     /**
@@ -388,9 +387,16 @@ public class Compartments implements LimitedStorage<Energy>, Proxiable, Componen
         return gut.atUpperLimit();
     }
 
+    /**
+     * Sum of energy stored in all compartments (kJ)
+     */
     @Override
     public double doubleValue() {
-        return getAmount().getEstimatedValue();
+        double sum = 0;
+        for (Compartment.Type type : Compartment.Type.values()) {
+            sum += getStorage(type).doubleValue();
+        }
+        return sum;
     }
 
     @Override
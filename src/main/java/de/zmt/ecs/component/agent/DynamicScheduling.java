@@ -20,9 +20,9 @@ import sim.util.Valuable;
 public class DynamicScheduling implements Component, Proxiable {
     private static final long serialVersionUID = 1L;
 
-    /** The time the entity should be scheduled for. */
-    private double nextTime = 0;
-    /** The duration that was skipped until {@link #nextTime}. */
+    /** The slot containing the time the entity should be scheduled for. */
+    private final AgentStore.Slot slot;
+    /** The duration that was skipped until the next time. */
     private Amount<Duration> deltaTime;
 
     /**
@@ -32,7 +32,21 @@ public class DynamicScheduling implements Component, Proxiable {
      *            the step duration
      */
     public DynamicScheduling(Amount<Duration> stepDuration) {
+        this(stepDuration, AgentStore.Slot.createPrivate());
+    }
+
+    /**
+     * Constructs a new {@link DynamicScheduling} component with the next time
+     * kept in given slot.
+     * 
+     * @param stepDuration
+     *            the step duration
+     * @param slot
+     *            the slot shared by the agent's components
+     */
+    public DynamicScheduling(Amount<Duration> stepDuration, AgentStore.Slot slot) {
         this.deltaTime = stepDuration;
+        this.slot = slot;
     }
 
     /**
@@ -51,7 +65,7 @@ public class DynamicScheduling implements Component, Proxiable {
             throw new IllegalArgumentException("stepsToPass must be greater than zero, but was: " + stepsToPass);
         }
 
-        this.nextTime = currentTime + stepsToPass;
+        slot.getStore().nextTime[slot.getIndex()] = currentTime + stepsToPass;
         this.deltaTime = stepDuration.times(stepsToPass);
     }
 
@@ -61,7 +75,7 @@ public class DynamicScheduling implements Component, Proxiable {
      * @return the time the entity should be scheduled for
      */
     public double getNextTime() {
-        return nextTime;
+        return slot.getStore().nextTime[slot.getIndex()];
     }
 
     /**
@@ -75,7 +89,7 @@ public class DynamicScheduling implements Component, Proxiable {
 
     @Override
     public String toString() {
-        return getClass().getSimpleName() + "[nextTime=" + nextTime + ", deltaTime=" + deltaTime + "]";
+        return getClass().getSimpleName() + "[nextTime=" + getNextTime() + ", deltaTime=" + deltaTime + "]";
     }
 
     @Override
@@ -85,7 +99,7 @@ public class DynamicScheduling implements Component, Proxiable {
 
     public class MyPropertiesProxy {
         public double getNextTime() {
-            return nextTime;
+            return DynamicScheduling.this.getNextTime();
         }
 
         public Valuable getDeltaTime() {
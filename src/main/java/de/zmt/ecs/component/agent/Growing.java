@@ -24,70 +24,145 @@ import org.apache.commons.math3.distribution.NormalDistribution;
 public class Growing implements Component, Proxiable {
     private static final long serialVersionUID = 1L;
 
-    /** Biomass of fish (wet weight). */
-    private Amount<Mass> biomass;
+    /**
+     * The slot containing biomass (wet weight), expected biomass derived from
+     * virtual age and length.
+     */
+    private final AgentStore.Slot slot;
 
-    /** Expected biomass of fish derived from its virtual age. */
-    private Amount<Mass> expectedBiomass;
-
-    /** Length of the entity. */
-    private Amount<Length> length;
-
-    /** The highest biomass the agent ever had. */
-    private Amount<Mass> topBiomass;
+    /** The highest biomass the agent ever had (g). */
+    private double topBiomass;
 
     /** The Biomass in energy(kJ) */
-    private Amount<Energy> energy;
+    private double energy;
+
+    /** Simulation time passed since length was last updated (s). */
+    private double timeSinceLengthUpdate;
 
     public Growing(Amount<Mass> initialBiomass, Amount<Length> initialLength, SpeciesDefinition def) {
-        this.biomass = initialBiomass;
-        this.expectedBiomass = initialBiomass;
-        this.topBiomass = initialBiomass;
-        this.length = initialLength;
+        this(initialBiomass, initialLength, def, AgentStore.Slot.createPrivate());
+    }
+
+    public Growing(Amount<Mass> initialBiomass, Amount<Length> initialLength, SpeciesDefinition def,
+            AgentStore.Slot slot) {
+        this.slot = slot;
+        double initialBiomassValue = initialBiomass.doubleValue(UnitConstants.BIOMASS);
+        AgentStore store = slot.getStore();
+        store.biomass[slot.getIndex()] = initialBiomassValue;
+        store.expectedBiomass[slot.getIndex()] = initialBiomassValue;
+        store.length[slot.getIndex()] = initialLength.doubleValue(UnitConstants.BODY_LENGTH);
+        this.topBiomass = initialBiomassValue;
     }
 
     public Amount<Mass> getBiomass() {
-        return biomass;
+        return Amount.valueOf(getBiomassValue(), UnitConstants.BIOMASS);
+    }
+
+    /** @return biomass (g) without creating an amount */
+    public double getBiomassValue() {
+        return slot.getStore().biomass[slot.getIndex()];
     }
 
     public void setBiomass(Amount<Mass> biomass) {
-        this.biomass = biomass;
-        if (biomass.isGreaterThan(topBiomass)) {
+        setBiomassValue(biomass.doubleValue(UnitConstants.BIOMASS));
+    }
+
+    /**
+     * Sets biomass without creating an amount.
+     * 
+     * @param biomass
+     *            the biomass (g)
+     */
+    public void setBiomassValue(double biomass) {
+        slot.getStore().biomass[slot.getIndex()] = biomass;
+        if (biomass > topBiomass) {
             this.topBiomass = biomass;
         }
     }
 
     public void setEnergy(Amount<Energy> energy){
+        this.energy = energy.doubleValue(UnitConstants.CELLULAR_ENERGY);
+    }
+
+    /**
+     * Sets the biomass in energy without creating an amount.
+     * 
+     * @param energy
+     *            the energy (kJ)
+     */
+    public void setEnergyValue(double energy) {
         this.energy = energy;
     }
 
     public Amount<Energy> getEnergy() {
+        return Amount.valueOf(energy, UnitConstants.CELLULAR_ENERGY);
+    }
+
+    /** @return the biomass in energy (kJ) without creating an amount */
+    public double getEnergyValue() {
         return energy;
     }
 
     public Amount<Mass> getExpectedBiomass() {
-        return expectedBiomass;
+        return Amount.valueOf(getExpectedBiomassValue(), UnitConstants.BIOMASS);
+    }
+
+    /** @return expected biomass (g) without creating an amount */
+    public double getExpectedBiomassValue() {
+        return slot.getStore().expectedBiomass[slot.getIndex()];
     }
 
     public void setExpectedBiomass(Amount<Mass> expectedBiomass) {
-        this.expectedBiomass = expectedBiomass;
+        slot.getStore().expectedBiomass[slot.getIndex()] = expectedBiomass.doubleValue(UnitConstants.BIOMASS);
     }
 
     public Amount<Length> getLength() {
-        return length;
+        return Amount.valueOf(getLengthValue(), UnitConstants.BODY_LENGTH);
+    }
+
+    /** @return length (cm) without creating an amount */
+    public double getLengthValue() {
+        return slot.getStore().length[slot.getIndex()];
     }
 
     public void setLength(Amount<Length> length) {
-        this.length = length;
+        setLengthValue(length.doubleValue(UnitConstants.BODY_LENGTH));
+    }
+
+    /**
+     * Sets length without creating an amount.
+     * 
+     * @param length
+     *            the length (cm)
+     */
+    public void setLengthValue(double length) {
+        slot.getStore().length[slot.getIndex()] = length;
+    }
+
+    /**
+     * Adds to the simulation time passed since length was last updated.
+     * 
+     * @param delta
+     *            the simulation time passed (s)
+     * @return the simulation time passed since length was last updated (s)
+     */
+    public double addTimeSinceLengthUpdate(double delta) {
+        timeSinceLengthUpdate += delta;
+        return timeSinceLengthUpdate;
+    }
+
+    /** Resets the simulation time passed since length was last updated. */
+    public void resetTimeSinceLengthUpdate() {
+        timeSinceLengthUpdate = 0;
     }
 
     /** @return <code>true</code> if biomass was never higher */
     public boolean hasTopBiomass() {
-        return biomass.equals(topBiomass);
+        return getBiomassValue() == topBiomass;
     }
 
     public boolean isLower120ExpectedBiomass(){
-        return biomass.isLessThan(expectedBiomass.times(1.2));
+        return getBiomassValue() < getExpectedBiomassValue() * 1.2;
     }
 
     @Override
@@ -97,24 +172,24 @@ public class Growing implements Component, Proxiable {
 
     @Override
     public String toString() {
-        return getClass().getSimpleName() + " [biomass=" + biomass + ", length=" + length + "]";
+        return getClass().getSimpleName() + " [biomass=" + getBiomass() + ", length=" + getLength() + "]";
     }
 
     public class MyPropertiesProxy {
         public Valuable getBiomass() {
-            return AmountValuable.wrap(biomass);
+            return AmountValuable.wrap(Growing.this.getBiomass());
         }
 
         public Valuable getExpectedBiomass() {
-            return AmountValuable.wrap(expectedBiomass);
+            return AmountValuable.wrap(Growing.this.getExpectedBiomass());
         }
 
         public Valuable getLength() {
-            return AmountValuable.wrap(length);
+            return AmountValuable.wrap(Growing.this.getLength());
         }
 
         public Valuable getTopBiomass() {
-            return AmountValuable.wrap(topBiomass);
+            return AmountValuable.wrap(Amount.valueOf(topBiomass, UnitConstants.BIOMASS));
         }
 
         @Override
@@ -3,12 +3,12 @@ package de.zmt.ecs.component.agent;
 import java.io.Serializable;
 
 import de.zmt.ecs.Component;
+import de.zmt.util.GridPositions;
 import sim.field.grid.IntGrid2D;
 import sim.portrayal.MemoryPortrayal.MemoryPortrayable;
 import sim.portrayal.portrayable.ProvidesPortrayable;
 import sim.util.Double2D;
 import sim.util.Int2D;
-import sim.util.Int2DCache;
 
 /**
  * Memory of an agent.
@@ -43,7 +43,7 @@ public class Memorizing implements ProvidesPortrayable<MemoryPortrayable>, Compo
         int gridWidth = (int) Math.ceil(preciseWidth);
         int gridHeight = (int) Math.ceil(preciseHeight);
         grid = new IntGrid2D(gridWidth, gridHeight);
-        Int2DCache.adjustCacheSize(gridWidth, gridHeight);
+        GridPositions.ensureSize(gridWidth, gridHeight);
 
         myPortrayable = new MyPortrayable(preciseWidth, preciseHeight);
     }
@@ -65,9 +65,20 @@ public class Memorizing implements ProvidesPortrayable<MemoryPortrayable>, Compo
      * @param fieldPos
      */
     public void increase(Double2D fieldPos) {
-        Int2D gridPosition = mapPosition(fieldPos);
-        int currentValue = grid.get(gridPosition.x, gridPosition.y);
-        grid.set(gridPosition.x, gridPosition.y, currentValue + 1);
+        increase(fieldPos.x, fieldPos.y);
+    }
+
+    /**
+     * Increase counter of memory cell associated with the given field position
+     * without creating a vector.
+     * 
+     * @param fieldX
+     * @param fieldY
+     */
+    public void increase(double fieldX, double fieldY) {
+        int x = (int) (fieldX * MEM_CELL_SIZE_INVERSE);
+        int y = (int) (fieldY * MEM_CELL_SIZE_INVERSE);
+        grid.set(x, y, grid.get(x, y) + 1);
     }
 
     /**
@@ -77,7 +88,7 @@ public class Memorizing implements ProvidesPortrayable<MemoryPortrayable>, Compo
      */
     private static Int2D mapPosition(Double2D fieldPos) {
         Double2D gridPosition = fieldPos.multiply(MEM_CELL_SIZE_INVERSE);
-        return Int2DCache.get((int) gridPosition.x, (int) gridPosition.y);
+        return GridPositions.get((int) gridPosition.x, (int) gridPosition.y);
     }
 
     @Override
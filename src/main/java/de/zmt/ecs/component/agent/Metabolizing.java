@@ -26,8 +26,8 @@ public class Metabolizing implements Component, Proxiable {
 
     private static final Amount<Energy> ZERO_ENERGY = AmountUtil.zero(UnitConstants.CELLULAR_ENERGY);
 
-    /** Current kind of activity the fish is doing. */
-    private BehaviorMode behaviorMode = BehaviorMode.RESTING;
+    /** The slot containing the current kind of activity the fish is doing. */
+    private final AgentStore.Slot slot;
     /** Energy ingested over the last update. */
     private Amount<Energy> ingestedEnergy = ZERO_ENERGY;
     /**
@@ -38,19 +38,26 @@ public class Metabolizing implements Component, Proxiable {
     private Amount<Energy> consumedEnergy = ZERO_ENERGY;
     /** Current resting metabolic rate. */
     private Amount<Power> restingMetabolicRate = AmountUtil.zero(UnitConstants.ENERGY_PER_TIME);
+    /** Current resting metabolic rate (kJ/h), converted once when set. */
+    private double restingMetabolicRateValue;
     /** <code>true</code> if currently feeding. */
     private boolean feeding = false;
 
     public Metabolizing(Amount<Power> initialRestingMetabolicRate) {
-        this.restingMetabolicRate = initialRestingMetabolicRate;
+        this(initialRestingMetabolicRate, AgentStore.Slot.createPrivate());
+    }
+
+    public Metabolizing(Amount<Power> initialRestingMetabolicRate, AgentStore.Slot slot) {
+        setRestingMetabolicRate(initialRestingMetabolicRate);
+        this.slot = slot;
     }
 
     public BehaviorMode getBehaviorMode() {
-        return behaviorMode;
+        return slot.getStore().getBehaviorMode(slot.getIndex());
     }
 
     public void setBehaviorMode(BehaviorMode behaviorMode) {
-        this.behaviorMode = behaviorMode;
+        slot.getStore().behaviorMode[slot.getIndex()] = (byte) behaviorMode.ordinal();
     }
 
     public Amount<Energy> getConsumedEnergy() {
@@ -81,8 +88,14 @@ public class Metabolizing implements Component, Proxiable {
         return restingMetabolicRate;
     }
 
+    /** @return the resting metabolic rate (kJ/h) without creating an amount */
+    public double getRestingMetabolicRateValue() {
+        return restingMetabolicRateValue;
+    }
+
     public void setRestingMetabolicRate(Amount<Power> restingMetabolicRate) {
         this.restingMetabolicRate = restingMetabolicRate;
+        this.restingMetabolicRateValue = restingMetabolicRate.doubleValue(UnitConstants.ENERGY_PER_TIME);
     }
 
     public boolean isFeeding() {
@@ -100,13 +113,13 @@ public class Metabolizing implements Component, Proxiable {
 
     @Override
     public String toString() {
-        return getClass().getSimpleName() + " [behaviorMode=" + behaviorMode + ", restingMetabolicRate="
+        return getClass().getSimpleName() + " [behaviorMode=" + getBehaviorMode() + ", restingMetabolicRate="
                 + restingMetabolicRate + "]";
     }
 
     public class MyPropertiesProxy {
         public BehaviorMode getBehaviorMode() {
-            return behaviorMode;
+            return Metabolizing.this.getBehaviorMode();
         }
 
         public Valuable getIngestedEnergy() {
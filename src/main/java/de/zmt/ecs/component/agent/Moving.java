@@ -6,7 +6,7 @@ import org.jscience.physics.amount.Amount;
 
 import de.zmt.ecs.Component;
 import de.zmt.ecs.component.environment.WorldToMapConverter;
-import de.zmt.util.AmountUtil;
+import de.zmt.util.GridPositions;
 import de.zmt.util.UnitConstants;
 import sim.util.AmountValuable;
 import sim.util.Double2D;
@@ -14,24 +14,42 @@ import sim.util.Int2D;
 import sim.util.Proxiable;
 import sim.util.Valuable;
 
+/**
+ * Grants a simulation object the ability to move. Values are kept in an
+ * {@link AgentStore}. Getters returning vectors or amounts create them on each
+ * call, systems should use the primitive accessors instead.
+ * 
+ * @author mey
+ *
+ */
 public class Moving implements Component, Proxiable {
     private static final long serialVersionUID = 1L;
 
-    /** Continuous world position (m). */
-    private Double2D worldPosition = new Double2D();
-    /** Discrete position on map grid. */
-    private Int2D mapPosition = new Int2D();
-    /** the direction the agent moves towards (unit vector) */
-    private Double2D direction = new Double2D();
-    /** speed of the agent (m/s) */
-    private Amount<Velocity> speed = AmountUtil.zero(UnitConstants.VELOCITY);
+    /** The slot containing position, direction and speed. */
+    private final AgentStore.Slot slot;
 
     /**
      * Constructs a new {@link Moving} component with fields set to neutral
      * values.
      */
     public Moving() {
+        this(AgentStore.Slot.createPrivate());
+    }
 
+    /**
+     * Constructs a new {@link Moving} component with values kept in given
+     * slot.
+     * 
+     * @param slot
+     *            the slot shared by the agent's components
+     */
+    public Moving(AgentStore.Slot slot) {
+        this.slot = slot;
+    }
+
+    /** @return the slot containing the values of this component */
+    AgentStore.Slot getSlot() {
+        return slot;
     }
 
     /**
@@ -40,7 +58,19 @@ public class Moving implements Component, Proxiable {
      * @return the continuous world position (m)
      */
     public Double2D getWorldPosition() {
-        return worldPosition;
+        AgentStore store = slot.getStore();
+        int index = slot.getIndex();
+        return new Double2D(store.worldX[index], store.worldY[index]);
+    }
+
+    /** @return the continuous world position x (m) without creating a vector */
+    public double getWorldX() {
+        return slot.getStore().worldX[slot.getIndex()];
+    }
+
+    /** @return the continuous world position y (m) without creating a vector */
+    public double getWorldY() {
+        return slot.getStore().worldY[slot.getIndex()];
     }
 
     /**
@@ -49,7 +79,9 @@ public class Moving implements Component, Proxiable {
      * @return the discrete position on map grid
      */
     public Int2D getMapPosition() {
-        return mapPosition;
+        AgentStore store = slot.getStore();
+        int index = slot.getIndex();
+        return GridPositions.get(store.mapX[index], store.mapY[index]);
     }
 
     /**
@@ -77,8 +109,27 @@ public class Moving implements Component, Proxiable {
      *            the discrete map position to be set
      */
     public void setPosition(Double2D worldPosition, Int2D mapPosition) {
-        this.worldPosition = worldPosition;
-        this.mapPosition = mapPosition;
+        setPosition(worldPosition.x, worldPosition.y, mapPosition);
+    }
+
+    /**
+     * Sets position without creating a vector. The caller needs to make sure
+     * world and map positions are correctly related.
+     * 
+     * @param worldX
+     *            the continuous world position x (m)
+     * @param worldY
+     *            the continuous world position y (m)
+     * @param mapPosition
+     *            the discrete map position to be set
+     */
+    public void setPosition(double worldX, double worldY, Int2D mapPosition) {
+        AgentStore store = slot.getStore();
+        int index = slot.getIndex();
+        store.worldX[index] = worldX;
+        store.worldY[index] = worldY;
+        store.mapX[index] = mapPosition.x;
+        store.mapY[index] = mapPosition.y;
     }
 
     /**
@@ -87,7 +138,19 @@ public class Moving implements Component, Proxiable {
      * @return the direction the agent moves towards (unit vector)
      */
     public Double2D getDirection() {
-        return direction;
+        AgentStore store = slot.getStore();
+        int index = slot.getIndex();
+        return new Double2D(store.directionX[index], store.directionY[index]);
+    }
+
+    /** @return the direction x (unit vector) without creating a vector */
+    public double getDirectionX() {
+        return slot.getStore().directionX[slot.getIndex()];
+    }
+
+    /** @return the direction y (unit vector) without creating a vector */
+    public double getDirectionY() {
+        return slot.getStore().directionY[slot.getIndex()];
     }
 
     /**
@@ -99,8 +162,11 @@ public class Moving implements Component, Proxiable {
      *            the speed of the agent (m/s)
      */
     public void setVelocity(Double2D direction, double speed) {
-        this.direction = direction;
-        this.speed = Amount.valueOf(speed, UnitConstants.VELOCITY);
+        AgentStore store = slot.getStore();
+        int index = slot.getIndex();
+        store.directionX[index] = direction.x;
+        store.directionY[index] = direction.y;
+        store.speed[index] = speed;
     }
 
     /**
@@ -109,13 +175,22 @@ public class Moving implements Component, Proxiable {
      * @return the speed of the agent (m/s)
      */
     public Amount<Velocity> getSpeed() {
-        return speed;
+        return Amount.valueOf(getSpeedValue(), UnitConstants.VELOCITY);
+    }
+
+    /**
+     * Returns the speed of the agent (m/s) without creating an amount.
+     * 
+     * @return the speed of the agent (m/s)
+     */
+    public double getSpeedValue() {
+        return slot.getStore().speed[slot.getIndex()];
     }
 
     @Override
     public String toString() {
-        return getClass().getSimpleName() + "[position=" + worldPosition + ", direction=" + direction + ", speed="
-                + speed + "]";
+        return getClass().getSimpleName() + "[position=" + getWorldPosition() + ", direction=" + getDirection()
+                + ", speed=" + getSpeed() + "]";
     }
 
     @Override
@@ -125,15 +200,15 @@ public class Moving implements Component, Proxiable {
 
     public class MyPropertiesProxy {
         public Double2D getPosition() {
-            return worldPosition;
+            return getWorldPosition();
         }
 
         public Double2D getDirection() {
-            return direction;
+            return Moving.this.getDirection();
         }
 
         public Valuable getSpeed() {
-            return AmountValuable.wrap(speed);
+            return AmountValuable.wrap(Moving.this.getSpeed());
         }
 
         @Override
@@ -1,5 +1,13 @@
 package de.zmt.ecs.component.environment;
 
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
 import javax.measure.quantity.Length;
 import javax.measure.quantity.Mass;
 
@@ -8,19 +16,29 @@ import org.jscience.physics.amount.Amount;
 
 import de.zmt.ecs.Component;
 import de.zmt.pathfinding.DynamicMap;
-import de.zmt.util.Grid2DUtil.DoubleNeighborsResult;
 import de.zmt.util.UnitConstants;
 import de.zmt.util.quantity.AreaDensity;
+import sim.engine.AgentScheduler;
 import sim.field.grid.DoubleGrid2D;
-import sim.field.grid.Grid2D;
 import sim.util.Double2D;
-import sim.util.DoubleBag;
 import sim.util.Int2D;
+import sim.util.IntBag;
 
 /**
  * Handles food densities on grid cells in discrete map space. Stores amount of
  * <b>available</b> food for every location in
  * {@link UnitConstants#FOOD_DENSITY}.
+ * <p>
+ * If food grows lazily, locations store the day they were last updated and
+ * catch up on growth when read. The underlying grid is not up to date in that
+ * case: The food pathfinding map sees each location as of its last read,
+ * while the GUI needs to call {@link #catchUpGrowth()} before drawing.
+ * <p>
+ * Changed locations are not propagated to the food pathfinding map right away.
+ * They are collected in tiles instead, which are propagated when pathfinding
+ * is requested in that area via {@link #updatePathfinding(int, int)}. A
+ * location changing several times in between is propagated only once. Tiles
+ * where food has grown are propagated as a whole.
  * 
  * @author mey
  *
@@ -30,18 +48,103 @@ public class FoodMap extends EncapsulatedGrid<DoubleGrid2D> implements Component
 
     /** Food density values under this constant are set to zero. */
     private static final double MINIMUM_FOOD_DENSITY_VALUE = 1E-32d;
+    /** Number of column stripes per available processor when growing food. */
+    private static final int STRIPES_PER_PROCESSOR = 4;
+    /** Side length of tiles collecting changed locations. */
+    static final int DIRTY_TILE_SIZE = 16;
+    /**
+     * Maximum number of changed locations collected per tile, keeping their
+     * memory below one byte per location. Tiles with more are propagated as a
+     * whole.
+     */
+    static final int MAX_DIRTY_LOCATIONS = DIRTY_TILE_SIZE * DIRTY_TILE_SIZE / 4;
 
+    /** The habitat of every location, to look up its density limits. */
     private final HabitatMap habitatMap;
+    /** Minimum food density by habitat ordinal. */
+    private final double[] minDensities;
+    /** Maximum food density by habitat ordinal. */
+    private final double[] maxDensities;
+    /** <code>true</code> for ordinals of accessible habitats. */
+    private final boolean[] accessibleHabitats;
+    /**
+     * The day of the last growth update for every location. <code>null</code>
+     * if food does not grow lazily.
+     */
+    private final int[][] growthDays;
+    /** Number of days food has grown. */
+    private int day = 0;
+    /**
+     * Factor of the latest growth, used for catching up on lazy growth. If the
+     * growth rate changes, locations catching up will use the new rate for the
+     * whole period.
+     */
+    private double growthFactor = 1;
 
-    /** Reusable cache to improve performance in neighborhood lookup. */
-    private final DoubleNeighborsResult lookupCache = new DoubleNeighborsResult();
+    /**
+     * Locations changed since last propagated to the pathfinding map, per
+     * tile as indices within the tile. <code>null</code> for tiles that never
+     * changed. A location changing several times is contained several times.
+     */
+    private final IntBag[][] dirtyLocations;
+    /** Tiles containing dirty locations. */
+    private final boolean[][] dirtyTiles;
+    /** Dirty tiles to be propagated as a whole, e.g. after food has grown. */
+    private final boolean[][] wholeDirtyTiles;
+
+    /** Stencils for radial lookups, by map radius. */
+    private transient volatile Map<Double, RadialStencil> stencilCache;
+    /**
+     * Reusable result to improve performance in neighborhood lookup. One per
+     * thread to allow agents being updated in parallel.
+     */
+    private transient ThreadLocal<FoundFood> lookupCache;
     /** The {@link DynamicMap} used in pathfinding to notify about changes. */
     private final DynamicMap foodPathfindingMap;
 
     public FoodMap(DoubleGrid2D foodField, DynamicMap foodPathfindingMap, HabitatMap habitatMap) {
+        this(foodField, foodPathfindingMap, habitatMap, false);
+    }
+
+    /**
+     * Constructs a new {@link FoodMap}.
+     * 
+     * @param foodField
+     *            the grid containing food densities
+     * @param foodPathfindingMap
+     *            the pathfinding map to notify about changes
+     * @param habitatMap
+     *            the habitat map providing density limits
+     * @param lazyGrowth
+     *            <code>true</code> to let food grow lazily when read
+     * @throws IllegalArgumentException
+     *             if the habitat map differs in size from the food field
+     */
+    public FoodMap(DoubleGrid2D foodField, DynamicMap foodPathfindingMap, HabitatMap habitatMap,
+            boolean lazyGrowth) {
         super(foodField);
-        this.habitatMap = habitatMap;
+        if (habitatMap.getWidth() != foodField.getWidth() || habitatMap.getHeight() != foodField.getHeight()) {
+            throw new IllegalArgumentException("Habitat map " + habitatMap + " differs in size from food field ("
+                    + foodField.getWidth() + ", " + foodField.getHeight() + ").");
+        }
         this.foodPathfindingMap = foodPathfindingMap;
+        growthDays = lazyGrowth ? new int[foodField.getWidth()][foodField.getHeight()] : null;
+        int tilesX = toTile(foodField.getWidth() - 1) + 1;
+        int tilesY = toTile(foodField.getHeight() - 1) + 1;
+        dirtyLocations = new IntBag[tilesX][tilesY];
+        dirtyTiles = new boolean[tilesX][tilesY];
+        wholeDirtyTiles = new boolean[tilesX][tilesY];
+
+        this.habitatMap = habitatMap;
+        Habitat[] habitats = Habitat.values();
+        minDensities = new double[habitats.length];
+        maxDensities = new double[habitats.length];
+        accessibleHabitats = new boolean[habitats.length];
+        for (Habitat habitat : habitats) {
+            minDensities[habitat.ordinal()] = habitat.getFoodDensityMin().doubleValue(UnitConstants.FOOD_DENSITY);
+            maxDensities[habitat.ordinal()] = habitat.getFoodDensityMax().doubleValue(UnitConstants.FOOD_DENSITY);
+            accessibleHabitats[habitat.ordinal()] = habitat.isAccessible();
+        }
     }
 
     /**
@@ -52,8 +155,8 @@ public class FoodMap extends EncapsulatedGrid<DoubleGrid2D> implements Component
      * values within food grid and stored in a return object. A distance penalty
      * will lead to less available food for distant patches.
      * <p>
-     * <b>NOTE:</b> Lookup cache is reused in {@link FoundFood} return objects,
-     * do not call this method again before handling the result.
+     * <b>NOTE:</b> The returned {@link FoundFood} is reused, do not call this
+     * method again from the same thread before handling the result.
      * 
      * @see FindFoodConverter
      * @param worldPosition
@@ -65,59 +168,80 @@ public class FoodMap extends EncapsulatedGrid<DoubleGrid2D> implements Component
      */
     public FoundFood findAvailableFood(Double2D worldPosition, Amount<Length> accessibleWorldRadius,
             FindFoodConverter converter) {
-        Int2D mapPosition = converter.worldToMap(worldPosition);
-        double accessibleMapRadius = converter.worldToMap(accessibleWorldRadius);
+        return findAvailableFood(converter.worldToMap(worldPosition), accessibleWorldRadius, converter);
+    }
 
-        DoubleNeighborsResult result = findRadialNeighbors(mapPosition, accessibleMapRadius);
-        DoubleBag availableDensityValues = new DoubleBag(result.size());
+    /**
+     * Returns available food around a map position, as
+     * {@link #findAvailableFood(Double2D, Amount, FindFoodConverter)} does.
+     * Avoids converting from world position if the map position is already
+     * known.
+     * 
+     * @param mapPosition
+     *            the map position related to the agent's world position
+     * @param accessibleWorldRadius
+     * @param converter
+     * @return {@link FoundFood} object which contains the available amount and
+     *         a callback function which triggers the subtraction from food
+     *         field.
+     */
+    public FoundFood findAvailableFood(Int2D mapPosition, Amount<Length> accessibleWorldRadius,
+            FindFoodConverter converter) {
+        RadialStencil stencil = obtainStencil(converter.worldToMap(accessibleWorldRadius));
 
+        if (lookupCache == null) {
+            lookupCache = ThreadLocal.withInitial(FoundFood::new);
+        }
+        FoundFood foundFood = lookupCache.get();
+        foundFood.clear(stencil.size());
+
+        double[][] densities = getGrid().field;
+        int width = getWidth();
+        int height = getHeight();
         // sum available food densities from patches in reach
         double availableDensitiesSum = 0;
 
-        for (int i = 0; i < result.size();i++) {
-            double totalDensityValue = result.values.get(i);
+        for (int i = 0; i < stencil.size(); i++) {
+            int x = mapPosition.x + stencil.offsetsX[i];
+            int y = mapPosition.y + stencil.offsetsY[i];
+            // clip at the edges
+            if (x < 0 || y < 0 || x >= width || y >= height) {
+                continue;
+            }
+            double totalDensityValue = growthDays == null ? densities[x][y] : catchUpGrowth(x, y);
 
             // elements without food does not need to be processed further
-            if (totalDensityValue <= 0)
+            if (totalDensityValue <= 0) {
                 continue;
+            }
 
-            double distanceSq = mapPosition.distanceSq(result.locations.xPos.get(i), result.locations.yPos.get(i));
             // make less food available on distant patches
-            double distanceFraction = 1 / (distanceSq + 1);
+            double availableDensityValue = (totalDensityValue - minDensities[habitatMap.obtainOrdinal(x, y)])
+                    * stencil.weights[i];
 
-            double availableDensityValue = (totalDensityValue-
-                    habitatMap.obtainHabitat(result.locations.xPos.get(i),
-                            result.locations.yPos.get(i)).getFoodDensityMin().getEstimatedValue() )  * distanceFraction;
-
-            // add available density to bag for storing it within return object
-            availableDensityValues.add(availableDensityValue);
+            foundFood.add(x, y, totalDensityValue, availableDensityValue);
             availableDensitiesSum += availableDensityValue;
         }
         // convert sum of available food densities to mass
-        Amount<Mass> availableFood = converter.densityToMass(valueToDensity(availableDensitiesSum));
+        foundFood.availableFood = converter.densityToMass(valueToDensity(availableDensitiesSum));
 
-        return new FoundFood(availableFood, result, availableDensityValues);
+        return foundFood;
     }
 
     /**
-     * 
-     * @param mapPosition
      * @param radius
-     * @return result of radial neighbors lookup
+     *            the map radius
+     * @return the stencil for {@code radius}, created on first request
      */
-    private DoubleNeighborsResult findRadialNeighbors(Int2D mapPosition, double radius) {
-        getGrid().getRadialLocations(mapPosition.x, mapPosition.y, radius, Grid2D.BOUNDED, true, Grid2D.CENTER, true,
-                lookupCache.locations.xPos, lookupCache.locations.yPos);
-
-        lookupCache.values.clear();
-
-        // DoubleGrid2D#getRadialNeighbors only accepts integer values for dist
-        int numResults = lookupCache.locations.xPos.numObjs;
-        for (int i = 0; i < numResults; i++) {
-            lookupCache.values.add(getGrid().get(lookupCache.locations.xPos.get(i), lookupCache.locations.yPos.get(i)));
+    private RadialStencil obtainStencil(double radius) {
+        if (stencilCache == null) {
+            synchronized (this) {
+                if (stencilCache == null) {
+                    stencilCache = new ConcurrentHashMap<>();
+                }
+            }
         }
-
-        return lookupCache;
+        return stencilCache.computeIfAbsent(radius, RadialStencil::new);
     }
 
     /**
@@ -130,7 +254,7 @@ public class FoodMap extends EncapsulatedGrid<DoubleGrid2D> implements Component
      * @return available food density on patch at given location
      */
     public Amount<AreaDensity> getFoodDensity(int mapX, int mapY) {
-        return valueToDensity(getGrid().get(mapX, mapY));
+        return valueToDensity(getFoodDensityValue(mapX, mapY));
     }
 
     /**
@@ -144,6 +268,9 @@ public class FoodMap extends EncapsulatedGrid<DoubleGrid2D> implements Component
      * @return available food density on patch at given location
      */
     public double getFoodDensityValue(int mapX, int mapY) {
+        if (growthDays != null) {
+            return catchUpGrowth(mapX, mapY);
+        }
         return getGrid().get(mapX, mapY);
     }
 
@@ -171,16 +298,329 @@ public class FoodMap extends EncapsulatedGrid<DoubleGrid2D> implements Component
     }
 
     private void setFoodDensity(int mapX, int mapY, double gramFood) {
-        if (gramFood > habitatMap.obtainHabitat(mapX,mapY).getFoodDensityMin().getEstimatedValue()) {
-            if(gramFood < habitatMap.obtainHabitat(mapX,mapY).getFoodDensityMax().getEstimatedValue())
+        int ordinal = habitatMap.obtainOrdinal(mapX, mapY);
+        double minDensity = minDensities[ordinal];
+        double maxDensity = maxDensities[ordinal];
+        if (gramFood > minDensity) {
+            if(gramFood < maxDensity)
                 getGrid().set(mapX, mapY, gramFood);
             else
-                getGrid().set(mapX, mapY, habitatMap.obtainHabitat(mapX,mapY).getFoodDensityMax().getEstimatedValue());
+                getGrid().set(mapX, mapY, maxDensity);
+
+        } else {
+            getGrid().set(mapX, mapY, minDensity);
+        }
+        if (growthDays != null) {
+            growthDays[mapX][mapY] = day;
+        }
+
+        notifyChanged(mapX, mapY);
+    }
+
+    /**
+     * Marks a location as changed, to be propagated to the pathfinding map
+     * when requested.
+     * 
+     * @param mapX
+     *            map X coordinate
+     * @param mapY
+     *            map Y coordinate
+     */
+    private void notifyChanged(int mapX, int mapY) {
+        // dirty marks are not thread-safe: mark after parallel update
+        if (AgentScheduler.isUpdatingStripe()) {
+            AgentScheduler.runOrDefer(() -> markDirty(mapX, mapY));
+        } else {
+            markDirty(mapX, mapY);
+        }
+    }
+
+    private void markDirty(int mapX, int mapY) {
+        int tileX = toTile(mapX);
+        int tileY = toTile(mapY);
+        dirtyTiles[tileX][tileY] = true;
+
+        IntBag locations = dirtyLocations[tileX][tileY];
+        if (locations == null) {
+            locations = new IntBag();
+            dirtyLocations[tileX][tileY] = locations;
+        }
+        // stop collecting if exceeding maximum: the whole tile is propagated
+        if (locations.numObjs <= MAX_DIRTY_LOCATIONS) {
+            locations.add((mapX % DIRTY_TILE_SIZE) * DIRTY_TILE_SIZE + mapY % DIRTY_TILE_SIZE);
+        }
+    }
+
+    /**
+     * Marks a tile as changed as a whole, to be propagated to the pathfinding
+     * map when requested.
+     * 
+     * @param tileX
+     *            tile X index
+     * @param tileY
+     *            tile Y index
+     */
+    private void markTileDirty(int tileX, int tileY) {
+        dirtyTiles[tileX][tileY] = true;
+        wholeDirtyTiles[tileX][tileY] = true;
+    }
+
+    private static int toTile(int mapCoordinate) {
+        return mapCoordinate / DIRTY_TILE_SIZE;
+    }
+
+    /**
+     * Propagates changes to the pathfinding map in the tiles around given
+     * location, so that potentials and flow derived from its neighborhood
+     * are up to date. Needs to be called before requesting pathfinding at
+     * that location. If called while agents are updated in parallel,
+     * propagation is deferred until after the update.
+     * 
+     * @param mapX
+     *            map X coordinate
+     * @param mapY
+     *            map Y coordinate
+     */
+    public void updatePathfinding(int mapX, int mapY) {
+        int fromTileX = toTile(Math.max(mapX - 1, 0));
+        int toTileX = toTile(Math.min(mapX + 1, getWidth() - 1));
+        int fromTileY = toTile(Math.max(mapY - 1, 0));
+        int toTileY = toTile(Math.min(mapY + 1, getHeight() - 1));
+
+        for (int tileX = fromTileX; tileX <= toTileX; tileX++) {
+            for (int tileY = fromTileY; tileY <= toTileY; tileY++) {
+                if (!dirtyTiles[tileX][tileY]) {
+                    continue;
+                }
+                // pathfinding maps are not thread-safe: update after parallel
+                // update
+                if (AgentScheduler.isUpdatingStripe()) {
+                    int deferredTileX = tileX;
+                    int deferredTileY = tileY;
+                    AgentScheduler.runOrDefer(() -> updateTile(deferredTileX, deferredTileY));
+                } else {
+                    updateTile(tileX, tileY);
+                }
+            }
+        }
+    }
+
+    /**
+     * Propagates all changes to the pathfinding map.
+     * <p>
+     * <b>NOTE:</b> Computationally expensive if many tiles are dirty. Use only
+     * if the whole map needs to be up to date, e.g. for display.
+     */
+    public void updatePathfinding() {
+        for (int tileX = 0; tileX < dirtyTiles.length; tileX++) {
+            for (int tileY = 0; tileY < dirtyTiles[tileX].length; tileY++) {
+                updateTile(tileX, tileY);
+            }
+        }
+    }
 
+    /**
+     * Propagates the dirty locations within a tile to the pathfinding map.
+     * 
+     * @param tileX
+     *            tile X index
+     * @param tileY
+     *            tile Y index
+     */
+    private void updateTile(int tileX, int tileY) {
+        if (!dirtyTiles[tileX][tileY]) {
+            return;
+        }
+        dirtyTiles[tileX][tileY] = false;
+
+        int fromX = tileX * DIRTY_TILE_SIZE;
+        int fromY = tileY * DIRTY_TILE_SIZE;
+        IntBag locations = dirtyLocations[tileX][tileY];
+        if (wholeDirtyTiles[tileX][tileY] || locations.numObjs > MAX_DIRTY_LOCATIONS) {
+            wholeDirtyTiles[tileX][tileY] = false;
+            int toX = Math.min(fromX + DIRTY_TILE_SIZE, getWidth());
+            int toY = Math.min(fromY + DIRTY_TILE_SIZE, getHeight());
+            for (int x = fromX; x < toX; x++) {
+                for (int y = fromY; y < toY; y++) {
+                    foodPathfindingMap.forceUpdate(x, y);
+                }
+            }
         } else {
-            getGrid().set(mapX, mapY, habitatMap.obtainHabitat(mapX,mapY).getFoodDensityMin().getEstimatedValue());
+            // sort to propagate in order and skip locations changed more than once
+            locations.sort();
+            for (int i = 0; i < locations.numObjs; i++) {
+                int location = locations.objs[i];
+                if (i == 0 || location != locations.objs[i - 1]) {
+                    foodPathfindingMap.forceUpdate(fromX + location / DIRTY_TILE_SIZE,
+                            fromY + location % DIRTY_TILE_SIZE);
+                }
+            }
+        }
+        if (locations != null) {
+            locations.clear();
         }
-        foodPathfindingMap.forceUpdate(mapX, mapY);
+    }
+
+    /**
+     * Lets food grow on every accessible location by multiplying its density
+     * with {@code growthFactor}. Results are bounded by the minimum and
+     * maximum density of each location's habitat.
+     * <p>
+     * If food grows lazily, only the day is advanced. Locations catch up on
+     * growth when read.
+     * <p>
+     * The grid is divided into stripes of whole tile columns which are
+     * processed in parallel. Locations are independent from each other, so the
+     * result does not depend on the number of stripes. Each stripe marks the
+     * tiles where food has actually changed, which are merged afterwards to be
+     * propagated to the pathfinding map as a whole.
+     * 
+     * @see de.zmt.util.FormulaUtil#growAlgae(Amount, Amount, Amount, Amount)
+     * @param growthFactor
+     *            the factor to multiply densities with
+     */
+    public void growFood(double growthFactor) {
+        this.growthFactor = growthFactor;
+        if (growthDays != null) {
+            day++;
+            return;
+        }
+
+        int tilesX = dirtyTiles.length;
+        int maxStripeCount = Math.max(1,
+                Math.min(tilesX, ForkJoinPool.getCommonPoolParallelism() * STRIPES_PER_PROCESSOR));
+        // stripes contain whole tile columns, so that no tile is shared
+        int stripeTiles = (tilesX + maxStripeCount - 1) / maxStripeCount;
+        int stripeCount = (tilesX + stripeTiles - 1) / stripeTiles;
+
+        List<BitSet> changedTilesPerStripe = IntStream.range(0, stripeCount).parallel()
+                .mapToObj(stripe -> growStripe(stripe * stripeTiles, Math.min((stripe + 1) * stripeTiles, tilesX),
+                        growthFactor))
+                .collect(Collectors.toList());
+
+        int tilesY = dirtyTiles[0].length;
+        for (int stripe = 0; stripe < stripeCount; stripe++) {
+            BitSet changedTiles = changedTilesPerStripe.get(stripe);
+            for (int i = changedTiles.nextSetBit(0); i >= 0; i = changedTiles.nextSetBit(i + 1)) {
+                markTileDirty(stripe * stripeTiles + i / tilesY, i % tilesY);
+            }
+        }
+    }
+
+    /**
+     * Lets food grow within a stripe of tile columns.
+     * 
+     * @param fromTileX
+     *            the first tile column of the stripe (inclusive)
+     * @param toTileX
+     *            the last tile column of the stripe (exclusive)
+     * @param growthFactor
+     *            the factor to multiply densities with
+     * @return the tiles with changed locations, indexed by
+     *         {@code (tileX - fromTileX) * tilesY + tileY}
+     */
+    private BitSet growStripe(int fromTileX, int toTileX, double growthFactor) {
+        double[][] densities = getGrid().field;
+        int tilesY = dirtyTiles[0].length;
+        BitSet changedTiles = new BitSet((toTileX - fromTileX) * tilesY);
+        int toX = Math.min(toTileX * DIRTY_TILE_SIZE, getWidth());
+
+        for (int x = fromTileX * DIRTY_TILE_SIZE; x < toX; x++) {
+            double[] densityColumn = densities[x];
+            int tileOffset = (toTile(x) - fromTileX) * tilesY;
+
+            for (int y = 0; y < densityColumn.length; y++) {
+                int ordinal = habitatMap.obtainOrdinal(x, y);
+                if (!accessibleHabitats[ordinal]) {
+                    continue;
+                }
+                double density = densityColumn[y];
+                double grown = clamp(density * growthFactor, minDensities[ordinal], maxDensities[ordinal]);
+                if (grown != density) {
+                    densityColumn[y] = grown;
+                    changedTiles.set(tileOffset + toTile(y));
+                }
+            }
+        }
+        return changedTiles;
+    }
+
+    /**
+     * Lets every location catch up on lazy growth. Does nothing if food does
+     * not grow lazily.
+     * <p>
+     * <b>NOTE:</b> Computationally expensive. Use only if the whole grid needs
+     * to be up to date, e.g. for display.
+     */
+    public void catchUpGrowth() {
+        if (growthDays == null) {
+            return;
+        }
+        for (int x = 0; x < getWidth(); x++) {
+            for (int y = 0; y < getHeight(); y++) {
+                catchUpGrowth(x, y);
+            }
+        }
+    }
+
+    /**
+     * Lets a location catch up on growth for the days passed since its last
+     * update. The pathfinding map is notified if the density has changed.
+     * 
+     * @param mapX
+     *            map X coordinate
+     * @param mapY
+     *            map Y coordinate
+     * @return the updated food density value at the location
+     */
+    private double catchUpGrowth(int mapX, int mapY) {
+        double density = getGrid().field[mapX][mapY];
+        int days = day - growthDays[mapX][mapY];
+        if (days == 0) {
+            return density;
+        }
+        growthDays[mapX][mapY] = day;
+        int ordinal = habitatMap.obtainOrdinal(mapX, mapY);
+        if (!accessibleHabitats[ordinal]) {
+            return density;
+        }
+
+        double grown = grow(density, growthFactor, days, minDensities[ordinal], maxDensities[ordinal]);
+        if (grown != density) {
+            getGrid().field[mapX][mapY] = grown;
+            notifyChanged(mapX, mapY);
+        }
+        return grown;
+    }
+
+    /**
+     * Computes food density after growing for several days in closed form.
+     * Equals growing day by day, with the density bounded after each day.
+     * After the first day the density is within bounds and changes in one
+     * direction only, so that it only needs to be bounded again at the end.
+     * 
+     * @param density
+     *            the food density value
+     * @param growthFactor
+     *            the factor to multiply densities with every day
+     * @param days
+     *            the number of days to grow
+     * @param minDensity
+     *            the minimum food density value
+     * @param maxDensity
+     *            the maximum food density value
+     * @return food density value after {@code days}
+     */
+    static double grow(double density, double growthFactor, int days, double minDensity, double maxDensity) {
+        double grown = clamp(density * growthFactor, minDensity, maxDensity);
+        if (days > 1) {
+            grown = clamp(grown * Math.pow(growthFactor, days - 1), minDensity, maxDensity);
+        }
+        return grown;
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(Math.min(value, max), min);
     }
 
     /**
@@ -194,20 +634,47 @@ public class FoodMap extends EncapsulatedGrid<DoubleGrid2D> implements Component
      * 
      */
     public class FoundFood {
-        private final Amount<Mass> availableFood;
-        private final DoubleNeighborsResult foundResult;
+        private Amount<Mass> availableFood;
+        /** Number of locations found. */
+        private int count;
+        /** X coordinates of locations found. */
+        private int[] locationsX = new int[0];
+        /** Y coordinates of locations found. */
+        private int[] locationsY = new int[0];
+        /** Total density values per location. */
+        private double[] totalDensityValues = new double[0];
         /**
          * Provided available density values per location. These can be lower
-         * than those in {@link #foundResult} and used to model diminishing
-         * accessibility of patches more far away than other.
+         * than those in {@link #totalDensityValues} and used to model
+         * diminishing accessibility of patches more far away than other.
          */
-        private final DoubleBag accessibleDensityValues;
+        private double[] accessibleDensityValues = new double[0];
+
+        private FoundFood() {
+        }
+
+        /**
+         * Clears locations and makes room for given number.
+         * 
+         * @param capacity
+         *            the maximum number of locations to be added
+         */
+        private void clear(int capacity) {
+            count = 0;
+            if (locationsX.length < capacity) {
+                locationsX = new int[capacity];
+                locationsY = new int[capacity];
+                totalDensityValues = new double[capacity];
+                accessibleDensityValues = new double[capacity];
+            }
+        }
 
-        private FoundFood(Amount<Mass> availableFood, DoubleNeighborsResult foundResult,
-                DoubleBag availableDensityValues) {
-            this.availableFood = availableFood;
-            this.foundResult = foundResult;
-            this.accessibleDensityValues = availableDensityValues;
+        private void add(int x, int y, double totalDensityValue, double accessibleDensityValue) {
+            locationsX[count] = x;
+            locationsY[count] = y;
+            totalDensityValues[count] = totalDensityValue;
+            accessibleDensityValues[count] = accessibleDensityValue;
+            count++;
         }
 
         /**
@@ -239,12 +706,11 @@ public class FoodMap extends EncapsulatedGrid<DoubleGrid2D> implements Component
             assert returnFraction > 0 && returnFraction <= 1 : returnFraction + " is an invalid value for a fraction.\n"
                     + "rejectedFood = " + rejectedFood + ", availableFood = " + availableFood.getEstimatedValue();
 
-            double totalDensityValue = 0;
-            for (int i = 0; i < accessibleDensityValues.numObjs; i++) {
-                double availableDensityValue = accessibleDensityValues.get(i);
-                int x = foundResult.locations.xPos.get(i);
-                int y = foundResult.locations.yPos.get(i);
-                totalDensityValue = foundResult.values.get(i);
+            for (int i = 0; i < count; i++) {
+                double availableDensityValue = accessibleDensityValues[i];
+                int x = locationsX[i];
+                int y = locationsY[i];
+                double totalDensityValue = totalDensityValues[i];
                 //assert totalDensityValue >= availableDensityValue : "total: " + totalDensityValue + ", available: "
                 //        + availableDensityValue + " at (" + x + ", " + y + ")";
 
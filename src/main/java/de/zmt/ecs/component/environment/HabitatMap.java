@@ -1,25 +1,27 @@
 package de.zmt.ecs.component.environment;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.Set;
 
 import de.zmt.ecs.Component;
+import de.zmt.util.GridPositions;
 import de.zmt.util.Habitat;
 import ec.util.MersenneTwisterFast;
 import sim.field.grid.IntGrid2D;
+import sim.portrayal.portrayable.FieldPortrayable;
+import sim.portrayal.portrayable.ProvidesPortrayable;
 import sim.util.Int2D;
 
 /**
  * Stores a {@link Habitat} for every grid cell in discrete map space. This is
- * done via {@link IntGrid2D} containing {@link Habitat} ordinal numbers.
- * 
+ * done via a byte array containing {@link Habitat} ordinal numbers, row by
+ * row.
+ *
  * @author mey
  *
  */
-public class HabitatMap extends EncapsulatedGrid<IntGrid2D> implements Component {
+public class HabitatMap implements Component, ProvidesPortrayable<FieldPortrayable<IntGrid2D>>, Serializable {
     private static final long serialVersionUID = 1L;
 
     /**
@@ -28,42 +30,117 @@ public class HabitatMap extends EncapsulatedGrid<IntGrid2D> implements Component
      */
     private static final Habitat[] HABITAT_VALUES = Habitat.values();
 
+    private final int width;
+    private final int height;
+    /** Habitat ordinal for every cell, indexed by {@code y * width + x}. */
+    private final byte[] habitats;
     /**
-     * Habitats associated with positions to speed up generating random
-     * positions within certain habitats.
-     * 
+     * Cell indices grouped by habitat in ordinal order, row by row within each
+     * habitat, to speed up generating random positions within certain
+     * habitats.
+     *
      * @see #generateRandomPosition(MersenneTwisterFast, Set)
      */
-    private final Map<Habitat, List<Int2D>> habitatPositions;
+    private final int[] habitatCells;
+    /**
+     * Prefix sums of cell counts: cells of the habitat with ordinal
+     * {@code i} are found within {@link #habitatCells} from
+     * {@code habitatOffsets[i]} to {@code habitatOffsets[i + 1]} (exclusive).
+     */
+    private final int[] habitatOffsets;
 
+    /**
+     * Constructs a new {@link HabitatMap} from a grid containing
+     * {@link Habitat} ordinal numbers.
+     *
+     * @param habitatField
+     *            the grid of habitat ordinals
+     * @throws IllegalArgumentException
+     *             if the grid contains a value that is no habitat ordinal
+     */
     public HabitatMap(IntGrid2D habitatField) {
-        super(habitatField);
-        this.habitatPositions = buildHabitatPositions(habitatField);
+        this(habitatField.getWidth(), habitatField.getHeight(), toOrdinals(habitatField));
     }
 
-    private static Map<Habitat, List<Int2D>> buildHabitatPositions(IntGrid2D habitatField) {
-        Map<Habitat, List<Int2D>> habitatPositions = new HashMap<>();
+    /**
+     * Constructs a new {@link HabitatMap} from {@link Habitat} ordinal numbers
+     * stored row by row in one byte per cell, like in a habitat raster. The
+     * remaining bytes of {@code cells} are read without changing its position.
+     *
+     * @param width
+     *            the width of the map
+     * @param height
+     *            the height of the map
+     * @param cells
+     *            the habitat ordinals row by row
+     * @throws IllegalArgumentException
+     *             if the number of cells does not match the size or a cell
+     *             contains a value that is no habitat ordinal
+     */
+    public HabitatMap(int width, int height, ByteBuffer cells) {
+        this(width, height, toOrdinals(width, height, cells));
+    }
 
-        // create a position list for every habitat
-        for (Habitat habitat : HABITAT_VALUES) {
-            // use ArrayList here for faster copying in generateRandomPosition
-            habitatPositions.put(habitat, new ArrayList<Int2D>());
+    private HabitatMap(int width, int height, byte[] habitats) {
+        this.width = width;
+        this.height = height;
+        this.habitats = habitats;
+        this.habitatOffsets = new int[HABITAT_VALUES.length + 1];
+
+        // count cells of every habitat
+        for (int cell = 0; cell < habitats.length; cell++) {
+            int ordinal = habitats[cell];
+            checkOrdinal(ordinal, cell % width, cell / width);
+            habitatOffsets[ordinal + 1]++;
+        }
+
+        for (int i = 1; i < habitatOffsets.length; i++) {
+            habitatOffsets[i] += habitatOffsets[i - 1];
+        }
+
+        // place every cell within the range of its habitat
+        this.habitatCells = new int[habitats.length];
+        int[] nextIndices = new int[HABITAT_VALUES.length];
+        System.arraycopy(habitatOffsets, 0, nextIndices, 0, nextIndices.length);
+        for (int cell = 0; cell < habitats.length; cell++) {
+            habitatCells[nextIndices[habitats[cell]]++] = cell;
         }
+    }
 
-        // populate lists with data from habitat field
-        for (int y = 0; y < habitatField.getHeight(); y++) {
-            for (int x = 0; x < habitatField.getWidth(); x++) {
-                Habitat habitat = HABITAT_VALUES[habitatField.get(x, y)];
-                habitatPositions.get(habitat).add(new Int2D(x, y));
+    private static byte[] toOrdinals(IntGrid2D habitatField) {
+        int width = habitatField.getWidth();
+        byte[] habitats = new byte[width * habitatField.getHeight()];
+        for (int x = 0; x < width; x++) {
+            int[] column = habitatField.field[x];
+            for (int y = 0; y < column.length; y++) {
+                // check before narrowing to byte
+                checkOrdinal(column[y], x, y);
+                habitats[y * width + x] = (byte) column[y];
             }
         }
+        return habitats;
+    }
 
-        return habitatPositions;
+    private static byte[] toOrdinals(int width, int height, ByteBuffer cells) {
+        if (width < 0 || height < 0 || cells.remaining() != (long) width * height) {
+            throw new IllegalArgumentException(
+                    cells.remaining() + " cells do not match a map of " + width + "x" + height + ".");
+        }
+        byte[] habitats = new byte[cells.remaining()];
+        cells.duplicate().get(habitats);
+        return habitats;
+    }
+
+    private static void checkOrdinal(int ordinal, int x, int y) {
+        if (ordinal < 0 || ordinal >= HABITAT_VALUES.length) {
+            throw new IllegalArgumentException(
+                    "Value at (" + x + ", " + y + ") is not a habitat ordinal: " + ordinal);
+        }
     }
 
     /**
      * Direct access to habitat field.
-     * 
+     *
      * @param mapPosition
      *            the map position
      * @return habitat
@@ -74,7 +151,7 @@ public class HabitatMap extends EncapsulatedGrid<IntGrid2D> implements Component
 
     /**
      * Direct access to habitat field.
-     * 
+     *
      * @param mapX
      *            map X coordinate
      * @param mapY
@@ -82,12 +159,27 @@ public class HabitatMap extends EncapsulatedGrid<IntGrid2D> implements Component
      * @return habitat
      */
     public Habitat obtainHabitat(int mapX, int mapY) {
-        return HABITAT_VALUES[getGrid().get(mapX, mapY)];
+        return HABITAT_VALUES[habitats[mapY * width + mapX]];
+    }
+
+    /**
+     * Returns the {@link Habitat} ordinal at given location, to look up values
+     * in tables indexed by habitat.
+     *
+     * @param mapX
+     *            map X coordinate
+     * @param mapY
+     *            map Y coordinate
+     * @return habitat ordinal
+     */
+    int obtainOrdinal(int mapX, int mapY) {
+        return habitats[mapY * width + mapX];
     }
 
     /**
-     * Generate random map position within given {@code habitats}.
-     * 
+     * Generate random map position within given {@code habitats}. Takes
+     * constant time and does not allocate.
+     *
      * @param random
      * @param habitats
      * @return Random position within given habitats
@@ -95,19 +187,72 @@ public class HabitatMap extends EncapsulatedGrid<IntGrid2D> implements Component
      *             if habitats are not found within current map
      */
     public Int2D generateRandomPosition(MersenneTwisterFast random, Set<Habitat> habitats) {
-        // collect lists of positions for given habitats
-        List<Int2D> possiblePositions = new ArrayList<>();
-        for (Habitat habitat : habitats) {
-            possiblePositions.addAll(habitatPositions.get(habitat));
+        // count cells of given habitats, iterating values to avoid an iterator
+        int cellCount = 0;
+        for (Habitat habitat : HABITAT_VALUES) {
+            if (habitats.contains(habitat)) {
+                cellCount += countCells(habitat);
+            }
         }
 
-        if (possiblePositions.isEmpty()) {
+        if (cellCount == 0) {
             throw new IllegalArgumentException("Current map does not contain " + habitats);
         }
 
-        // generate index within collected list
-        int randomIndex = random.nextInt(possiblePositions.size());
-        // ... and return the position associated with that index
-        return possiblePositions.get(randomIndex);
+        // generate index within the ranges of given habitats
+        int randomIndex = random.nextInt(cellCount);
+        // ... and find the range containing it
+        for (Habitat habitat : HABITAT_VALUES) {
+            if (habitats.contains(habitat)) {
+                int count = countCells(habitat);
+                if (randomIndex < count) {
+                    int cell = habitatCells[habitatOffsets[habitat.ordinal()] + randomIndex];
+                    return GridPositions.get(cell % width, cell / width);
+                }
+                randomIndex -= count;
+            }
+        }
+        throw new IllegalStateException("Index out of habitat ranges.");
+    }
+
+    private int countCells(Habitat habitat) {
+        return habitatOffsets[habitat.ordinal() + 1] - habitatOffsets[habitat.ordinal()];
+    }
+
+    /** @return the width of the map */
+    public int getWidth() {
+        return width;
+    }
+
+    /** @return the height of the map */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns a portrayable with a grid of habitat ordinals. The grid is only
+     * created here, so that it is not kept in memory without display.
+     */
+    @Override
+    public FieldPortrayable<IntGrid2D> providePortrayable() {
+        IntGrid2D grid = new IntGrid2D(width, height);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                grid.field[x][y] = habitats[y * width + x];
+            }
+        }
+
+        return new FieldPortrayable<IntGrid2D>() {
+
+            @Override
+            public IntGrid2D getField() {
+                return grid;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[width=" + width + ", height=" + height + "]";
     }
 }
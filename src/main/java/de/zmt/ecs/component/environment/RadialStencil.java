@@ -0,0 +1,73 @@
+package de.zmt.ecs.component.environment;
+
+import java.io.Serializable;
+
+/**
+ * Precomputed offsets of the cells within a map radius around a center cell,
+ * together with their distance weights. A cell is included if the distance
+ * between its center and the center cell is within the radius, which matches
+ * a radial lookup with center measurement and a closed boundary.
+ *
+ * @author mey
+ *
+ */
+class RadialStencil implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** Horizontal offsets of included cells. */
+    final int[] offsetsX;
+    /** Vertical offsets of included cells. */
+    final int[] offsetsY;
+    /**
+     * Distance weights of included cells:
+     *
+     * <pre>
+     * 1 / (distance&sup2; + 1)
+     * </pre>
+     */
+    final double[] weights;
+
+    /**
+     * Constructs a new {@link RadialStencil}.
+     *
+     * @param radius
+     *            the map radius
+     */
+    public RadialStencil(double radius) {
+        if (radius < 0) {
+            throw new IllegalArgumentException("Radius must not be negative: " + radius);
+        }
+        int extent = (int) Math.ceil(radius);
+        double radiusSq = radius * radius;
+
+        int count = 0;
+        for (int x = -extent; x <= extent; x++) {
+            for (int y = -extent; y <= extent; y++) {
+                if (x * x + y * y <= radiusSq) {
+                    count++;
+                }
+            }
+        }
+
+        offsetsX = new int[count];
+        offsetsY = new int[count];
+        weights = new double[count];
+        int i = 0;
+        for (int x = -extent; x <= extent; x++) {
+            for (int y = -extent; y <= extent; y++) {
+                int distanceSq = x * x + y * y;
+                if (distanceSq <= radiusSq) {
+                    offsetsX[i] = x;
+                    offsetsY[i] = y;
+                    weights[i] = 1d / (distanceSq + 1);
+                    i++;
+                }
+            }
+        }
+    }
+
+    /** @return the number of cells in this stencil */
+    public int size() {
+        return weights.length;
+    }
+}
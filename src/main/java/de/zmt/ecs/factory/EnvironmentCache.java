@@ -0,0 +1,462 @@
+package de.zmt.ecs.factory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import de.zmt.ecs.component.environment.HabitatMap;
+import sim.field.grid.DoubleGrid2D;
+import sim.field.grid.IntGrid2D;
+
+/**
+ * Cache for grids derived from the map image and parameters, which are
+ * expensive to create but the same in every run, like blurred potential
+ * grids. Grids are identified by a key hashed from everything they are derived
+ * from, see {@link KeyBuilder}.
+ * <p>
+ * Created grids are stored in a binary file within the cache directory, which
+ * is memory-mapped read-only by later runs. Within the JVM, concurrent runs
+ * share the same mapped data and a grid is only created once. Every caller
+ * gets its own copy, so that runs can neither interfere with each other nor
+ * with the cache. Grids are copied to the heap, as they are backed by arrays,
+ * so that the cache saves the time to create them but not memory. Only
+ * {@link HabitatRaster}s, which cannot be modified, are returned as views on
+ * the cached data.
+ * <p>
+ * Grids with data exceeding a single buffer are not cached but created for
+ * every caller.
+ * <p>
+ * The cache directory is set via the system property
+ * {@value #DIRECTORY_PROPERTY}, defaulting to a directory within the temporary
+ * directory. If set to an empty string, grids are only cached in memory.
+ *
+ * @author mey
+ *
+ */
+final class EnvironmentCache {
+    private static final Logger logger = Logger.getLogger(EnvironmentCache.class.getName());
+
+    /** System property for setting the cache directory. */
+    static final String DIRECTORY_PROPERTY = "kitt.cache.dir";
+    private static final String DEFAULT_DIRECTORY_NAME = "kitt-cache";
+    private static final String FILE_EXTENSION = ".kenv";
+
+    private static final byte[] MAGIC = { 'K', 'E', 'N', 'V' };
+    /** Incremented on format changes, also part of every key. */
+    private static final short VERSION = 1;
+    /** Magic, version, type, padding, width and height. */
+    private static final int HEADER_SIZE = MAGIC.length + Short.BYTES + 2 + 2 * Integer.BYTES;
+    private static final byte TYPE_INT = 1;
+    private static final byte TYPE_DOUBLE = 2;
+    private static final byte TYPE_BYTE = 3;
+    /** Maximum size of data within a buffer, limited by array size. */
+    private static final long MAX_DATA_SIZE = Integer.MAX_VALUE - 8;
+
+    /** Cache shared by all simulations within the JVM. */
+    static final EnvironmentCache SHARED = new EnvironmentCache(obtainDefaultDirectory());
+
+    /** Directory to store grids in, <code>null</code> if not persisted. */
+    private final Path directory;
+    /** Grids with data larger than this are not cached. */
+    private final long maxDataSize;
+    /** Data of grids by key, including header. Completed once created. */
+    private final ConcurrentMap<String, CompletableFuture<ByteBuffer>> grids = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new {@link EnvironmentCache}.
+     *
+     * @param directory
+     *            the directory to store grids in, <code>null</code> to cache
+     *            in memory only
+     */
+    EnvironmentCache(Path directory) {
+        this(directory, MAX_DATA_SIZE);
+    }
+
+    /**
+     * Constructs a new {@link EnvironmentCache} with a limit on the size of
+     * grids cached.
+     *
+     * @param directory
+     *            the directory to store grids in, <code>null</code> to cache
+     *            in memory only
+     * @param maxDataSize
+     *            the maximum size of data of cached grids in bytes
+     */
+    EnvironmentCache(Path directory, long maxDataSize) {
+        this.directory = directory;
+        this.maxDataSize = Math.min(maxDataSize, MAX_DATA_SIZE);
+    }
+
+    private static Path obtainDefaultDirectory() {
+        String directory = System.getProperty(DIRECTORY_PROPERTY);
+        if (directory == null) {
+            return Paths.get(System.getProperty("java.io.tmpdir"), DEFAULT_DIRECTORY_NAME);
+        }
+        if (directory.isEmpty()) {
+            return null;
+        }
+        return Paths.get(directory);
+    }
+
+    /**
+     * Returns a copy of the cached {@link IntGrid2D} for the given key. If not
+     * cached, it is created with {@code factory} and stored.
+     *
+     * @param key
+     *            the key of the grid
+     * @param factory
+     *            the factory to create the grid if not cached
+     * @return copy of the cached grid, or the created one if too large to be
+     *         cached
+     */
+    IntGrid2D obtainIntGrid(String key, Supplier<IntGrid2D> factory) {
+        IntGrid2D[] created = new IntGrid2D[1];
+        ByteBuffer data = obtain(key, TYPE_INT, () -> {
+            created[0] = factory.get();
+            return encode(created[0]);
+        });
+        if (data == null) {
+            return created[0] != null ? created[0] : factory.get();
+        }
+        IntGrid2D grid = new IntGrid2D(readWidth(data), readHeight(data));
+        data.position(HEADER_SIZE);
+        for (int[] column : grid.field) {
+            data.asIntBuffer().get(column);
+            data.position(data.position() + column.length * Integer.BYTES);
+        }
+        return grid;
+    }
+
+    /**
+     * Returns a copy of the cached {@link DoubleGrid2D} for the given key. If
+     * not cached, it is created with {@code factory} and stored.
+     *
+     * @param key
+     *            the key of the grid
+     * @param factory
+     *            the factory to create the grid if not cached
+     * @return copy of the cached grid, or the created one if too large to be
+     *         cached
+     */
+    DoubleGrid2D obtainDoubleGrid(String key, Supplier<DoubleGrid2D> factory) {
+        DoubleGrid2D[] created = new DoubleGrid2D[1];
+        ByteBuffer data = obtain(key, TYPE_DOUBLE, () -> {
+            created[0] = factory.get();
+            return encode(created[0]);
+        });
+        if (data == null) {
+            return created[0] != null ? created[0] : factory.get();
+        }
+        DoubleGrid2D grid = new DoubleGrid2D(readWidth(data), readHeight(data));
+        data.position(HEADER_SIZE);
+        for (double[] column : grid.field) {
+            data.asDoubleBuffer().get(column);
+            data.position(data.position() + column.length * Double.BYTES);
+        }
+        return grid;
+    }
+
+    /**
+     * Returns the cached {@link HabitatRaster} for the given key. If not
+     * cached, it is created with {@code factory} and stored.
+     *
+     * @param key
+     *            the key of the raster
+     * @param factory
+     *            the factory to create the raster if not cached
+     * @return read-only view on the cached raster, or the created one if too
+     *         large to be cached
+     */
+    HabitatRaster obtainHabitatRaster(String key, Supplier<HabitatRaster> factory) {
+        HabitatRaster[] created = new HabitatRaster[1];
+        ByteBuffer data = obtain(key, TYPE_BYTE, () -> {
+            created[0] = factory.get();
+            return encode(created[0]);
+        });
+        if (data == null) {
+            return created[0] != null ? created[0] : factory.get();
+        }
+        data.position(HEADER_SIZE);
+        return new HabitatRaster(readWidth(data), readHeight(data), data.slice().asReadOnlyBuffer());
+    }
+
+    /**
+     * Obtains the data of a grid, waiting if it is created by another thread.
+     * The encoder returns <code>null</code> if the grid is too large to be
+     * cached.
+     *
+     * @return duplicate of the data positioned at zero, <code>null</code> if
+     *         the grid is too large to be cached
+     */
+    private ByteBuffer obtain(String key, byte type, Supplier<ByteBuffer> encoder) {
+        CompletableFuture<ByteBuffer> future = new CompletableFuture<>();
+        CompletableFuture<ByteBuffer> existing = grids.putIfAbsent(key, future);
+        if (existing == null) {
+            try {
+                ByteBuffer data = loadOrCreate(key, type, encoder);
+                if (data == null) {
+                    // callers waiting meanwhile create the grid themselves
+                    grids.remove(key, future);
+                }
+                future.complete(data);
+            } catch (RuntimeException | Error e) {
+                // let the next caller try again
+                grids.remove(key, future);
+                future.completeExceptionally(e);
+                throw e;
+            }
+            existing = future;
+        }
+
+        try {
+            ByteBuffer data = existing.join();
+            return data == null ? null : data.duplicate();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private ByteBuffer loadOrCreate(String key, byte type, Supplier<ByteBuffer> encoder) {
+        if (directory == null) {
+            ByteBuffer data = encoder.get();
+            return data == null ? null : data.asReadOnlyBuffer();
+        }
+
+        Path path = directory.resolve(key + FILE_EXTENSION);
+        if (Files.isRegularFile(path)) {
+            try {
+                ByteBuffer data = map(path);
+                if (isValid(data, type)) {
+                    logger.fine("Loaded cached grid from " + path);
+                    return data;
+                }
+                logger.warning("Cached grid at " + path + " is invalid. Creating it again.");
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Could not load cached grid from " + path + ". Creating it again.", e);
+            }
+        }
+
+        ByteBuffer data = encoder.get();
+        if (data == null) {
+            return null;
+        }
+        try {
+            store(data, path);
+            return map(path);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not store grid in cache at " + path + ". Keeping it in memory.", e);
+            return data.asReadOnlyBuffer();
+        }
+    }
+
+    /** Maps the file at {@code path} read-only. */
+    private static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Stores data in a temporary file first and moves it into place when
+     * complete. Other processes reading the cache will only see complete
+     * files.
+     */
+    private void store(ByteBuffer data, Path path) throws IOException {
+        Files.createDirectories(directory);
+        Path temporaryPath = Files.createTempFile(directory, path.getFileName().toString(), null);
+        try {
+            try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.WRITE)) {
+                ByteBuffer source = data.duplicate();
+                source.rewind();
+                while (source.hasRemaining()) {
+                    channel.write(source);
+                }
+            }
+            Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporaryPath);
+        }
+    }
+
+    private static boolean isValid(ByteBuffer data, byte type) {
+        if (data.capacity() < HEADER_SIZE) {
+            return false;
+        }
+        byte[] magic = new byte[MAGIC.length];
+        data.duplicate().get(magic);
+        int width = readWidth(data);
+        int height = readHeight(data);
+        int elementSize = type == TYPE_BYTE ? Byte.BYTES : type == TYPE_INT ? Integer.BYTES : Double.BYTES;
+        return Arrays.equals(magic, MAGIC) && data.getShort(MAGIC.length) == VERSION
+                && data.get(MAGIC.length + Short.BYTES) == type && width >= 0 && height >= 0
+                && data.capacity() == HEADER_SIZE + (long) width * height * elementSize;
+    }
+
+    private static int readWidth(ByteBuffer data) {
+        return data.getInt(HEADER_SIZE - 2 * Integer.BYTES);
+    }
+
+    private static int readHeight(ByteBuffer data) {
+        return data.getInt(HEADER_SIZE - Integer.BYTES);
+    }
+
+    /**
+     * Allocates data for a grid and writes the header.
+     *
+     * @return the data positioned after the header, <code>null</code> if
+     *         exceeding {@link #maxDataSize}
+     */
+    private ByteBuffer createData(byte type, int width, int height, int elementSize) {
+        long size = HEADER_SIZE + (long) width * height * elementSize;
+        if (size > maxDataSize) {
+            logger.fine("Grid of " + width + "x" + height + " is too large to be cached.");
+            return null;
+        }
+        ByteBuffer data = ByteBuffer.allocate((int) size);
+        data.put(MAGIC).putShort(VERSION).put(type).put((byte) 0).putInt(width).putInt(height);
+        return data;
+    }
+
+    private ByteBuffer encode(IntGrid2D grid) {
+        ByteBuffer data = createData(TYPE_INT, grid.getWidth(), grid.getHeight(), Integer.BYTES);
+        if (data == null) {
+            return null;
+        }
+        for (int[] column : grid.field) {
+            data.asIntBuffer().put(column);
+            data.position(data.position() + column.length * Integer.BYTES);
+        }
+        data.rewind();
+        return data;
+    }
+
+    private ByteBuffer encode(DoubleGrid2D grid) {
+        ByteBuffer data = createData(TYPE_DOUBLE, grid.getWidth(), grid.getHeight(), Double.BYTES);
+        if (data == null) {
+            return null;
+        }
+        for (double[] column : grid.field) {
+            data.asDoubleBuffer().put(column);
+            data.position(data.position() + column.length * Double.BYTES);
+        }
+        data.rewind();
+        return data;
+    }
+
+    private ByteBuffer encode(HabitatRaster raster) {
+        ByteBuffer data = createData(TYPE_BYTE, raster.getWidth(), raster.getHeight(), Byte.BYTES);
+        if (data == null) {
+            return null;
+        }
+        data.put(raster.getCells());
+        data.rewind();
+        return data;
+    }
+
+    /**
+     * Builds a key by hashing everything a grid is derived from. Two grids
+     * share a key only if created from the same input.
+     *
+     * @author mey
+     *
+     */
+    static class KeyBuilder {
+        private final MessageDigest digest;
+
+        /**
+         * Constructs a new {@link KeyBuilder}.
+         *
+         * @param name
+         *            the name of the kind of grid
+         */
+        public KeyBuilder(String name) {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is required to be supported.", e);
+            }
+            add(VERSION).add(name);
+        }
+
+        public KeyBuilder add(String value) {
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+            // separate from following values
+            digest.update((byte) 0);
+            return this;
+        }
+
+        public KeyBuilder add(long value) {
+            digest.update(ByteBuffer.allocate(Long.BYTES).putLong(value).array());
+            return this;
+        }
+
+        public KeyBuilder add(double value) {
+            return add(Double.doubleToLongBits(value));
+        }
+
+        public KeyBuilder add(byte[] values) {
+            add(values.length);
+            digest.update(values);
+            return this;
+        }
+
+        /**
+         * Adds the remaining bytes of a buffer, without changing its position.
+         *
+         * @param values
+         * @return this builder
+         */
+        public KeyBuilder add(ByteBuffer values) {
+            add(values.remaining());
+            digest.update(values.duplicate());
+            return this;
+        }
+
+        /**
+         * Adds the size and the habitat of every cell of a habitat map.
+         *
+         * @param habitatMap
+         * @return this builder
+         */
+        public KeyBuilder add(HabitatMap habitatMap) {
+            add(habitatMap.getWidth()).add(habitatMap.getHeight());
+            byte[] column = new byte[habitatMap.getHeight()];
+            for (int x = 0; x < habitatMap.getWidth(); x++) {
+                for (int y = 0; y < column.length; y++) {
+                    column[y] = (byte) habitatMap.obtainHabitat(x, y).ordinal();
+                }
+                digest.update(column);
+            }
+            return this;
+        }
+
+        /** @return the key as hexadecimal string, usable as file name */
+        public String build() {
+            StringBuilder key = new StringBuilder();
+            for (byte b : digest.digest()) {
+                key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return key.toString();
+        }
+    }
+}
@@ -2,10 +2,12 @@ package de.zmt.ecs.factory;
 
 import static javax.measure.unit.SI.SECOND;
 
-import java.awt.Color;
 import java.awt.image.BufferedImage;
-import java.io.File;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collection;
@@ -18,12 +20,14 @@ import de.zmt.ecs.Component;
 import de.zmt.ecs.Entity;
 import de.zmt.ecs.EntityFactory;
 import de.zmt.ecs.EntityManager;
+import de.zmt.ecs.component.agent.AgentStore;
 import de.zmt.ecs.component.environment.FoodMap;
 import de.zmt.ecs.component.environment.GlobalPathfindingMaps;
 import de.zmt.ecs.component.environment.HabitatMap;
 import de.zmt.ecs.component.environment.SimulationTime;
 import de.zmt.ecs.component.environment.SpeciesPathfindingMaps;
 import de.zmt.ecs.component.environment.WorldDimension;
+import de.zmt.ecs.factory.EnvironmentCache.KeyBuilder;
 import de.zmt.params.EnvironmentDefinition;
 import de.zmt.pathfinding.EdgeHandler;
 import de.zmt.pathfinding.FilteringPotentialMap;
@@ -34,13 +38,12 @@ import de.zmt.pathfinding.SimplePotentialMap;
 import de.zmt.pathfinding.filter.ConvolveOp;
 import de.zmt.pathfinding.filter.Kernel;
 import de.zmt.pathfinding.filter.KernelFactory;
+import de.zmt.util.GridPositions;
 import de.zmt.util.Habitat;
 import ec.util.MersenneTwisterFast;
 import sim.field.grid.DoubleGrid2D;
-import sim.field.grid.IntGrid2D;
 import sim.util.Double2D;
 import sim.util.Int2D;
-import sim.util.Int2DCache;
 
 /**
  * Factory for creating the environment entity.
@@ -52,6 +55,11 @@ class EnvironmentFactory implements EntityFactory<EnvironmentFactory.MyParam> {
     @SuppressWarnings("unused")
     private static final Logger logger = Logger.getLogger(EnvironmentFactory.class.getName());
 
+    /** Name of habitat grids in {@link EnvironmentCache}. */
+    private static final String HABITAT_GRID_NAME = "habitat";
+    /** Name of boundary potential grids in {@link EnvironmentCache}. */
+    private static final String BOUNDARY_POTENTIAL_GRID_NAME = "boundary";
+
     @Override
     public Entity create(EntityManager manager, MyParam parameter) {
         return new EnvironmentEntity(manager, createComponents(parameter.random, parameter.definition));
@@ -70,30 +78,42 @@ class EnvironmentFactory implements EntityFactory<EnvironmentFactory.MyParam> {
      */
     private static Collection<Component> createComponents(MersenneTwisterFast random,
             EnvironmentDefinition definition) {
-        BufferedImage mapImage = loadMapImage(definition.getMapImagePath());
-
-        IntGrid2D habitatGrid = createHabitatGrid(random, mapImage);
-        int mapWidth = habitatGrid.getWidth();
-        int mapHeight = habitatGrid.getHeight();
+        String mapImagePath = definition.getMapImagePath();
+        String habitatGridKey;
+        HabitatRaster habitatRaster;
+        if (mapImagePath.endsWith(HabitatRaster.FILE_EXTENSION)) {
+            // raw rasters are mapped, no need to cache
+            habitatRaster = mapHabitatRaster(mapImagePath);
+            habitatGridKey = new KeyBuilder(HABITAT_GRID_NAME).add(habitatRaster.getCells()).build();
+        } else {
+            byte[] mapImageData = readMapImage(mapImagePath);
+            // habitats only depend on the map image
+            habitatGridKey = new KeyBuilder(HABITAT_GRID_NAME).add(mapImageData).build();
+            habitatRaster = EnvironmentCache.SHARED.obtainHabitatRaster(habitatGridKey,
+                    () -> HabitatRaster.fromImage(decodeMapImage(mapImageData, mapImagePath)));
+        }
+        int mapWidth = habitatRaster.getWidth();
+        int mapHeight = habitatRaster.getHeight();
+        HabitatMap habitatMap = new HabitatMap(mapWidth, mapHeight, habitatRaster.getCells());
 
         // adjust cache to map size
-        Int2DCache.adjustCacheSize(mapWidth, mapHeight);
-        DoubleGrid2D foodGrid = createFoodGrid(habitatGrid, random);
+        GridPositions.ensureSize(mapWidth, mapHeight);
+        DoubleGrid2D foodGrid = createFoodGrid(habitatMap, random);
         // bounds are not cached
         Double2D worldBounds = definition.mapToWorld(new Int2D(mapWidth, mapHeight));
 
-        HabitatMap habitatMap = new HabitatMap(habitatGrid);
         FilteringPotentialMap foodPotentialMap = createFoodPotentialMap(foodGrid);
-        PotentialMap boundaryPotentialMap = createBoundaryPotentialMap(habitatMap);
+        PotentialMap boundaryPotentialMap = createBoundaryPotentialMap(habitatMap, habitatGridKey);
         GlobalPathfindingMaps globalPathfindingMaps = new GlobalPathfindingMaps(foodPotentialMap, boundaryPotentialMap);
 
         // gather components
         Collection<Component> components = Arrays.asList(definition, new WorldDimension(worldBounds.x, worldBounds.y),
-                new FoodMap(foodGrid, foodPotentialMap, habitatMap), globalPathfindingMaps, habitatMap,
+                new FoodMap(foodGrid, foodPotentialMap, habitatMap, definition.isLazyFoodGrowth()),
+                globalPathfindingMaps, habitatMap,
                 new SimulationTime(EnvironmentDefinition.START_TEMPORAL,
                         // convert amount to java.time
                         Duration.ofSeconds(definition.getStepDuration().to(SECOND).getExactValue())),
-                new SpeciesPathfindingMaps.Container());
+                new SpeciesPathfindingMaps.Container(), new AgentStore());
 
         return components;
     }
@@ -103,23 +123,29 @@ class EnvironmentFactory implements EntityFactory<EnvironmentFactory.MyParam> {
      * {@link Habitat#MAINLAND} boundaries.
      * 
      * @param habitatMap
+     * @param habitatGridKey
+     *            the cache key of the habitat grid
      * @return {@link PotentialMap} with repulsion at boundaries
      */
-    private static PotentialMap createBoundaryPotentialMap(HabitatMap habitatMap) {
-        int width = habitatMap.getWidth();
-        int height = habitatMap.getHeight();
-        DoubleGrid2D boundaryPotentialGrid = new DoubleGrid2D(width, height);
-
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                double boundaryValue = 0;
-                // mark MAINLAND as repulsive
-                if (habitatMap.obtainHabitat(x, y) == Habitat.MAINLAND) {
-                    boundaryValue = -1;
+    private static PotentialMap createBoundaryPotentialMap(HabitatMap habitatMap, String habitatGridKey) {
+        String key = new KeyBuilder(BOUNDARY_POTENTIAL_GRID_NAME).add(habitatGridKey).build();
+        DoubleGrid2D boundaryPotentialGrid = EnvironmentCache.SHARED.obtainDoubleGrid(key, () -> {
+            int width = habitatMap.getWidth();
+            int height = habitatMap.getHeight();
+            DoubleGrid2D grid = new DoubleGrid2D(width, height);
+
+            for (int x = 0; x < width; x++) {
+                for (int y = 0; y < height; y++) {
+                    double boundaryValue = 0;
+                    // mark MAINLAND as repulsive
+                    if (habitatMap.obtainHabitat(x, y) == Habitat.MAINLAND) {
+                        boundaryValue = -1;
+                    }
+                    grid.set(x, y, boundaryValue);
                 }
-                boundaryPotentialGrid.set(x, y, boundaryValue);
             }
-        }
+            return grid;
+        });
 
         EdgeHandler repulsiveEdgesHandler = new EdgeHandler(-1);
         SimplePotentialMap boundaryPotentialMap = new SimplePotentialMap(boundaryPotentialGrid, repulsiveEdgesHandler);
@@ -130,51 +156,46 @@ class EnvironmentFactory implements EntityFactory<EnvironmentFactory.MyParam> {
     /**
      * 
      * @param imagePath
-     * @return image loaded from {@code imagePath}
+     * @return content of the image file at {@code imagePath}
      */
-    private static BufferedImage loadMapImage(String imagePath) {
-        BufferedImage mapImage = null;
+    private static byte[] readMapImage(String imagePath) {
         logger.fine("Loading map image from " + imagePath);
-        File imageFile = new File(imagePath);
+        Path imageFile = Paths.get(imagePath);
         try {
-            mapImage = ImageIO.read(imageFile);
+            return Files.readAllBytes(imageFile);
         } catch (IOException e) {
-            throw new IllegalArgumentException("Could not load map image from " + imageFile.getAbsolutePath(), e);
+            throw new IllegalArgumentException("Could not load map image from " + imageFile.toAbsolutePath(), e);
         }
-        return mapImage;
     }
 
     /**
-     * Creates habitat field from given image map. Colors are associated to
-     * habitats. If an invalid color is encountered, {@link Habitat#DEFAULT} is
-     * used.
      * 
-     * @see Habitat#getColor()
-     * @param random
-     * @param mapImage
-     * @return populated habitat field
+     * @param rasterPath
+     * @return raw habitat raster mapped from {@code rasterPath}
      */
-    private static IntGrid2D createHabitatGrid(MersenneTwisterFast random, BufferedImage mapImage) {
-        IntGrid2D habitatField = new IntGrid2D(mapImage.getWidth(), mapImage.getHeight());
-        Color color = null;
-        Habitat curHabitat = null;
-        // traverse habitat field and populate from map image
-        for (int y = 0; y < habitatField.getHeight(); y++) {
-            for (int x = 0; x < habitatField.getWidth(); x++) {
-                color = new Color(mapImage.getRGB(x, y));
-                curHabitat = Habitat.valueOf(color);
-
-                if (curHabitat == null) {
-                    logger.warning("Color " + color + " in image " + mapImage + " is not associated to a habitat type. "
-                            + "Using default.");
-                    curHabitat = Habitat.DEFAULT;
-                }
-
-                habitatField.set(x, y, curHabitat.ordinal());
-            }
+    private static HabitatRaster mapHabitatRaster(String rasterPath) {
+        logger.fine("Mapping habitat raster from " + rasterPath);
+        try {
+            return HabitatRaster.map(Paths.get(rasterPath));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not load habitat raster from " + rasterPath, e);
         }
+    }
 
-        return habitatField;
+    /**
+     * 
+     * @param imageData
+     *            the content of the image file
+     * @param imagePath
+     *            the path the image was read from
+     * @return image decoded from {@code imageData}
+     */
+    private static BufferedImage decodeMapImage(byte[] imageData, String imagePath) {
+        try {
+            return ImageIO.read(new ByteArrayInputStream(imageData));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not decode map image from " + imagePath, e);
+        }
     }
 
     /**
@@ -182,18 +203,18 @@ class EnvironmentFactory implements EntityFactory<EnvironmentFactory.MyParam> {
      * range from {@link Habitat} definitions.
      * 
      * @see Habitat#getFoodDensityRange()
-     * @param habitatField
+     * @param habitatMap
      * @param random
      * @return populated food field
      */
-    private static DoubleGrid2D createFoodGrid(IntGrid2D habitatField, MersenneTwisterFast random) {
-        DoubleGrid2D foodField = new DoubleGrid2D(habitatField.getWidth(), habitatField.getHeight());
+    private static DoubleGrid2D createFoodGrid(HabitatMap habitatMap, MersenneTwisterFast random) {
+        DoubleGrid2D foodField = new DoubleGrid2D(habitatMap.getWidth(), habitatMap.getHeight());
         // traverse food grid and populate from habitat rules
         Habitat currentHabitat = null;
         double foodRange, foodVal;
         for (int y = 0; y < foodField.getHeight(); y++) {
             for (int x = 0; x < foodField.getWidth(); x++) {
-                currentHabitat = Habitat.values()[habitatField.get(x, y)];
+                currentHabitat = habitatMap.obtainHabitat(x, y);
 
                 foodRange = currentHabitat.getFoodDensityRange().getEstimatedValue();
                 // random value between 0 and range
@@ -19,6 +19,7 @@ import de.zmt.ecs.Component;
 import de.zmt.ecs.Entity;
 import de.zmt.ecs.EntityFactory;
 import de.zmt.ecs.EntityManager;
+import de.zmt.ecs.component.agent.AgentStore;
 import de.zmt.ecs.component.agent.Aging;
 import de.zmt.ecs.component.agent.Compartments;
 import de.zmt.ecs.component.agent.DynamicScheduling;
@@ -34,6 +35,7 @@ import de.zmt.ecs.component.environment.GlobalPathfindingMaps;
 import de.zmt.ecs.component.environment.HabitatMap;
 import de.zmt.ecs.component.environment.SpeciesPathfindingMaps;
 import de.zmt.ecs.component.environment.WorldDimension;
+import de.zmt.ecs.factory.EnvironmentCache.KeyBuilder;
 import de.zmt.params.EnvironmentDefinition;
 import de.zmt.params.SpeciesDefinition;
 import de.zmt.pathfinding.FlowMap;
@@ -55,6 +57,7 @@ import de.zmt.util.FormulaUtil;
 import de.zmt.util.Habitat;
 import de.zmt.util.UnitConstants;
 import ec.util.MersenneTwisterFast;
+import sim.engine.Kitt;
 import sim.engine.Schedule;
 import sim.engine.SimState;
 import sim.field.grid.BooleanGrid2D;
@@ -78,6 +81,12 @@ public class FishFactory implements EntityFactory<FishFactory.MyParam> {
     /** Fish can spawn everywhere but not in {@link Habitat#MAINLAND}. */
     private static final Set<Habitat> SPAWN_HABITATS = EnumSet.complementOf(EnumSet.of(Habitat.MAINLAND));
 
+    /**
+     * Name for keys of {@link EnvironmentCache} hashed from the content of a
+     * habitat map.
+     */
+    private static final String HABITATS_KEY_NAME = "habitats";
+
     /** Ordering for agent entities in {@link Schedule}. */
     static final int ORDERING = 0;
 
@@ -111,31 +120,47 @@ public class FishFactory implements EntityFactory<FishFactory.MyParam> {
         return new FishEntity(manager, uuid);
     }
 
+    /**
+     * Creates the pathfinding maps for a species. Potential grids are obtained
+     * from {@link EnvironmentCache}, keyed by the habitats and the species
+     * parameters they are derived from.
+     * 
+     * @param environment
+     * @param definition
+     * @return the pathfinding maps for the species
+     */
     private static SpeciesPathfindingMaps createSpeciesFlowMaps(Entity environment, SpeciesDefinition definition) {
         HabitatMap habitatMap = environment.get(HabitatMap.class);
 
-        DoubleGrid2D rawRiskGrid = createPredationRiskGrid(habitatMap, definition);
-        DoubleGrid2D rawToForagingGrid = createHabitatAttractionGrid(
-                definition.getPreferredHabitats(BehaviorMode.FORAGING), habitatMap);
-        DoubleGrid2D rawToRestingGrid = createHabitatAttractionGrid(
-                definition.getPreferredHabitats(BehaviorMode.RESTING), habitatMap);
-
         // even without blur the agent can perceive the adjacent cells
         double blurRadius = definition.getPerceptionRadiusPredation().doubleValue(UnitConstants.WORLD_DISTANCE) - 1;
         Kernel perceptionBlur = KernelFactory.createGaussianBlur(blurRadius);
-        // make risk values range from -1 to 0
-        double riskShift = -definition.getMinPredationRiskFactor();
-        double riskScale = PotentialMap.MAX_REPULSIVE_VALUE
-                / definition.getMaxPredationRiskFactor();
-
-        // shrink mainland so that there is no influence on accessible areas
-        rawRiskGrid = shrinkMainland(definition, habitatMap, perceptionBlur, rawRiskGrid);
-        PotentialMap riskPotentialMap = createFilteredPotentialMap(rawRiskGrid.add(riskShift).multiply(riskScale),
-                perceptionBlur, PathfindingMapType.RISK.getPotentialMapName());
-        PotentialMap toForagingPotentialMap = createFilteredPotentialMap(rawToForagingGrid, perceptionBlur,
-                PathfindingMapType.TO_FORAGE.getPotentialMapName());
-        PotentialMap toRestingPotentialMap = createFilteredPotentialMap(rawToRestingGrid, perceptionBlur,
-                PathfindingMapType.TO_REST.getPotentialMapName());
+        String habitatGridKey = new KeyBuilder(HABITATS_KEY_NAME).add(habitatMap).build();
+
+        KeyBuilder riskKey = new KeyBuilder(PathfindingMapType.RISK.getPotentialMapName()).add(habitatGridKey)
+                .add(blurRadius).add(definition.getMinPredationRiskFactor())
+                .add(definition.getMaxPredationRiskFactor());
+        for (Habitat habitat : Habitat.values()) {
+            riskKey.add(definition.getPredationRiskFactor(habitat));
+        }
+        DoubleGrid2D riskGrid = EnvironmentCache.SHARED.obtainDoubleGrid(riskKey.build(), () -> {
+            // make risk values range from -1 to 0
+            double riskShift = -definition.getMinPredationRiskFactor();
+            double riskScale = PotentialMap.MAX_REPULSIVE_VALUE / definition.getMaxPredationRiskFactor();
+
+            DoubleGrid2D rawRiskGrid = createPredationRiskGrid(habitatMap, definition);
+            // shrink mainland so that there is no influence on accessible areas
+            rawRiskGrid = shrinkMainland(definition, habitatMap, perceptionBlur, rawRiskGrid);
+            return new ConvolveOp(perceptionBlur).filter(rawRiskGrid.add(riskShift).multiply(riskScale));
+        });
+
+        PotentialMap riskPotentialMap = createPotentialMap(riskGrid, PathfindingMapType.RISK.getPotentialMapName());
+        PotentialMap toForagingPotentialMap = createAttractionPotentialMap(
+                definition.getPreferredHabitats(BehaviorMode.FORAGING), habitatMap, habitatGridKey, blurRadius,
+                perceptionBlur, PathfindingMapType.TO_FORAGE.getPotentialMapName());
+        PotentialMap toRestingPotentialMap = createAttractionPotentialMap(
+                definition.getPreferredHabitats(BehaviorMode.RESTING), habitatMap, habitatGridKey, blurRadius,
+                perceptionBlur, PathfindingMapType.TO_REST.getPotentialMapName());
 
         return new SpeciesPathfindingMaps(environment.get(GlobalPathfindingMaps.class), riskPotentialMap,
                 toForagingPotentialMap, toRestingPotentialMap, definition);
@@ -220,20 +245,44 @@ public class FishFactory implements EntityFactory<FishFactory.MyParam> {
     }
 
     /**
-     * Creates a {@link PotentialMap} from given grid, filtered by a
-     * {@link ConvolveOp} with given kernel.
+     * Creates a {@link PotentialMap} attracting towards given habitats,
+     * filtered by a {@link ConvolveOp} with given kernel.
      * 
-     * @param grid
-     *            the grid to filter
+     * @param attractingHabitats
+     *            the habitats that will attract the agent
+     * @param habitatMap
+     * @param habitatGridKey
+     *            the cache key of the habitat grid
+     * @param blurRadius
+     *            the radius {@code kernel} was created with
      * @param kernel
      *            the kernel used for the filtering
      * @param name
      *            the name set to the created potential map
      * @return a {@link PotentialMap} from the filtered grid
      */
-    private static PotentialMap createFilteredPotentialMap(DoubleGrid2D grid, Kernel kernel, String name) {
-        DoubleGrid2D filteredGrid = new ConvolveOp(kernel).filter(grid);
-        SimplePotentialMap potentialMap = new SimplePotentialMap(filteredGrid);
+    private static PotentialMap createAttractionPotentialMap(Set<Habitat> attractingHabitats,
+            HabitatMap habitatMap, String habitatGridKey, double blurRadius, Kernel kernel, String name) {
+        KeyBuilder key = new KeyBuilder(name).add(habitatGridKey).add(blurRadius);
+        for (Habitat habitat : Habitat.values()) {
+            key.add(attractingHabitats.contains(habitat) ? 1 : 0);
+        }
+        DoubleGrid2D grid = EnvironmentCache.SHARED.obtainDoubleGrid(key.build(),
+                () -> new ConvolveOp(kernel).filter(createHabitatAttractionGrid(attractingHabitats, habitatMap)));
+        return createPotentialMap(grid, name);
+    }
+
+    /**
+     * Creates a {@link PotentialMap} from given grid.
+     * 
+     * @param grid
+     *            the grid containing the potentials
+     * @param name
+     *            the name set to the created potential map
+     * @return a {@link PotentialMap} from the grid
+     */
+    private static PotentialMap createPotentialMap(DoubleGrid2D grid, String name) {
+        SimplePotentialMap potentialMap = new SimplePotentialMap(grid);
         potentialMap.setName(name);
         return potentialMap;
     }
@@ -257,17 +306,19 @@ public class FishFactory implements EntityFactory<FishFactory.MyParam> {
         Amount<Power> initialrestingMetabolicRate = FormulaUtil.restingMetabolicRate(initialBiomass);
         Sex sex = definition.determineSex(random);
 
-        // create components
+        // create components, sharing a slot in the environment's store if present
+        AgentStore.Slot slot = environment.has(AgentStore.class) ? environment.get(AgentStore.class).allocate()
+                : AgentStore.Slot.createPrivate();
         Aging aging = new Aging(initialAge, maxAge);
-        Metabolizing metabolizing = new Metabolizing(initialrestingMetabolicRate);
-        Growing growing = new Growing(initialBiomass, initialLength, definition);
+        Metabolizing metabolizing = new Metabolizing(initialrestingMetabolicRate, slot);
+        Growing growing = new Growing(initialBiomass, initialLength, definition, slot);
         Memorizing memorizing = new Memorizing(worldDimension.getWidth(), worldDimension.getHeight());
-        Moving moving = new Moving();
+        Moving moving = new Moving(slot);
         moving.setPosition(position, environmentDefinition);
         moving.setVelocity(Rotation2D.fromAngle(random.nextDouble() * 2 * Math.PI).getVector(), 0);
         LifeCycling lifeCycling = new LifeCycling(sex);
         Flowing flowing = new Flowing(boundaryFlowMap);
-        DynamicScheduling dynamicScheduling = new DynamicScheduling(environmentDefinition.getStepDuration());
+        DynamicScheduling dynamicScheduling = new DynamicScheduling(environmentDefinition.getStepDuration(), slot);
 
         // update phase to match current length
         while (lifeCycling.canChangePhase(definition.canChangeSex())
@@ -318,7 +369,7 @@ public class FishFactory implements EntityFactory<FishFactory.MyParam> {
         if (adultFemale) {
             reproduction = new ReproductionStorage(growing, random, random.nextDouble());
         } else {
-            reproduction = new ReproductionStorage(growing, random);
+            reproduction = new ReproductionStorage(growing);
         }
         return new Compartments(gut, shortterm, fat, protein, reproduction, excess);
     }
@@ -379,7 +430,8 @@ public class FishFactory implements EntityFactory<FishFactory.MyParam> {
         public void step(SimState state) {
             super.step(state);
             if (isAlive()) {
-                state.schedule.scheduleOnce(get(DynamicScheduling.class).getNextTime(), ORDERING, this);
+                ((Kitt) state).getEntityCreationHandler().scheduleAgent(this,
+                        get(DynamicScheduling.class).getNextTime());
             }
         }
 
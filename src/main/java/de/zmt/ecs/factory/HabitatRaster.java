@@ -0,0 +1,401 @@
+package de.zmt.ecs.factory;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import javax.imageio.ImageIO;
+
+import de.zmt.util.Habitat;
+import sim.field.grid.IntGrid2D;
+
+/**
+ * Habitat ordinals of a map, stored row by row in one byte per cell.
+ * <p>
+ * Rasters are either converted from a map image, reading its pixel data in
+ * bulk and looking up habitats by packed RGB, or memory-mapped from a raw
+ * raster file prepared beforehand. Raw raster files end with
+ * {@value #FILE_EXTENSION} and can be written from a map image on the command
+ * line:
+ *
+ * <pre>
+ * java -cp kitt.jar de.zmt.ecs.factory.HabitatRaster map.png map.habitats
+ * </pre>
+ *
+ * Raster sizes are limited to about 2 billion cells.
+ *
+ * @author mey
+ *
+ */
+public final class HabitatRaster {
+    private static final Logger logger = Logger.getLogger(HabitatRaster.class.getName());
+
+    /** Extension of raw raster files. */
+    public static final String FILE_EXTENSION = ".habitats";
+    private static final byte[] MAGIC = { 'K', 'H', 'A', 'B' };
+    private static final short VERSION = 1;
+    /** Magic, version, padding, width and height. */
+    private static final int HEADER_SIZE = MAGIC.length + Short.BYTES + 2 + 2 * Integer.BYTES;
+    private static final Habitat[] HABITATS = Habitat.values();
+    /** Maximum number of unknown colors listed when reporting them. */
+    private static final int MAX_REPORTED_COLORS = 20;
+
+    private final int width;
+    private final int height;
+    /** Habitat ordinals row by row, positioned at the first cell. */
+    private final ByteBuffer cells;
+
+    /**
+     * Constructs a new {@link HabitatRaster}.
+     *
+     * @param width
+     *            the width of the raster
+     * @param height
+     *            the height of the raster
+     * @param cells
+     *            read-only habitat ordinals row by row, positioned at the
+     *            first cell
+     */
+    HabitatRaster(int width, int height, ByteBuffer cells) {
+        this.width = width;
+        this.height = height;
+        this.cells = cells;
+    }
+
+    /**
+     * Converts a map image to a raster. Colors that are not associated with a
+     * habitat are converted to {@link Habitat#DEFAULT} and reported once in a
+     * warning, along with their number of pixels.
+     *
+     * @see Habitat#getColor()
+     * @param image
+     *            the map image
+     * @return the raster of the habitats in {@code image}
+     */
+    public static HabitatRaster fromImage(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        checkSize(width, height);
+        byte[] cells = new byte[width * height];
+        ColorLookup lookup = new ColorLookup();
+
+        Raster raster = image.getRaster();
+        DataBuffer buffer = raster.getDataBuffer();
+        int type = image.getType();
+        // pixel data can be accessed directly if not shared with other images
+        boolean direct = raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0;
+        if (direct && type == BufferedImage.TYPE_BYTE_INDEXED && buffer.getSize() == cells.length) {
+            convertIndexed(((DataBufferByte) buffer).getData(), (IndexColorModel) image.getColorModel(), lookup,
+                    cells);
+        } else if (direct && (type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)
+                && buffer.getSize() == cells.length) {
+            int[] pixels = ((DataBufferInt) buffer).getData();
+            for (int i = 0; i < cells.length; i++) {
+                cells[i] = lookup.resolve(pixels[i]);
+            }
+        } else if (direct && type == BufferedImage.TYPE_3BYTE_BGR && buffer.getSize() == cells.length * 3) {
+            convertInterleaved(((DataBufferByte) buffer).getData(), 3, lookup, cells);
+        } else if (direct && type == BufferedImage.TYPE_4BYTE_ABGR && buffer.getSize() == cells.length * 4) {
+            convertInterleaved(((DataBufferByte) buffer).getData(), 4, lookup, cells);
+        } else {
+            // any other type: let the image convert one row at a time
+            int[] row = new int[width];
+            for (int y = 0; y < height; y++) {
+                image.getRGB(0, y, width, 1, row, 0, width);
+                for (int x = 0; x < width; x++) {
+                    cells[y * width + x] = lookup.resolve(row[x]);
+                }
+            }
+        }
+
+        lookup.reportUnknownColors();
+        return new HabitatRaster(width, height, ByteBuffer.wrap(cells).asReadOnlyBuffer());
+    }
+
+    /** Converts pixels stored as blue, green, red, preceded by alpha if 4 bytes. */
+    private static void convertInterleaved(byte[] pixels, int pixelStride, ColorLookup lookup, byte[] cells) {
+        for (int i = 0, p = pixelStride - 3; i < cells.length; i++, p += pixelStride) {
+            int rgb = (pixels[p + 2] & 0xFF) << 16 | (pixels[p + 1] & 0xFF) << 8 | (pixels[p] & 0xFF);
+            cells[i] = lookup.resolve(rgb);
+        }
+    }
+
+    /** Converts palette indices by looking up every palette entry once. */
+    private static void convertIndexed(byte[] pixels, IndexColorModel colorModel, ColorLookup lookup,
+            byte[] cells) {
+        // indices beyond the map size are black
+        int[] palette = new int[1 << Byte.SIZE];
+        colorModel.getRGBs(palette);
+        byte[] paletteOrdinals = new byte[palette.length];
+        long[] paletteCounts = new long[palette.length];
+        for (int i = 0; i < palette.length; i++) {
+            paletteOrdinals[i] = lookup.find(palette[i]);
+        }
+
+        for (int i = 0; i < cells.length; i++) {
+            int index = pixels[i] & 0xFF;
+            cells[i] = paletteOrdinals[index];
+            paletteCounts[index]++;
+        }
+        for (int i = 0; i < palette.length; i++) {
+            lookup.countUnknown(palette[i], paletteCounts[i]);
+        }
+    }
+
+    /**
+     * Maps a raw raster file read-only.
+     *
+     * @param path
+     *            the path of the raw raster file
+     * @return the raster in the file
+     * @throws IOException
+     *             if the file cannot be read or is not a valid raster file
+     */
+    public static HabitatRaster map(Path path) throws IOException {
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(path + " is not a habitat raster file.");
+            }
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        byte[] magic = new byte[MAGIC.length];
+        data.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException(path + " is not a habitat raster file.");
+        }
+        short version = data.getShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported version " + version + " of " + path + ".");
+        }
+        data.position(HEADER_SIZE - 2 * Integer.BYTES);
+        int width = data.getInt();
+        int height = data.getInt();
+        if (width < 0 || height < 0 || data.remaining() != (long) width * height) {
+            throw new IOException("Size of " + path + " does not match its header.");
+        }
+        return new HabitatRaster(width, height, data.slice());
+    }
+
+    /**
+     * Writes this raster to a raw raster file.
+     *
+     * @param path
+     *            the path of the file
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    public void write(Path path) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put(MAGIC).putShort(VERSION).putShort((short) 0).putInt(width).putInt(height).flip();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (ByteBuffer source : new ByteBuffer[] { header, cells.duplicate() }) {
+                while (source.hasRemaining()) {
+                    channel.write(source);
+                }
+            }
+        }
+    }
+
+    /**
+     * Converts this raster to a grid of habitat ordinals, for callers needing
+     * an int grid. A {@link de.zmt.ecs.component.environment.HabitatMap} can be
+     * constructed from {@link #getCells()} directly.
+     *
+     * @return {@link IntGrid2D} of habitat ordinals
+     * @throws IllegalArgumentException
+     *             if the raster contains an invalid habitat ordinal
+     */
+    public IntGrid2D toGrid() {
+        IntGrid2D grid = new IntGrid2D(width, height);
+        ByteBuffer source = cells.duplicate();
+        byte[] row = new byte[width];
+        for (int y = 0; y < height; y++) {
+            source.get(row);
+            for (int x = 0; x < width; x++) {
+                int ordinal = row[x];
+                if (ordinal < 0 || ordinal >= HABITATS.length) {
+                    throw new IllegalArgumentException(
+                            "Invalid habitat ordinal " + ordinal + " at (" + x + ", " + y + ").");
+                }
+                grid.field[x][y] = ordinal;
+            }
+        }
+        return grid;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns a read-only view on the habitat ordinals, stored row by row.
+     *
+     * @return the habitat ordinals
+     */
+    public ByteBuffer getCells() {
+        return cells.duplicate();
+    }
+
+    private static void checkSize(int width, int height) {
+        if ((long) width * height > Integer.MAX_VALUE - HEADER_SIZE) {
+            throw new IllegalArgumentException("Map of " + width + "x" + height + " is too large.");
+        }
+    }
+
+    /**
+     * Converts a map image to a raw raster file.
+     *
+     * @param args
+     *            the path of the map image and the path of the raw raster
+     *            file to write
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("USAGE: " + HabitatRaster.class.getSimpleName() + " <map image> <output file>");
+            System.exit(1);
+        }
+        BufferedImage image = ImageIO.read(new File(args[0]));
+        if (image == null) {
+            throw new IOException(args[0] + " is not a supported image.");
+        }
+        fromImage(image).write(Paths.get(args[1]));
+    }
+
+    /**
+     * Looks up habitat ordinals by packed RGB in an open addressing hash table
+     * and counts pixels of unknown colors.
+     *
+     * @author mey
+     *
+     */
+    private static class ColorLookup {
+        /** Marks empty slots, cannot be a masked RGB value. */
+        private static final int EMPTY = -1;
+        private static final int RGB_MASK = 0xFFFFFF;
+
+        /** Habitat colors, twice as many slots as habitats. */
+        private final int[] colors;
+        private final byte[] ordinals;
+        /** Number of pixels for every unknown color. */
+        private final Map<Integer, Long> unknownColors = new TreeMap<>();
+
+        /** Last color resolved, as neighboring pixels are mostly the same. */
+        private int lastRgb = EMPTY;
+        private byte lastOrdinal;
+        private boolean lastUnknown;
+        /** Pixels of the last color not yet added to {@link #unknownColors}. */
+        private long pendingUnknownCount;
+
+        public ColorLookup() {
+            int size = Integer.highestOneBit(HABITATS.length) << 2;
+            colors = new int[size];
+            ordinals = new byte[size];
+            Arrays.fill(colors, EMPTY);
+            for (Habitat habitat : HABITATS) {
+                int slot = slot(habitat.getColor().getRGB() & RGB_MASK);
+                colors[slot] = habitat.getColor().getRGB() & RGB_MASK;
+                ordinals[slot] = (byte) habitat.ordinal();
+            }
+        }
+
+        /** @return slot of the color or the empty slot it would be put in */
+        private int slot(int rgb) {
+            int mask = colors.length - 1;
+            int slot = (rgb * 0x9E3779B9 >>> 16) & mask;
+            while (colors[slot] != EMPTY && colors[slot] != rgb) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        /**
+         * Resolves the habitat ordinal of a pixel, counting it if its color is
+         * unknown.
+         *
+         * @param argb
+         *            the color of the pixel, alpha is ignored
+         * @return the habitat ordinal
+         */
+        public byte resolve(int argb) {
+            int rgb = argb & RGB_MASK;
+            if (rgb != lastRgb) {
+                flushUnknown();
+                int slot = slot(rgb);
+                lastRgb = rgb;
+                lastUnknown = colors[slot] == EMPTY;
+                lastOrdinal = lastUnknown ? (byte) Habitat.DEFAULT.ordinal() : ordinals[slot];
+            }
+            if (lastUnknown) {
+                pendingUnknownCount++;
+            }
+            return lastOrdinal;
+        }
+
+        /**
+         * @param argb
+         *            the color, alpha is ignored
+         * @return the habitat ordinal of the color, or that of
+         *         {@link Habitat#DEFAULT} if unknown
+         */
+        public byte find(int argb) {
+            int slot = slot(argb & RGB_MASK);
+            if (colors[slot] == EMPTY) {
+                return (byte) Habitat.DEFAULT.ordinal();
+            }
+            return ordinals[slot];
+        }
+
+        /** Counts pixels of a color if it is unknown. */
+        public void countUnknown(int argb, long count) {
+            int rgb = argb & RGB_MASK;
+            if (count > 0 && colors[slot(rgb)] == EMPTY) {
+                unknownColors.merge(rgb, count, Long::sum);
+            }
+        }
+
+        private void flushUnknown() {
+            countUnknown(lastRgb, pendingUnknownCount);
+            pendingUnknownCount = 0;
+        }
+
+        /** Logs a warning listing unknown colors if there were any. */
+        public void reportUnknownColors() {
+            flushUnknown();
+            if (unknownColors.isEmpty()) {
+                return;
+            }
+            String histogram = unknownColors.entrySet().stream()
+                    .sorted(Map.Entry.<Integer, Long> comparingByValue().reversed()).limit(MAX_REPORTED_COLORS)
+                    .map(entry -> new Color(entry.getKey()) + ": " + entry.getValue() + " pixels")
+                    .collect(Collectors.joining(", "));
+            logger.warning(unknownColors.size() + " colors in map image are not associated to a habitat type. "
+                    + "Using default for: " + histogram
+                    + (unknownColors.size() > MAX_REPORTED_COLORS ? ", ..." : ""));
+        }
+    }
+}
@@ -21,6 +21,7 @@ import de.zmt.params.AgeDistribution;
 import de.zmt.params.EnvironmentDefinition;
 import de.zmt.params.SpeciesDefinition;
 import ec.util.MersenneTwisterFast;
+import sim.engine.AgentScheduler;
 import sim.engine.Schedule;
 
 /**
@@ -53,11 +54,19 @@ public class KittEntityCreationHandler implements Serializable {
 
     private final EntityManager manager;
     private final Schedule schedule;
+    /** Live index of the agents created. */
+    private final Population population = new Population();
+    /**
+     * Scheduler updating agents. If <code>null</code>, agents are scheduled
+     * directly in {@link #schedule}.
+     */
+    private AgentScheduler agentScheduler;
 
     public KittEntityCreationHandler(EntityManager manager, Schedule schedule) {
         super();
         this.manager = manager;
         this.schedule = schedule;
+        manager.addListener(population);
     }
 
     /**
@@ -165,10 +174,29 @@ public class KittEntityCreationHandler implements Serializable {
             MersenneTwisterFast random) {
         Entity fish = FISH_FACTORY.create(getManager(),
                 new FishFactory.MyParam(definition, environment, initialAge, random));
-        schedule.scheduleOnce(fish, FishFactory.ORDERING);
+        population.add(fish);
+        scheduleAgent(fish, schedule.getTime() + 1.0);
         return fish;
     }
 
+    /**
+     * Schedules an agent to be updated at given time, in the
+     * {@link AgentScheduler} if set and the time is within its horizon.
+     * Otherwise the agent is scheduled directly in the {@link Schedule}.
+     * 
+     * @param agent
+     *            the agent to schedule
+     * @param time
+     *            the time the agent is to be updated at
+     */
+    void scheduleAgent(Entity agent, double time) {
+        if (agentScheduler != null && agentScheduler.isWithinHorizon(time)) {
+            agentScheduler.schedule(agent, time);
+        } else {
+            AgentScheduler.runOrDefer(() -> schedule.scheduleOnce(time, FishFactory.ORDERING, agent));
+        }
+    }
+
     /**
      * Creates a new larva. Larvae are fish before reaching the post settlement
      * age. After that, metamorphosis is complete and a fish entity will then
@@ -186,6 +214,7 @@ public class KittEntityCreationHandler implements Serializable {
     public Entity createLarva(SpeciesDefinition definition, Amount<Duration> stepDuration, MersenneTwisterFast random) {
         Entity larva = LARVA_FACTORY.create(getManager(), new LarvaFactory.MyParam(definition,
                 stepDuration, schedule.getTime()));
+        population.add(larva);
         schedule.scheduleOnce(larva.get(Metamorphic.class).getMetamorphosisTime(), LARVA_ORDERING, larva);
         return larva;
     }
@@ -202,4 +231,33 @@ public class KittEntityCreationHandler implements Serializable {
     public EntityManager getManager() {
         return manager;
     }
+
+    /**
+     * Returns the live index of the agents created by this handler, by
+     * species, life phase and kind.
+     * 
+     * @return the {@link Population}
+     */
+    public Population getPopulation() {
+        return population;
+    }
+
+    /**
+     * Sets the {@link AgentScheduler} that fish created from now on are
+     * scheduled in and adds it to the {@link Schedule}. Fish are scheduled
+     * individually if <code>null</code>.
+     * 
+     * @param agentScheduler
+     *            the agent scheduler or <code>null</code>
+     */
+    public void setAgentScheduler(AgentScheduler agentScheduler) {
+        this.agentScheduler = agentScheduler;
+        if (agentScheduler != null) {
+            schedule.scheduleRepeating(schedule.getTime() + 1.0, FishFactory.ORDERING, agentScheduler);
+        }
+    }
+
+    public AgentScheduler getAgentScheduler() {
+        return agentScheduler;
+    }
 }
@@ -0,0 +1,452 @@
+package de.zmt.ecs.factory;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import de.zmt.ecs.Component;
+import de.zmt.ecs.Entity;
+import de.zmt.ecs.EntityListener;
+import de.zmt.ecs.EntityManager;
+import de.zmt.ecs.component.agent.LifeCycling;
+import de.zmt.ecs.component.agent.LifeCycling.Phase;
+import de.zmt.ecs.component.agent.Moving;
+import de.zmt.params.SpeciesDefinition;
+
+/**
+ * Live index of the agents within the simulation, by species, life phase and
+ * kind, i.e. fish or larva. Agents are added when created and removed when
+ * their entity is removed from the {@link EntityManager}, which this index
+ * listens to. Phase changes need to be reported via
+ * {@link #updatePhase(Entity)}, growth and aging via
+ * {@link #updateGrowth(Entity)} and {@link #updateAge(Entity)}.
+ * <p>
+ * Counts are available in constant time, so that they can be checked
+ * frequently, e.g. for every larva created. Every agent gets a compact
+ * sequential ID. {@link Listener}s are notified about changes.
+ * <p>
+ * <b>NOTE:</b> Not thread-safe. Changes need to be made while agents are not
+ * updated in parallel. Only growth and aging can be reported during a
+ * parallel update, because they leave the index unchanged.
+ *
+ * @author mey
+ *
+ */
+public class Population implements EntityListener, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** Members of this population by their entity's {@link UUID}. */
+    private final Map<UUID, Member> members = new HashMap<>();
+    /** Fish, i.e. agents that move. */
+    private final Set<UUID> fish = new HashSet<>();
+    /** Larvae, waiting for metamorphosis. */
+    private final Set<UUID> larvae = new HashSet<>();
+    /** Index for every species. */
+    private final Map<SpeciesDefinition, SpeciesIndex> speciesIndices = new HashMap<>();
+    /** Listeners notified about changes. */
+    private final Collection<Listener> listeners = new ArrayList<>();
+    /** The ID given to the next agent added. */
+    private long nextId = 0;
+
+    /**
+     * Adds an agent. Agents with a {@link Moving} component are added as fish,
+     * others as larvae.
+     *
+     * @param agent
+     *            the agent to add
+     * @throws IllegalArgumentException
+     *             if the agent has no {@link SpeciesDefinition}
+     */
+    public void add(Entity agent) {
+        if (!agent.has(SpeciesDefinition.class)) {
+            throw new IllegalArgumentException(agent + " has no " + SpeciesDefinition.class.getSimpleName() + ".");
+        }
+        UUID uuid = agent.getUuid();
+        remove(uuid, null);
+
+        SpeciesDefinition definition = agent.get(SpeciesDefinition.class);
+        boolean isFish = agent.has(Moving.class);
+        Phase phase = agent.has(LifeCycling.class) ? agent.get(LifeCycling.class).getPhase() : null;
+        Member member = new Member(nextId++, definition, isFish, phase);
+        members.put(uuid, member);
+
+        SpeciesIndex speciesIndex = speciesIndices.computeIfAbsent(definition, key -> new SpeciesIndex());
+        if (isFish) {
+            fish.add(uuid);
+            speciesIndex.fish.add(uuid);
+        } else {
+            larvae.add(uuid);
+            speciesIndex.larvae.add(uuid);
+        }
+        speciesIndex.addToPhase(phase, 1);
+
+        for (Listener listener : listeners) {
+            listener.onAdd(agent, member.id);
+        }
+    }
+
+    /**
+     * Updates the phase of an agent after it has changed. Does nothing if the
+     * agent is not part of this population.
+     *
+     * @param agent
+     *            the agent that changed its phase
+     */
+    public void updatePhase(Entity agent) {
+        Member member = members.get(agent.getUuid());
+        if (member == null || !agent.has(LifeCycling.class)) {
+            return;
+        }
+        Phase phase = agent.get(LifeCycling.class).getPhase();
+        SpeciesIndex speciesIndex = speciesIndices.get(member.definition);
+        speciesIndex.addToPhase(member.phase, -1);
+        speciesIndex.addToPhase(phase, 1);
+        Phase oldPhase = member.phase;
+        member.phase = phase;
+
+        for (Listener listener : listeners) {
+            listener.onPhaseChange(agent, member.id, oldPhase);
+        }
+    }
+
+    /**
+     * Notifies listeners that the biomass or length of an agent has changed.
+     * Does nothing if the agent is not part of this population. Can be called
+     * while agents are updated in parallel.
+     *
+     * @param agent
+     *            the agent that has grown
+     */
+    public void updateGrowth(Entity agent) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        Member member = members.get(agent.getUuid());
+        if (member == null) {
+            return;
+        }
+        for (Listener listener : listeners) {
+            listener.onGrowth(agent, member.id);
+        }
+    }
+
+    /**
+     * Notifies listeners that an agent has aged. Does nothing if the agent is
+     * not part of this population. Can be called while agents are updated in
+     * parallel.
+     *
+     * @param agent
+     *            the agent that has aged
+     */
+    public void updateAge(Entity agent) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        Member member = members.get(agent.getUuid());
+        if (member == null) {
+            return;
+        }
+        for (Listener listener : listeners) {
+            listener.onAging(agent, member.id);
+        }
+    }
+
+    /**
+     * Removes an agent. Does nothing if the agent is not part of this
+     * population.
+     *
+     * @param uuid
+     *            the {@link UUID} of the agent's entity
+     * @param manager
+     *            the entity manager still containing the agent's components
+     *            to notify listeners, <code>null</code> to skip notifying
+     */
+    private void remove(UUID uuid, EntityManager manager) {
+        Member member = members.get(uuid);
+        if (member == null) {
+            return;
+        }
+        if (manager != null && !listeners.isEmpty()) {
+            Entity agent = Entity.loadFromEntityManager(manager, uuid);
+            for (Listener listener : listeners) {
+                listener.onRemove(agent, member.id);
+            }
+        }
+        members.remove(uuid);
+        SpeciesIndex speciesIndex = speciesIndices.get(member.definition);
+        if (member.fish) {
+            fish.remove(uuid);
+            speciesIndex.fish.remove(uuid);
+        } else {
+            larvae.remove(uuid);
+            speciesIndex.larvae.remove(uuid);
+        }
+        speciesIndex.addToPhase(member.phase, -1);
+    }
+
+    /** Removes all agents without notifying listeners and resets IDs. */
+    public void clear() {
+        members.clear();
+        fish.clear();
+        larvae.clear();
+        speciesIndices.clear();
+        nextId = 0;
+    }
+
+    /**
+     * Synchronizes this population with the agents found in {@code manager},
+     * e.g. after loading from a checkpoint. Agents already indexed keep their
+     * IDs. Listening to the manager is renewed as well.
+     *
+     * @param manager
+     *            the entity manager containing the agents
+     */
+    public void rebuild(EntityManager manager) {
+        manager.removeListener(this);
+        Set<UUID> uuids = manager.getAllEntitiesPossessingComponent(SpeciesDefinition.class);
+        for (UUID uuid : new ArrayList<>(members.keySet())) {
+            if (!uuids.contains(uuid)) {
+                remove(uuid, null);
+            }
+        }
+        for (UUID uuid : uuids) {
+            if (!members.containsKey(uuid)) {
+                add(Entity.loadFromEntityManager(manager, uuid));
+            }
+        }
+        manager.addListener(this);
+    }
+
+    /**
+     * Adds a listener to be notified about changes.
+     *
+     * @param listener
+     *            the listener to add
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener.
+     *
+     * @param listener
+     *            the listener to remove
+     */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @param uuid
+     *            the {@link UUID} of the agent's entity
+     * @return the sequential ID of the agent or <code>-1</code> if it is not
+     *         part of this population
+     */
+    public long getId(UUID uuid) {
+        Member member = members.get(uuid);
+        return member == null ? -1 : member.id;
+    }
+
+    /** @return the number of agents, i.e. fish and larvae */
+    public int getAgentCount() {
+        return members.size();
+    }
+
+    /** @return the number of fish */
+    public int getFishCount() {
+        return fish.size();
+    }
+
+    /** @return the number of larvae */
+    public int getLarvaCount() {
+        return larvae.size();
+    }
+
+    /**
+     * @param definition
+     *            the species definition
+     * @return the number of agents of given species, i.e. fish and larvae
+     */
+    public int getAgentCount(SpeciesDefinition definition) {
+        SpeciesIndex speciesIndex = speciesIndices.get(definition);
+        return speciesIndex == null ? 0 : speciesIndex.fish.size() + speciesIndex.larvae.size();
+    }
+
+    /**
+     * @param definition
+     *            the species definition
+     * @param phase
+     *            the phase
+     * @return the number of fish of given species in given phase
+     */
+    public int getFishCount(SpeciesDefinition definition, Phase phase) {
+        SpeciesIndex speciesIndex = speciesIndices.get(definition);
+        return speciesIndex == null ? 0 : speciesIndex.phaseCounts[phase.ordinal()];
+    }
+
+    /** @return the {@link UUID}s of all fish (unmodifiable) */
+    public Set<UUID> getFish() {
+        return Collections.unmodifiableSet(fish);
+    }
+
+    /**
+     * @param definition
+     *            the species definition
+     * @return the {@link UUID}s of all fish of given species (unmodifiable)
+     */
+    public Set<UUID> getFish(SpeciesDefinition definition) {
+        SpeciesIndex speciesIndex = speciesIndices.get(definition);
+        return speciesIndex == null ? Collections.emptySet() : Collections.unmodifiableSet(speciesIndex.fish);
+    }
+
+    /** @return the {@link UUID}s of all larvae (unmodifiable) */
+    public Set<UUID> getLarvae() {
+        return Collections.unmodifiableSet(larvae);
+    }
+
+    @Override
+    public void onAddComponent(UUID uuid, Component component, EntityManager manager) {
+        // agents are added on creation
+    }
+
+    @Override
+    public void onRemoveComponent(UUID uuid, Component component, EntityManager manager) {
+        if (component instanceof SpeciesDefinition) {
+            remove(uuid, null);
+        }
+    }
+
+    @Override
+    public void onRemoveEntity(UUID uuid, EntityManager manager) {
+        remove(uuid, manager);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[fish=" + fish.size() + ", larvae=" + larvae.size() + "]";
+    }
+
+    /**
+     * Indexed properties of an agent.
+     *
+     * @author mey
+     *
+     */
+    private static class Member implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final long id;
+        private final SpeciesDefinition definition;
+        private final boolean fish;
+        /** Phase of the fish, <code>null</code> for larvae. */
+        private Phase phase;
+
+        public Member(long id, SpeciesDefinition definition, boolean fish, Phase phase) {
+            this.id = id;
+            this.definition = definition;
+            this.fish = fish;
+            this.phase = phase;
+        }
+    }
+
+    /**
+     * Listener notified about changes in a {@link Population}. Needs to be
+     * serializable if the population is.
+     * <p>
+     * Growth and aging are reported while agents are updated, which can be
+     * concurrently for different agents. Other notifications are made while
+     * no agents are updated.
+     *
+     * @author mey
+     *
+     */
+    public static interface Listener {
+        /**
+         * Called after an agent was added.
+         *
+         * @param agent
+         *            the agent
+         * @param id
+         *            the sequential ID of the agent
+         */
+        default void onAdd(Entity agent, long id) {
+        }
+
+        /**
+         * Called after the phase of an agent was updated.
+         *
+         * @param agent
+         *            the agent
+         * @param id
+         *            the sequential ID of the agent
+         * @param oldPhase
+         *            the phase before
+         */
+        default void onPhaseChange(Entity agent, long id, Phase oldPhase) {
+        }
+
+        /**
+         * Called after the biomass or length of an agent has changed. Can be
+         * called concurrently for different agents.
+         *
+         * @param agent
+         *            the agent
+         * @param id
+         *            the sequential ID of the agent
+         */
+        default void onGrowth(Entity agent, long id) {
+        }
+
+        /**
+         * Called after an agent has aged. Can be called concurrently for
+         * different agents.
+         *
+         * @param agent
+         *            the agent
+         * @param id
+         *            the sequential ID of the agent
+         */
+        default void onAging(Entity agent, long id) {
+        }
+
+        /**
+         * Called before an agent is removed, e.g. because it died. Its
+         * components are still accessible.
+         *
+         * @param agent
+         *            the agent
+         * @param id
+         *            the sequential ID of the agent
+         */
+        default void onRemove(Entity agent, long id) {
+        }
+    }
+
+    /**
+     * Index for agents of a species.
+     *
+     * @author mey
+     *
+     */
+    private static class SpeciesIndex implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final Set<UUID> fish = new HashSet<>();
+        private final Set<UUID> larvae = new HashSet<>();
+        /** Number of fish for every {@link Phase}, by ordinal. */
+        private final int[] phaseCounts = new int[Phase.values().length];
+
+        private void addToPhase(Phase phase, int delta) {
+            if (phase != null) {
+                phaseCounts[phase.ordinal()] += delta;
+            }
+        }
+    }
+}
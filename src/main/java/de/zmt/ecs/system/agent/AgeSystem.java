@@ -14,6 +14,7 @@ import de.zmt.ecs.EntitySystem;
 import de.zmt.ecs.component.agent.Aging;
 import de.zmt.ecs.component.agent.DynamicScheduling;
 import de.zmt.ecs.component.agent.LifeCycling.CauseOfDeath;
+import de.zmt.ecs.factory.Population;
 import de.zmt.ecs.system.agent.move.MoveSystem;
 import sim.engine.SimState;
 
@@ -52,6 +53,10 @@ public class AgeSystem extends AgentSystem {
         // increase age
         Aging aging = entity.get(Aging.class);
         Amount<Duration> newAge = aging.addAge(deltaTime);
+        Population population = getPopulation(state);
+        if (population != null) {
+            population.updateAge(entity);
+        }
         if (newAge.isGreaterThan(aging.getMaxAge())) {
             killAgent(entity, CauseOfDeath.OLD_AGE);
         }
@@ -4,13 +4,18 @@ import java.util.logging.Logger;
 
 import de.zmt.ecs.AbstractSystem;
 import de.zmt.ecs.Entity;
+import de.zmt.ecs.component.agent.AgentStore;
 import de.zmt.ecs.component.agent.Aging;
 import de.zmt.ecs.component.agent.Growing;
 import de.zmt.ecs.component.agent.LifeCycling;
 import de.zmt.ecs.component.agent.LifeCycling.CauseOfDeath;
 import de.zmt.ecs.factory.FishFactory;
-import de.zmt.output.LifeCyclingData;
+import de.zmt.ecs.factory.Population;
 import de.zmt.params.SpeciesDefinition;
+import ec.util.MersenneTwisterFast;
+import sim.engine.AgentScheduler;
+import sim.engine.Kitt;
+import sim.engine.SimState;
 
 /**
  * Super class for kitt Systems used to update agents.
@@ -23,22 +28,71 @@ public abstract class AgentSystem extends AbstractSystem {
     private static final Logger logger = Logger.getLogger(AgentSystem.class.getName());
 
     /**
-     * Kill the entity with given cause of death.
+     * Kill the entity with given cause of death. If agents are updated in
+     * parallel, the agent is marked as killed but removed not until the
+     * current pass of the {@link AgentScheduler} is finished.
      * 
      * @param agent
      *            the agent to kill
      * @param causeOfDeath
      */
     protected void killAgent(Entity agent, CauseOfDeath causeOfDeath) {
+        if (isKilled(agent)) {
+            return;
+        }
         if (agent.has(LifeCycling.class)) {
             // preferably use the species name
             String agentString = agent.has(SpeciesDefinition.class) ? agent.get(SpeciesDefinition.class).getName()
                     : agent.toString();
             logger.fine(agentString + causeOfDeath.getMessage());
             agent.get(LifeCycling.class).die(causeOfDeath);
+        }
+        AgentScheduler.runOrDefer(() -> {
+            AgentStore.release(agent);
+            agent.stop();
+        });
+    }
+
+    /**
+     * Returns {@code true} if the agent has been killed but not yet removed,
+     * which happens when agents are updated in parallel. Systems with effects
+     * beyond the agent itself should skip these.
+     * 
+     * @param agent
+     *            the agent
+     * @return {@code true} if the agent has been killed
+     */
+    protected static boolean isKilled(Entity agent) {
+        return agent.has(LifeCycling.class) && agent.get(LifeCycling.class).getCauseOfDeath() != CauseOfDeath.NONE;
+    }
 
-                LifeCyclingData.registerFish(agent);
+    /**
+     * Returns the random number generator to be used when updating agents.
+     * 
+     * @see Kitt#getAgentRandom()
+     * @param state
+     *            the simulation state
+     * @return the random number generator for updating agents
+     */
+    protected static MersenneTwisterFast getRandom(SimState state) {
+        if (state instanceof Kitt) {
+            return ((Kitt) state).getAgentRandom();
+        }
+        return state.random;
+    }
+
+    /**
+     * Returns the population to report changes of agents to.
+     *
+     * @param state
+     *            the simulation state
+     * @return the population or <code>null</code> if not simulating in
+     *         {@link Kitt}
+     */
+    protected static Population getPopulation(SimState state) {
+        if (state instanceof Kitt) {
+            return ((Kitt) state).getEntityCreationHandler().getPopulation();
         }
-        agent.stop();
+        return null;
     }
 }
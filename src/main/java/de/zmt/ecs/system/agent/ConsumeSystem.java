@@ -8,8 +8,6 @@ import javax.measure.quantity.Duration;
 import javax.measure.quantity.Energy;
 
 import de.zmt.ecs.component.agent.*;
-import de.zmt.ecs.component.environment.SimulationTime;
-import de.zmt.util.TimeOfDay;
 import org.jscience.physics.amount.Amount;
 
 import de.zmt.ecs.Component;
@@ -17,10 +15,10 @@ import de.zmt.ecs.Entity;
 import de.zmt.ecs.EntitySystem;
 import de.zmt.ecs.component.agent.Compartments.TransferDigestedResult;
 import de.zmt.ecs.component.agent.LifeCycling.CauseOfDeath;
+import de.zmt.ecs.factory.Population;
 import de.zmt.ecs.system.agent.move.MoveSystem;
 import de.zmt.util.FormulaUtil;
 import de.zmt.util.UnitConstants;
-import sim.engine.Kitt;
 import sim.engine.SimState;
 
 /**
@@ -97,14 +95,6 @@ public class ConsumeSystem extends AgentSystem {
         Moving moving = entity.get(Moving.class);
         Growing growing = entity.get(Growing.class);
         Amount<Duration> deltaTime = entity.get(DynamicScheduling.class).getDeltaTime();
-        TimeOfDay timeOfDay = ((Kitt) state).getEnvironment().get(SimulationTime.class).getTimeOfDay();
-
-        //only because amount is unreliable and causes precision errors which cause phantom content
-        //therefore clear once a day to keep error negligible
-        if(((Kitt) state).getEnvironment().get(SimulationTime.class).isFirstStepInDay(deltaTime)
-                && timeOfDay == TimeOfDay.NIGHT) {
-            compartments.clearGut();
-        }
 
         Amount<Energy> costRestingMetabolism = metabolizing.getRestingMetabolicRate().times(deltaTime)
                 .to(UnitConstants.CELLULAR_ENERGY);
@@ -120,10 +110,14 @@ public class ConsumeSystem extends AgentSystem {
 
         // also called when growing, but new values needed for killing the fish
         compartments.computeBiomassAndEnergy(growing);
+        Population population = getPopulation(state);
+        if (population != null) {
+            population.updateGrowth(entity);
+        }
 
         // if the needed energy is not available the fish starves to death
             //killAgent only if actual Biomass < 0.6*expectedBiomass
-            if(growing.getBiomass().compareTo(growing.getExpectedBiomass().times(0.6d)) == -1)
+            if(growing.getBiomassValue() < growing.getExpectedBiomassValue() * 0.6d)
             killAgent(entity, CauseOfDeath.STARVATION);
     }
 
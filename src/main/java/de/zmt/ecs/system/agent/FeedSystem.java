@@ -25,7 +25,7 @@ import de.zmt.util.AmountUtil;
 import de.zmt.util.UnitConstants;
 import sim.engine.Kitt;
 import sim.engine.SimState;
-import sim.util.Double2D;
+import sim.util.Int2D;
 
 /**
  * Let entities retrieve available food at their current position and trigger
@@ -78,10 +78,12 @@ public class FeedSystem extends AgentSystem {
     private Amount<Frequency> ingestionRate = Amount.valueOf(0.0,UnitConstants.PER_DAY)
             .to(UnitConstants.PER_SIMULATION_TIME);
 
-    private Amount<Mass> desiredFoodAmount = Amount.valueOf(0.0,UnitConstants.FOOD);
-
     @Override
     protected void systemUpdate(Entity entity, SimState state) {
+        // do not take food from others if already killed
+        if (isKilled(entity)) {
+            return;
+        }
         Metabolizing metabolizing = entity.get(Metabolizing.class);
         Compartments compartments = entity.get(Compartments.class);
         Entity environment = ((Kitt) state).getEnvironment();
@@ -89,20 +91,22 @@ public class FeedSystem extends AgentSystem {
         Kitt kitt = (Kitt) state;
         Amount<Duration> deltaTime = entity.get(DynamicScheduling.class).getDeltaTime();
 
-        computeDesiredFoodAmount(entity.get(Growing.class), compartments, speciesDefinition, deltaTime);
+        Amount<Mass> desiredFoodAmount = computeDesiredFoodAmount(entity.get(Growing.class), compartments,
+                speciesDefinition, deltaTime);
 
         if (metabolizing.isFeeding()) {
             // fetch necessary components and data
             EnvironmentDefinition environmentDefinition = environment.get(EnvironmentDefinition.class);
-            Double2D worldPosition = entity.get(Moving.class).getWorldPosition();
+            // map position is kept related to world position when moving
+            Int2D mapPosition = entity.get(Moving.class).getMapPosition();
             Amount<Length> perceptionRadiusFood = speciesDefinition.getPerceptionRadiusFood();
 
             // calculate available food from density
-            FoundFood foundFood = environment.get(FoodMap.class).findAvailableFood(worldPosition, perceptionRadiusFood,
+            FoundFood foundFood = environment.get(FoodMap.class).findAvailableFood(mapPosition, perceptionRadiusFood,
                     environmentDefinition);
 
-            Amount<Mass> rejectedFood = feed(foundFood.getAvailableFood(), entity.get(Growing.class).getBiomass(),
-                    metabolizing, speciesDefinition, compartments,entity.get(Growing.class), deltaTime);
+            Amount<Mass> rejectedFood = feed(foundFood.getAvailableFood(), metabolizing, speciesDefinition,
+                    compartments, entity.get(Growing.class), deltaTime, desiredFoodAmount);
 
             // call back to return rejected food
             foundFood.returnRejected(rejectedFood);
@@ -121,21 +125,27 @@ public class FeedSystem extends AgentSystem {
      * @param availableFood
      *            the available food to consume within the accessible
      *            environment
-     * @param biomass
-     *            biomass of the agent
      * @param metabolizing
      * @param speciesDefinition
      * @param compartments
+     * @param growing
+     *            containing biomass and expected biomass of the agent
      * @param deltaTime
      *            the delta time after the last iteration
+     * @param desiredFoodAmount
+     *            the amount of food needed to reach the expected biomass
      * @return rejectedFood food that cannot be consumed due to max ingestion
      *         rate and gut capacity
      */
-    private Amount<Mass> feed(Amount<Mass> availableFood, Amount<Mass> biomass, Metabolizing metabolizing,
-            SpeciesDefinition speciesDefinition, Compartments compartments,Growing growing, Amount<Duration> deltaTime) {
+    private Amount<Mass> feed(Amount<Mass> availableFood, Metabolizing metabolizing,
+            SpeciesDefinition speciesDefinition, Compartments compartments, Growing growing, Amount<Duration> deltaTime,
+            Amount<Mass> desiredFoodAmount) {
         Amount<Mass> rejectedFood;
 
         if (availableFood.getEstimatedValue() > 0) {
+            double biomassValue = growing.getBiomassValue();
+            double expectedBiomassValue = growing.getExpectedBiomassValue();
+            Amount<Mass> biomass = Amount.valueOf(biomassValue, UnitConstants.BIOMASS);
             // consumption rate depends on fish biomass
             Amount<Mass> ingestionAmount = biomass.times(speciesDefinition.getMeanIngestionRate().times(deltaTime))
                     .to(UnitConstants.BIOMASS);
@@ -143,11 +153,11 @@ public class FeedSystem extends AgentSystem {
                     .to(UnitConstants.BIOMASS);
 
             //if current biomass < 90% of expected -> use maxIngestionRate
-            if (biomass.isLessThan(growing.getExpectedBiomass().times(0.98))) {
+            if (biomassValue < expectedBiomassValue * 0.98) {
                 ingestionAmount = AmountUtil.max(ingestionAmount, desiredFoodAmount);
 
             //if current biomass > 110% of expected -> use minIngestionRate, otherwise meanIngestionRate is used
-            } else if (biomass.isGreaterThan(growing.getExpectedBiomass().times(1.03))) {
+            } else if (biomassValue > expectedBiomassValue * 1.03) {
                 ingestionAmount = minIngestionAmount;
 
             }
@@ -186,23 +196,24 @@ public class FeedSystem extends AgentSystem {
      * if a fish has less than it's expected biomass(including variation) it's missing
      * mass an therefore gets hungry and tries to eat more, if this is not the case
      * isMissingBiomass in compartments is set to false, which causes the fish to not be hungry anymore
+     *
+     * @return the desired food amount or zero if no biomass is missing
      */
-    private void computeDesiredFoodAmount(Growing growing, Compartments compartments, SpeciesDefinition def,
+    private Amount<Mass> computeDesiredFoodAmount(Growing growing, Compartments compartments, SpeciesDefinition def,
                                           Amount<Duration> deltaTime){
-        Amount<Mass> expectedBiomass = growing.getExpectedBiomass();
-        Amount<Mass> biomass = growing.getBiomass();
-
-        Amount<Mass> missingBiomass = expectedBiomass.minus(biomass);
-        compartments.setIsMissingBiomass(missingBiomass.isGreaterThan(Amount.valueOf(0.0,UnitConstants.BIOMASS)));
+        double biomassValue = growing.getBiomassValue();
+        double missingBiomassValue = growing.getExpectedBiomassValue() - biomassValue;
+        compartments.setIsMissingBiomass(missingBiomassValue > 0);
 
         if(compartments.isMissingBiomass()){
-            Amount<Energy> missingEnergy =
-                    Amount.valueOf(missingBiomass.times(Compartment.Type.KJ_PER_GRAM_PROTEIN_VALUE).getEstimatedValue(),
-                    UnitConstants.CELLULAR_ENERGY);
+            Amount<Energy> missingEnergy = Amount.valueOf(
+                    missingBiomassValue * Compartment.Type.KJ_PER_GRAM_PROTEIN_VALUE, UnitConstants.CELLULAR_ENERGY);
+            Amount<Mass> biomass = Amount.valueOf(biomassValue, UnitConstants.BIOMASS);
 
-             desiredFoodAmount = AmountUtil.min(missingEnergy.divide(def.getEnergyContentFood()).to(UnitConstants.FOOD),
+             return AmountUtil.min(missingEnergy.divide(def.getEnergyContentFood()).to(UnitConstants.FOOD),
                      biomass.times(def.getMaxIngestionRate().times(deltaTime)).to(UnitConstants.BIOMASS));
         }
+        return AmountUtil.zero(UnitConstants.FOOD);
     }
 
 
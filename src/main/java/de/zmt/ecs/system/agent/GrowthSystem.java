@@ -6,12 +6,13 @@ import de.zmt.ecs.EntitySystem;
 import de.zmt.ecs.component.agent.*;
 import de.zmt.ecs.component.agent.LifeCycling.Phase;
 import de.zmt.ecs.component.environment.SimulationTime;
+import de.zmt.ecs.factory.Population;
 import de.zmt.params.SpeciesDefinition;
 import de.zmt.util.FormulaUtil;
 import de.zmt.util.UnitConstants;
 import ec.util.MersenneTwisterFast;
 import org.jscience.physics.amount.Amount;
-import sim.engine.Kitt;
+import sim.engine.AgentScheduler;
 import sim.engine.SimState;
 
 import javax.measure.quantity.Duration;
@@ -20,7 +21,6 @@ import javax.measure.quantity.Mass;
 import javax.measure.quantity.Power;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
 
 import static javax.measure.unit.NonSI.*;
 
@@ -78,11 +78,12 @@ partition "Can Change Phase" {
  */
 public class GrowthSystem extends AgentSystem {
     private static final double ALLOW_NEXT_PHASE_PROBABILITY_FACTOR_PER_SECOND_PER_LENGTH_VALUE = 0.01;
+    /** Interval for updating length and phase (s). */
+    private static final double LENGTH_UPDATE_INTERVAL_VALUE = Amount.valueOf(1, WEEK)
+            .doubleValue(UnitConstants.SIMULATION_TIME);
 
     private final double nextPhaseMaxLengthVariation;
 
-    private HashMap<Entity, Amount<Duration>> timers = new HashMap<>();
-
     /**
      * Factor per time frame and body length to calculate the probability for
      * phase change.
@@ -101,14 +102,9 @@ public class GrowthSystem extends AgentSystem {
         Aging aging = entity.get(Aging.class);
         SpeciesDefinition definition = entity.get(SpeciesDefinition.class);
         Amount<Duration> deltaTime = entity.get(DynamicScheduling.class).getDeltaTime();
-        Amount<Duration> timer = timers.get(entity);
-        if(timer == null){
-            timer = deltaTime;
-            timers.put(entity, timer);
-        } else {
-            timer = timer.plus(deltaTime);
-            timers.put(entity,timer);
-        }
+        Population population = getPopulation(state);
+        double timeSinceLengthUpdate = growing
+                .addTimeSinceLengthUpdate(deltaTime.doubleValue(UnitConstants.SIMULATION_TIME));
 
         entity.get(Compartments.class).computeBiomassAndEnergy(growing);
         Amount<Mass> biomass = growing.getBiomass();
@@ -119,25 +115,31 @@ public class GrowthSystem extends AgentSystem {
         //update expected biomass based on current age
         growing.setExpectedBiomass(computeExpectedBiomass(definition, entity.get(Aging.class), deltaTime));
 
-        if(timer.isGreaterThan(Amount.valueOf(1, WEEK))) {
+        if (timeSinceLengthUpdate > LENGTH_UPDATE_INTERVAL_VALUE) {
             //grow in length
-            Amount<Length> lengthOld = growing.getLength();
+            double lengthOld = growing.getLengthValue();
             growing.setLength(FormulaUtil.expectedLength(definition.getLengthMassCoeff(), biomass,
                         definition.getInvLengthMassExponent()));
             //to prevent fish from shrinking
-            if (lengthOld.isLargerThan(growing.getLength())) {
-                growing.setLength(lengthOld);
+            if (lengthOld > growing.getLengthValue()) {
+                growing.setLengthValue(lengthOld);
             }
             //change phase if possible
             if (lifeCycling.canChangePhase(definition.canChangeSex())
                     && isNextPhaseAllowed(aging.getAge(), growing.getLength(), lifeCycling.getPhase(),
                     definition.getNextPhaseStartLength(lifeCycling.getPhase()),
                     definition.getNextPhase100PercentMaturityLength(lifeCycling.getPhase()),
-                    nextPhaseMaxLengthVariation, state.random)) {
+                    nextPhaseMaxLengthVariation, getRandom(state))) {
                         lifeCycling.enterNextPhase();
+                        if (population != null) {
+                            AgentScheduler.runOrDefer(() -> population.updatePhase(entity));
+                        }
             }
-            timer = Amount.valueOf(0, UnitConstants.SIMULATION_TIME);
-            timers.put(entity, timer);
+            growing.resetTimeSinceLengthUpdate();
+        }
+
+        if (population != null) {
+            population.updateGrowth(entity);
         }
     }
 
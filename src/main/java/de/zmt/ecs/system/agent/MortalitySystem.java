@@ -2,8 +2,8 @@ package de.zmt.ecs.system.agent;
 
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 import java.util.logging.Logger;
 
@@ -22,6 +22,7 @@ import de.zmt.ecs.component.environment.HabitatMap;
 import de.zmt.ecs.system.agent.move.MoveSystem;
 import de.zmt.params.SpeciesDefinition;
 import de.zmt.util.Habitat;
+import ec.util.MersenneTwisterFast;
 import sim.engine.Kitt;
 import sim.engine.SimState;
 import sim.util.Int2D;
@@ -95,9 +96,10 @@ public class MortalitySystem extends AgentSystem {
         double predationRisk = naturalMortalityRisk
                 * entity.get(SpeciesDefinition.class).getPredationRiskFactor(habitat);
 
-        if (state.random.nextBoolean(predationRisk)) {
+        MersenneTwisterFast random = getRandom(state);
+        if (random.nextBoolean(predationRisk)) {
             killAgent(entity, CauseOfDeath.PREDATION);
-        } else if (state.random.nextBoolean(naturalMortalityRisk)) {
+        } else if (random.nextBoolean(naturalMortalityRisk)) {
             killAgent(entity, CauseOfDeath.NATURAL);
         }
     }
@@ -121,7 +123,7 @@ public class MortalitySystem extends AgentSystem {
      *
      */
     private static class RiskCache {
-        private final Map<Amount<Duration>, Double> map = new HashMap<>();
+        private final Map<Amount<Duration>, Double> map = new ConcurrentHashMap<>();
 
         /**
          * Returns the natural mortality risk from cache for the given duration.
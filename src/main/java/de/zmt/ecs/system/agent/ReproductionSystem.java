@@ -17,6 +17,7 @@ import de.zmt.ecs.factory.KittEntityCreationHandler;
 import de.zmt.params.EnvironmentDefinition;
 import de.zmt.params.SpeciesDefinition;
 import ec.util.MersenneTwisterFast;
+import sim.engine.AgentScheduler;
 import sim.engine.Kitt;
 import sim.engine.SimState;
 
@@ -47,25 +48,48 @@ stop
 @formatter:on
  */
 public class ReproductionSystem extends AgentSystem {
-    private long lastRecruitment = 0;
-    /** Clears reproduction storage and creates offspring. */
+    /** Steps between recruitments of open populations (1 month). */
+    private static final long RECRUITMENT_INTERVAL_STEPS = 2592000;
+
+    /** Read concurrently when agents are updated in parallel. */
+    private volatile long lastRecruitment = 0;
+
+    /**
+     * Clears reproduction storage and creates offspring. Larvae creation is
+     * deferred if agents are updated in parallel.
+     */
     @Override
     protected void systemUpdate(Entity entity, SimState state) {
+        if (isKilled(entity)) {
+            return;
+        }
         LifeCycling lifeCycling = entity.get(LifeCycling.class);
         SpeciesDefinition def = entity.get(SpeciesDefinition.class);
-
-        //2592000 = 1 Month
-        if ((lifeCycling.isAdultFemale() && entity.get(Compartments.class).tryReproduction() != null && def.isPopulationClosed())
-                || (!def.isPopulationClosed() && (state.schedule.getSteps() - lastRecruitment) >= 2592000)) {
-
-            Kitt kitt = (Kitt) state;
-            EnvironmentDefinition environmentDefinition = kitt.getParams().getEnvironmentDefinition();
-                reproduce(def, environmentDefinition.getMaxAgentCount(),
-                        environmentDefinition.getStepDuration(), kitt.getEntityCreationHandler(), kitt.random);
-                lastRecruitment = state.schedule.getSteps();
+        Kitt kitt = (Kitt) state;
+        EnvironmentDefinition environmentDefinition = kitt.getParams().getEnvironmentDefinition();
+
+        boolean reproduced = lifeCycling.isAdultFemale()
+                && entity.get(Compartments.class).tryReproduction(getRandom(state)) != null;
+
+        if (reproduced && def.isPopulationClosed()) {
+            AgentScheduler.runOrDefer(() -> reproduce(def, environmentDefinition.getMaxAgentCount(),
+                    environmentDefinition.getStepDuration(), kitt.getEntityCreationHandler(), kitt.random));
+        } else if (!def.isPopulationClosed() && isRecruitmentDue(state)) {
+            // check again when deferred, only one agent may trigger recruitment
+            AgentScheduler.runOrDefer(() -> {
+                if (isRecruitmentDue(state)) {
+                    reproduce(def, environmentDefinition.getMaxAgentCount(), environmentDefinition.getStepDuration(),
+                            kitt.getEntityCreationHandler(), kitt.random);
+                    lastRecruitment = state.schedule.getSteps();
+                }
+            });
         }
     }
 
+    private boolean isRecruitmentDue(SimState state) {
+        return state.schedule.getSteps() - lastRecruitment >= RECRUITMENT_INTERVAL_STEPS;
+    }
+
     /**
      * Creates larvae according to definition.
      * 
@@ -92,8 +116,7 @@ public class ReproductionSystem extends AgentSystem {
 
         for (int i = 0; i < count; i++) {
             // cancel larva creation if there are too many agents
-            if (entityCreationHandler.getManager().getAllEntitiesPossessingComponent(SpeciesDefinition.class)
-                    .size() >= maxAgentCount) {
+            if (entityCreationHandler.getPopulation().getAgentCount() >= maxAgentCount) {
                 break;
             }
             entityCreationHandler.createLarva(speciesDefinition, stepDuration, random);
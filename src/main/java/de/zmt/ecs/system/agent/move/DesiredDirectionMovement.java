@@ -2,14 +2,14 @@ package de.zmt.ecs.system.agent.move;
 
 import static sim.util.DirectionConstants.NEUTRAL;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import javax.measure.quantity.Duration;
 import javax.measure.quantity.Length;
 
 import org.jscience.physics.amount.Amount;
 
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Table;
-
 import de.zmt.ecs.Entity;
 import de.zmt.ecs.component.agent.DynamicScheduling;
 import de.zmt.ecs.component.agent.Growing;
@@ -27,7 +27,6 @@ import ec.util.MersenneTwisterFast;
 import sim.engine.Kitt;
 import sim.util.Double2D;
 import sim.util.Int2D;
-import sim.util.MutableDouble2D;
 import sim.util.Rotation2D;
 
 /**
@@ -53,7 +52,7 @@ abstract class DesiredDirectionMovement implements MovementStrategy {
         Amount<Length> length = entity.get(Growing.class).getLength();
         Habitat habitat = environment.get(HabitatMap.class).obtainHabitat(moving.getMapPosition());
 
-        double speedMPerS = computeSpeed(behaviorMode, length, definition, habitat, state.random);
+        double speedMPerS = computeSpeed(behaviorMode, length, definition, habitat, state.getAgentRandom());
         EnvironmentDefinition environmentDefinition = environment.get(EnvironmentDefinition.class);
         dynamicScheduling.setSkip(state.schedule.getTime(),
                 computeStepsToSkip(speedMPerS, environmentDefinition.getMapScale(),
@@ -69,7 +68,7 @@ abstract class DesiredDirectionMovement implements MovementStrategy {
 
         Amount<Duration> deltaTime = dynamicScheduling.getDeltaTime();
         Double2D direction = computeDirection(moving.getDirection(), computeDesiredDirection(entity, state),
-                rotationCache.request(definition, deltaTime), state.random);
+                rotationCache.request(definition, deltaTime), state.getAgentRandom());
         assert direction.equals(NEUTRAL)
                 || Math.abs(direction.lengthSq() - 1) < 1e-10d : "Direction must be a unit vector but has length "
                         + direction.length() + ".";
@@ -77,7 +76,8 @@ abstract class DesiredDirectionMovement implements MovementStrategy {
         moving.setVelocity(direction, speedMPerS);
 
         double deltaTimeValue = deltaTime.doubleValue(UnitConstants.VELOCITY_TIME);
-        updatePosition(moving, direction.multiply(speedMPerS).multiply(deltaTimeValue), environment);
+        updatePosition(moving, direction.x * speedMPerS * deltaTimeValue, direction.y * speedMPerS * deltaTimeValue,
+                environment);
     }
 
     /**
@@ -181,32 +181,36 @@ abstract class DesiredDirectionMovement implements MovementStrategy {
      * 
      * @param moving
      *            the {@link Moving} component to be updated
-     * @param positionChange
-     *            the change in position for the current step
+     * @param changeX
+     *            the change in position x for the current step
+     * @param changeY
+     *            the change in position y for the current step
      * @param environment
      *            the environment entity
      */
-    private static void updatePosition(Moving moving, Double2D positionChange, Entity environment) {
-        Double2D worldPosition = moving.getWorldPosition();
+    private static void updatePosition(Moving moving, double changeX, double changeY, Entity environment) {
+        double worldX = moving.getWorldX();
+        double worldY = moving.getWorldY();
         // multiply velocity with delta time (minutes) and add it to position
-        MutableDouble2D newWorldPosition = new MutableDouble2D(worldPosition.add(positionChange));
+        double newWorldX = worldX + changeX;
+        double newWorldY = worldY + changeY;
 
         // reflect on vertical border - invert horizontal velocity
         WorldDimension worldDimension = environment.get(WorldDimension.class);
-        if (newWorldPosition.x >= worldDimension.getWidth() || newWorldPosition.x < 0) {
-            newWorldPosition.x = worldPosition.x - positionChange.x;
+        if (newWorldX >= worldDimension.getWidth() || newWorldX < 0) {
+            newWorldX = worldX - changeX;
         }
         // reflect on horizontal border - invert vertical velocity
-        if (newWorldPosition.y >= worldDimension.getHeight() || newWorldPosition.y < 0) {
-            newWorldPosition.y = worldPosition.y - positionChange.y;
+        if (newWorldY >= worldDimension.getHeight() || newWorldY < 0) {
+            newWorldY = worldY - changeY;
         }
 
-        Int2D newMapPosition = environment.get(EnvironmentDefinition.class).worldToMap(new Double2D(newWorldPosition));
+        Int2D newMapPosition = environment.get(EnvironmentDefinition.class).worldToMap(newWorldX, newWorldY);
         Habitat habitat = environment.get(HabitatMap.class).obtainHabitat(newMapPosition);
 
         // only move further if habitat is accessible
         if (habitat.isAccessible()) {
-            moving.setPosition(new Double2D(newWorldPosition), newMapPosition);
+            moving.setPosition(newWorldX, newWorldY, newMapPosition);
         }
     }
 
@@ -234,7 +238,8 @@ abstract class DesiredDirectionMovement implements MovementStrategy {
      *
      */
     private static class RotationCache {
-        private final Table<SpeciesDefinition, Amount<Duration>, Rotation2D> table = HashBasedTable.create();
+        /** Concurrent to allow updating agents in parallel. */
+        private final Map<SpeciesDefinition, Map<Amount<Duration>, Rotation2D>> map = new ConcurrentHashMap<>();
 
         /**
          * Retrieves maximum rotation per step from cache if possible or
@@ -247,12 +252,8 @@ abstract class DesiredDirectionMovement implements MovementStrategy {
          * @return the maximum rotation allowed within this duration
          */
         private Rotation2D request(SpeciesDefinition definition, Amount<Duration> deltaTime) {
-            Rotation2D maxRotationPerStep = table.get(definition, deltaTime);
-            if (maxRotationPerStep == null) {
-                maxRotationPerStep = definition.determineMaxRotationPerStep(deltaTime);
-                table.put(definition, deltaTime, maxRotationPerStep);
-            }
-            return maxRotationPerStep;
+            return map.computeIfAbsent(definition, key -> new ConcurrentHashMap<>()).computeIfAbsent(deltaTime,
+                    definition::determineMaxRotationPerStep);
         }
     }
 }
\ No newline at end of file
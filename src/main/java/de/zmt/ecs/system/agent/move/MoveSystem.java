@@ -22,7 +22,6 @@ import de.zmt.ecs.system.agent.BehaviorSystem;
 import de.zmt.params.SpeciesDefinition;
 import sim.engine.Kitt;
 import sim.engine.SimState;
-import sim.util.Double2D;
 
 /**
  * Executes movement of simulation agents.
@@ -122,10 +121,10 @@ public class MoveSystem extends AgentSystem {
         // execute movement strategy for selected move mode
         movementStrategies.get(entity.get(SpeciesDefinition.class).getMoveMode()).move(entity, kittState);
 
-        Double2D position = entity.get(Moving.class).getWorldPosition();
         // update memory
         if (entity.has(Memorizing.class)) {
-            entity.get(Memorizing.class).increase(position);
+            Moving moving = entity.get(Moving.class);
+            entity.get(Memorizing.class).increase(moving.getWorldX(), moving.getWorldY());
         }
     }
 
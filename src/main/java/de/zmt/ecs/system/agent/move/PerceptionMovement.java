@@ -7,6 +7,8 @@ import org.jscience.physics.amount.Amount;
 import de.zmt.ecs.Entity;
 import de.zmt.ecs.component.agent.Metabolizing;
 import de.zmt.ecs.component.agent.Metabolizing.BehaviorMode;
+import de.zmt.ecs.component.agent.Moving;
+import de.zmt.ecs.component.environment.FoodMap;
 import de.zmt.ecs.component.environment.SimulationTime;
 import de.zmt.ecs.component.environment.SpeciesPathfindingMaps;
 import de.zmt.params.SpeciesDefinition;
@@ -14,6 +16,7 @@ import de.zmt.pathfinding.FlowMap;
 import de.zmt.util.Habitat;
 import ec.util.MersenneTwisterFast;
 import sim.engine.Kitt;
+import sim.util.Int2D;
 
 /**
  * Strategy using flow fields to move towards most attractive neighbor location,
@@ -33,7 +36,8 @@ class PerceptionMovement extends FlowMapMovement {
     /**
      * Returns a flow map attracting to food if feeding or to the destination
      * habitats if migrating. Predation risk and boundaries are always repulsive
-     * within the returned map.
+     * within the returned map. Changes in food around the agent are
+     * propagated to the pathfinding maps before the feeding flow is returned.
      */
     @Override
     protected FlowMap specifyFlow(Entity entity, Kitt state) {
@@ -44,6 +48,8 @@ class PerceptionMovement extends FlowMapMovement {
                 .get(entity.get(SpeciesDefinition.class));
 
         if (metabolizing.isFeeding()) {
+            Int2D mapPosition = entity.get(Moving.class).getMapPosition();
+            environment.get(FoodMap.class).updatePathfinding(mapPosition.x, mapPosition.y);
             return speciesPathfindingMaps.getFeedingFlowMap();
         } else if (metabolizing.getBehaviorMode() == BehaviorMode.MIGRATING) {
             SpeciesDefinition definition = entity.get(SpeciesDefinition.class);
@@ -7,6 +7,7 @@ import java.util.Collection;
 
 import javax.measure.quantity.Duration;
 import javax.measure.quantity.Frequency;
+import javax.measure.unit.Unit;
 
 import org.jscience.physics.amount.Amount;
 
@@ -15,12 +16,10 @@ import de.zmt.ecs.Component;
 import de.zmt.ecs.Entity;
 import de.zmt.ecs.EntitySystem;
 import de.zmt.ecs.component.environment.FoodMap;
-import de.zmt.ecs.component.environment.HabitatMap;
 import de.zmt.ecs.component.environment.SimulationTime;
 import de.zmt.params.EnvironmentDefinition;
 import de.zmt.util.FormulaUtil;
 import de.zmt.util.Habitat;
-import de.zmt.util.quantity.AreaDensity;
 import sim.engine.SimState;
 
 /**
@@ -64,7 +63,7 @@ public class FoodSystem extends AbstractSystem {
         EnvironmentDefinition environmentDefinition = entity.get(EnvironmentDefinition.class);
         if (entity.get(SimulationTime.class).isFirstStepInDay(environmentDefinition.getStepDuration())) {
             growFood(Amount.valueOf(1, DAY), environmentDefinition.getAlgalGrowthRate(),
-                    entity.get(FoodMap.class), entity.get(HabitatMap.class));
+                    entity.get(FoodMap.class));
         }
     }
 
@@ -75,30 +74,11 @@ public class FoodSystem extends AbstractSystem {
      * @param delta
      * @param algalGrowthRate
      * @param foodMap
-     * @param habitatMap
      */
-    private static void growFood(Amount<Duration> delta, Amount<Frequency> algalGrowthRate, FoodMap foodMap,
-            HabitatMap habitatMap) {
-        for (int y = 0; y < foodMap.getHeight(); y++) {
-            for (int x = 0; x < foodMap.getWidth(); x++) {
-                Habitat habitat = habitatMap.obtainHabitat(x, y);
-
-                if (!habitat.isAccessible()) {
-                    continue;
-                }
-
-                // total food density is the available plus minimum
-                Amount<AreaDensity> totalFoodDensity = foodMap.getFoodDensity(x, y);
-
-                Amount<AreaDensity> grownFoodDensity = FormulaUtil
-                        .growAlgae(totalFoodDensity, habitat.getFoodDensityMax(), algalGrowthRate, delta);
-
-                if(grownFoodDensity.isLessThan(habitat.getFoodDensityMin()))
-                    grownFoodDensity = habitat.getFoodDensityMin();
-
-                foodMap.setFoodDensity(x, y, grownFoodDensity);
-            }
-        }
+    private static void growFood(Amount<Duration> delta, Amount<Frequency> algalGrowthRate, FoodMap foodMap) {
+        // P + r * P * dt = P * (1 + r * dt)
+        double growthFactor = 1 + algalGrowthRate.times(delta).to(Unit.ONE).getEstimatedValue();
+        foodMap.growFood(growthFactor);
     }
 
     @Override
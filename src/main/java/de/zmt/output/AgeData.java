@@ -1,18 +1,15 @@
 package de.zmt.output;
 
-import java.text.DecimalFormat;
-import java.text.NumberFormat;
 import java.util.*;
 import java.util.stream.Collectors;
 
 import javax.measure.quantity.Duration;
 
-import de.zmt.ecs.component.agent.Growing;
-import de.zmt.ecs.component.agent.LifeCycling;
 import org.jscience.physics.amount.Amount;
 
-import de.zmt.ecs.Entity;
-import de.zmt.ecs.component.agent.Aging;
+import de.zmt.output.PopulationStatistics.Snapshot;
+import de.zmt.output.RowWriter.Column;
+import de.zmt.output.RowWriter.Type;
 import de.zmt.output.collectable.AbstractCollectable;
 import de.zmt.output.collectable.CategoryCollectable;
 import de.zmt.output.collector.StrategyCollector;
@@ -34,125 +31,103 @@ class AgeData extends AbstractCollectable<String> {
      * 
      * @param definitions
      *            the set of species definitions
+     * @param statistics
+     *            the statistics to collect from
      * @return the {@link StrategyCollector} for collecting age data
      */
-    public static StrategyCollector<?> createCollector(Collection<? extends SpeciesDefinition> definitions) {
-        df.applyPattern(FORMAT_PATTERN);
-        intf.applyPattern(INTEGER_PATTERN);
-        return StrategyCollector.create(new MyCategoryCollectable(definitions), new MyCollectStrategy());
+    public static StrategyCollector<?> createCollector(Collection<? extends SpeciesDefinition> definitions,
+            PopulationStatistics statistics) {
+        return StrategyCollector.create(new MyCategoryCollectable(definitions), new MyCollectStrategy(statistics));
     }
 
     private static final int PARTITIONS_COUNT = 11;
 
-    /**
-     * formats a number without separator(1,000,000 to 1000000)
-     * and with 2 digits in the decimal space(1.79 to 1.8)
-     * the 0 makes it so that the digit will always be displayed even if it's 0
-     */
-    private static final String FORMAT_PATTERN = "##0.0#######";
-    /**
-     * formats a number without separator(1,000,000 to 1000000)
-     * and with 2 digits in the decimal space(1.79 to 1.8)
-     * the 0 makes it so that the digit will always be displayed even if it's 0
-     * used for integer
-     */
-    private static final String INTEGER_PATTERN = "##0";
+    private static final List<String> PHASES = Arrays.asList("JUV","IP","TP");
 
-    /**
-     * defines the local as US, so a dot(.) is used for the decimal point(e.g. 1000.9 instead of 1000,9)
-     */
-    private static final Locale LOCALE = new Locale("en", "US");
+    /** times 3 because 3 phases*/
+    private final List<String> headers;
+    private final List<String> values = new ArrayList<>(PARTITIONS_COUNT*3);
+    /** Snapshot collected last, formatted when values are obtained. */
+    private Snapshot snapshot;
 
-    private static final DecimalFormat df = (DecimalFormat) NumberFormat.getNumberInstance(LOCALE);
     /**
-     * Integer format
+     * @param definition
+     *            the species definition to obtain partitions from
      */
-    private static final DecimalFormat intf = (DecimalFormat) NumberFormat.getNumberInstance(LOCALE);
-
-    /** Minimum age that can be collected */
-    private final Amount<Duration> minAge;
-    /** Intervals stored as maximum amounts for each partition */
-    private final List<Amount<Duration>> intervals = new ArrayList<>(PARTITIONS_COUNT*3);
-    /** times 3 because 3 phases*/
-    private final List<String> headers = new ArrayList<>(PARTITIONS_COUNT*3);
-    private final List<String> values = new ArrayList<>(PARTITIONS_COUNT*3);
-    private final List<String> PHASES = Arrays.asList("JUV","IP","TP");
+    private AgeData(SpeciesDefinition definition) {
+        headers = createHeaders(definition);
+        for (int i = 0; i < headers.size(); i++) {
+            values.add(obtainInitialValue());
+        }
+    }
 
     /**
-     * @param minAge
-     *            lowest value that can be collected for this class
-     * @param maxAge
-     *            highest value that can be collected for this class
+     * @param definition
+     *            the species definition to obtain partitions from
+     * @return headers for every partition and phase
      */
-    private AgeData(Amount<Duration> minAge, Amount<Duration> maxAge) {
-        this.minAge = minAge;
-        //Amount<Duration> range = maxAge.minus(minAge);
-        Amount<Duration> interval = maxAge.divide(PARTITIONS_COUNT);
-
-        Amount<Duration> intervalMin = Amount.valueOf(0, minAge.getUnit());
-            for (int i = 0; i < PARTITIONS_COUNT; i++) {
-                Amount<Duration> intervalMax = minAge.plus(interval.times(i + 1)).minus(minAge);
-                String intervalString = df.format(intervalMin.doubleValue(UnitConstants.AGE_GUI))
-                        + "-" + df.format(intervalMax.doubleValue(UnitConstants.AGE_GUI))
+    private static List<String> createHeaders(SpeciesDefinition definition) {
+        List<String> headers = new ArrayList<>(PARTITIONS_COUNT*3);
+        DecimalFormatter formatter = DecimalFormatter.DEFAULT;
+        Amount<Duration> intervalMin = Amount.valueOf(0, definition.getPostSettlementAge().getUnit());
+            for (Amount<Duration> intervalMax : obtainIntervalMaxima(definition)) {
+                String intervalString = formatter.format(intervalMin.doubleValue(UnitConstants.AGE_GUI))
+                        + "-" + formatter.format(intervalMax.doubleValue(UnitConstants.AGE_GUI))
                         + " " + UnitConstants.AGE_GUI.toString()+"s";
 
                 for(int k=0; k<3; ++k) {
-                    intervals.add(intervalMax);
                     headers.add(PHASES.get(k)+"_"+intervalString);
-                    values.add(obtainInitialValue());
                 }
 
                 // current interval's maximum is next one's minimum
                 intervalMin = intervalMax;
             }
+        return headers;
     }
 
     /**
-     * Increase count for partition associated with {@code age}.
-     * 
-     * @param age
+     * @param definition
+     *            the species definition to obtain partitions from
+     * @return columns written to file, named like the headers
      */
-    public void increase(Amount<Duration> age, LifeCycling.Phase phase) {
-        int intervalIndex = findIntervalIndex(age, phase);
-        int count =  Integer.parseInt(values.get(intervalIndex));
-        values.set(intervalIndex, intf.format(count + 1));
+    static List<Column> obtainColumns(SpeciesDefinition definition) {
+        return createHeaders(definition).stream().map(header -> new Column(header, Type.LONG))
+                .collect(Collectors.toList());
     }
 
     /**
+     * Adds values for the columns to the row currently written.
      * 
-     * @param age
-     * @return index of partition that {@code age} fits into.
+     * @param writer
+     *            the writer to add to
+     * @param snapshot
+     *            the snapshot of the species
      */
-    private int findIntervalIndex(Amount<Duration> age, LifeCycling.Phase phase) {
-        if (age.isLessThan(minAge)) {
-            throw new IllegalArgumentException(age + " is lower than minimum.");
+    static void addValues(RowWriter writer, Snapshot snapshot) {
+        for (int i = 0; i < snapshot.getAgeCountsSize(); i++) {
+            writer.add(snapshot.getAgeCount(i));
         }
+    }
 
-        ListIterator<Amount<Duration>> iterator = intervals.listIterator();
-        Amount<Duration> intervalMax;
-        int index = 0;
-        do {
-            if (!iterator.hasNext()) {
-                throw new IllegalArgumentException(age + " exceeds maximum.");
-            }
-            index = iterator.nextIndex();
-            intervalMax = iterator.next();
-
-        } while (age.isGreaterThan(intervalMax));
-
-        //each interval occurs 3 times, once for each phase
-        //index will be the last occurence before next ageclass and therefore terminal phase
-        //(juvenile, initial, terminal)
-        if(phase == LifeCycling.Phase.INITIAL)
-            index += 1;
-        else if(phase == LifeCycling.Phase.TERMINAL)
-            index += 2;
-
-
-
-        return index;
+    /**
+     * Partitions range from post settlement age to overall maximum age of the
+     * species.
+     * 
+     * @param definition
+     *            the species definition
+     * @return the maximum age of every partition
+     */
+    static List<Amount<Duration>> obtainIntervalMaxima(SpeciesDefinition definition) {
+        Amount<Duration> minAge = definition.getPostSettlementAge();
+        Amount<Duration> interval = definition.getOverallMaxAge().divide(PARTITIONS_COUNT);
+        List<Amount<Duration>> intervalMaxima = new ArrayList<>(PARTITIONS_COUNT);
+        for (int i = 0; i < PARTITIONS_COUNT; i++) {
+            intervalMaxima.add(minAge.plus(interval.times(i + 1)).minus(minAge));
+        }
+        return intervalMaxima;
     }
 
+
     @Override
     protected String obtainInitialValue() {
         return "0";
@@ -165,6 +140,12 @@ class AgeData extends AbstractCollectable<String> {
 
     @Override
     public List<String> obtainValues() {
+        if (snapshot != null) {
+            for (int i = 0; i < values.size(); i++) {
+                values.set(i, Integer.toString(snapshot.getAgeCount(i)));
+            }
+            snapshot = null;
+        }
         return values;
     }
 
@@ -186,32 +167,27 @@ class AgeData extends AbstractCollectable<String> {
          */
         public MyCategoryCollectable(Collection<? extends SpeciesDefinition> definitions) {
             super(definitions.stream().collect(Collectors.toMap(definition -> definition,
-                    definition -> new AgeData(definition.getPostSettlementAge(), definition.getOverallMaxAge()))));
+                    definition -> new AgeData(definition))));
         }
     }
 
     /**
-     * {@link CollectStrategy} updating {@link AgeData} for every agent.
+     * {@link CollectStrategy} updating {@link AgeData} for every species.
      * 
      * @author mey
      *
      */
-    private static class MyCollectStrategy extends ClearingBeforeStrategy<MyCategoryCollectable> {
+    private static class MyCollectStrategy extends StatisticsCollectStrategy<MyCategoryCollectable> {
         private static final long serialVersionUID = 1L;
 
-        @Override
-        protected void collect(AgentCollectMessage message, MyCategoryCollectable categoryCollectable) {
-            Entity agent = message.getSimObject();
-            SpeciesDefinition definition = agent.get(SpeciesDefinition.class);
-            Aging aging = agent.get(Aging.class);
-            LifeCycling lifeCycling = agent.get(LifeCycling.class);
-
-            if (definition == null || aging == null || lifeCycling == null) {
-                return;
-            }
+        public MyCollectStrategy(PopulationStatistics statistics) {
+            super(statistics);
+        }
 
-            AgeData data = categoryCollectable.getCollectable(definition);
-            data.increase(aging.getAge(), lifeCycling.getPhase());
+        @Override
+        protected void collect(SpeciesCollectMessage message, MyCategoryCollectable categoryCollectable) {
+            Snapshot snapshot = message.getSimObject();
+            categoryCollectable.getCollectable(snapshot.getDefinition()).snapshot = snapshot;
         }
     }
 
@@ -0,0 +1,340 @@
+package de.zmt.output;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes text to a file on a background thread. Text is appended to a chunk
+ * on the calling thread, which is handed over to the background thread when
+ * full. A fixed number of chunks is recycled, so that memory stays constant.
+ * If the background thread falls behind, appending blocks until a chunk is
+ * available again.
+ * <p>
+ * Callers already running on their own thread can open the writer without a
+ * background thread, see {@link #open(Path, boolean, boolean)}. Full chunks
+ * are then written on the calling thread.
+ * <p>
+ * Appending is not thread-safe and needs to be done from a single thread.
+ *
+ * @author mey
+ *
+ */
+class AsyncTextWriter implements Closeable {
+    @SuppressWarnings("unused")
+    private static final Logger logger = Logger.getLogger(AsyncTextWriter.class.getName());
+
+    /** Number of characters after which a chunk is handed over. */
+    private static final int CHUNK_SIZE = 1 << 16;
+    /** Number of chunks, including the one currently appended to. */
+    private static final int CHUNK_COUNT = 4;
+
+    /** Chunks waiting to be written, with space left for the end of stream. */
+    private final BlockingQueue<StringBuilder> filledChunks = new ArrayBlockingQueue<>(CHUNK_COUNT + 1);
+    /** Chunks available for appending. */
+    private final BlockingQueue<StringBuilder> freeChunks = new ArrayBlockingQueue<>(CHUNK_COUNT);
+    /** Marks the end of the stream, compared by identity. */
+    private final StringBuilder endOfStream = new StringBuilder(0);
+    /** Requests flushing the file, compared by identity. */
+    private final StringBuilder syncRequest = new StringBuilder(0);
+    /** Released by the background thread when the file is flushed. */
+    private final Semaphore synced = new Semaphore(0);
+    /** The writer to the file, used directly if there is no background thread. */
+    private final Writer writer;
+    /** The background thread, <code>null</code> if writing on the calling thread. */
+    private final Thread writerThread;
+
+    /** The chunk currently appended to. */
+    private StringBuilder chunk = new StringBuilder(CHUNK_SIZE);
+    /** Set if writing failed on the background thread. */
+    private volatile IOException failure;
+    private boolean closed = false;
+
+    /**
+     * Opens the file at {@code path} and starts the background thread.
+     *
+     * @param path
+     *            the path of the file to write to
+     * @param options
+     *            options specifying how the file is opened
+     * @throws IOException
+     *             if the file cannot be opened
+     */
+    public AsyncTextWriter(Path path, OpenOption... options) throws IOException {
+        this(path, true, options);
+    }
+
+    /**
+     * Opens the file at {@code path}.
+     *
+     * @param path
+     *            the path of the file to write to
+     * @param background
+     *            <code>true</code> to write on a background thread,
+     *            <code>false</code> to write on the calling thread
+     * @param options
+     *            options specifying how the file is opened
+     * @throws IOException
+     *             if the file cannot be opened
+     */
+    private AsyncTextWriter(Path path, boolean background, OpenOption... options) throws IOException {
+        writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, options);
+        if (!background) {
+            writerThread = null;
+            return;
+        }
+        for (int i = 1; i < CHUNK_COUNT; i++) {
+            freeChunks.add(new StringBuilder(CHUNK_SIZE));
+        }
+        writerThread = new Thread(() -> writeChunks(writer), "writer-" + path.getFileName());
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Opens a writer for the file at {@code path}, creating missing parent
+     * directories.
+     *
+     * @param path
+     *            the path of the file to write to
+     * @param append
+     *            <code>true</code> to append to an existing file,
+     *            <code>false</code> to replace it
+     * @return the writer
+     * @throws IOException
+     *             if the file cannot be opened
+     */
+    public static AsyncTextWriter open(Path path, boolean append) throws IOException {
+        return open(path, append, true);
+    }
+
+    /**
+     * Opens a writer for the file at {@code path}, creating missing parent
+     * directories.
+     *
+     * @param path
+     *            the path of the file to write to
+     * @param append
+     *            <code>true</code> to append to an existing file,
+     *            <code>false</code> to replace it
+     * @param background
+     *            <code>true</code> to write on a background thread,
+     *            <code>false</code> to write on the calling thread
+     * @return the writer
+     * @throws IOException
+     *             if the file cannot be opened
+     */
+    public static AsyncTextWriter open(Path path, boolean append, boolean background) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        if (append) {
+            return new AsyncTextWriter(path, background, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        return new AsyncTextWriter(path, background);
+    }
+
+    /** Writes chunks until the end of stream, run on the background thread. */
+    private void writeChunks(Writer writer) {
+        try (Writer closingWriter = writer) {
+            while (true) {
+                StringBuilder filledChunk = filledChunks.take();
+                if (filledChunk == endOfStream) {
+                    break;
+                }
+                if (filledChunk == syncRequest) {
+                    if (failure == null) {
+                        try {
+                            closingWriter.flush();
+                        } catch (IOException e) {
+                            failure = e;
+                        }
+                    }
+                    synced.release();
+                    continue;
+                }
+                // keep recycling chunks after failure to not block appending
+                if (failure == null) {
+                    try {
+                        closingWriter.append(filledChunk);
+                    } catch (IOException e) {
+                        failure = e;
+                    }
+                }
+                filledChunk.setLength(0);
+                freeChunks.put(filledChunk);
+            }
+        } catch (IOException e) {
+            if (failure == null) {
+                failure = e;
+            }
+        } catch (InterruptedException e) {
+            logger.log(Level.WARNING, "Interrupted while writing.", e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the chunk to append text to. The chunk is only valid until the
+     * next call to any method of this writer.
+     *
+     * @return the chunk to append to
+     * @throws UncheckedIOException
+     *             if writing has failed
+     */
+    public StringBuilder chunk() {
+        checkState();
+        return chunk;
+    }
+
+    /**
+     * Hands over the current chunk if it is full. Needs to be called after
+     * text was appended to the chunk.
+     *
+     * @throws UncheckedIOException
+     *             if writing has failed
+     */
+    public void commit() {
+        if (chunk.length() >= CHUNK_SIZE) {
+            handOver();
+        }
+    }
+
+    /**
+     * Appends text.
+     *
+     * @param text
+     *            the text to append
+     * @throws UncheckedIOException
+     *             if writing has failed
+     */
+    public void append(CharSequence text) {
+        chunk().append(text);
+        commit();
+    }
+
+    /**
+     * Hands over the current chunk to the background thread, without waiting
+     * for it being written. Without background thread, the chunk is written
+     * to the file right away.
+     *
+     * @throws UncheckedIOException
+     *             if writing has failed
+     */
+    public void flush() {
+        checkState();
+        if (chunk.length() > 0) {
+            handOver();
+        }
+    }
+
+    /**
+     * Writes all text appended so far to the file and waits until done,
+     * keeping the file open.
+     *
+     * @throws IOException
+     *             if writing has failed
+     */
+    public void sync() throws IOException {
+        try {
+            flush();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (writerThread == null) {
+            return;
+        }
+        try {
+            filledChunks.put(syncRequest);
+            synced.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for text to be written.", e);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void handOver() {
+        if (writerThread == null) {
+            try {
+                writer.append(chunk);
+                writer.flush();
+            } catch (IOException e) {
+                failure = e;
+                throw new UncheckedIOException(e);
+            } finally {
+                chunk.setLength(0);
+            }
+            return;
+        }
+        try {
+            filledChunks.put(chunk);
+            chunk = freeChunks.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while handing over text to be written.", e);
+        }
+    }
+
+    private void checkState() {
+        if (closed) {
+            throw new IllegalStateException("Writer is closed.");
+        }
+        if (failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+    }
+
+    /**
+     * Writes all remaining text and waits until the file is closed.
+     *
+     * @throws IOException
+     *             if writing has failed
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        if (writerThread == null) {
+            closed = true;
+            try (Writer closingWriter = writer) {
+                if (failure == null) {
+                    closingWriter.append(chunk);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return;
+        }
+        try {
+            if (chunk.length() > 0) {
+                filledChunks.put(chunk);
+            }
+            filledChunks.put(endOfStream);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing.", e);
+        } finally {
+            closed = true;
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
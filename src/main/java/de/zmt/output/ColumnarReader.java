@@ -0,0 +1,235 @@
+package de.zmt.output;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.InflaterInputStream;
+
+import de.zmt.output.RowWriter.Column;
+import de.zmt.output.RowWriter.Type;
+
+/**
+ * Reads files written in {@link RowWriter.Format#BINARY} block by block. Can
+ * be run from the command line to export a file to tab-separated text:
+ *
+ * <pre>
+ * java -cp kitt.jar de.zmt.output.ColumnarReader input.kcol [output.csv]
+ * </pre>
+ *
+ * @see ColumnarWriter
+ * @author mey
+ *
+ */
+public class ColumnarReader implements Closeable {
+    private static final char SEPARATOR = '\t';
+
+    private final DataInputStream input;
+    private final List<Column> columns;
+
+    /** Values of the current block by column, arrays of matching type. */
+    private final Object[] values;
+    private int rowCount = 0;
+
+    /**
+     * Opens the file at {@code path} and reads its schema header.
+     *
+     * @param path
+     *            the path of the file
+     * @throws IOException
+     *             if the file cannot be read or is not in the expected format
+     */
+    public ColumnarReader(Path path) throws IOException {
+        input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16));
+        try {
+            byte[] magic = new byte[ColumnarWriter.MAGIC.length];
+            input.readFully(magic);
+            if (!Arrays.equals(magic, ColumnarWriter.MAGIC)) {
+                throw new IOException(path + " is not a columnar output file.");
+            }
+            short version = input.readShort();
+            if (version != ColumnarWriter.VERSION) {
+                throw new IOException("Unsupported version " + version + " of " + path + ".");
+            }
+            int columnCount = input.readInt();
+            List<Column> columns = new ArrayList<>(columnCount);
+            for (int i = 0; i < columnCount; i++) {
+                String name = input.readUTF();
+                columns.add(new Column(name, ColumnarWriter.typeOf(input.readByte())));
+            }
+            this.columns = Collections.unmodifiableList(columns);
+            this.values = new Object[columnCount];
+        } catch (IOException | RuntimeException e) {
+            input.close();
+            throw e;
+        }
+    }
+
+    /** @return the columns of the file */
+    public List<Column> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Reads the next block of rows.
+     *
+     * @return the number of rows read or <code>-1</code> at the end of file
+     * @throws IOException
+     *             if the block cannot be read
+     */
+    public int readBlock() throws IOException {
+        int firstByte = input.read();
+        if (firstByte < 0) {
+            rowCount = 0;
+            return -1;
+        }
+        rowCount = firstByte << 24 | input.readUnsignedByte() << 16 | input.readUnsignedByte() << 8
+                | input.readUnsignedByte();
+
+        for (int i = 0; i < columns.size(); i++) {
+            byte[] compressed = new byte[input.readInt()];
+            input.readFully(compressed);
+            // closing releases the native memory of the inflater
+            try (DataInputStream columnInput = new DataInputStream(
+                    new InflaterInputStream(new ByteArrayInputStream(compressed)))) {
+                switch (columns.get(i).getType()) {
+                case LONG:
+                    long[] longs = new long[rowCount];
+                    for (int row = 0; row < rowCount; row++) {
+                        longs[row] = columnInput.readLong();
+                    }
+                    values[i] = longs;
+                    break;
+                case DOUBLE:
+                    double[] doubles = new double[rowCount];
+                    for (int row = 0; row < rowCount; row++) {
+                        doubles[row] = columnInput.readDouble();
+                    }
+                    values[i] = doubles;
+                    break;
+                default:
+                    String[] strings = new String[rowCount];
+                    for (int row = 0; row < rowCount; row++) {
+                        strings[row] = columnInput.readUTF();
+                    }
+                    values[i] = strings;
+                    break;
+                }
+            }
+        }
+        return rowCount;
+    }
+
+    public long getLong(int column, int row) {
+        return ((long[]) values[column])[checkRow(row)];
+    }
+
+    public double getDouble(int column, int row) {
+        return ((double[]) values[column])[checkRow(row)];
+    }
+
+    public String getString(int column, int row) {
+        return ((String[]) values[column])[checkRow(row)];
+    }
+
+    private int checkRow(int row) {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("Row " + row + " not in current block of " + rowCount + " rows.");
+        }
+        return row;
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    /**
+     * Exports a file to tab-separated text with a header, like written in
+     * {@link RowWriter.Format#TEXT}. Decimals are written in plain notation
+     * with as many digits as needed to be read back exactly.
+     *
+     * @param inputPath
+     *            the path of the file to export
+     * @param outputPath
+     *            the path of the text file to write
+     * @throws IOException
+     *             if reading or writing fails
+     */
+    public static void exportToText(Path inputPath, Path outputPath) throws IOException {
+        try (ColumnarReader reader = new ColumnarReader(inputPath);
+                Writer writer = Files.newBufferedWriter(outputPath, StandardCharsets.UTF_8)) {
+            List<Column> columns = reader.getColumns();
+            StringBuilder line = new StringBuilder();
+            for (Column column : columns) {
+                line.append(column.getName()).append(SEPARATOR);
+            }
+            writer.append(line).append(System.lineSeparator());
+
+            int rowCount;
+            while ((rowCount = reader.readBlock()) >= 0) {
+                for (int row = 0; row < rowCount; row++) {
+                    line.setLength(0);
+                    for (int i = 0; i < columns.size(); i++) {
+                        Type type = columns.get(i).getType();
+                        if (type == Type.LONG) {
+                            line.append(reader.getLong(i, row));
+                        } else if (type == Type.DOUBLE) {
+                            appendPlain(line, reader.getDouble(i, row));
+                        } else {
+                            line.append(reader.getString(i, row));
+                        }
+                        line.append(SEPARATOR);
+                    }
+                    writer.append(line).append(System.lineSeparator());
+                }
+            }
+        }
+    }
+
+    private static void appendPlain(StringBuilder target, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            target.append(value);
+        } else {
+            target.append(new BigDecimal(Double.toString(value)).toPlainString());
+        }
+    }
+
+    /**
+     * Exports the file given as first argument to text. The output path can
+     * be given as second argument, otherwise the extension is replaced.
+     *
+     * @param args
+     *            input path and optional output path
+     * @throws IOException
+     *             if reading or writing fails
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: " + ColumnarReader.class.getName() + " <input> [output]");
+            System.exit(1);
+        }
+        Path inputPath = Paths.get(args[0]);
+        Path outputPath;
+        if (args.length > 1) {
+            outputPath = Paths.get(args[1]);
+        } else {
+            String fileName = inputPath.getFileName().toString();
+            int extensionIndex = fileName.lastIndexOf('.');
+            String baseName = extensionIndex > 0 ? fileName.substring(0, extensionIndex) : fileName;
+            outputPath = inputPath.resolveSibling(baseName + "." + RowWriter.Format.TEXT.getExtension());
+        }
+        exportToText(inputPath, outputPath);
+    }
+}
@@ -0,0 +1,336 @@
+package de.zmt.output;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * {@link RowWriter} for binary typed columns. Rows are gathered in blocks,
+ * which are compressed column by column and written on a background thread
+ * while the next block is gathered. Without background thread, blocks are
+ * written on the calling thread when flushed.
+ * <p>
+ * The file starts with a schema header:
+ * <ol>
+ * <li>the {@link #MAGIC} bytes and the format {@link #VERSION} as short
+ * <li>the number of columns as int
+ * <li>for every column its name as modified UTF-8 and its {@link RowWriter.Type}
+ * ordinal as byte
+ * </ol>
+ * It is followed by blocks, each containing the number of rows as int and, for
+ * every column, the length of the compressed data as int and the deflated
+ * values. Longs and doubles are written as 8 bytes, strings as modified UTF-8.
+ * Blocks are self-contained, so that writing can be resumed by appending.
+ *
+ * @see ColumnarReader
+ * @author mey
+ *
+ */
+class ColumnarWriter implements RowWriter {
+    /** Bytes at the start of every file. */
+    static final byte[] MAGIC = { 'K', 'C', 'O', 'L' };
+    static final short VERSION = 1;
+    /** Maximum number of rows within a block. */
+    static final int BLOCK_ROWS = 4096;
+
+    private static final Type[] TYPES = Type.values();
+
+    private final Type[] columnTypes;
+    /** Writes blocks in the background, <code>null</code> if writing on the calling thread. */
+    private final ExecutorService executor;
+    private final DataOutputStream output;
+
+    /** The block currently gathering rows. */
+    private Block block;
+    /** The block written in the background, reused when done. */
+    private Block pendingBlock;
+    private Future<?> pendingWrite;
+    /** Index of the column the next value is added to. */
+    private int columnIndex = 0;
+    private boolean closed = false;
+
+    /**
+     * Constructs a new {@link ColumnarWriter}.
+     *
+     * @param path
+     *            the path of the file to write to
+     * @param columns
+     *            the columns of the rows to write
+     * @param append
+     *            <code>true</code> to append to an existing file without
+     *            writing the schema header
+     * @param background
+     *            <code>true</code> to write on a background thread,
+     *            <code>false</code> to write on the calling thread
+     * @throws IOException
+     *             if the file cannot be opened
+     */
+    public ColumnarWriter(Path path, List<Column> columns, boolean append, boolean background)
+            throws IOException {
+        columnTypes = columns.stream().map(Column::getType).toArray(Type[]::new);
+        block = new Block(columnTypes);
+        pendingBlock = new Block(columnTypes);
+
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        output = new DataOutputStream(new BufferedOutputStream(append
+                ? Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND)
+                : Files.newOutputStream(path), 1 << 16));
+        if (!append) {
+            output.write(MAGIC);
+            output.writeShort(VERSION);
+            output.writeInt(columns.size());
+            for (Column column : columns) {
+                output.writeUTF(column.getName());
+                output.writeByte(column.getType().ordinal());
+            }
+        }
+
+        if (!background) {
+            executor = null;
+            return;
+        }
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "writer-" + path.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public RowWriter add(long value) {
+        block.longs[nextColumn(Type.LONG)][block.rowCount] = value;
+        return this;
+    }
+
+    @Override
+    public RowWriter add(double value) {
+        block.doubles[nextColumn(Type.DOUBLE)][block.rowCount] = value;
+        return this;
+    }
+
+    @Override
+    public RowWriter add(Object value) {
+        block.strings[nextColumn(Type.STRING)][block.rowCount] = String.valueOf(value);
+        return this;
+    }
+
+    /**
+     * Checks the type of the next column and advances to it.
+     *
+     * @param type
+     *            the type of the value added
+     * @return the index of the column
+     */
+    private int nextColumn(Type type) {
+        if (closed) {
+            throw new IllegalStateException("Writer is closed.");
+        }
+        if (columnIndex >= columnTypes.length) {
+            throw new IllegalStateException("Row has only " + columnTypes.length + " columns.");
+        }
+        if (columnTypes[columnIndex] != type) {
+            throw new IllegalArgumentException(
+                    "Column " + columnIndex + " is of type " + columnTypes[columnIndex] + ", not " + type + ".");
+        }
+        return columnIndex++;
+    }
+
+    @Override
+    public void endRow() {
+        if (columnIndex != columnTypes.length) {
+            throw new IllegalStateException(
+                    "Row ended after " + columnIndex + " of " + columnTypes.length + " columns.");
+        }
+        columnIndex = 0;
+        block.rowCount++;
+        if (block.rowCount == BLOCK_ROWS) {
+            flush();
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (block.rowCount == 0) {
+            return;
+        }
+        if (executor == null) {
+            try {
+                block.write(output);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                block.rowCount = 0;
+            }
+            return;
+        }
+        awaitPendingWrite();
+        Block filledBlock = block;
+        block = pendingBlock;
+        pendingBlock = filledBlock;
+        pendingWrite = executor.submit(() -> {
+            filledBlock.write(output);
+            filledBlock.rowCount = 0;
+            return null;
+        });
+    }
+
+    /** Waits for the block written in the background. */
+    private void awaitPendingWrite() {
+        if (pendingWrite == null) {
+            return;
+        }
+        try {
+            pendingWrite.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while writing.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw new UncheckedIOException((IOException) e.getCause());
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pendingWrite = null;
+        }
+    }
+
+    @Override
+    public void sync() throws IOException {
+        try {
+            flush();
+            awaitPendingWrite();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        output.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+            awaitPendingWrite();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            closed = true;
+            if (executor != null) {
+                executor.shutdown();
+            }
+            try {
+                output.close();
+            } finally {
+                block.end();
+                pendingBlock.end();
+            }
+        }
+    }
+
+    /**
+     * @param ordinal
+     *            the ordinal of a {@link Type}
+     * @return the type with given ordinal
+     * @throws IllegalArgumentException
+     *             if there is no type with given ordinal
+     */
+    static Type typeOf(int ordinal) {
+        if (ordinal < 0 || ordinal >= TYPES.length) {
+            throw new IllegalArgumentException("Unknown column type: " + ordinal);
+        }
+        return TYPES[ordinal];
+    }
+
+    /**
+     * Rows gathered column by column.
+     *
+     * @author mey
+     *
+     */
+    private static class Block {
+        private final Type[] columnTypes;
+        /** Values of long columns, <code>null</code> for other types. */
+        private final long[][] longs;
+        private final double[][] doubles;
+        private final String[][] strings;
+        private final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private int rowCount = 0;
+
+        public Block(Type[] columnTypes) {
+            this.columnTypes = columnTypes;
+            longs = new long[columnTypes.length][];
+            doubles = new double[columnTypes.length][];
+            strings = new String[columnTypes.length][];
+            for (int i = 0; i < columnTypes.length; i++) {
+                switch (columnTypes[i]) {
+                case LONG:
+                    longs[i] = new long[BLOCK_ROWS];
+                    break;
+                case DOUBLE:
+                    doubles[i] = new double[BLOCK_ROWS];
+                    break;
+                default:
+                    strings[i] = new String[BLOCK_ROWS];
+                    break;
+                }
+            }
+        }
+
+        /** Writes the block, compressing every column separately. */
+        public void write(DataOutputStream output) throws IOException {
+            output.writeInt(rowCount);
+            for (int i = 0; i < columnTypes.length; i++) {
+                compressed.reset();
+                deflater.reset();
+                DataOutputStream columnOutput = new DataOutputStream(
+                        new DeflaterOutputStream(compressed, deflater, 1 << 13));
+                for (int row = 0; row < rowCount; row++) {
+                    switch (columnTypes[i]) {
+                    case LONG:
+                        columnOutput.writeLong(longs[i][row]);
+                        break;
+                    case DOUBLE:
+                        columnOutput.writeDouble(doubles[i][row]);
+                        break;
+                    default:
+                        columnOutput.writeUTF(strings[i][row]);
+                        break;
+                    }
+                }
+                columnOutput.close();
+                output.writeInt(compressed.size());
+                compressed.writeTo(output);
+            }
+            // drop references to strings
+            for (String[] column : strings) {
+                if (column != null) {
+                    Arrays.fill(column, 0, rowCount, null);
+                }
+            }
+            output.flush();
+        }
+
+        /** Releases the native memory of the deflater. */
+        public void end() {
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package de.zmt.output;
+
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.util.Locale;
+
+/**
+ * Formats decimal values like a {@link DecimalFormat} with pattern
+ * <code>##0.0#</code>..., i.e. at least one integer and one fraction digit, up
+ * to a maximum number of fraction digits, without grouping, with a dot as
+ * decimal separator and rounding half-even.
+ * <p>
+ * Values are appended to a given {@link StringBuilder}, e.g. a chunk of an
+ * output writer, without allocating. Only values that are too large or too
+ * close to half-way between two decimals are passed to a {@link DecimalFormat}
+ * instead, to get the very same digits. Instances are immutable and can be
+ * used concurrently.
+ *
+ * @author mey
+ *
+ */
+public final class DecimalFormatter {
+    /** Scaled values need to be below to be exactly converted to long. */
+    private static final double MAX_SCALED = 1L << 52;
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    /** Formatter for up to 8 fraction digits, like pattern ##0.0#######. */
+    public static final DecimalFormatter DEFAULT = new DecimalFormatter(8);
+
+    private final int maxFractionDigits;
+    /** Factor to scale values to units of the last fraction digit. */
+    private final long scale;
+    /** Fallback for values not formatted on the fast path. */
+    private final ThreadLocal<DecimalFormat> fallbackFormat;
+
+    /**
+     * Constructs a new {@link DecimalFormatter}.
+     *
+     * @param maxFractionDigits
+     *            the maximum number of fraction digits
+     * @throws IllegalArgumentException
+     *             if {@code maxFractionDigits} is not between 1 and 15
+     */
+    public DecimalFormatter(int maxFractionDigits) {
+        if (maxFractionDigits < 1 || maxFractionDigits > 15) {
+            throw new IllegalArgumentException(maxFractionDigits + " fraction digits are not supported.");
+        }
+        this.maxFractionDigits = maxFractionDigits;
+        this.scale = POWERS_OF_TEN[maxFractionDigits];
+        String pattern = toPattern();
+        this.fallbackFormat = ThreadLocal.withInitial(() -> {
+            DecimalFormat format = (DecimalFormat) NumberFormat.getNumberInstance(Locale.US);
+            format.applyPattern(pattern);
+            return format;
+        });
+    }
+
+    /**
+     * Appends the formatted value.
+     *
+     * @param target
+     *            the {@link StringBuilder} to append to
+     * @param value
+     *            the value to format
+     * @return {@code target}
+     */
+    public StringBuilder append(StringBuilder target, double value) {
+        double scaled = Math.abs(value) * scale;
+        // NaN and infinity fail the first comparison
+        if (!(scaled < MAX_SCALED) || Math.abs(scaled - Math.floor(scaled) - 0.5) <= Math.ulp(scaled)) {
+            return target.append(fallbackFormat.get().format(value));
+        }
+
+        // sign is kept for negative zero and values rounding to zero
+        if (Double.doubleToRawLongBits(value) < 0) {
+            target.append('-');
+        }
+        long units = (long) Math.rint(scaled);
+        target.append(units / scale).append('.');
+
+        long fraction = units % scale;
+        int fractionDigits = maxFractionDigits;
+        while (fractionDigits > 1 && fraction % 10 == 0) {
+            fraction /= 10;
+            fractionDigits--;
+        }
+        for (int i = fractionDigits - 1; i >= 0; i--) {
+            target.append((char) ('0' + fraction / POWERS_OF_TEN[i] % 10));
+        }
+        return target;
+    }
+
+    /**
+     * Formats a value into a new string.
+     *
+     * @param value
+     *            the value to format
+     * @return the formatted value
+     */
+    public String format(double value) {
+        return append(new StringBuilder(24), value).toString();
+    }
+
+    /** @return the equivalent {@link DecimalFormat} pattern */
+    public String toPattern() {
+        StringBuilder pattern = new StringBuilder("##0.0");
+        for (int i = 1; i < maxFractionDigits; i++) {
+            pattern.append('#');
+        }
+        return pattern.toString();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + toPattern() + "]";
+    }
+}
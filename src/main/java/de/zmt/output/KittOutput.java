@@ -1,17 +1,13 @@
 package de.zmt.output;
 
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.Collection;
 import java.util.logging.Logger;
 
 import javax.measure.quantity.Duration;
 
-import de.zmt.ecs.component.agent.LifeCycling;
 import org.jscience.physics.amount.Amount;
 
-import de.zmt.ecs.component.environment.FoodMap;
-import de.zmt.ecs.component.environment.HabitatMap;
 import de.zmt.output.collector.StrategyCollector;
 import de.zmt.params.EnvironmentDefinition;
 import de.zmt.params.KittParams;
@@ -20,7 +16,8 @@ import de.zmt.util.UnitConstants;
 import sim.portrayal.Inspector;
 
 /**
- * Provides continuous output within the GUI via {@link Inspector} and file.
+ * Provides continuous output within the GUI via {@link Inspector}. Files are
+ * written by {@link StatisticsOutput} in the background instead.
  * 
  * @author mey
  * 
@@ -30,49 +27,37 @@ public class KittOutput extends Output {
     @SuppressWarnings("unused")
     private static final Logger logger = Logger.getLogger(KittOutput.class.getName());
 
-    private static final Path POPULATION_SUBPATH = Paths.get("population");
-    private static final Path AGE_SUBPATH = Paths.get("age");
-    private static final Path LENGTH_SUBPATH = Paths.get("length");
-    private static final Path STAY_SUBPATH = Paths.get("stay");
-
-    public KittOutput(Path outputPath, KittParams params, HabitatMap habitatMap, FoodMap foodMap) {
+    /**
+     * @param outputPath
+     *            the path to write output files to
+     * @param params
+     *            the simulation parameters
+     * @param statistics
+     *            the population statistics to collect from
+     */
+    public KittOutput(Path outputPath, KittParams params, PopulationStatistics statistics) {
         super(outputPath);
 
         Collection<SpeciesDefinition> speciesDefs = params.getSpeciesDefs();
         EnvironmentDefinition envDefinition = params.getEnvironmentDefinition();
-        StrategyCollector<?> ageDataCollector = AgeData.createCollector(speciesDefs);
-        StrategyCollector<?> lengthDataCollector = LengthData.createCollector(speciesDefs);
-        StrategyCollector<?> populationDataCollector = PopulationData.createCollector(speciesDefs);
-        StrategyCollector<LocationStayDurations> stayDurationsCollector = LocationStayDurations
-                .createCollector(envDefinition.getStepDuration(), habitatMap, foodMap);
-        StrategyCollector<LifeCyclingData> lifeCyclingDataCollector = LifeCyclingData.createCollector(habitatMap,foodMap);
+        StrategyCollector<?> ageDataCollector = AgeData.createCollector(speciesDefs, statistics);
+        StrategyCollector<?> lengthDataCollector = LengthData.createCollector(speciesDefs, statistics);
+        StrategyCollector<?> populationDataCollector = PopulationData.createCollector(speciesDefs, statistics);
 
         if(envDefinition.ageOutput())
-        addCollector(ageDataCollector, CollectorOption.writer(AGE_SUBPATH),
+        addCollector(ageDataCollector,
                      CollectorOption.name(AgeData.class.getSimpleName()),
                      CollectorOption.interval(convertToStepInterval(envDefinition.getOutputAgeInterval())));
 
         if(envDefinition.lengthOutput())
-        addCollector(lengthDataCollector, CollectorOption.writer(LENGTH_SUBPATH),
+        addCollector(lengthDataCollector,
                 CollectorOption.name(LengthData.class.getSimpleName()),
                 CollectorOption.interval(convertToStepInterval(envDefinition.getOutputLengthInterval())));
 
         if(envDefinition.populationOutput())
-        addCollector(populationDataCollector, CollectorOption.writer(POPULATION_SUBPATH),
+        addCollector(populationDataCollector,
                      CollectorOption.name(PopulationData.class.getSimpleName()),
                      CollectorOption.interval(convertToStepInterval(envDefinition.getOutputPopulationInterval())));
-
-        if(envDefinition.stayOutput())
-        addCollector(stayDurationsCollector,
-                     // need to collect on every step but write only at the given one
-                     CollectorOption.writeInterval(convertToStepInterval(envDefinition.getOutputStayDurationsInterval())),
-                     CollectorOption.writer(STAY_SUBPATH), CollectorOption.hidden(true));
-
-        if(envDefinition.lifeCyclingOutput())
-        addCollector(lifeCyclingDataCollector,
-                     CollectorOption.interval(convertToStepInterval(envDefinition.getOutputLifeCycleInterval())),
-                     CollectorOption.name("LifeCyclingData"),
-                     CollectorOption.writer(Paths.get("lifeCycling")));
     }
 
     /**
@@ -1,9 +1,8 @@
 package de.zmt.output;
 
-import de.zmt.ecs.Entity;
-import de.zmt.ecs.component.agent.Aging;
-import de.zmt.ecs.component.agent.Growing;
-import de.zmt.ecs.component.agent.LifeCycling;
+import de.zmt.output.PopulationStatistics.Snapshot;
+import de.zmt.output.RowWriter.Column;
+import de.zmt.output.RowWriter.Type;
 import de.zmt.output.collectable.AbstractCollectable;
 import de.zmt.output.collectable.CategoryCollectable;
 import de.zmt.output.collector.StrategyCollector;
@@ -12,13 +11,9 @@ import de.zmt.params.SpeciesDefinition;
 import de.zmt.util.UnitConstants;
 import org.jscience.physics.amount.Amount;
 
-import javax.measure.quantity.Duration;
 import javax.measure.quantity.Length;
-import java.text.DecimalFormat;
-import java.text.NumberFormat;
 import java.util.*;
 import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 
 /**
  * Agents are sorted into partitions ranging from minimum to maximum age.
@@ -34,126 +29,88 @@ class LengthData extends AbstractCollectable<String> {
      *
      * @param definitions
      *            the set of species definitions
+     * @param statistics
+     *            the statistics to collect from
      * @return the {@link StrategyCollector} for collecting age data
      */
-    public static StrategyCollector<?> createCollector(Collection<? extends SpeciesDefinition> definitions) {
-        df.applyPattern(FORMAT_PATTERN);//pattern will always be applied when creating a new collector
-        intf.applyPattern(INTEGER_PATTERN);
-        return StrategyCollector.create(new MyCategoryCollectable(definitions), new MyCollectStrategy());
+    public static StrategyCollector<?> createCollector(Collection<? extends SpeciesDefinition> definitions,
+            PopulationStatistics statistics) {
+        return StrategyCollector.create(new MyCategoryCollectable(definitions), new MyCollectStrategy(statistics));
     }
 
     private static final int PARTITIONS_COUNT = 9;
+    /** Maximum of the first partition */
+    private static final Amount<Length> MIN_LENGTH = Amount.valueOf(8, UnitConstants.BODY_LENGTH);
+    private static final Amount<Length> INTERVAL = Amount.valueOf(2.5f, UnitConstants.BODY_LENGTH);
+    /** Maximum of the last partition, just a super high value */
+    private static final Amount<Length> MAX_LENGTH = Amount.valueOf(100, UnitConstants.BODY_LENGTH);
 
-    /**
-     * formats a number without separator(1,000,000 to 1000000)
-     * and with 2 digits in the decimal space(1.79 to 1.8)
-     * the 0 makes it so that the digit will always be displayed even if it's 0
-     */
-    private static final String FORMAT_PATTERN = "##0.0#######";
-
-    /**
-     * formats a number without separator(1,000,000 to 1000000)
-     * and with 2 digits in the decimal space(1.79 to 1.8)
-     * the 0 makes it so that the digit will always be displayed even if it's 0
-     * used for integer
-     */
-    private static final String INTEGER_PATTERN = "##0";
+    private static final List<String> PHASES = Arrays.asList("JUV","IP","TP");
 
-    /**
-     * defines the local as US, so a dot(.) is used for the decimal point(e.g. 1000.9 instead of 1000,9)
-     */
-    private static final Locale LOCALE = new Locale("en", "US");
-
-    /**
-     * decimal format for floating point
-     */
-    private static final DecimalFormat df = (DecimalFormat) NumberFormat.getNumberInstance(LOCALE);
-    /**
-     * Integer format
-     */
-    private static final DecimalFormat intf = (DecimalFormat) NumberFormat.getNumberInstance(LOCALE);
-
-    /** Minimum age that can be collected */
-    private final Amount<Length> minLength;
-    /** Intervals stored as maximum amounts for each partition */
-    private final List<Amount<Length>> intervals = new ArrayList<>(PARTITIONS_COUNT*3);
     /** times 3 because 3 phases*/
-    private final List<String> headers = new ArrayList<>(PARTITIONS_COUNT*3);
+    private final List<String> headers;
     private final List<String> values = new ArrayList<>(PARTITIONS_COUNT*3);
-    private final List<String> PHASES = Arrays.asList("JUV","IP","TP");
+    /** Snapshot collected last, formatted when values are obtained. */
+    private Snapshot snapshot;
 
-    /**
-     * @param minLength
-     *            lowest value that can be collected for this class
-     * @param maxLength
-     *            highest value that can be collected for this class
-     */
-    private LengthData(Amount<Length> minLength, Amount<Length> maxLength) {
-        this.minLength = minLength;
-        //Amount<Duration> range = maxAge.minus(minAge);
-        Amount<Length> interval = Amount.valueOf(2.5f, minLength.getUnit());
+    private LengthData() {
+        headers = createHeaders();
+        for (int i = 0; i < headers.size(); i++) {
+            values.add(obtainInitialValue());
+        }
+    }
 
-        Amount<Length> intervalMin = Amount.valueOf(0, minLength.getUnit());
+    /** @return headers for every partition and phase */
+    private static List<String> createHeaders() {
+        List<String> headers = new ArrayList<>(PARTITIONS_COUNT*3);
+        DecimalFormatter formatter = DecimalFormatter.DEFAULT;
+        List<Amount<Length>> intervalMaxima = obtainIntervalMaxima();
+        Amount<Length> intervalMin = Amount.valueOf(0, MIN_LENGTH.getUnit());
             for (int i = 0; i < PARTITIONS_COUNT; i++) {
-                Amount<Length> intervalMax = minLength.plus(interval.times(i));
-                String intervalString = df.format(intervalMin.doubleValue(UnitConstants.BODY_LENGTH))
-                        + "-" + df.format(intervalMax.doubleValue(UnitConstants.BODY_LENGTH))
+                // header of the last partition shows the regular maximum
+                Amount<Length> intervalMax = MIN_LENGTH.plus(INTERVAL.times(i));
+                String intervalString = formatter.format(intervalMin.doubleValue(UnitConstants.BODY_LENGTH))
+                        + "-" + formatter.format(intervalMax.doubleValue(UnitConstants.BODY_LENGTH))
                         + UnitConstants.BODY_LENGTH.toString();
 
-
-
-                //interval system is build for a max value so we just set a super high value
-                if(i == PARTITIONS_COUNT-1)
-                    intervalMax = Amount.valueOf(100, UnitConstants.BODY_LENGTH);
-
                 for(int k=0; k<3; ++k) {
-                    intervals.add(intervalMax);
                     headers.add(PHASES.get(k)+"_"+intervalString);
-                    values.add(obtainInitialValue());
                 }
 
                 // current interval's maximum is next one's minimum
-                intervalMin = intervalMax;
+                intervalMin = intervalMaxima.get(i);
             }
+        return headers;
     }
 
-    /**
-     * Increase count for partition associated with {@code age}.
-     * 
-     * @param length
-     */
-    public void increase(Amount<Length> length, LifeCycling.Phase phase) {
-        int intervalIndex = findIntervalIndex(length, phase);
-        int count = Integer.parseInt(values.get(intervalIndex));
-        values.set(intervalIndex, intf.format(count + 1));
+    /** @return columns written to file, named like the headers */
+    static List<Column> obtainColumns() {
+        return createHeaders().stream().map(header -> new Column(header, Type.LONG)).collect(Collectors.toList());
     }
 
     /**
+     * Adds values for the columns to the row currently written.
      * 
-     * @param length
-     * @return index of partition that {@code age} fits into.
+     * @param writer
+     *            the writer to add to
+     * @param snapshot
+     *            the snapshot of the species
      */
-    private int findIntervalIndex(Amount<Length> length, LifeCycling.Phase phase) {
-
-        ListIterator<Amount<Length>> iterator = intervals.listIterator();
-        int index = 0;
-        Amount<Length> intervalMax;
-        do {
-            index = iterator.nextIndex();
-            intervalMax = iterator.next();
-        } while (length.isGreaterThan(intervalMax));
-
-        //each interval occurs 3 times, once for each phase
-        //index will be the last occurence before next ageclass and therefore terminal phase
-        //(juvenile, initial, terminal)
-        if(phase == LifeCycling.Phase.INITIAL)
-            index += 1;
-        else if(phase == LifeCycling.Phase.TERMINAL)
-            index += 2;
-
-
+    static void addValues(RowWriter writer, Snapshot snapshot) {
+        for (int i = 0; i < snapshot.getLengthCountsSize(); i++) {
+            writer.add(snapshot.getLengthCount(i));
+        }
+    }
 
-        return index;
+    /** @return the maximum length of every partition */
+    static List<Amount<Length>> obtainIntervalMaxima() {
+        List<Amount<Length>> intervalMaxima = new ArrayList<>(PARTITIONS_COUNT);
+        for (int i = 0; i < PARTITIONS_COUNT - 1; i++) {
+            intervalMaxima.add(MIN_LENGTH.plus(INTERVAL.times(i)));
+        }
+        //interval system is build for a max value so we just set a super high value
+        intervalMaxima.add(MAX_LENGTH);
+        return intervalMaxima;
     }
 
     @Override
@@ -168,6 +125,12 @@ class LengthData extends AbstractCollectable<String> {
 
     @Override
     public List<String> obtainValues() {
+        if (snapshot != null) {
+            for (int i = 0; i < values.size(); i++) {
+                values.set(i, Integer.toString(snapshot.getLengthCount(i)));
+            }
+            snapshot = null;
+        }
         return values;
     }
 
@@ -189,33 +152,27 @@ class LengthData extends AbstractCollectable<String> {
          */
         public MyCategoryCollectable(Collection<? extends SpeciesDefinition> definitions) {
             super(definitions.stream().collect(Collectors.toMap(definition -> definition,
-                    definition -> new LengthData(Amount.valueOf(8,UnitConstants.BODY_LENGTH),
-                            Amount.valueOf(25.5f,UnitConstants.BODY_LENGTH)))));
+                    definition -> new LengthData())));
         }
     }
 
     /**
-     * {@link CollectStrategy} updating {@link LengthData} for every agent.
+     * {@link CollectStrategy} updating {@link LengthData} for every species.
      * 
      * @author mey
      *
      */
-    private static class MyCollectStrategy extends ClearingBeforeStrategy<MyCategoryCollectable> {
+    private static class MyCollectStrategy extends StatisticsCollectStrategy<MyCategoryCollectable> {
         private static final long serialVersionUID = 1L;
 
-        @Override
-        protected void collect(AgentCollectMessage message, MyCategoryCollectable categoryCollectable) {
-            Entity agent = message.getSimObject();
-            SpeciesDefinition definition = agent.get(SpeciesDefinition.class);
-            Growing growing = agent.get(Growing.class);
-            LifeCycling lifeCycling = agent.get(LifeCycling.class);
-
-            if (definition == null || growing == null || lifeCycling == null) {
-                return;
-            }
+        public MyCollectStrategy(PopulationStatistics statistics) {
+            super(statistics);
+        }
 
-            LengthData data = categoryCollectable.getCollectable(definition);
-            data.increase(growing.getLength(), lifeCycling.getPhase());
+        @Override
+        protected void collect(SpeciesCollectMessage message, MyCategoryCollectable categoryCollectable) {
+            Snapshot snapshot = message.getSimObject();
+            categoryCollectable.getCollectable(snapshot.getDefinition()).snapshot = snapshot;
         }
     }
 
@@ -0,0 +1,313 @@
+package de.zmt.output;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.measure.quantity.Duration;
+
+import org.jscience.physics.amount.Amount;
+
+import de.zmt.ecs.Entity;
+import de.zmt.ecs.EntityManager;
+import de.zmt.ecs.component.agent.Aging;
+import de.zmt.ecs.component.agent.Compartments;
+import de.zmt.ecs.component.agent.Growing;
+import de.zmt.ecs.component.agent.LifeCycling;
+import de.zmt.ecs.component.agent.LifeCycling.CauseOfDeath;
+import de.zmt.ecs.component.agent.LifeCycling.Phase;
+import de.zmt.ecs.component.agent.Metabolizing;
+import de.zmt.ecs.component.agent.Moving;
+import de.zmt.ecs.component.environment.FoodMap;
+import de.zmt.ecs.component.environment.HabitatMap;
+import de.zmt.ecs.factory.Population;
+import de.zmt.ecs.system.agent.BehaviorSystem;
+import de.zmt.output.RowWriter.Column;
+import de.zmt.output.RowWriter.Format;
+import de.zmt.output.RowWriter.Type;
+import de.zmt.storage.Compartment;
+import de.zmt.util.UnitConstants;
+import sim.engine.Schedule;
+import sim.engine.SimState;
+import sim.engine.Steppable;
+import sim.util.Int2D;
+
+/**
+ * Append-only log of life cycle events of fish. A row is written when a fish
+ * is born, changes its phase or dies, and for every fish when stepped. Rows are
+ * formatted right away and written on a background thread, so that memory
+ * stays constant regardless of population size.
+ * <p>
+ * Rows contain the time, the {@link Event} and the state of the fish, which
+ * is identified by the sequential ID given by the {@link Population}. Values
+ * are written without units, which are listed in the schema file written
+ * along.
+ *
+ * @author mey
+ *
+ */
+public class LifeCycleLog implements Population.Listener, Steppable {
+    private static final long serialVersionUID = 1L;
+    @SuppressWarnings("unused")
+    private static final Logger logger = Logger.getLogger(LifeCycleLog.class.getName());
+
+    /** Formats floating point values in text, like pattern ##0.0###########. */
+    private static final DecimalFormatter FORMATTER = new DecimalFormatter(12);
+
+    private static final String ENERGY_UNIT = UnitConstants.CELLULAR_ENERGY.toString();
+
+    /** {@link List} containing all columns in order, except the time. */
+    static final List<Column> VALUE_COLUMNS = Collections.unmodifiableList(Arrays.asList(
+            new Column("Event", Type.STRING), new Column("Sex", Type.STRING), new Column("Phase", Type.STRING),
+            new Column("AGE", Type.DOUBLE, UnitConstants.AGE_GUI.toString()),
+            new Column("Length", Type.DOUBLE, UnitConstants.BODY_LENGTH.toString()),
+            new Column("Biomass", Type.DOUBLE, UnitConstants.BIOMASS.toString()),
+            new Column("Energy", Type.DOUBLE, ENERGY_UNIT), new Column("Reproductions", Type.LONG),
+            new Column("Repro_Storage", Type.DOUBLE, ENERGY_UNIT), new Column("Gut", Type.DOUBLE, ENERGY_UNIT),
+            new Column("Gut_size", Type.LONG), new Column("Protein", Type.DOUBLE, ENERGY_UNIT),
+            new Column("Fat", Type.DOUBLE, ENERGY_UNIT), new Column("Excess", Type.DOUBLE, ENERGY_UNIT),
+            new Column("Shortterm", Type.DOUBLE, ENERGY_UNIT),
+            new Column("Ingested_Energy", Type.DOUBLE, ENERGY_UNIT),
+            new Column("Netenergy", Type.DOUBLE, ENERGY_UNIT),
+            new Column("Consumed_Energy", Type.DOUBLE, ENERGY_UNIT), new Column("isHungry", Type.STRING),
+            new Column("Cause_of_Death", Type.STRING), new Column("Habitat", Type.STRING),
+            new Column("Food_Value", Type.DOUBLE, UnitConstants.FOOD_DENSITY.toString()),
+            new Column("Pos_X", Type.LONG), new Column("Pos_Y", Type.LONG), new Column("ID", Type.LONG)));
+
+    /** Events leading to a row being written. */
+    public static enum Event {
+        /** State of a living fish, written for every fish when stepped. */
+        SNAPSHOT,
+        /**
+         * A fish entered the simulation after the log was added, e.g. when
+         * hatched from a larva.
+         */
+        BIRTH,
+        /** A fish entered its next phase. */
+        PHASE_CHANGE,
+        /** A fish died. */
+        DEATH
+    }
+
+    private final Population population;
+    private final EntityManager manager;
+    private final HabitatMap habitatMap;
+    private final FoodMap foodMap;
+    private final Schedule schedule;
+    /**
+     * Directory of the file to write to, as string to be serializable.
+     * Changed when resuming from a moved output directory.
+     */
+    private String directory;
+    /** Name of the file within {@link #directory}, without extension. */
+    private final String fileName;
+    private final Format format;
+    private final OutputTimeUnit timeUnit;
+    /** Factor to convert steps to {@link #timeUnit}. */
+    private final double stepFactor;
+
+    /**
+     * <code>true</code> if the file has been created. Subsequent writers
+     * append to it, e.g. after resuming from a checkpoint.
+     */
+    private boolean started = false;
+    private transient RowWriter writer;
+
+    /**
+     * Constructs a new {@link LifeCycleLog}. It needs to be added as listener
+     * to the population to log events.
+     *
+     * @param directory
+     *            the directory to write to
+     * @param fileName
+     *            the name of the file to write to, without extension
+     * @param format
+     *            the format to write in
+     * @param timeUnit
+     *            the unit the time of rows is written in
+     * @param stepDuration
+     *            the duration of one simulation step
+     * @param population
+     *            the population containing the fish to log
+     * @param manager
+     *            the entity manager containing the fish
+     * @param habitatMap
+     *            the habitat map
+     * @param foodMap
+     *            the food map
+     * @param schedule
+     *            the schedule to obtain steps from
+     */
+    public LifeCycleLog(Path directory, String fileName, Format format, OutputTimeUnit timeUnit,
+            Amount<Duration> stepDuration, Population population, EntityManager manager, HabitatMap habitatMap,
+            FoodMap foodMap, Schedule schedule) {
+        this.directory = directory.toString();
+        this.fileName = fileName;
+        this.format = format;
+        this.timeUnit = timeUnit;
+        this.stepFactor = timeUnit.obtainStepFactor(stepDuration);
+        this.population = population;
+        this.manager = manager;
+        this.habitatMap = habitatMap;
+        this.foodMap = foodMap;
+        this.schedule = schedule;
+    }
+
+    /** Writes a snapshot row for every fish. */
+    @Override
+    public void step(SimState state) {
+        for (UUID uuid : population.getFish()) {
+            Entity fish = Entity.loadFromEntityManager(manager, uuid);
+            if (isLogged(fish)) {
+                writeRow(Event.SNAPSHOT, fish, population.getId(uuid));
+            }
+        }
+        getWriter().flush();
+    }
+
+    @Override
+    public void onAdd(Entity agent, long id) {
+        if (isLogged(agent)) {
+            writeRow(Event.BIRTH, agent, id);
+        }
+    }
+
+    @Override
+    public void onPhaseChange(Entity agent, long id, Phase oldPhase) {
+        if (isLogged(agent)) {
+            writeRow(Event.PHASE_CHANGE, agent, id);
+        }
+    }
+
+    @Override
+    public void onRemove(Entity agent, long id) {
+        if (isLogged(agent) && agent.get(LifeCycling.class).getCauseOfDeath() != CauseOfDeath.NONE) {
+            writeRow(Event.DEATH, agent, id);
+        }
+    }
+
+    /** @return the path of the file written to, including extension */
+    public Path getFilePath() {
+        return RowWriter.obtainPath(obtainBasePath(), format);
+    }
+
+    /**
+     * Sets the directory to write to, e.g. when resuming from a checkpoint
+     * after the output directory was moved. The file needs to be closed.
+     *
+     * @param directory
+     *            the directory to write to
+     */
+    public void setDirectory(Path directory) {
+        this.directory = directory.toString();
+    }
+
+    /** @return the path of the file written to, without extension */
+    private Path obtainBasePath() {
+        return Paths.get(directory, fileName);
+    }
+
+    /**
+     * Closes the file. Remaining rows are written before. Logging continues in
+     * a new writer appending to the file.
+     */
+    public void close() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not write life cycle log to " + obtainBasePath(), e);
+        }
+        writer = null;
+    }
+
+    /** Writes remaining rows and flushes the file, which is kept open. */
+    public void sync() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.sync();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not write life cycle log to " + obtainBasePath(), e);
+        }
+    }
+
+    private static boolean isLogged(Entity agent) {
+        return agent.has(Moving.class) && agent.has(LifeCycling.class) && agent.has(Growing.class)
+                && agent.has(Compartments.class);
+    }
+
+    private RowWriter getWriter() {
+        if (writer != null) {
+            return writer;
+        }
+        try {
+            writer = RowWriter.open(obtainBasePath(), format, obtainColumns(timeUnit),
+                    FORMATTER::append, started);
+            started = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open life cycle log at " + obtainBasePath(), e);
+        }
+        return writer;
+    }
+
+    /**
+     * @param timeUnit
+     *            the unit the time of rows is written in
+     * @return {@link List} containing all columns in order
+     */
+    static List<Column> obtainColumns(OutputTimeUnit timeUnit) {
+        List<Column> columns = new ArrayList<>(VALUE_COLUMNS.size() + 1);
+        columns.add(timeUnit.createColumn());
+        columns.addAll(VALUE_COLUMNS);
+        return columns;
+    }
+
+    /**
+     * Writes a row for the fish. Reproductions are counted since the last row
+     * written for it and reset afterwards.
+     */
+    private void writeRow(Event event, Entity fish, long id) {
+        Growing growing = fish.get(Growing.class);
+        Aging aging = fish.get(Aging.class);
+        LifeCycling lifeCycling = fish.get(LifeCycling.class);
+        Metabolizing metabolizing = fish.get(Metabolizing.class);
+        Compartments compartments = fish.get(Compartments.class);
+        Int2D position = fish.get(Moving.class).getMapPosition();
+
+        timeUnit.addTime(getWriter(), schedule.getSteps(), stepFactor).add(event).add(lifeCycling.getSex())
+                .add(lifeCycling.getPhase()).add(aging.getAge().doubleValue(UnitConstants.AGE_GUI))
+                .add(growing.getLengthValue()).add(growing.getBiomassValue())
+                .add(growing.getEnergyValue()).add(compartments.getReproductionsSinceLastUpdate())
+                .add(getStorage(compartments, Compartment.Type.REPRODUCTION))
+                .add(getStorage(compartments, Compartment.Type.GUT)).add(compartments.getGutSize())
+                .add(getStorage(compartments, Compartment.Type.PROTEIN))
+                .add(getStorage(compartments, Compartment.Type.FAT))
+                .add(getStorage(compartments, Compartment.Type.EXCESS))
+                .add(getStorage(compartments, Compartment.Type.SHORTTERM))
+                .add(metabolizing.getIngestedEnergy().doubleValue(UnitConstants.CELLULAR_ENERGY))
+                .add(metabolizing.getNetEnergyIngested().doubleValue(UnitConstants.CELLULAR_ENERGY))
+                .add(metabolizing.getConsumedEnergy().doubleValue(UnitConstants.CELLULAR_ENERGY))
+                .add(BehaviorSystem.isHungry(fish))
+                .add(lifeCycling.getCauseOfDeath()).add(habitatMap.obtainHabitat(position))
+                .add(foodMap.getFoodDensityValue(position.x, position.y)).add(position.x).add(position.y).add(id)
+                .endRow();
+
+        compartments.clearReproductionSinceLastUpdate();
+    }
+
+    private static double getStorage(Compartments compartments, Compartment.Type type) {
+        return compartments.getStorageAmount(type).doubleValue(UnitConstants.CELLULAR_ENERGY);
+    }
+}
@@ -1,170 +1,361 @@
 package de.zmt.output;
 
+import java.io.IOException;
 import java.io.Serializable;
-import java.text.DecimalFormat;
-import java.util.*;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import javax.measure.quantity.Duration;
 
 import org.jscience.physics.amount.Amount;
 
-import com.google.common.collect.ArrayTable;
-import com.google.common.collect.Maps;
-import com.google.common.collect.Table;
-
-import de.zmt.ecs.component.agent.Moving;
+import de.zmt.ecs.component.agent.AgentStore;
 import de.zmt.ecs.component.environment.FoodMap;
 import de.zmt.ecs.component.environment.HabitatMap;
 import de.zmt.ecs.component.environment.SimulationTime;
-import de.zmt.output.collectable.MultiCollectable;
-import de.zmt.output.collector.StrategyCollector;
-import de.zmt.output.message.CollectMessage;
-import de.zmt.output.message.CollectMessageFactory;
-import de.zmt.output.strategy.MessageCollectStrategy;
+import de.zmt.output.RowWriter.Column;
+import de.zmt.output.RowWriter.Format;
+import de.zmt.output.RowWriter.Type;
+import de.zmt.util.Habitat;
 import de.zmt.util.TimeOfDay;
 import de.zmt.util.UnitConstants;
-import sim.engine.Kitt;
 import sim.engine.SimState;
-import sim.field.grid.LongGrid2D;
+import sim.engine.Steppable;
 import sim.util.Int2D;
 
 /**
- * Accumulates the stay durations for every map location. Durations are reset to
- * zero after obtaining values.
+ * Accumulates the stay durations for map locations and writes them to file in
+ * a given interval. Durations are reset to zero after writing.
+ * <p>
+ * Locations are square blocks of cells, which are single cells with a block
+ * size of one. Only visited blocks are stored and written, in the order of
+ * their location. Each row contains the cell of the block's lower corner, the
+ * most common habitat and the mean food density within the block, and the
+ * block size.
+ * <p>
+ * Stays are collected from the positions in the {@link AgentStore}, so that
+ * neither collecting nor writing allocates objects per agent or cell.
  * <p>
  * Depending on map size, output can be huge and consume a considerable amount
  * of disk space.
- * 
+ *
  * @author mey
- * 
+ *
  */
-class LocationStayDurations implements MultiCollectable<Object> {
+public class LocationStayDurations implements Steppable {
     private static final long serialVersionUID = 1L;
-
-    /** The grids where durations are stored, one for each {@link TimeOfDay}. */
-    private final Map<TimeOfDay, LongGrid2D> durationGrids = new EnumMap<>(TimeOfDay.class);
-
-    /** The duration of one simulation step. */
-    private final Amount<Duration> stepDuration;
+    @SuppressWarnings("unused")
+    private static final Logger logger = Logger.getLogger(LocationStayDurations.class.getName());
+
+    private static final TimeOfDay[] TIMES_OF_DAY = TimeOfDay.values();
+    private static final Habitat[] HABITATS = Habitat.values();
+    /** Scale of values written with {@link #appendFixed(StringBuilder, double)}. */
+    private static final long FIXED_SCALE = 1000000;
+    /** Values above are formatted via {@link String#format(String, Object...)}. */
+    private static final double FIXED_MAX = 1E12;
+
+    /** Durations of visited blocks. */
+    private final SparseDurations durations = new SparseDurations();
+    /** Minimum food density of every {@link Habitat}, by ordinal. */
+    private final double[] foodDensityMins = new double[HABITATS.length];
+    /** Cell count of every {@link Habitat} within a block, by ordinal. */
+    private final int[] habitatCounts = new int[HABITATS.length];
+    /** Edge length of blocks in cells. */
+    private final int blockSize;
+    /** Number of blocks along the x-axis. */
+    private final int blocksWidth;
+
+    /** The duration of one simulation step in simulation time. */
+    private final long stepDuration;
     private final HabitatMap habitatMap;
     private final FoodMap foodMap;
+    private final AgentStore agentStore;
+    private final SimulationTime simulationTime;
+    /**
+     * Directory of the file to write to, as string to be serializable.
+     * Changed when resuming from a moved output directory.
+     */
+    private String directory;
+    /** Name of the file within {@link #directory}, without extension. */
+    private final String fileName;
+    private final Format format;
+    private final OutputTimeUnit timeUnit;
+    /** Factor to convert steps to {@link #timeUnit}. */
+    private final double stepFactor;
+    /** Number of steps between writing durations. */
+    private final long writeInterval;
+
+    private long stepsSinceWrite = 0;
+    /**
+     * <code>true</code> if the file has been created. Subsequent writers
+     * append to it, e.g. after resuming from a checkpoint.
+     */
+    private boolean started = false;
+    private transient RowWriter writer;
 
     /**
-     * Creates a {@link StrategyCollector} to collect stay durations.
-     * 
+     * Constructs a new {@link LocationStayDurations}.
+     *
+     * @param directory
+     *            the directory to write to
+     * @param fileName
+     *            the name of the file to write to, without extension
+     * @param format
+     *            the format to write in
+     * @param timeUnit
+     *            the unit the time of rows is written in
+     * @param writeInterval
+     *            the number of steps between writing durations
+     * @param blockSize
+     *            the edge length in cells of blocks durations are aggregated
+     *            in, 1 for single cells
      * @param stepDuration
      *            the duration of one simulation step
      * @param habitatMap
      *            the {@link HabitatMap}
      * @param foodMap
      *            the {@link FoodMap}
-     * @return the {@link StrategyCollector} for collecting habitat stay
-     *         durations
+     * @param agentStore
+     *            the {@link AgentStore} containing the positions of agents
+     * @param simulationTime
+     *            the {@link SimulationTime} to obtain the time of day from
      */
-    public static StrategyCollector<LocationStayDurations> createCollector(Amount<Duration> stepDuration,
-            HabitatMap habitatMap, FoodMap foodMap) {
-        return StrategyCollector.create(new LocationStayDurations(stepDuration, habitatMap, foodMap),
-                new MyCollectStrategy());
-    }
-
-    LocationStayDurations(Amount<Duration> stepDuration, HabitatMap habitatMap, FoodMap foodMap) {
+    public LocationStayDurations(Path directory, String fileName, Format format, OutputTimeUnit timeUnit,
+            long writeInterval, int blockSize, Amount<Duration> stepDuration, HabitatMap habitatMap,
+            FoodMap foodMap, AgentStore agentStore, SimulationTime simulationTime) {
         super();
         assert habitatMap.getWidth() == foodMap.getWidth() && habitatMap.getHeight() == foodMap.getHeight();
+        if (writeInterval < 1) {
+            throw new IllegalArgumentException("Write interval must be positive: " + writeInterval);
+        }
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+        }
 
-        Stream.of(TimeOfDay.values()).forEach(timeOfDay -> durationGrids.put(timeOfDay,
-                new LongGrid2D(habitatMap.getWidth(), habitatMap.getHeight())));
-        this.stepDuration = stepDuration;
+        this.blockSize = blockSize;
+        this.blocksWidth = (habitatMap.getWidth() + blockSize - 1) / blockSize;
+        for (Habitat habitat : HABITATS) {
+            foodDensityMins[habitat.ordinal()] = habitat.getFoodDensityMin().doubleValue(UnitConstants.FOOD_DENSITY);
+        }
+        this.directory = directory.toString();
+        this.fileName = fileName;
+        this.format = format;
+        this.timeUnit = timeUnit;
+        this.stepFactor = timeUnit.obtainStepFactor(stepDuration);
+        this.writeInterval = writeInterval;
+        this.stepDuration = stepDuration.to(UnitConstants.SIMULATION_TIME).getExactValue();
         this.habitatMap = habitatMap;
         this.foodMap = foodMap;
+        this.agentStore = agentStore;
+        this.simulationTime = simulationTime;
+    }
+
+    /**
+     * Registers a stay for every agent and writes durations if the write
+     * interval has passed.
+     */
+    @Override
+    public void step(SimState state) {
+        int timeOfDay = simulationTime.getTimeOfDay().ordinal();
+        int[] mapX = agentStore.getMapX();
+        int[] mapY = agentStore.getMapY();
+        for (int i = 0, size = agentStore.size(); i < size; i++) {
+            if (agentStore.isUsed(i)) {
+                durations.add(toBlock(mapX[i], mapY[i]), timeOfDay, stepDuration);
+            }
+        }
+
+        stepsSinceWrite++;
+        if (stepsSinceWrite >= writeInterval) {
+            stepsSinceWrite = 0;
+            RowWriter writer = getWriter();
+            writeValues(state.schedule.getSteps(), writer);
+            writer.flush();
+            clear();
+        }
     }
 
     /**
      * Register a stay.
-     * 
+     *
      * @param location
      *            the location to register a stay for
      * @param timeOfDay
      *            the time of day the stay was happening
      */
     void registerStay(Int2D location, TimeOfDay timeOfDay) {
-        LongGrid2D grid = durationGrids.get(timeOfDay);
-        long currentValue = grid.get(location.x, location.y);
-        grid.set(location.x, location.y, currentValue + stepDuration.getExactValue());
+        durations.add(toBlock(location.x, location.y), timeOfDay.ordinal(), stepDuration);
     }
 
-    @Override
-    public List<String> obtainHeaders() {
-        return Headers.LIST;
+    /**
+     * @param mapX
+     *            map X coordinate
+     * @param mapY
+     *            map Y coordinate
+     * @return the index of the block containing the given cell
+     */
+    private int toBlock(int mapX, int mapY) {
+        return (mapY / blockSize) * blocksWidth + mapX / blockSize;
     }
 
-    @Override
-    public Iterable<Collection<Object>> obtainValues() {
+    /**
+     * Writes a row for every visited block, in the order of block indices,
+     * i.e. row by row.
+     *
+     * @param steps
+     *            the steps the time in the first column is obtained from
+     * @param writer
+     *            the writer to write to
+     */
+    void writeValues(long steps, RowWriter writer) {
         int width = habitatMap.getWidth();
         int height = habitatMap.getHeight();
-        Table<Integer, String, Object> valuesTable = ArrayTable
-                // create a row for every cell in the table
-                .create(IntStream.range(0, width * height).boxed()::iterator, Headers.LIST);
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                // set the row for the current cell
-                valuesTable.row(y * width + x).putAll(assembleValuesRow(x, y));
+        int[] blocks = durations.sortedBlocks();
+
+        for (int block : blocks) {
+            int slot = durations.slotOf(block);
+            int x = (block % blocksWidth) * blockSize;
+            int y = (block / blocksWidth) * blockSize;
+            int toX = Math.min(x + blockSize, width);
+            int toY = Math.min(y + blockSize, height);
+
+            // find the most common habitat and the mean food density
+            Arrays.fill(habitatCounts, 0);
+            double foodDensitySum = 0;
+            for (int cellY = y; cellY < toY; cellY++) {
+                for (int cellX = x; cellX < toX; cellX++) {
+                    Habitat habitat = habitatMap.obtainHabitat(cellX, cellY);
+                    habitatCounts[habitat.ordinal()]++;
+                    foodDensitySum += foodMap.getFoodDensityValue(cellX, cellY) + foodDensityMins[habitat.ordinal()];
+                }
+            }
+            int habitatOrdinal = 0;
+            for (int i = 1; i < habitatCounts.length; i++) {
+                if (habitatCounts[i] > habitatCounts[habitatOrdinal]) {
+                    habitatOrdinal = i;
+                }
             }
-        }
-        clear();
 
-        // return iterable over table by headers (columns)
-        return Headers.LIST.stream().map(header -> valuesTable.column(header).values())::iterator;
+            timeUnit.addTime(writer, steps, stepFactor).add(x).add(y).add(HABITATS[habitatOrdinal]).add(durations.getTotal(slot));
+            for (int timeOfDay = 0; timeOfDay < TIMES_OF_DAY.length; timeOfDay++) {
+                writer.add(durations.get(slot, timeOfDay));
+            }
+            writer.add(foodDensitySum / ((toX - x) * (toY - y))).add(blockSize).endRow();
+        }
     }
 
     /**
-     * Assembles the value row for the given cell coordinates.
-     * 
-     * @param x
-     *            the x-coordinate
-     * @param y
-     *            the y-coordinate
-     * @return a {@link Map} representing the row with headers as keys
+     * Appends {@code value} with six decimal places like
+     * {@code String.format(Locale.US, "%f", value)}, without allocating. The
+     * last digit may differ for values very close to half-way between two
+     * decimals.
+     *
+     * @param target
+     *            the {@link StringBuilder} to append to
+     * @param value
+     *            the value to append
      */
-    private Map<String, Object> assembleValuesRow(int x, int y) {
-        return Maps.asMap(new HashSet<>(Headers.LIST), header -> {
-            switch (header) {
-            case Headers.CELL_X:
-                return Integer.toString(x);
-            case Headers.CELL_Y:
-                return Integer.toString(y);
-            case Headers.HABITAT:
-                return habitatMap.obtainHabitat(x, y).toString();
-            case Headers.STAY_DURATION_TOTAL:
-                return Long.toString(durationGrids.values().stream().mapToLong(grid -> grid.get(x, y)).sum());
-            default:
-                if (header.equals(Headers.FOOD_DENSITY)) {
-                    return String.format(Locale.US, "%f",foodMap.getFoodDensity(x, y).plus(habitatMap.obtainHabitat(x, y).getFoodDensityMin())
-                            .doubleValue(UnitConstants.FOOD_DENSITY));
-                }
-                // stay duration by time of day
-                else {
-                    TimeOfDay timeOfDay = Headers.STAY_DURATIONS.get(header);
-                    assert timeOfDay != null;
-                    return Long.toString(durationGrids.get(timeOfDay).get(x, y));
-                }
-            }
-        });
+    static void appendFixed(StringBuilder target, double value) {
+        double absValue = Math.abs(value);
+        if (!(absValue < FIXED_MAX)) {
+            target.append(String.format(Locale.US, "%f", value));
+            return;
+        }
+        // sign is kept for negative zero and values rounding to zero
+        if (Double.doubleToRawLongBits(value) < 0) {
+            target.append('-');
+        }
+        long scaled = Math.round(absValue * FIXED_SCALE);
+        target.append(scaled / FIXED_SCALE).append('.');
+        long fraction = scaled % FIXED_SCALE;
+        for (long divisor = FIXED_SCALE / 10; divisor > 0; divisor /= 10) {
+            target.append((char) ('0' + fraction / divisor % 10));
+        }
     }
 
-    /** Fill maps with zero durations. */
-    @Override
+    /** Removes all durations. */
     public void clear() {
-        durationGrids.values().stream().forEach(grid -> grid.setTo(0));
+        durations.clear();
+    }
+
+    /** @return the path of the file written to, including extension */
+    public Path getFilePath() {
+        return RowWriter.obtainPath(obtainBasePath(), format);
+    }
+
+    /**
+     * Sets the directory to write to, e.g. when resuming from a checkpoint
+     * after the output directory was moved. The file needs to be closed.
+     *
+     * @param directory
+     *            the directory to write to
+     */
+    public void setDirectory(Path directory) {
+        this.directory = directory.toString();
+    }
+
+    /** @return the path of the file written to, without extension */
+    private Path obtainBasePath() {
+        return Paths.get(directory, fileName);
+    }
+
+    /** Closes the file. Durations not yet written are discarded. */
+    public void close() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not write stay durations to " + obtainBasePath(), e);
+        }
+        writer = null;
+    }
+
+    /**
+     * Flushes the file, which is kept open. Durations not yet written are
+     * kept.
+     */
+    public void sync() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.sync();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not write stay durations to " + obtainBasePath(), e);
+        }
+    }
+
+    private RowWriter getWriter() {
+        if (writer != null) {
+            return writer;
+        }
+        try {
+            writer = RowWriter.open(obtainBasePath(), format, Headers.obtainColumns(timeUnit),
+                    LocationStayDurations::appendFixed, started);
+            started = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open stay durations file at " + obtainBasePath(), e);
+        }
+        return writer;
     }
 
     /**
      * Contains the String constants used as headers.
-     * 
+     *
      * @author mey
      *
      */
@@ -177,7 +368,8 @@ class LocationStayDurations implements MultiCollectable<Object> {
         public static final String STAY_DURATION_TOTAL = STAY_DURATION_ + "total";
         /** Map containing header string for every {@link TimeOfDay}. */
         public static final Map<String, TimeOfDay> STAY_DURATIONS;
-        public static final String FOOD_DENSITY = "total_food_density_" + UnitConstants.FOOD_DENSITY;
+        public static final String FOOD_DENSITY = "food_density";
+        public static final String BLOCK_SIZE = "block_size";
 
         static {
             Map<String, TimeOfDay> stayDurationHeaders = new LinkedHashMap<>();
@@ -191,65 +383,157 @@ class LocationStayDurations implements MultiCollectable<Object> {
 
         }
 
-        /** {@link List} containing all headers in order. */
+        /** {@link List} containing all value headers in order. */
         public static final List<String> LIST = Stream
                 .of(Stream.of(CELL_X, CELL_Y, HABITAT, STAY_DURATION_TOTAL), STAY_DURATIONS.keySet().stream(),
-                        Stream.of(FOOD_DENSITY))
+                        Stream.of(FOOD_DENSITY, BLOCK_SIZE))
                 .flatMap(Function.identity())
                 .collect(Collectors.collectingAndThen(Collectors.toList(), Collections::unmodifiableList));
-    }
+
+        /**
+         * @param timeUnit
+         *            the unit the time of rows is written in
+         * @return {@link List} containing all columns in order, with the time
+         *         first
+         */
+        public static List<Column> obtainColumns(OutputTimeUnit timeUnit) {
+            return Stream.concat(Stream.of(timeUnit.createColumn()), LIST.stream().map(Headers::createColumn))
+                    .collect(Collectors.toList());
+        }
+
+        private static Column createColumn(String header) {
+            if (header.equals(HABITAT)) {
+                return new Column(header, Type.STRING);
+            }
+            if (header.equals(FOOD_DENSITY)) {
+                return new Column(header, Type.DOUBLE, UnitConstants.FOOD_DENSITY.toString());
+            }
+            if (header.startsWith(STAY_DURATION_)) {
+                return new Column(header, Type.LONG, UnitConstants.SIMULATION_TIME.toString());
+            }
+            return new Column(header, Type.LONG);
+        }
 
     /**
-     * {@link MessageCollectStrategy} implementation that filters for a given
-     * {@link TimeOfDay}.
-     * 
+     * Durations of visited blocks, for every {@link TimeOfDay}. Blocks are
+     * given a slot when first visited, which is found via open addressing.
+     *
      * @author mey
      *
      */
-    private static class MyCollectStrategy extends MessageCollectStrategy<LocationStayDurations, MyCollectMessage> {
+    private static class SparseDurations implements Serializable {
         private static final long serialVersionUID = 1L;
-        private static final MyCollectMessageFactory MESSAGE_FACTORY = new MyCollectMessageFactory();
 
-        @Override
-        protected void collect(MyCollectMessage message, LocationStayDurations collectable) {
-            collectable.registerStay(message.location, message.timeOfDay);
+        private static final int INITIAL_CAPACITY = 64;
+
+        /** Slots plus one by hash position, zero if empty. */
+        private int[] table = new int[INITIAL_CAPACITY * 2];
+        /** Block indices by slot. */
+        private int[] blocks = new int[INITIAL_CAPACITY];
+        /** Durations by slot and {@link TimeOfDay} ordinal. */
+        private long[] durations = new long[INITIAL_CAPACITY * TIMES_OF_DAY.length];
+        /** Number of occupied slots. */
+        private int size = 0;
+
+        /**
+         * Adds a duration to a block, which is given a slot if not visited.
+         *
+         * @param block
+         *            the block index
+         * @param timeOfDay
+         *            the {@link TimeOfDay} ordinal
+         * @param duration
+         *            the duration to add
+         */
+        public void add(int block, int timeOfDay, long duration) {
+            int position = findPosition(block);
+            int slot = table[position] - 1;
+            if (slot < 0) {
+                slot = insert(block, position);
+            }
+            durations[slot * TIMES_OF_DAY.length + timeOfDay] += duration;
         }
 
-        @Override
-        protected CollectMessageFactory<MyCollectMessage> getCollectMessageFactory() {
-            return MESSAGE_FACTORY;
+        /**
+         * @param block
+         *            the block index
+         * @return the slot of the block or <code>-1</code> if not visited
+         */
+        public int slotOf(int block) {
+            return table[findPosition(block)] - 1;
         }
-    }
 
-    /**
-     * {@link CollectMessageFactory} that creates message with a location.
-     * 
-     * @author mey
-     *
-     */
-    private static class MyCollectMessageFactory implements CollectMessageFactory<MyCollectMessage>, Serializable {
-        private static final long serialVersionUID = 1L;
+        public long get(int slot, int timeOfDay) {
+            return durations[slot * TIMES_OF_DAY.length + timeOfDay];
+        }
 
-        @Override
-        public Stream<MyCollectMessage> createCollectMessages(SimState state) {
-            TimeOfDay timeOfDay = ((Kitt) state).getEnvironment().get(SimulationTime.class).getTimeOfDay();
+        public long getTotal(int slot) {
+            long total = 0;
+            for (int i = slot * TIMES_OF_DAY.length, end = i + TIMES_OF_DAY.length; i < end; i++) {
+                total += durations[i];
+            }
+            return total;
+        }
 
-            return AgentCollectMessage.FACTORY.createCollectMessages(state).map(message -> {
-                Int2D location = message.getSimObject().get(Moving.class).getMapPosition();
-                return new MyCollectMessage(location, timeOfDay);
-            });
+        /** @return the indices of all visited blocks in ascending order */
+        public int[] sortedBlocks() {
+            int[] sortedBlocks = Arrays.copyOf(blocks, size);
+            Arrays.sort(sortedBlocks);
+            return sortedBlocks;
+        }
+
+        /** Removes all blocks, keeping capacity. */
+        public void clear() {
+            Arrays.fill(table, 0);
+            Arrays.fill(durations, 0, size * TIMES_OF_DAY.length, 0);
+            size = 0;
+        }
+
+        /**
+         * @param block
+         *            the block index
+         * @return the position of the block in the table or the empty
+         *         position where it would be inserted
+         */
+        private int findPosition(int block) {
+            int mask = table.length - 1;
+            int position = hash(block) & mask;
+            while (table[position] != 0 && blocks[table[position] - 1] != block) {
+                position = (position + 1) & mask;
+            }
+            return position;
         }
-    }
 
-    static class MyCollectMessage implements CollectMessage {
-        public final Int2D location;
-        public final TimeOfDay timeOfDay;
+        private int insert(int block, int position) {
+            if (size == blocks.length) {
+                grow();
+                position = findPosition(block);
+            }
+            int slot = size++;
+            blocks[slot] = block;
+            table[position] = slot + 1;
+            return slot;
+        }
 
-        public MyCollectMessage(Int2D location, TimeOfDay timeOfDay) {
-            super();
-            this.location = location;
-            this.timeOfDay = timeOfDay;
+        /** Doubles capacity, keeping the table at most half full. */
+        private void grow() {
+            int capacity = blocks.length * 2;
+            blocks = Arrays.copyOf(blocks, capacity);
+            durations = Arrays.copyOf(durations, capacity * TIMES_OF_DAY.length);
+            table = new int[capacity * 2];
+            int mask = table.length - 1;
+            for (int slot = 0; slot < size; slot++) {
+                int position = hash(blocks[slot]) & mask;
+                while (table[position] != 0) {
+                    position = (position + 1) & mask;
+                }
+                table[position] = slot + 1;
+            }
         }
 
+        private static int hash(int block) {
+            int hash = block * 0x9E3779B9;
+            return hash ^ (hash >>> 16);
+        }
     }
-}
\ No newline at end of file
+}
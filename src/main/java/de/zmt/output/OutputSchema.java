@@ -0,0 +1,64 @@
+package de.zmt.output;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import de.zmt.output.RowWriter.Column;
+
+/**
+ * Writes the schema of an output file to a sidecar file, so that the output
+ * itself only contains plain values. The schema is tab-separated text with a
+ * line for every column, containing its name, type and unit:
+ *
+ * <pre>
+ * column	type	unit
+ * time	DOUBLE	day
+ * Event	STRING
+ * Biomass	DOUBLE	g
+ * </pre>
+ *
+ * @author mey
+ *
+ */
+final class OutputSchema {
+    /** Extension of schema files. */
+    static final String EXTENSION = "schema";
+
+    private static final char SEPARATOR = '\t';
+    private static final String HEADER = "column" + SEPARATOR + "type" + SEPARATOR + "unit";
+
+    private OutputSchema() {
+
+    }
+
+    /**
+     * Writes the schema for an output file, replacing an existing one.
+     *
+     * @param basePath
+     *            the path of the output file without extension
+     * @param columns
+     *            the columns of the output file
+     * @throws IOException
+     *             if the schema file cannot be written
+     */
+    static void write(Path basePath, List<Column> columns) throws IOException {
+        Path path = basePath.resolveSibling(basePath.getFileName() + "." + EXTENSION);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.append(HEADER).append(System.lineSeparator());
+            for (Column column : columns) {
+                writer.append(column.getName()).append(SEPARATOR).append(column.getType().name());
+                if (!column.getUnit().isEmpty()) {
+                    writer.append(SEPARATOR).append(column.getUnit());
+                }
+                writer.append(System.lineSeparator());
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package de.zmt.output;
+
+import static javax.measure.unit.NonSI.DAY;
+import static javax.measure.unit.NonSI.HOUR;
+import static javax.measure.unit.NonSI.YEAR;
+import static javax.measure.unit.SI.SECOND;
+
+import javax.measure.quantity.Duration;
+import javax.measure.unit.Unit;
+
+import org.jscience.physics.amount.Amount;
+
+import de.zmt.output.RowWriter.Column;
+import de.zmt.output.RowWriter.Type;
+
+/**
+ * Units the time of output rows can be written in. Rows are written with the
+ * number of simulation steps by default, other units convert the steps to a
+ * decimal time since the start of the simulation.
+ *
+ * @author mey
+ *
+ */
+public enum OutputTimeUnit {
+    STEPS(null), SECONDS(SECOND), HOURS(HOUR), DAYS(DAY), YEARS(YEAR);
+
+    private final Unit<Duration> unit;
+
+    private OutputTimeUnit(Unit<Duration> unit) {
+        this.unit = unit;
+    }
+
+    /** @return the column containing the time */
+    public Column createColumn() {
+        if (unit == null) {
+            return new Column("steps", Type.LONG);
+        }
+        return new Column("time", Type.DOUBLE, unit.toString());
+    }
+
+    /**
+     * @param stepDuration
+     *            the duration of one simulation step
+     * @return the factor to convert steps to this unit
+     */
+    public double obtainStepFactor(Amount<Duration> stepDuration) {
+        if (unit == null) {
+            return 1;
+        }
+        return stepDuration.doubleValue(unit);
+    }
+
+    /**
+     * Adds the time to the row currently written.
+     *
+     * @param writer
+     *            the writer to add to
+     * @param steps
+     *            the simulation steps
+     * @param stepFactor
+     *            the factor obtained from
+     *            {@link #obtainStepFactor(Amount)}
+     * @return the writer
+     */
+    public RowWriter addTime(RowWriter writer, long steps, double stepFactor) {
+        if (unit == null) {
+            return writer.add(steps);
+        }
+        return writer.add(steps * stepFactor);
+    }
+}
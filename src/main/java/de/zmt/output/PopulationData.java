@@ -1,21 +1,15 @@
 package de.zmt.output;
 
-import java.text.DecimalFormat;
-import java.text.NumberFormat;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-import java.util.Locale;
 import java.util.stream.Collectors;
 
-import javax.measure.quantity.Mass;
-
-import org.jscience.physics.amount.Amount;
-
-import de.zmt.ecs.Entity;
-import de.zmt.ecs.component.agent.Growing;
-import de.zmt.ecs.component.agent.LifeCycling;
-import de.zmt.ecs.component.agent.LifeCycling.Phase;
+import de.zmt.output.PopulationStatistics.Group;
+import de.zmt.output.PopulationStatistics.Snapshot;
+import de.zmt.output.RowWriter.Column;
+import de.zmt.output.RowWriter.Type;
 import de.zmt.output.collectable.CategoryCollectable;
 import de.zmt.output.collectable.Collectable;
 import de.zmt.output.collector.StrategyCollector;
@@ -36,54 +30,47 @@ class PopulationData implements Collectable<String>, Proxiable {
     private static final long serialVersionUID = 1L;
 
 
-    /**
-     * formats a number without separator(1,000,000 to 1000000)
-     * and with 2 digits in the decimal space(1.79 to 1.8)
-     * the 0 makes it so that the digit will always be displayed even if it's 0
-     * used for floating points
-     */
-    private static final String FORMAT_PATTERN = "##0.0#######";
-
-    /**
-     * formats a number without separator(1,000,000 to 1000000)
-     * and with 2 digits in the decimal space(1.79 to 1.8)
-     * the 0 makes it so that the digit will always be displayed even if it's 0
-     * used for integer
-     */
-    private static final String INTEGER_PATTERN = "##0";
-
-    /**
-     * defines the local as US, so a dot(.) is used for the decimal point(e.g. 1000.9 instead of 1000,9)
-     */
-    private static final Locale LOCALE = new Locale("en", "US");
-
-    /**
-     * decimal format for floating point
-     */
-    private static final DecimalFormat df = (DecimalFormat) NumberFormat.getNumberInstance(LOCALE);
-
-    /**
-     * Integer format
-     */
-    private static final DecimalFormat intf = (DecimalFormat) NumberFormat.getNumberInstance(LOCALE);
-
     /**
      * Creates a {@link StrategyCollector} for collecting population data.
      * 
      * @param definitions
      *            the set of species definitions
+     * @param statistics
+     *            the statistics to collect from
      * @return the {@link StrategyCollector} for collecting population data
      */
-    public static StrategyCollector<?> createCollector(Collection<? extends SpeciesDefinition> definitions) {
-        df.applyPattern(FORMAT_PATTERN);
-        intf.applyPattern(INTEGER_PATTERN);
-        return StrategyCollector.create(new MyCategoryCollectable(definitions), new MyCollectStrategy());
+    public static StrategyCollector<?> createCollector(Collection<? extends SpeciesDefinition> definitions,
+            PopulationStatistics statistics) {
+        return StrategyCollector.create(new MyCategoryCollectable(definitions), new MyCollectStrategy(statistics));
     }
 
     private static final List<String> HEADERS = Arrays.asList("TOTAL_count", "JUV_count", "IP_count",
             "TP_count", "TOTAL_mass(" + UnitConstants.BIOMASS+")", "JUV_mass(" + UnitConstants.BIOMASS+")",
             "IP_mass(" + UnitConstants.BIOMASS+")", "TP_mass(" + UnitConstants.BIOMASS+")");
 
+    private static final String MASS_UNIT = UnitConstants.BIOMASS.toString();
+    /** Columns written to file, like headers but with units in the schema. */
+    static final List<Column> COLUMNS = Collections.unmodifiableList(Arrays.asList(
+            new Column("TOTAL_count", Type.LONG), new Column("JUV_count", Type.LONG),
+            new Column("IP_count", Type.LONG), new Column("TP_count", Type.LONG),
+            new Column("TOTAL_mass", Type.DOUBLE, MASS_UNIT), new Column("JUV_mass", Type.DOUBLE, MASS_UNIT),
+            new Column("IP_mass", Type.DOUBLE, MASS_UNIT), new Column("TP_mass", Type.DOUBLE, MASS_UNIT)));
+
+    /**
+     * Adds values for {@link #COLUMNS} to the row currently written.
+     * 
+     * @param writer
+     *            the writer to add to
+     * @param snapshot
+     *            the snapshot of the species
+     */
+    static void addValues(RowWriter writer, Snapshot snapshot) {
+        writer.add(snapshot.getTotalCount()).add(snapshot.getCount(Group.JUVENILE))
+                .add(snapshot.getCount(Group.ADULT_FEMALE)).add(snapshot.getCount(Group.OTHER))
+                .add(snapshot.getTotalMass()).add(snapshot.getMass(Group.JUVENILE))
+                .add(snapshot.getMass(Group.ADULT_FEMALE)).add(snapshot.getMass(Group.OTHER));
+    }
+
     private PopulationData() {
         clear();
     }
@@ -123,9 +110,10 @@ class PopulationData implements Collectable<String>, Proxiable {
 
     @Override
     public Iterable<String> obtainValues() {
-        return Arrays.asList(intf.format(totalCount), intf.format(juvenileCount), intf.format(initialCount),
-                intf.format(terminalCount), df.format(totalMass), df.format(juvenileMass),df.format(initialMass),
-                df.format(terminalMass));
+        DecimalFormatter formatter = DecimalFormatter.DEFAULT;
+        return Arrays.asList(Integer.toString(totalCount), Integer.toString(juvenileCount),
+                Integer.toString(initialCount), Integer.toString(terminalCount), formatter.format(totalMass),
+                formatter.format(juvenileMass), formatter.format(initialMass), formatter.format(terminalMass));
     }
 
     @Override
@@ -143,49 +131,27 @@ class PopulationData implements Collectable<String>, Proxiable {
 
     }
 
-    private static class MyCollectStrategy extends ClearingBeforeStrategy<MyCategoryCollectable> {
+    private static class MyCollectStrategy extends StatisticsCollectStrategy<MyCategoryCollectable> {
         private static final long serialVersionUID = 1L;
 
+        public MyCollectStrategy(PopulationStatistics statistics) {
+            super(statistics);
+        }
+
         @Override
-        protected void collect(AgentCollectMessage message, MyCategoryCollectable collectable) {
-            Entity agent = message.getSimObject();
-
-            if (!agent.has(SpeciesDefinition.class)) {
-                return;
-            }
-            SpeciesDefinition definition = agent.get(SpeciesDefinition.class);
-
-            PopulationData classData = collectable.getCollectable(definition);
-
-            if (classData == null) {
-                classData = new PopulationData();
-            }
-
-            classData.totalCount++;
-
-            if (!agent.has(Growing.class) || !agent.has(LifeCycling.class)) {
-                return;
-            }
-            Growing growing = agent.get(Growing.class);
-            LifeCycling lifeCycling = agent.get(LifeCycling.class);
-
-            Amount<Mass> biomass = growing.getBiomass();
-            classData.totalMass += biomass.doubleValue(UnitConstants.BIOMASS);
-
-            // fish is adult female
-            if (lifeCycling.isAdultFemale()) {
-                classData.initialCount++;
-                classData.initialMass += biomass.doubleValue(UnitConstants.BIOMASS);
-            }
-            // fish is juvenile
-            else if (lifeCycling.getPhase() == Phase.JUVENILE) {
-                classData.juvenileCount++;
-                classData.juvenileMass += biomass.doubleValue(UnitConstants.BIOMASS);
-            }
-
-            // compute count / mass of adult males
-            classData.terminalCount = classData.totalCount - classData.juvenileCount - classData.initialCount;
-            classData.terminalMass = classData.totalMass - classData.juvenileMass - classData.initialMass;
+        protected void collect(SpeciesCollectMessage message, MyCategoryCollectable collectable) {
+            Snapshot statistics = message.getSimObject();
+            PopulationData classData = collectable.getCollectable(statistics.getDefinition());
+
+            classData.totalCount = statistics.getTotalCount();
+            classData.juvenileCount = statistics.getCount(Group.JUVENILE);
+            classData.initialCount = statistics.getCount(Group.ADULT_FEMALE);
+            classData.terminalCount = statistics.getCount(Group.OTHER);
+
+            classData.totalMass = statistics.getTotalMass();
+            classData.juvenileMass = statistics.getMass(Group.JUVENILE);
+            classData.initialMass = statistics.getMass(Group.ADULT_FEMALE);
+            classData.terminalMass = statistics.getMass(Group.OTHER);
         }
     }
 
@@ -0,0 +1,469 @@
+package de.zmt.output;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Logger;
+
+import javax.measure.quantity.Quantity;
+import javax.measure.unit.Unit;
+
+import org.jscience.physics.amount.Amount;
+
+import de.zmt.ecs.Entity;
+import de.zmt.ecs.component.agent.Aging;
+import de.zmt.ecs.component.agent.Growing;
+import de.zmt.ecs.component.agent.LifeCycling;
+import de.zmt.ecs.component.agent.LifeCycling.Phase;
+import de.zmt.ecs.component.agent.Moving;
+import de.zmt.ecs.factory.Population;
+import de.zmt.params.SpeciesDefinition;
+import de.zmt.util.UnitConstants;
+
+/**
+ * Population, age and length statistics for every species, maintained
+ * incrementally from the notifications of a {@link Population}. Each agent
+ * contributes to its species' counts, masses and partitions, and only changes
+ * in its contribution are applied. This way collecting output does not need
+ * to iterate over all agents.
+ * <p>
+ * Masses are accumulated as fixed-point values with a resolution of
+ * 2<sup>-{@value #MASS_SCALE_BITS}</sup> g. The sums are therefore exact and
+ * independent of the order agents are updated in, even if they are updated in
+ * parallel.
+ *
+ * @author mey
+ *
+ */
+public class PopulationStatistics implements Population.Listener, Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final Logger logger = Logger.getLogger(PopulationStatistics.class.getName());
+
+    private static final int MASS_SCALE_BITS = 30;
+    /** Factor to convert biomass (g) to fixed-point values. */
+    private static final double MASS_SCALE = 1L << MASS_SCALE_BITS;
+    /** Number of phases each age and length partition is divided into. */
+    static final int PHASES_COUNT = 3;
+
+    /** Statistics for every species. */
+    private final Map<SpeciesDefinition, SpeciesStatistics> speciesStatistics = new LinkedHashMap<>();
+    /** Contribution of every agent by its entity's {@link UUID}. */
+    private final Map<UUID, Contribution> contributions = new HashMap<>();
+    /** Number of ages or lengths beyond the last partition counted in it. */
+    private final AtomicLong clampedCount = new AtomicLong();
+
+    /**
+     * Creates statistics for the given species.
+     *
+     * @param definitions
+     *            the species definitions
+     */
+    public PopulationStatistics(Collection<? extends SpeciesDefinition> definitions) {
+        for (SpeciesDefinition definition : definitions) {
+            speciesStatistics.put(definition, new SpeciesStatistics(definition));
+        }
+    }
+
+    /** @return the species statistics are maintained for */
+    public Collection<SpeciesDefinition> getDefinitions() {
+        return Collections.unmodifiableCollection(speciesStatistics.keySet());
+    }
+
+    /**
+     * Creates a snapshot of the statistics of every species. Needs to be
+     * called while agents are not updated, so that it is consistent.
+     *
+     * @return the snapshots in the order of species
+     */
+    List<Snapshot> createSnapshots() {
+        List<Snapshot> snapshots = new ArrayList<>(speciesStatistics.size());
+        for (SpeciesStatistics statistics : speciesStatistics.values()) {
+            snapshots.add(statistics.createSnapshot());
+        }
+        return snapshots;
+    }
+
+    @Override
+    public void onAdd(Entity agent, long id) {
+        if (!agent.has(Moving.class) || !agent.has(Growing.class) || !agent.has(Aging.class)
+                || !agent.has(LifeCycling.class)) {
+            return;
+        }
+        SpeciesStatistics statistics = speciesStatistics.get(agent.get(SpeciesDefinition.class));
+        if (statistics == null) {
+            return;
+        }
+        Contribution oldContribution = contributions.remove(agent.getUuid());
+        if (oldContribution != null) {
+            oldContribution.subtract();
+        }
+
+        Growing growing = agent.get(Growing.class);
+        Contribution contribution = new Contribution(statistics, agent.get(LifeCycling.class));
+        contribution.mass = toFixedPoint(growing.getBiomassValue());
+        contribution.ageBucket = obtainBucket(statistics.ageBounds, agent.get(Aging.class).getAgeValue(), 0);
+        contribution.lengthBucket = obtainBucket(statistics.lengthBounds, growing.getLengthValue(), 0);
+        contribution.add();
+        contributions.put(agent.getUuid(), contribution);
+    }
+
+    @Override
+    public void onPhaseChange(Entity agent, long id, Phase oldPhase) {
+        Contribution contribution = contributions.get(agent.getUuid());
+        if (contribution == null) {
+            return;
+        }
+        contribution.subtract();
+        contribution.setPhase(agent.get(LifeCycling.class));
+        contribution.add();
+    }
+
+    @Override
+    public void onGrowth(Entity agent, long id) {
+        Contribution contribution = contributions.get(agent.getUuid());
+        if (contribution == null) {
+            return;
+        }
+        Growing growing = agent.get(Growing.class);
+        SpeciesStatistics statistics = contribution.statistics;
+
+        long mass = toFixedPoint(growing.getBiomassValue());
+        if (mass != contribution.mass) {
+            long delta = mass - contribution.mass;
+            statistics.masses.addAndGet(contribution.group.ordinal(), delta);
+            contribution.mass = mass;
+        }
+
+        int lengthBucket = obtainBucket(statistics.lengthBounds, growing.getLengthValue(), contribution.lengthBucket);
+        if (lengthBucket != contribution.lengthBucket) {
+            statistics.lengthCounts.decrementAndGet(contribution.lengthIndex());
+            contribution.lengthBucket = lengthBucket;
+            statistics.lengthCounts.incrementAndGet(contribution.lengthIndex());
+        }
+    }
+
+    @Override
+    public void onAging(Entity agent, long id) {
+        Contribution contribution = contributions.get(agent.getUuid());
+        if (contribution == null) {
+            return;
+        }
+        SpeciesStatistics statistics = contribution.statistics;
+        int ageBucket = obtainBucket(statistics.ageBounds, agent.get(Aging.class).getAgeValue(),
+                contribution.ageBucket);
+        if (ageBucket != contribution.ageBucket) {
+            statistics.ageCounts.decrementAndGet(contribution.ageIndex());
+            contribution.ageBucket = ageBucket;
+            statistics.ageCounts.incrementAndGet(contribution.ageIndex());
+        }
+    }
+
+    @Override
+    public void onRemove(Entity agent, long id) {
+        Contribution contribution = contributions.remove(agent.getUuid());
+        if (contribution != null) {
+            contribution.subtract();
+        }
+    }
+
+    private static long toFixedPoint(double biomass) {
+        return Math.round(biomass * MASS_SCALE);
+    }
+
+    /**
+     * @return the number of ages or lengths that exceeded the last partition
+     *         and were counted in it
+     */
+    long getClampedCount() {
+        return clampedCount.get();
+    }
+
+    /**
+     * Finds the bucket a value falls into, see
+     * {@link #findBucket(double[], double, int)}. Values beyond the last bound
+     * are counted, logging a warning on the first one.
+     *
+     * @param bounds
+     *            the inclusive upper bound of every bucket, ascending
+     * @param value
+     *            the value to find the bucket for
+     * @param start
+     *            the bucket to start the search from
+     * @return the index of the bucket
+     */
+    private int obtainBucket(double[] bounds, double value, int start) {
+        double max = bounds[bounds.length - 1];
+        if (!(value <= max) && clampedCount.getAndIncrement() == 0) {
+            logger.warning(value + " exceeds the last partition up to " + max
+                    + " and is counted in it. Further values are counted without warning.");
+        }
+        return findBucket(bounds, value, start);
+    }
+
+    /**
+     * Finds the bucket a value falls into, starting the search from the bucket
+     * it has been before. Values change slowly between updates, so that the
+     * search usually ends after a single comparison. Values beyond the bounds
+     * are sorted into the first or last bucket.
+     *
+     * @param bounds
+     *            the inclusive upper bound of every bucket, ascending
+     * @param value
+     *            the value to find the bucket for
+     * @param start
+     *            the bucket to start the search from
+     * @return the index of the bucket
+     */
+    static int findBucket(double[] bounds, double value, int start) {
+        int bucket = start;
+        while (bucket > 0 && value <= bounds[bucket - 1]) {
+            bucket--;
+        }
+        while (bucket < bounds.length - 1 && value > bounds[bucket]) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    /**
+     * Groups agents are counted in for population data.
+     *
+     * @author mey
+     *
+     */
+    enum Group {
+        JUVENILE,
+        /** Adult females in initial phase. */
+        ADULT_FEMALE,
+        /** All other agents, i.e. adult males. */
+        OTHER
+    }
+
+    /**
+     * Statistics for a single species. Counts and masses are stored per
+     * {@link Group}, age and length partitions per phase, ordered by partition
+     * first.
+     *
+     * @author mey
+     *
+     */
+    private static class SpeciesStatistics implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final SpeciesDefinition definition;
+        /** Upper bounds of age partitions (s). */
+        private final double[] ageBounds;
+        /** Upper bounds of length partitions (cm). */
+        private final double[] lengthBounds;
+
+        /** Counts per group, only changed while agents are not updated. */
+        private final int[] counts = new int[Group.values().length];
+        /** Fixed-point masses per group. */
+        private final AtomicLongArray masses = new AtomicLongArray(Group.values().length);
+        private final AtomicIntegerArray ageCounts;
+        private final AtomicIntegerArray lengthCounts;
+
+        private SpeciesStatistics(SpeciesDefinition definition) {
+            this.definition = definition;
+            ageBounds = toValues(AgeData.obtainIntervalMaxima(definition), UnitConstants.AGE);
+            lengthBounds = toValues(LengthData.obtainIntervalMaxima(), UnitConstants.BODY_LENGTH);
+            ageCounts = new AtomicIntegerArray(ageBounds.length * PHASES_COUNT);
+            lengthCounts = new AtomicIntegerArray(lengthBounds.length * PHASES_COUNT);
+        }
+
+        private static <Q extends Quantity> double[] toValues(List<Amount<Q>> amounts, Unit<Q> unit) {
+            return amounts.stream().mapToDouble(amount -> amount.doubleValue(unit)).toArray();
+        }
+
+        /**
+         * Creates a snapshot of the current statistics. Needs to be called
+         * while agents are not updated, so that it is consistent.
+         *
+         * @return the snapshot
+         */
+        public Snapshot createSnapshot() {
+            long[] massValues = new long[masses.length()];
+            for (int i = 0; i < massValues.length; i++) {
+                massValues[i] = masses.get(i);
+            }
+            return new Snapshot(definition, counts.clone(), massValues, toArray(ageCounts), toArray(lengthCounts));
+        }
+
+        private static int[] toArray(AtomicIntegerArray array) {
+            int[] values = new int[array.length()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = array.get(i);
+            }
+            return values;
+        }
+    }
+
+    /**
+     * Immutable copy of the statistics of a species at a certain time. Can be
+     * passed to other threads, e.g. to be written in the background.
+     *
+     * @author mey
+     *
+     */
+    static final class Snapshot implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final SpeciesDefinition definition;
+        private final int[] counts;
+        private final long[] masses;
+        private final int[] ageCounts;
+        private final int[] lengthCounts;
+
+        private Snapshot(SpeciesDefinition definition, int[] counts, long[] masses, int[] ageCounts,
+                int[] lengthCounts) {
+            this.definition = definition;
+            this.counts = counts;
+            this.masses = masses;
+            this.ageCounts = ageCounts;
+            this.lengthCounts = lengthCounts;
+        }
+
+        public SpeciesDefinition getDefinition() {
+            return definition;
+        }
+
+        /**
+         * @param group
+         * @return the number of agents in {@code group}
+         */
+        public int getCount(Group group) {
+            return counts[group.ordinal()];
+        }
+
+        /**
+         * @param group
+         * @return the accumulated biomass (g) of agents in {@code group}
+         */
+        public double getMass(Group group) {
+            return masses[group.ordinal()] / MASS_SCALE;
+        }
+
+        /** @return the number of agents in all groups */
+        public int getTotalCount() {
+            int totalCount = 0;
+            for (int count : counts) {
+                totalCount += count;
+            }
+            return totalCount;
+        }
+
+        /** @return the accumulated biomass (g) of agents in all groups */
+        public double getTotalMass() {
+            long totalMass = 0;
+            for (long mass : masses) {
+                totalMass += mass;
+            }
+            return totalMass / MASS_SCALE;
+        }
+
+        /**
+         * @param index
+         *            the index of the partition and phase, i.e.
+         *            <code>partition * 3 + phase</code>
+         * @return the number of agents in the age partition with that phase
+         */
+        public int getAgeCount(int index) {
+            return ageCounts[index];
+        }
+
+        /** @return the number of age partitions times phases */
+        public int getAgeCountsSize() {
+            return ageCounts.length;
+        }
+
+        /**
+         * @param index
+         *            the index of the partition and phase, i.e.
+         *            <code>partition * 3 + phase</code>
+         * @return the number of agents in the length partition with that phase
+         */
+        public int getLengthCount(int index) {
+            return lengthCounts[index];
+        }
+
+        /** @return the number of length partitions times phases */
+        public int getLengthCountsSize() {
+            return lengthCounts.length;
+        }
+    }
+
+    /**
+     * The contribution of a single agent to its species' statistics. Its
+     * fields are only changed by the thread updating the agent.
+     *
+     * @author mey
+     *
+     */
+    private static class Contribution implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final SpeciesStatistics statistics;
+        private Group group;
+        /** Offset of the phase within partitions: juvenile, initial, terminal. */
+        private int phaseOffset;
+        private long mass;
+        private int ageBucket;
+        private int lengthBucket;
+
+        public Contribution(SpeciesStatistics statistics, LifeCycling lifeCycling) {
+            this.statistics = statistics;
+            setPhase(lifeCycling);
+        }
+
+        private void setPhase(LifeCycling lifeCycling) {
+            if (lifeCycling.isAdultFemale()) {
+                group = Group.ADULT_FEMALE;
+            } else if (lifeCycling.getPhase() == Phase.JUVENILE) {
+                group = Group.JUVENILE;
+            } else {
+                group = Group.OTHER;
+            }
+
+            if (lifeCycling.getPhase() == Phase.INITIAL) {
+                phaseOffset = 1;
+            } else if (lifeCycling.getPhase() == Phase.TERMINAL) {
+                phaseOffset = 2;
+            } else {
+                phaseOffset = 0;
+            }
+        }
+
+        private int ageIndex() {
+            return ageBucket * PHASES_COUNT + phaseOffset;
+        }
+
+        private int lengthIndex() {
+            return lengthBucket * PHASES_COUNT + phaseOffset;
+        }
+
+        /** Adds this contribution to the statistics. */
+        private void add() {
+            statistics.counts[group.ordinal()]++;
+            statistics.masses.addAndGet(group.ordinal(), mass);
+            statistics.ageCounts.incrementAndGet(ageIndex());
+            statistics.lengthCounts.incrementAndGet(lengthIndex());
+        }
+
+        /** Subtracts this contribution from the statistics. */
+        private void subtract() {
+            statistics.counts[group.ordinal()]--;
+            statistics.masses.addAndGet(group.ordinal(), -mass);
+            statistics.ageCounts.decrementAndGet(ageIndex());
+            statistics.lengthCounts.decrementAndGet(lengthIndex());
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package de.zmt.output;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.ObjDoubleConsumer;
+
+/**
+ * Writes rows of typed values to a file. Values are added column by column,
+ * each row is ended with {@link #endRow()}.
+ * <p>
+ * Writing is not thread-safe and needs to be done from a single thread.
+ *
+ * @author mey
+ *
+ */
+public interface RowWriter extends Closeable {
+    /**
+     * Opens a writer for the given {@link Format}. The file is located at
+     * {@code basePath} with the format's extension appended. If not appending,
+     * the column names, types and units are written to a schema file next to
+     * it, see {@link OutputSchema}.
+     *
+     * @param basePath
+     *            the path of the file without extension
+     * @param format
+     *            the format to write
+     * @param columns
+     *            the columns of the rows to write
+     * @param decimalAppender
+     *            appends decimal values in text format
+     * @param append
+     *            <code>true</code> to append to an existing file,
+     *            <code>false</code> to replace it
+     * @return the writer
+     * @throws IOException
+     *             if the file cannot be opened
+     */
+    static RowWriter open(Path basePath, Format format, List<Column> columns,
+            ObjDoubleConsumer<StringBuilder> decimalAppender, boolean append) throws IOException {
+        return open(basePath, format, columns, decimalAppender, append, true);
+    }
+
+    /**
+     * Opens a writer for the given {@link Format}, like
+     * {@link #open(Path, Format, List, ObjDoubleConsumer, boolean)}. Callers
+     * already writing on their own thread can choose to write on it instead
+     * of handing over rows to another background thread.
+     *
+     * @param basePath
+     *            the path of the file without extension
+     * @param format
+     *            the format to write
+     * @param columns
+     *            the columns of the rows to write
+     * @param decimalAppender
+     *            appends decimal values in text format
+     * @param append
+     *            <code>true</code> to append to an existing file,
+     *            <code>false</code> to replace it
+     * @param background
+     *            <code>true</code> to write on a background thread,
+     *            <code>false</code> to write on the calling thread
+     * @return the writer
+     * @throws IOException
+     *             if the file cannot be opened
+     */
+    static RowWriter open(Path basePath, Format format, List<Column> columns,
+            ObjDoubleConsumer<StringBuilder> decimalAppender, boolean append, boolean background)
+            throws IOException {
+        Path path = obtainPath(basePath, format);
+        if (!append) {
+            OutputSchema.write(basePath, columns);
+        }
+        switch (format) {
+        case BINARY:
+            return new ColumnarWriter(path, columns, append, background);
+        default:
+            return new TextRowWriter(path, columns, decimalAppender, append, background);
+        }
+    }
+
+    /**
+     * Returns the path of the file written for the given {@link Format}.
+     *
+     * @param basePath
+     *            the path of the file without extension
+     * @param format
+     *            the format to write
+     * @return {@code basePath} with the format's extension appended
+     */
+    static Path obtainPath(Path basePath, Format format) {
+        return basePath.resolveSibling(basePath.getFileName() + "." + format.getExtension());
+    }
+
+    /**
+     * Adds an integral value.
+     *
+     * @param value
+     *            the value to add
+     * @return this writer
+     */
+    RowWriter add(long value);
+
+    /**
+     * Adds a decimal value.
+     *
+     * @param value
+     *            the value to add
+     * @return this writer
+     */
+    RowWriter add(double value);
+
+    /**
+     * Adds a value as string, e.g. an enum constant.
+     *
+     * @param value
+     *            the value to add
+     * @return this writer
+     */
+    RowWriter add(Object value);
+
+    /** Ends the current row. */
+    void endRow();
+
+    /** Hands over rows to be written, without waiting for it. */
+    void flush();
+
+    /**
+     * Writes all ended rows to the file and waits until done, keeping the
+     * file open for further rows.
+     *
+     * @throws IOException
+     *             if writing has failed
+     */
+    void sync() throws IOException;
+
+    /** Formats available for writing. */
+    public static enum Format {
+        /** Tab-separated text, one line per row. */
+        TEXT("csv"),
+        /** Binary typed columns, in compressed blocks of rows. */
+        BINARY("kcol");
+
+        private final String extension;
+
+        private Format(String extension) {
+            this.extension = extension;
+        }
+
+        /** @return the extension of files written in this format */
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    /** Types of values within a column. */
+    public static enum Type {
+        LONG, DOUBLE, STRING
+    }
+
+    /**
+     * A named and typed column. Values are written without unit, which is
+     * given by the column instead.
+     *
+     * @author mey
+     *
+     */
+    public static final class Column implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+        private final Type type;
+        /** The unit of values, empty if they have none. */
+        private final String unit;
+
+        /**
+         * Constructs a new {@link Column} with values that have no unit.
+         *
+         * @param name
+         *            the name of the column
+         * @param type
+         *            the type of values
+         */
+        public Column(String name, Type type) {
+            this(name, type, "");
+        }
+
+        /**
+         * Constructs a new {@link Column}.
+         *
+         * @param name
+         *            the name of the column
+         * @param type
+         *            the type of values
+         * @param unit
+         *            the unit of values
+         */
+        public Column(String name, Type type, String unit) {
+            this.name = name;
+            this.type = type;
+            this.unit = unit;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public String getUnit() {
+            return unit;
+        }
+
+        @Override
+        public String toString() {
+            return name + "(" + type + ")";
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package de.zmt.output;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Formats and writes snapshots on a background thread, so that the simulation
+ * can continue while the previous snapshot is written. Snapshots are passed
+ * through a bounded queue: if the background thread falls behind, submitting
+ * blocks until a snapshot has been written.
+ * <p>
+ * Submitting is not thread-safe and needs to be done from a single thread.
+ *
+ * @author mey
+ *
+ * @param <T>
+ *            the type of snapshots
+ */
+class SnapshotWriter<T> implements Closeable {
+    @SuppressWarnings("unused")
+    private static final Logger logger = Logger.getLogger(SnapshotWriter.class.getName());
+
+    /** Number of snapshots that can wait to be written. */
+    private static final int CAPACITY = 2;
+
+    /** Snapshots waiting to be written, with space left for the end of stream. */
+    private final BlockingQueue<Object> pending = new ArrayBlockingQueue<>(CAPACITY + 1);
+    /** Marks the end of the stream, compared by identity. */
+    private final Object endOfStream = new Object();
+    /** Requests syncing the file, compared by identity. */
+    private final Object syncRequest = new Object();
+    /** Released by the background thread when the file is synced. */
+    private final Semaphore synced = new Semaphore(0);
+    private final Thread writerThread;
+
+    /** Set if writing failed on the background thread. */
+    private volatile Exception failure;
+    private boolean closed = false;
+
+    /**
+     * Starts the background thread writing to {@code writer}, which is closed
+     * along with this object. The writer must not be used by other threads
+     * afterwards. It should be opened without a background thread of its own,
+     * so that every file is written by a single thread.
+     *
+     * @param name
+     *            the name of the background thread
+     * @param writer
+     *            the writer to write rows to
+     * @param rowWriter
+     *            writes a snapshot as row
+     */
+    public SnapshotWriter(String name, RowWriter writer, BiConsumer<RowWriter, T> rowWriter) {
+        writerThread = new Thread(() -> writeSnapshots(writer, rowWriter), name);
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /** Writes snapshots until the end of stream, run on the background thread. */
+    @SuppressWarnings("unchecked")
+    private void writeSnapshots(RowWriter writer, BiConsumer<RowWriter, T> rowWriter) {
+        try (RowWriter closingWriter = writer) {
+            while (true) {
+                Object snapshot = pending.take();
+                if (snapshot == endOfStream) {
+                    break;
+                }
+                if (snapshot == syncRequest) {
+                    if (failure == null) {
+                        try {
+                            closingWriter.sync();
+                        } catch (IOException | RuntimeException e) {
+                            failure = e;
+                        }
+                    }
+                    synced.release();
+                    continue;
+                }
+                // keep taking snapshots after failure to not block submitting
+                if (failure == null) {
+                    try {
+                        rowWriter.accept(closingWriter, (T) snapshot);
+                        closingWriter.flush();
+                    } catch (RuntimeException e) {
+                        failure = e;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            if (failure == null) {
+                failure = e;
+            }
+        } catch (InterruptedException e) {
+            logger.log(Level.WARNING, "Interrupted while writing.", e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Submits a snapshot to be written. Blocks if {@value #CAPACITY}
+     * snapshots are already waiting.
+     *
+     * @param snapshot
+     *            the snapshot to write
+     * @throws UncheckedIOException
+     *             if writing has failed
+     */
+    public void submit(T snapshot) {
+        checkState();
+        try {
+            pending.put(snapshot);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while submitting snapshot to be written.", e);
+        }
+    }
+
+    /**
+     * Writes all submitted snapshots and waits until they are in the file,
+     * which is kept open.
+     *
+     * @throws IOException
+     *             if writing has failed
+     */
+    public void sync() throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Writer is closed.");
+        }
+        try {
+            pending.put(syncRequest);
+            synced.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for snapshots to be written.", e);
+        }
+        if (failure != null) {
+            throw toIOException(failure);
+        }
+    }
+
+    private void checkState() {
+        if (closed) {
+            throw new IllegalStateException("Writer is closed.");
+        }
+        if (failure != null) {
+            throw new UncheckedIOException(toIOException(failure));
+        }
+    }
+
+    /**
+     * Writes all submitted snapshots and waits until the file is closed.
+     *
+     * @throws IOException
+     *             if writing has failed
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            pending.put(endOfStream);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for snapshots to be written.", e);
+        }
+        if (failure != null) {
+            throw toIOException(failure);
+        }
+    }
+
+    private static IOException toIOException(Exception exception) {
+        if (exception instanceof IOException) {
+            return (IOException) exception;
+        }
+        if (exception instanceof UncheckedIOException) {
+            return ((UncheckedIOException) exception).getCause();
+        }
+        return new IOException(exception);
+    }
+}
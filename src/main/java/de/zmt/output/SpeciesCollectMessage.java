@@ -0,0 +1,45 @@
+package de.zmt.output;
+
+import java.io.Serializable;
+import java.util.stream.Stream;
+
+import de.zmt.output.PopulationStatistics.Snapshot;
+import de.zmt.output.message.CollectMessage;
+import de.zmt.output.message.CollectMessageFactory;
+import de.zmt.output.message.SimpleCollectMessage;
+import sim.engine.SimState;
+
+/**
+ * A {@link CollectMessage} containing a {@link Snapshot} of the statistics of
+ * a species.
+ * 
+ * @author mey
+ *
+ */
+class SpeciesCollectMessage extends SimpleCollectMessage<Snapshot> {
+    private SpeciesCollectMessage(Snapshot simObject) {
+        super(simObject);
+    }
+
+    /**
+     * Factory creating a message for every species in
+     * {@link PopulationStatistics}.
+     * 
+     * @author mey
+     *
+     */
+    static class Factory implements CollectMessageFactory<SpeciesCollectMessage>, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final PopulationStatistics statistics;
+
+        public Factory(PopulationStatistics statistics) {
+            this.statistics = statistics;
+        }
+
+        @Override
+        public Stream<SpeciesCollectMessage> createCollectMessages(SimState state) {
+            return statistics.createSnapshots().stream().map(SpeciesCollectMessage::new);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package de.zmt.output;
+
+import de.zmt.output.collectable.Collectable;
+import de.zmt.output.message.CollectMessageFactory;
+import de.zmt.output.strategy.CollectStrategy;
+import de.zmt.output.strategy.MessageCollectStrategy;
+
+/**
+ * Abstract base implementation of {@link CollectStrategy} processing a
+ * {@link SpeciesCollectMessage} for every species in
+ * {@link PopulationStatistics}. Collectables are overwritten with the current
+ * statistics, so there is no need to clear them before.
+ * 
+ * @author mey
+ *
+ * @param <ColT>
+ *            the type of {@link Collectable}
+ */
+abstract class StatisticsCollectStrategy<ColT extends Collectable<?>>
+        extends MessageCollectStrategy<ColT, SpeciesCollectMessage> {
+    private static final long serialVersionUID = 1L;
+
+    private final CollectMessageFactory<SpeciesCollectMessage> factory;
+
+    /**
+     * @param statistics
+     *            the statistics to collect from
+     */
+    public StatisticsCollectStrategy(PopulationStatistics statistics) {
+        this.factory = new SpeciesCollectMessage.Factory(statistics);
+    }
+
+    @Override
+    protected CollectMessageFactory<SpeciesCollectMessage> getCollectMessageFactory() {
+        return factory;
+    }
+}
@@ -0,0 +1,249 @@
+package de.zmt.output;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.measure.quantity.Duration;
+
+import org.jscience.physics.amount.Amount;
+
+import de.zmt.output.PopulationStatistics.Snapshot;
+import de.zmt.output.RowWriter.Column;
+import de.zmt.output.RowWriter.Format;
+import de.zmt.params.SpeciesDefinition;
+import sim.engine.SimState;
+import sim.engine.Steppable;
+
+/**
+ * Writes population, age or length data from {@link PopulationStatistics} to
+ * file. When stepped, only a snapshot of the statistics is taken. Formatting
+ * and writing is done on a background thread, overlapping with the following
+ * steps of the simulation.
+ * <p>
+ * A row is written for every step, containing the values of every species.
+ * Columns are prefixed with the species name if there is more than one.
+ *
+ * @author mey
+ *
+ */
+public class StatisticsOutput implements Steppable {
+    private static final long serialVersionUID = 1L;
+    @SuppressWarnings("unused")
+    private static final Logger logger = Logger.getLogger(StatisticsOutput.class.getName());
+
+    /** Kinds of data that can be written. */
+    public static enum Kind {
+        /** Counts and masses, see {@link PopulationData}. */
+        POPULATION,
+        /** Counts per age partition, see {@link AgeData}. */
+        AGE,
+        /** Counts per length partition, see {@link LengthData}. */
+        LENGTH;
+
+        private List<Column> obtainColumns(SpeciesDefinition definition) {
+            switch (this) {
+            case AGE:
+                return AgeData.obtainColumns(definition);
+            case LENGTH:
+                return LengthData.obtainColumns();
+            default:
+                return PopulationData.COLUMNS;
+            }
+        }
+
+        private void addValues(RowWriter writer, Snapshot snapshot) {
+            switch (this) {
+            case AGE:
+                AgeData.addValues(writer, snapshot);
+                break;
+            case LENGTH:
+                LengthData.addValues(writer, snapshot);
+                break;
+            default:
+                PopulationData.addValues(writer, snapshot);
+            }
+        }
+    }
+
+    private final PopulationStatistics statistics;
+    private final Kind kind;
+    /**
+     * Directory of the file to write to, as string to be serializable.
+     * Changed when resuming from a moved output directory.
+     */
+    private String directory;
+    /** Name of the file within {@link #directory}, without extension. */
+    private final String fileName;
+    private final Format format;
+    private final OutputTimeUnit timeUnit;
+    /** Factor to convert steps to {@link #timeUnit}. */
+    private final double stepFactor;
+
+    /**
+     * <code>true</code> if the file has been created. Subsequent writers
+     * append to it, e.g. after resuming from a checkpoint.
+     */
+    private boolean started = false;
+    private transient SnapshotWriter<Row> writer;
+
+    /**
+     * Constructs a new {@link StatisticsOutput}. Needs to be scheduled at the
+     * interval data should be written.
+     *
+     * @param directory
+     *            the directory to write to
+     * @param fileName
+     *            the name of the file to write to, without extension
+     * @param kind
+     *            the kind of data to write
+     * @param format
+     *            the format to write in
+     * @param timeUnit
+     *            the unit the time of rows is written in
+     * @param stepDuration
+     *            the duration of one simulation step
+     * @param statistics
+     *            the statistics to write
+     */
+    public StatisticsOutput(Path directory, String fileName, Kind kind, Format format, OutputTimeUnit timeUnit,
+            Amount<Duration> stepDuration, PopulationStatistics statistics) {
+        this.directory = directory.toString();
+        this.fileName = fileName;
+        this.kind = kind;
+        this.format = format;
+        this.timeUnit = timeUnit;
+        this.stepFactor = timeUnit.obtainStepFactor(stepDuration);
+        this.statistics = statistics;
+    }
+
+    /** Takes a snapshot to be written in the background. */
+    @Override
+    public void step(SimState state) {
+        getWriter().submit(new Row(state.schedule.getSteps(), statistics.createSnapshots()));
+    }
+
+    /** @return the path of the file written to, including extension */
+    public Path getFilePath() {
+        return RowWriter.obtainPath(obtainBasePath(), format);
+    }
+
+    /**
+     * Sets the directory to write to, e.g. when resuming from a checkpoint
+     * after the output directory was moved. The file needs to be closed.
+     *
+     * @param directory
+     *            the directory to write to
+     */
+    public void setDirectory(Path directory) {
+        this.directory = directory.toString();
+    }
+
+    /** @return the path of the file written to, without extension */
+    private Path obtainBasePath() {
+        return Paths.get(directory, fileName);
+    }
+
+    /**
+     * Closes the file after all rows have been written. Writing continues in a
+     * new writer appending to the file.
+     */
+    public void close() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not write " + kind + " data to " + obtainBasePath(), e);
+        }
+        writer = null;
+    }
+
+    /**
+     * Waits for all rows to be written and flushes the file, which is kept
+     * open.
+     */
+    public void sync() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.sync();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not write " + kind + " data to " + obtainBasePath(), e);
+        }
+    }
+
+    private SnapshotWriter<Row> getWriter() {
+        if (writer != null) {
+            return writer;
+        }
+        try {
+            RowWriter rowWriter = RowWriter.open(obtainBasePath(), format,
+                    obtainColumns(kind, timeUnit, statistics.getDefinitions()),
+                    DecimalFormatter.DEFAULT::append, started, false);
+            started = true;
+            writer = new SnapshotWriter<>("writer-" + fileName, rowWriter, this::writeRow);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open " + kind + " data at " + obtainBasePath(), e);
+        }
+        return writer;
+    }
+
+    /**
+     * @param kind
+     *            the kind of data
+     * @param timeUnit
+     *            the unit the time of rows is written in
+     * @param definitions
+     *            the species written in every row
+     * @return {@link List} containing all columns in order
+     */
+    static List<Column> obtainColumns(Kind kind, OutputTimeUnit timeUnit,
+            Collection<? extends SpeciesDefinition> definitions) {
+        List<Column> columns = new ArrayList<>();
+        columns.add(timeUnit.createColumn());
+        for (SpeciesDefinition definition : definitions) {
+            for (Column column : kind.obtainColumns(definition)) {
+                if (definitions.size() > 1) {
+                    column = new Column(definition.getName() + "_" + column.getName(), column.getType(),
+                            column.getUnit());
+                }
+                columns.add(column);
+            }
+        }
+        return columns;
+    }
+
+    /** Writes a row, run on the background thread. */
+    private void writeRow(RowWriter rowWriter, Row row) {
+        timeUnit.addTime(rowWriter, row.steps, stepFactor);
+        for (Snapshot snapshot : row.snapshots) {
+            kind.addValues(rowWriter, snapshot);
+        }
+        rowWriter.endRow();
+    }
+
+    /**
+     * Snapshots of every species taken at a step.
+     *
+     * @author mey
+     *
+     */
+    private static class Row {
+        private final long steps;
+        private final List<Snapshot> snapshots;
+
+        public Row(long steps, List<Snapshot> snapshots) {
+            this.steps = steps;
+            this.snapshots = snapshots;
+        }
+    }
+}
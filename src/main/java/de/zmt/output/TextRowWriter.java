@@ -0,0 +1,95 @@
+package de.zmt.output;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.ObjDoubleConsumer;
+
+/**
+ * {@link RowWriter} for tab-separated text. A header with the column names is
+ * written on creation. Every value is followed by a separator like in other
+ * output files.
+ *
+ * @author mey
+ *
+ */
+class TextRowWriter implements RowWriter {
+    private static final char SEPARATOR = '\t';
+
+    private final AsyncTextWriter writer;
+    private final ObjDoubleConsumer<StringBuilder> decimalAppender;
+
+    /**
+     * Constructs a new {@link TextRowWriter}.
+     *
+     * @param path
+     *            the path of the file to write to
+     * @param columns
+     *            the columns written in the header
+     * @param decimalAppender
+     *            appends decimal values
+     * @param append
+     *            <code>true</code> to append to an existing file without
+     *            writing the header
+     * @param background
+     *            <code>true</code> to write on a background thread,
+     *            <code>false</code> to write on the calling thread
+     * @throws IOException
+     *             if the file cannot be opened
+     */
+    public TextRowWriter(Path path, List<Column> columns, ObjDoubleConsumer<StringBuilder> decimalAppender,
+            boolean append, boolean background) throws IOException {
+        this.writer = AsyncTextWriter.open(path, append, background);
+        this.decimalAppender = decimalAppender;
+
+        if (!append) {
+            StringBuilder header = writer.chunk();
+            for (Column column : columns) {
+                header.append(column.getName()).append(SEPARATOR);
+            }
+            header.append(System.lineSeparator());
+            writer.commit();
+        }
+    }
+
+    @Override
+    public RowWriter add(long value) {
+        writer.chunk().append(value).append(SEPARATOR);
+        return this;
+    }
+
+    @Override
+    public RowWriter add(double value) {
+        StringBuilder chunk = writer.chunk();
+        decimalAppender.accept(chunk, value);
+        chunk.append(SEPARATOR);
+        return this;
+    }
+
+    @Override
+    public RowWriter add(Object value) {
+        writer.chunk().append(value).append(SEPARATOR);
+        return this;
+    }
+
+    @Override
+    public void endRow() {
+        writer.chunk().append(System.lineSeparator());
+        writer.commit();
+    }
+
+    @Override
+    public void flush() {
+        writer.flush();
+    }
+
+    @Override
+    public void sync() throws IOException {
+        writer.sync();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
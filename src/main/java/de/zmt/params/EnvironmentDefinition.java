@@ -23,14 +23,17 @@ import com.thoughtworks.xstream.annotations.XStreamOmitField;
 import de.zmt.ecs.Component;
 import de.zmt.ecs.component.environment.FoodMap.FindFoodConverter;
 import de.zmt.ecs.component.environment.MapToWorldConverter;
+import de.zmt.output.OutputTimeUnit;
+import de.zmt.output.RowWriter;
 import de.zmt.util.AmountUtil;
 import de.zmt.util.FormulaUtil;
+import de.zmt.util.GridPositions;
 import de.zmt.util.Habitat;
+import de.zmt.util.ParamsUtil;
 import de.zmt.util.UnitConstants;
 import de.zmt.util.quantity.AreaDensity;
 import sim.util.Double2D;
 import sim.util.Int2D;
-import sim.util.Int2DCache;
 import sim.util.Proxiable;
 
 /**
@@ -79,11 +82,30 @@ public class EnvironmentDefinition extends BaseParamDefinition
      * @see FormulaUtil#growAlgae(Amount, Amount, Amount, Amount)
      */
     private Amount<Frequency> algalGrowthRate = Amount.valueOf(0.001, UnitConstants.PER_DAY);//in %
+    /**
+     * Let food regrow lazily when locations are read instead of updating the
+     * whole food grid every day.
+     * <p>
+     * Food-directed movement becomes approximate in this mode: the food
+     * potential map learns about regrowth of a location only when it is read,
+     * e.g. by an agent feeding there. Until then, grazed locations look as
+     * depleted as they were when last read, possibly for days. When updating
+     * agents in parallel, the propagation of read locations is also deferred
+     * until the current pass has finished.
+     * 
+     * @see de.zmt.ecs.component.environment.FoodMap#growFood(double)
+     */
+    private boolean lazyFoodGrowth = false;
     /**
      * The maximum number of agents allowed. Larvae will not be created if
      * beyond this count.
      */
     private int maxAgentCount = 175;
+    /**
+     * Number of threads used for updating agents. Agents are updated serially
+     * on the simulation thread if not greater than one.
+     */
+    private int agentThreadCount = 1;
 
     /** Interval in simulation time for writing population data to file. */
     private Amount<Duration> outputPopulationInterval = Amount.valueOf(1, DAY).to(UnitConstants.SIMULATION_TIME);
@@ -93,8 +115,23 @@ public class EnvironmentDefinition extends BaseParamDefinition
     private Amount<Duration> outputLengthInterval = Amount.valueOf(1, DAY).to(UnitConstants.SIMULATION_TIME);
     /** Interval in simulation time for writing stay durations to file. */
     private Amount<Duration> outputStayDurationsInterval = Amount.valueOf(1 , MONTH).to(UnitConstants.SIMULATION_TIME);
+    /**
+     * Edge length in cells of the square blocks stay durations are aggregated
+     * in. Durations are written per cell if 1.
+     */
+    private int stayBlockSize = 1;
     /** Interval in simulation time for writing LifeCycle data to file. */
     private Amount<Duration> outputLifeCylceInterval = Amount.valueOf(1, DAY).to(UnitConstants.SIMULATION_TIME);
+    /** Format of life cycle and stay durations output files. */
+    private RowWriter.Format outputFormat = RowWriter.Format.TEXT;
+    /** Unit of the time in life cycle and stay durations output files. */
+    private OutputTimeUnit outputTimeUnit = OutputTimeUnit.STEPS;
+    /**
+     * Interval in simulation time for writing checkpoints to the output
+     * directory, see {@link sim.engine.Kitt#checkpointIfDue()}. The run pauses
+     * while the state is serialized. Disabled if zero.
+     */
+    private Amount<Duration> checkpointInterval = Amount.valueOf(1, DAY).to(UnitConstants.SIMULATION_TIME);
 
     /**
      * used for very specific simulation runs
@@ -125,8 +162,21 @@ public class EnvironmentDefinition extends BaseParamDefinition
      */
     @Override
     public Int2D worldToMap(Double2D worldCoordinates) {
-        Double2D mapCoordinates = worldCoordinates.multiply(mapScale);
-        return Int2DCache.get((int) mapCoordinates.x, (int) mapCoordinates.y);
+        return worldToMap(worldCoordinates.x, worldCoordinates.y);
+    }
+
+    /**
+     * Converts world to map coordinates without creating a vector.
+     * 
+     * @see #worldToMap(Double2D)
+     * @param worldX
+     *            world coordinate x
+     * @param worldY
+     *            world coordinate y
+     * @return map coordinates
+     */
+    public Int2D worldToMap(double worldX, double worldY) {
+        return GridPositions.get((int) (worldX * mapScale), (int) (worldY * mapScale));
     }
 
     /**
@@ -170,6 +220,10 @@ public class EnvironmentDefinition extends BaseParamDefinition
         return maxAgentCount;
     }
 
+    public int getAgentThreadCount() {
+        return agentThreadCount;
+    }
+
     public Amount<Duration> getOutputPopulationInterval() {
         return outputPopulationInterval;
     }
@@ -190,10 +244,30 @@ public class EnvironmentDefinition extends BaseParamDefinition
         return outputStayDurationsInterval;
     }
 
+    public int getStayBlockSize() {
+        return stayBlockSize;
+    }
+
+    public RowWriter.Format getOutputFormat() {
+        return outputFormat;
+    }
+
+    public OutputTimeUnit getOutputTimeUnit() {
+        return outputTimeUnit;
+    }
+
+    public Amount<Duration> getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
     public Amount<Frequency> getAlgalGrowthRate() {
         return algalGrowthRate;
     }
 
+    public boolean isLazyFoodGrowth() {
+        return lazyFoodGrowth;
+    }
+
     @Override
     public String getTitle() {
         return "Environment";
@@ -208,6 +282,10 @@ public class EnvironmentDefinition extends BaseParamDefinition
     private Object readResolve() {
         inverseMapScale = computeInverseMapScale(mapScale);
         pixelArea = computePixelArea(inverseMapScale);
+        // missing in parameters written before it was added
+        if (checkpointInterval == null) {
+            checkpointInterval = Amount.valueOf(1, DAY).to(UnitConstants.SIMULATION_TIME);
+        }
         return this;
     }
 
@@ -287,6 +365,14 @@ public class EnvironmentDefinition extends BaseParamDefinition
             EnvironmentDefinition.this.maxAgentCount = maxAgentCount;
         }
 
+        public int getAgentThreadCount() {
+            return agentThreadCount;
+        }
+
+        public void setAgentThreadCount(int agentThreadCount) {
+            EnvironmentDefinition.this.agentThreadCount = Math.max(1, agentThreadCount);
+        }
+
         public String getOutputPopulationInterval() {
             return outputPopulationInterval.to(UnitConstants.SIMULATION_TIME).toString();
         }
@@ -311,6 +397,38 @@ public class EnvironmentDefinition extends BaseParamDefinition
             }
         }
 
+        public int getStayBlockSize() {
+            return stayBlockSize;
+        }
+
+        public void setStayBlockSize(int stayBlockSize) {
+            EnvironmentDefinition.this.stayBlockSize = Math.max(1, stayBlockSize);
+        }
+
+        public int getOutputFormat() {
+            return outputFormat.ordinal();
+        }
+
+        public void setOutputFormat(int outputFormatOrdinal) {
+            EnvironmentDefinition.this.outputFormat = RowWriter.Format.values()[outputFormatOrdinal];
+        }
+
+        public Object[] domOutputFormat() {
+            return ParamsUtil.obtainEnumDomain(RowWriter.Format.class);
+        }
+
+        public int getOutputTimeUnit() {
+            return outputTimeUnit.ordinal();
+        }
+
+        public void setOutputTimeUnit(int outputTimeUnitOrdinal) {
+            EnvironmentDefinition.this.outputTimeUnit = OutputTimeUnit.values()[outputTimeUnitOrdinal];
+        }
+
+        public Object[] domOutputTimeUnit() {
+            return ParamsUtil.obtainEnumDomain(OutputTimeUnit.class);
+        }
+
         public String getOutputStayDurationsInterval() {
             return outputStayDurationsInterval.to(UnitConstants.SIMULATION_TIME).toString();
         }
@@ -335,6 +453,19 @@ public class EnvironmentDefinition extends BaseParamDefinition
             }
         }
 
+        public String getCheckpointInterval() {
+            return checkpointInterval.to(UnitConstants.SIMULATION_TIME).toString();
+        }
+
+        public void setCheckpointInterval(String checkpointIntervalString) {
+            Amount<Duration> checkpointInterval = AmountUtil.parseAmount(checkpointIntervalString,
+                    UnitConstants.SIMULATION_TIME);
+            // zero disables checkpoints
+            if (checkpointInterval.isExact() && checkpointInterval.getExactValue() >= 0) {
+                EnvironmentDefinition.this.checkpointInterval = checkpointInterval;
+            }
+        }
+
         public String getAlgalGrowthRate() {
             return algalGrowthRate.toString();
         }
@@ -344,6 +475,14 @@ public class EnvironmentDefinition extends BaseParamDefinition
                     UnitConstants.PER_DAY);
         }
 
+        public boolean isLazyFoodGrowth() {
+            return lazyFoodGrowth;
+        }
+
+        public void setLazyFoodGrowth(boolean lazyFoodGrowth) {
+            EnvironmentDefinition.this.lazyFoodGrowth = lazyFoodGrowth;
+        }
+
         @Override
         public String toString() {
             return EnvironmentDefinition.this.getClass().getSimpleName();
@@ -1,5 +1,6 @@
 package de.zmt.storage;
 
+import javax.measure.quantity.Duration;
 import javax.measure.quantity.Energy;
 import javax.measure.quantity.Mass;
 import javax.measure.unit.Unit;
@@ -28,6 +29,14 @@ public interface Compartment extends LimitedStorage<Energy> {
      */
     Amount<Mass> toMass();
 
+    /**
+     * @return energy stored in compartment converted to mass (g) without
+     *         creating amounts
+     */
+    default double toMassValue() {
+        return getType().toMass(doubleValue());
+    }
+
     /**
      * Body compartment types storing energy including conversion methods from
      * mass to energy and energy to mass.
@@ -117,6 +126,42 @@ public interface Compartment extends LimitedStorage<Energy> {
             return mass.times(getEnergyPerMass()).to(UnitConstants.CELLULAR_ENERGY);
         }
 
+        /**
+         * 
+         * @param mass
+         *            the mass (g)
+         * @return energy (kJ) contained in given {@code mass} of this type
+         */
+        public double toEnergy(double mass) {
+            return mass * getEnergyPerMassValue();
+        }
+
+        /**
+         * 
+         * @param energy
+         *            the energy (kJ)
+         * @return mass (g) needed to store given {@code energy} of this type
+         */
+        public double toMass(double energy) {
+            return energy / getEnergyPerMassValue();
+        }
+
+        /** @return energy per mass of this type (kJ/g) */
+        private double getEnergyPerMassValue() {
+            switch (this) {
+            case FAT:
+                return KJ_PER_GRAM_FAT_VALUE;
+            case SHORTTERM:
+            case PROTEIN:
+            case EXCESS:
+                return KJ_PER_GRAM_PROTEIN_VALUE;
+            case REPRODUCTION:
+                return KJ_PER_GRAM_REPRO_VALUE;
+            default:
+                throw new IllegalArgumentException(ILLEGAL_ARGUMENT_MSG + this);
+            }
+        }
+
         private Amount<SpecificEnergy> getEnergyPerMass() {
             switch (this) {
             case FAT:
@@ -177,7 +222,9 @@ public interface Compartment extends LimitedStorage<Energy> {
 
     /**
      * Abstract implementation for a {@link Compartment} using {@link Unit}
-     * defined in {@link UnitConstants#CELLULAR_ENERGY}.
+     * defined in {@link UnitConstants#CELLULAR_ENERGY}. Limits are computed as
+     * plain values in that unit, amounts are only created when passed to the
+     * underlying storage.
      * 
      * @author mey
      * 
@@ -198,6 +245,30 @@ public interface Compartment extends LimitedStorage<Energy> {
             super(UNIT);
         }
 
+        /**
+         * Converts a duration on resting metabolic rate into the factor that
+         * yields the energy (kJ) when multiplied by a rate in
+         * {@link UnitConstants#ENERGY_PER_TIME}.
+         * 
+         * @param durationOnRmr
+         *            the duration resting metabolic rate is maintained
+         * @return the factor to obtain energy (kJ) from a rate value
+         */
+        protected static double toRmrFactor(Amount<Duration> durationOnRmr) {
+            return durationOnRmr.times(Amount.valueOf(1, UnitConstants.ENERGY_PER_TIME)).to(UNIT).getEstimatedValue();
+        }
+
+        /**
+         * Creates an amount from a value in the storage unit.
+         * 
+         * @param value
+         *            the value (kJ)
+         * @return the amount
+         */
+        protected static Amount<Energy> toAmount(double value) {
+            return Amount.valueOf(value, UNIT);
+        }
+
         /**
          * @param fillLevel
          *            value between 0-1 defining the initial fill level between
@@ -211,7 +282,13 @@ public interface Compartment extends LimitedStorage<Energy> {
             double lowerLimitValue = getLowerLimit().doubleValue(UNIT);
             double upperLimitValue = getUpperLimit().doubleValue(UNIT);
             double fillValue = (fillLevel * (upperLimitValue - lowerLimitValue)) + lowerLimitValue;
-            setAmount(Amount.valueOf(fillValue, UNIT));
+            setAmount(toAmount(fillValue));
+        }
+
+        /** @return the stored energy (kJ) */
+        @Override
+        public double doubleValue() {
+            return getAmount().doubleValue(UNIT);
         }
 
         @Override
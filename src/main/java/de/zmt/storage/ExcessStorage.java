@@ -6,7 +6,6 @@ import javax.measure.quantity.Energy;
 import org.jscience.physics.amount.Amount;
 
 import de.zmt.ecs.component.agent.Metabolizing;
-import de.zmt.util.UnitConstants;
 import sim.util.AmountValuable;
 import sim.util.Valuable;
 
@@ -22,23 +21,22 @@ public class ExcessStorage extends Compartment.AbstractCompartmentStorage {
 
     private final Metabolizing metabolizing;
     /**
-     * Excess desired storage capacity on RMR. Fish will be hungry until desired
-     * excess is achieved.
+     * Excess desired storage capacity on RMR, as factor on RMR (kJ/h). Fish
+     * will be hungry until desired excess is achieved.
      */
-    private final Amount<Duration> desiredExcessRmr;
+    private final double desiredExcessRmrFactor;
 
     public ExcessStorage(Metabolizing metabolizing, Amount<Duration> desiredExcessRmr) {
         super();
         this.metabolizing = metabolizing;
-        this.desiredExcessRmr = desiredExcessRmr;
+        this.desiredExcessRmrFactor = toRmrFactor(desiredExcessRmr);
     }
 
     /**
      * @return <code>true</code> if storage is at or beyond the desired amount
      */
     public boolean atDesired() {
-        Amount<Energy> desiredAmount = getDesired();
-        return getAmount().compareTo(desiredAmount) >= 0;
+        return doubleValue() >= getDesiredValue();
     }
 
     @Override
@@ -47,9 +45,12 @@ public class ExcessStorage extends Compartment.AbstractCompartmentStorage {
     }
 
     private Amount<Energy> getDesired() {
-        Amount<Energy> desiredAmount = desiredExcessRmr.times(metabolizing.getRestingMetabolicRate())
-                .to(UnitConstants.CELLULAR_ENERGY);
-        return desiredAmount;
+        return toAmount(getDesiredValue());
+    }
+
+    /** @return the desired amount (kJ) */
+    private double getDesiredValue() {
+        return desiredExcessRmrFactor * metabolizing.getRestingMetabolicRateValue();
     }
 
     @Override
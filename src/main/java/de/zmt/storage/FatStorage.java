@@ -43,7 +43,7 @@ public class FatStorage extends Compartment.AbstractCompartmentStorage {
      */
     @Override
     protected Amount<Energy> getLowerLimit() {
-        return Type.FAT.toEnergy(growing.getBiomass().times(LOWER_LIMIT_BIOMASS_FRACTION));
+        return toAmount(Type.FAT.toEnergy(growing.getBiomassValue() * LOWER_LIMIT_BIOMASS_FRACTION));
     }
 
     /**
@@ -56,7 +56,7 @@ public class FatStorage extends Compartment.AbstractCompartmentStorage {
      */
     @Override
     protected Amount<Energy> getUpperLimit() {
-        return Type.FAT.toEnergy(growing.getBiomass().times(UPPER_LIMIT_BIOMASS_FRACTION));
+        return toAmount(Type.FAT.toEnergy(growing.getBiomassValue() * UPPER_LIMIT_BIOMASS_FRACTION));
     }
 
     @Override
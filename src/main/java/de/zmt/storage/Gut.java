@@ -2,11 +2,9 @@ package de.zmt.storage;
 
 import static javax.measure.unit.SI.*;
 
-import java.util.concurrent.Delayed;
-import java.util.concurrent.TimeUnit;
+import java.io.Serializable;
 
 import javax.measure.quantity.Dimensionless;
-import javax.measure.quantity.Duration;
 import javax.measure.quantity.Energy;
 import javax.measure.quantity.Mass;
 import javax.measure.unit.Unit;
@@ -16,37 +14,56 @@ import org.jscience.physics.amount.Amount;
 import de.zmt.ecs.component.agent.Aging;
 import de.zmt.ecs.component.agent.Growing;
 import de.zmt.params.SpeciesDefinition;
-import de.zmt.util.AmountUtil;
 import de.zmt.util.UnitConstants;
-import sim.util.Bag;
 
 /**
- * A limited {@link StoragePipeline} used to model a gut. Digesta are created
- * when food is added. They can be drained after a certain amount of time and
+ * A limited storage used to model a gut. Digesta are created when food is
+ * added. They can be drained after a certain amount of time and
  * consumed or stored in other compartments.
+ * <p>
+ * Digesta are kept in a circular buffer of primitive pairs of the fish's age
+ * when digestion is finished and the contained energy. Energy is stored in
+ * fixed-point micro joules so that the sum stays exact while digesta are
+ * added and removed.
  * 
  * @author mey
  *
  */
-public class Gut extends AbstractLimitedStoragePipeline<Energy> implements Compartment {
+public class Gut implements Compartment, Serializable {
     private static final long serialVersionUID = 1L;
 
     private static final int UPPER_LIMIT_GUT_MG_DW_FOOD_PER_G_WW_BIOMASS = 17;
     private static final Amount<Dimensionless> UPPER_LIMIT_FOOD_PER_BIOMASS = Amount.valueOf(
             UPPER_LIMIT_GUT_MG_DW_FOOD_PER_G_WW_BIOMASS,
             MILLI(GRAM).divide(UnitConstants.BIOMASS).asType(Dimensionless.class));
+    private static final double UPPER_LIMIT_FOOD_PER_BIOMASS_VALUE = UPPER_LIMIT_FOOD_PER_BIOMASS
+            .doubleValue(Unit.ONE);
+    /** Fixed-point scale of digesta energy: micro joules per kJ. */
+    private static final double MICRO_JOULES_PER_KJ = 1e9;
+    private static final int INITIAL_CAPACITY = 16;
 
     private final SpeciesDefinition definition;
     private final Growing growing;
     private final Aging aging;
-    private final Bag queue = new Bag(); //bag is faster than arrayList or similar
-    private Amount<Energy> sum = Amount.valueOf(0,UnitConstants.CELLULAR_ENERGY);
+    /** Gut transit duration (s). */
+    private final double transitDuration;
+
+    /** Age of fish when digestion is finished (s), for each digesta. */
+    private double[] finishAges = new double[INITIAL_CAPACITY];
+    /** Energy contained in each digesta (&micro;J). */
+    private long[] energies = new long[INITIAL_CAPACITY];
+    /** Index of the oldest digesta. */
+    private int head = 0;
+    /** Number of digesta in the buffer. */
+    private int count = 0;
+    /** Sum of all digesta (&micro;J). */
+    private long sum = 0;
 
     public Gut(final SpeciesDefinition definition, final Growing growing, Aging aging) {
-        super(new SumStorage(UnitConstants.CELLULAR_ENERGY, growing, definition));
         this.growing = growing;
         this.definition = definition;
         this.aging = aging;
+        this.transitDuration = definition.getGutTransitDuration().doubleValue(UnitConstants.AGE);
     }
 
     @Override
@@ -54,176 +71,150 @@ public class Gut extends AbstractLimitedStoragePipeline<Energy> implements Compa
         return getType().toMass(getAmount());
     }
 
-    @Override
-    protected AbstractLimitedStoragePipeline.DelayedStorage<Energy> createDelayedStorage(Amount<Energy> storedAmount) {
-        return new Digesta(storedAmount);
-    }
-
     @Override
     public Type getType() {
         return Type.GUT;
     }
 
     public Amount<Energy> getAndRemoveProcessed(){
-        Amount<Energy> total = Amount.valueOf(0, UnitConstants.CELLULAR_ENERGY);
-        boolean objectsLeftToProcess = true;
-        while (objectsLeftToProcess){
-            if(queue.isEmpty())
-                break;
-
-            Digesta d = (Digesta)queue.get(0);
-
-            if(d.getDelay(TimeUnit.SECONDS) <= 0) {
-                total = total.plus(d.getAmount());
-                if(sum.isLessThan(d.getAmount()))
-                    sum = Amount.valueOf(0, UnitConstants.CELLULAR_ENERGY);
-                else
-                    sum = sum.minus(d.getAmount());
-
-                queue.removeNondestructively(0); //a little bit slower but keeps ordering
-            }else{
-                //elements are sorted by time, first element not read therefore indicates that none remaining is ready
-                objectsLeftToProcess = false;
-            }
-        }
+        return Amount.valueOf(getAndRemoveProcessedValue(), UnitConstants.CELLULAR_ENERGY);
+    }
 
-        if(queue.isEmpty())
-            sum = Amount.valueOf(0, UnitConstants.CELLULAR_ENERGY);
+    /**
+     * Removes digesta whose digestion is finished.
+     * 
+     * @return the assimilated energy of the removed digesta (kJ)
+     */
+    public double getAndRemoveProcessedValue() {
+        double age = aging.getAgeValue();
+        long total = 0;
+        // digesta are ordered by finish age: stop at the first one not ready
+        while (count > 0 && finishAges[head] <= age) {
+            total += energies[head];
+            head = (head + 1) & (energies.length - 1);
+            count--;
+        }
+        sum -= total;
 
-        return total.times(definition.getAssimilationEfficiency());
+        return total / MICRO_JOULES_PER_KJ * definition.getAssimilationEfficiency();
     }
 
-    public void clearGut(){
-        sum = Amount.valueOf(0, UnitConstants.CELLULAR_ENERGY);
-        queue.clear();
+    /**
+     * Clears the gut and returns the removed energy.
+     */
+    @Override
+    public Amount<Energy> clear() {
+        Amount<Energy> cleared = getAmount();
+        head = 0;
+        count = 0;
+        sum = 0;
+        return cleared;
     }
 
     @Override
     public Amount<Energy> getAmount(){
-        return sum;
+        return Amount.valueOf(doubleValue(), UnitConstants.CELLULAR_ENERGY);
+    }
+
+    /** @return the sum of all digesta (kJ) */
+    @Override
+    public double doubleValue() {
+        return sum / MICRO_JOULES_PER_KJ;
     }
 
-    public int getGutSize(){ return queue.size(); }
+    public int getGutSize(){ return count; }
+
+    @Override
+    public Amount<Energy> store(Amount<Energy> amount) {
+        return add(amount).getStored();
+    }
 
     @Override
     public ChangeResult<Energy> add(Amount<Energy> amount) {
-         Amount<Energy> stored = Amount.valueOf(0,UnitConstants.CELLULAR_ENERGY);
-        Amount<Energy> rejected = Amount.valueOf(0,UnitConstants.CELLULAR_ENERGY);
-        Amount<Energy> freeSpace = getUpperLimit().minus(sum);
-        if(freeSpace.getEstimatedValue() <= 0){
-            rejected = amount;
-        }else if(amount.isGreaterThan(freeSpace)){
-            stored = stored.plus(freeSpace);
-            rejected = rejected.plus(amount.minus(freeSpace));
+        double amountValue = amount.doubleValue(UnitConstants.CELLULAR_ENERGY);
+        double stored = 0;
+        double rejected = 0;
+        double freeSpace = getUpperLimitValue() - doubleValue();
+        if(freeSpace <= 0){
+            rejected = amountValue;
+        }else if(amountValue > freeSpace){
+            stored = freeSpace;
+            rejected = amountValue - freeSpace;
         }else{
-            stored = stored.plus(amount);
+            stored = amountValue;
         }
 
-        if(stored.isGreaterThan(Amount.valueOf(0,UnitConstants.CELLULAR_ENERGY))) {
-            sum = sum.plus(stored);
-            queue.add(new Digesta(stored));
+        long storedMicroJoules = Math.round(stored * MICRO_JOULES_PER_KJ);
+        if(storedMicroJoules > 0) {
+            append(aging.getAgeValue() + transitDuration, storedMicroJoules);
         }
 
-        return new ChangeResult<>(stored,rejected);
-    }
-
-    @Override
-    public boolean atUpperLimit(){
-        int result = sum.compareTo(getUpperLimit());
-        return result >= 0;
-    }
-
-    public Amount<Energy> getUpperLimit() {
-        return UPPER_LIMIT_FOOD_PER_BIOMASS.times(definition.getEnergyContentFood()).times(growing.getBiomass())
-                .to(UnitConstants.CELLULAR_ENERGY);
+        return new ChangeResult<>(Amount.valueOf(stored, UnitConstants.CELLULAR_ENERGY),
+                Amount.valueOf(rejected, UnitConstants.CELLULAR_ENERGY));
     }
 
     /**
-     * Food undergoing digestion.
-     * 
-     * @author mey
+     * Appends a digesta at the end of the buffer, doubling its capacity if
+     * full.
      * 
+     * @param finishAge
+     *            the age when digestion is finished (s)
+     * @param energy
+     *            the contained energy (&micro;J)
      */
-    private class Digesta extends AbstractLimitedStoragePipeline.DelayedStorage<Energy> {
-        private static final long serialVersionUID = 1L;
-
-        /** Age of fish when digestion of this digesta is finished. */
-        protected final Amount<Duration> digestionFinishedAge;
-
-        /**
-         * Create new digesta with given amount of energy.
-         * 
-         * @param energy
-         *            in kJ
-         */
-        public Digesta(Amount<Energy> energy) {
-            super(energy);
-            this.digestionFinishedAge = aging.getAge().plus(definition.getGutTransitDuration());
+    private void append(double finishAge, long energy) {
+        if (count == energies.length) {
+            double[] newFinishAges = new double[count * 2];
+            long[] newEnergies = new long[count * 2];
+            for (int i = 0; i < count; i++) {
+                int index = (head + i) & (count - 1);
+                newFinishAges[i] = finishAges[index];
+                newEnergies[i] = energies[index];
+            }
+            finishAges = newFinishAges;
+            energies = newEnergies;
+            head = 0;
         }
 
-        @Override
-        public long getDelay(TimeUnit unit) {
-            Amount<Duration> delay = digestionFinishedAge.minus(aging.getAge());
-            return AmountUtil.toTimeUnit(delay, unit);
-        }
+        int tail = (head + count) & (energies.length - 1);
+        finishAges[tail] = finishAge;
+        energies[tail] = energy;
+        count++;
+        sum += energy;
+    }
 
-        @Override
-        public int compareTo(Delayed o) {
-            // shortcut for better performance
-            if (o instanceof Gut.Digesta) {
-                return digestionFinishedAge.compareTo(((Gut.Digesta) o).digestionFinishedAge);
-            }
-            return super.compareTo(o);
-        }
+    @Override
+    public boolean atLowerLimit() {
+        return sum <= 0;
+    }
 
+    @Override
+    public boolean atUpperLimit(){
+        return doubleValue() >= getUpperLimitValue();
+    }
+
+    public Amount<Energy> getUpperLimit() {
+        return Amount.valueOf(getUpperLimitValue(), UnitConstants.CELLULAR_ENERGY);
     }
 
     /**
-     * Stores sum of all {@link Digesta}s currently in gut and specifies limits.
+     * Upper limit depending on biomass:
+     * 
+     * <pre>
+     * upper_limit_kJ = {@value #UPPER_LIMIT_GUT_MG_DW_FOOD_PER_G_WW_BIOMASS} [mg/g, food dry weight per biomass]
+     * 	&sdot; {@code energyContentFood} [kJ/g] &sdot; biomass [g]
+     * </pre>
      * 
-     * @author mey
-     *
+     * @return the upper limit (kJ)
      */
-    private static class SumStorage extends ConfigurableStorage<Energy> {
-        private static final long serialVersionUID = 1L;
-
-        private static final int UPPER_LIMIT_GUT_MG_DW_FOOD_PER_G_WW_BIOMASS = 17;
-        /**
-         * Amount of food per biomass for deriving upper limit.
-         * 
-         * @see #getUpperLimit()
-         */
-        private static final Amount<Dimensionless> UPPER_LIMIT_FOOD_PER_BIOMASS = Amount.valueOf(
-                UPPER_LIMIT_GUT_MG_DW_FOOD_PER_G_WW_BIOMASS,
-                MILLI(GRAM).divide(UnitConstants.BIOMASS).asType(Dimensionless.class));
-
-        private final Growing growing;
-        private final SpeciesDefinition definition;
-
-        private SumStorage(Unit<Energy> unit, Growing growing, SpeciesDefinition definition) {
-            super(unit);
-            this.growing = growing;
-            this.definition = definition;
-        }
-
-        /**
-         * Upper limit depending on biomass:
-         * 
-         * <pre>
-         * upper_limit_kJ = {@value #UPPER_LIMIT_GUT_MG_DW_FOOD_PER_G_WW_BIOMASS} [mg/g, food dry weight per biomass]
-         * 	&sdot; {@code energyContentFood} [kJ/g] &sdot; biomass [g]
-         * </pre>
-         */
-        @Override
-        protected Amount<Energy> getUpperLimit() {
-            return UPPER_LIMIT_FOOD_PER_BIOMASS.times(definition.getEnergyContentFood()).times(growing.getBiomass())
-                    .to(UnitConstants.CELLULAR_ENERGY);
-        }
+    private double getUpperLimitValue() {
+        return UPPER_LIMIT_FOOD_PER_BIOMASS_VALUE
+                * definition.getEnergyContentFood().doubleValue(UnitConstants.ENERGY_CONTENT_FOOD)
+                * growing.getBiomassValue();
+    }
 
-        @Override
-        protected double getFactorOut() {
-            // energy is lost while digesting
-            return definition.getGutFactorOut();
-        }
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[amount=" + getAmount() + ", digesta=" + count + "]";
     }
-}
\ No newline at end of file
+}
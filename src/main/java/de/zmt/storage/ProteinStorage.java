@@ -43,7 +43,7 @@ public class ProteinStorage extends Compartment.AbstractCompartmentStorage {
      */
     @Override
     protected Amount<Energy> getLowerLimit() {
-        return Type.PROTEIN.toEnergy(growing.getExpectedBiomass().times(LOWER_LIMIT_EXP_BIOMASS_FRACTION));
+        return toAmount(Type.PROTEIN.toEnergy(growing.getExpectedBiomassValue() * LOWER_LIMIT_EXP_BIOMASS_FRACTION));
     }
 
     /**
@@ -56,7 +56,7 @@ public class ProteinStorage extends Compartment.AbstractCompartmentStorage {
      */
     @Override
     protected Amount<Energy> getUpperLimit() {
-        return Type.PROTEIN.toEnergy(growing.getExpectedBiomass().times(UPPER_LIMIT_EXP_BIOMASS_FRACTION));
+        return toAmount(Type.PROTEIN.toEnergy(growing.getExpectedBiomassValue() * UPPER_LIMIT_EXP_BIOMASS_FRACTION));
     }
 
     @Override
@@ -11,7 +11,8 @@ import ec.util.MersenneTwisterFast;
  * A storage for reproductive energy. Limits are computed from fractions applied
  * on the agent's biomass. A random component is added each time the limits are
  * refreshed. Refresh needs to be done manually by calling
- * {@link #refreshLowerLimit()} and {@link #refreshUpperLimit()}.
+ * {@link #refreshLowerLimit(MersenneTwisterFast)} and
+ * {@link #refreshUpperLimit(MersenneTwisterFast)}.
  * <p>
  * 
  * <pre>
@@ -37,10 +38,11 @@ public class ReproductionStorage extends Compartment.AbstractCompartmentStorage
     private static final double UPPER_LIMIT_VARIANCE = 0.025;
 
     private final Growing growing;
-    private final MersenneTwisterFast random;
 
-    private Amount<Energy> lowerLimit;
-    private Amount<Energy> upperLimit;
+    /** Lower limit (kJ), <code>NaN</code> until refreshed. */
+    private double lowerLimit = Double.NaN;
+    /** Upper limit (kJ), <code>NaN</code> until refreshed. */
+    private double upperLimit = Double.NaN;
 
     /**
      * Constructs an empty {@link ReproductionStorage}.
@@ -48,13 +50,10 @@ public class ReproductionStorage extends Compartment.AbstractCompartmentStorage
      * @param growing
      *            the {@link Growing} component of the entity this storage
      *            belongs to
-     * @param random
-     *            the random number generator of the simulation
      */
-    public ReproductionStorage(Growing growing, MersenneTwisterFast random) {
+    public ReproductionStorage(Growing growing) {
         super();
         this.growing = growing;
-        this.random = random;
     }
 
     /**
@@ -70,10 +69,10 @@ public class ReproductionStorage extends Compartment.AbstractCompartmentStorage
      *            lower and upper limit
      */
     public ReproductionStorage(Growing growing, MersenneTwisterFast random, double fillLevel) {
-        this(growing, random);
+        this(growing);
 
-        refreshLowerLimit();
-        refreshUpperLimit();
+        refreshLowerLimit(random);
+        refreshUpperLimit(random);
 
         fill(fillLevel);
     }
@@ -86,9 +85,11 @@ public class ReproductionStorage extends Compartment.AbstractCompartmentStorage
      * lower_limit_kj = biomass &sdot; ({@value #LOWER_LIMIT_BIOMASS_FRACTION} &plusmn; {@value #LOWER_LIMIT_VARIANCE}) &sdot; kJ / g (repro)
      * </pre>
      * 
+     * @param random
+     *            the random number generator to be used
      */
-    public void refreshLowerLimit() {
-        lowerLimit = computeLimit(LOWER_LIMIT_BIOMASS_FRACTION, LOWER_LIMIT_VARIANCE);
+    public void refreshLowerLimit(MersenneTwisterFast random) {
+        lowerLimit = computeLimit(LOWER_LIMIT_BIOMASS_FRACTION, LOWER_LIMIT_VARIANCE, random);
     }
 
     /**
@@ -98,15 +99,18 @@ public class ReproductionStorage extends Compartment.AbstractCompartmentStorage
      * <pre>
      * upper_limit_kj = biomass [g] &sdot; ({@value #UPPER_LIMIT_BIOMASS_FRACTION} &plusmn; {@value #UPPER_LIMIT_VARIANCE})&sdot; kJ / g (repro)
      * </pre>
+     * 
+     * @param random
+     *            the random number generator to be used
      */
-    public void refreshUpperLimit() {
-        upperLimit = computeLimit(UPPER_LIMIT_BIOMASS_FRACTION, UPPER_LIMIT_VARIANCE);
+    public void refreshUpperLimit(MersenneTwisterFast random) {
+        upperLimit = computeLimit(UPPER_LIMIT_BIOMASS_FRACTION, UPPER_LIMIT_VARIANCE, random);
     }
 
 
-    private Amount<Energy> computeLimit(double fraction, double margin) {
+    private double computeLimit(double fraction, double margin, MersenneTwisterFast random) {
         double variance = (random.nextDouble() * 2 - 1) * margin;
-        return growing.getEnergy().times(fraction + variance);
+        return growing.getEnergyValue() * (fraction + variance);
     }
 
     @Override
@@ -118,16 +122,16 @@ public class ReproductionStorage extends Compartment.AbstractCompartmentStorage
         return super.add(amountToAdd);
     }
 
-    /** @see #refreshLowerLimit() */
+    /** @see #refreshLowerLimit(MersenneTwisterFast) */
     @Override
     protected Amount<Energy> getLowerLimit() {
-        return lowerLimit;
+        return Double.isNaN(lowerLimit) ? null : toAmount(lowerLimit);
     }
 
-    /** @see #refreshUpperLimit() */
+    /** @see #refreshUpperLimit(MersenneTwisterFast) */
     @Override
     protected Amount<Energy> getUpperLimit() {
-        return upperLimit;
+        return Double.isNaN(upperLimit) ? null : toAmount(upperLimit);
     }
 
     @Override
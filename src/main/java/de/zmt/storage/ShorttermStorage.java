@@ -12,11 +12,11 @@ public class ShorttermStorage extends Compartment.AbstractCompartmentStorage {
 
     private final Metabolizing metabolizing;
     /**
-     * Short-term maximum storage capacity on RMR.
+     * Short-term maximum storage capacity on RMR, as factor on RMR (kJ/h).
      * 
      * @see #getUpperLimit()
      */
-    private final Amount<Duration> upperLimitRmr;
+    private final double upperLimitRmrFactor;
 
     /**
      * Constructs a new {@link ShorttermStorage}.
@@ -33,7 +33,7 @@ public class ShorttermStorage extends Compartment.AbstractCompartmentStorage {
         super();
 
         this.metabolizing = metabolizing;
-        this.upperLimitRmr = upperLimitRmr;
+        this.upperLimitRmrFactor = toRmrFactor(upperLimitRmr);
         fill(fillLevel);
     }
 
@@ -42,7 +42,7 @@ public class ShorttermStorage extends Compartment.AbstractCompartmentStorage {
      */
     @Override
     protected Amount<Energy> getUpperLimit() {
-        return upperLimitRmr.times(metabolizing.getRestingMetabolicRate()).to(getAmount().getUnit());
+        return toAmount(upperLimitRmrFactor * metabolizing.getRestingMetabolicRateValue());
     }
 
     @Override
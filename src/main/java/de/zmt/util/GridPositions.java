@@ -0,0 +1,69 @@
+package de.zmt.util;
+
+import sim.util.Int2D;
+
+/**
+ * Cache for {@link Int2D} grid positions, replacing the global
+ * {@code Int2DCache}, which is resized by every simulation to its own map
+ * size. Here the cache only grows, so that simulations with different map
+ * sizes can run concurrently within the same JVM without interfering with each
+ * other. Cached positions are immutable and can be shared between all
+ * simulations.
+ *
+ * @author mey
+ *
+ */
+public final class GridPositions {
+    private GridPositions() {
+
+    }
+
+    /**
+     * Cached positions indexed by {@code [x][y]}. Replaced when growing, never
+     * modified after being published.
+     */
+    private static volatile Int2D[][] positions = new Int2D[0][0];
+
+    /**
+     * Ensures positions are cached for a grid of the given size. Positions
+     * cached before are kept.
+     *
+     * @param width
+     *            the width of the grid
+     * @param height
+     *            the height of the grid
+     */
+    public static synchronized void ensureSize(int width, int height) {
+        Int2D[][] current = positions;
+        int currentHeight = current.length > 0 ? current[0].length : 0;
+        if (width <= current.length && height <= currentHeight) {
+            return;
+        }
+
+        int newWidth = Math.max(width, current.length);
+        int newHeight = Math.max(height, currentHeight);
+        Int2D[][] grown = new Int2D[newWidth][newHeight];
+        for (int x = 0; x < newWidth; x++) {
+            for (int y = 0; y < newHeight; y++) {
+                grown[x][y] = x < current.length && y < currentHeight ? current[x][y] : new Int2D(x, y);
+            }
+        }
+        positions = grown;
+    }
+
+    /**
+     * Returns the position at the given coordinates. If it is not within the
+     * cached size, a new one is created.
+     *
+     * @param x
+     * @param y
+     * @return {@link Int2D} at the given coordinates
+     */
+    public static Int2D get(int x, int y) {
+        Int2D[][] current = positions;
+        if (x >= 0 && y >= 0 && x < current.length && y < current[x].length) {
+            return current[x][y];
+        }
+        return new Int2D(x, y);
+    }
+}
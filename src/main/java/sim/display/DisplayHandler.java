@@ -3,6 +3,7 @@ package sim.display;
 import static javax.measure.unit.NonSI.MINUTE;
 
 import java.awt.Color;
+import java.awt.Graphics2D;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
@@ -32,6 +33,7 @@ import sim.engine.Kitt;
 import sim.engine.ZmtSimState;
 import sim.field.continuous.Continuous2D;
 import sim.portrayal.AgentPortrayal;
+import sim.portrayal.DrawInfo2D;
 import sim.portrayal.MemoryPortrayal;
 import sim.portrayal.SimplePortrayal2D;
 import sim.portrayal.continuous.ContinuousPortrayal2D;
@@ -97,15 +99,40 @@ class DisplayHandler implements GuiListener {
     private final GUIState guiState;
     private final AgentListener agentListener = new AgentListener();
     private AgentWorld agentWorld;
+    /**
+     * The food map displayed, needs to catch up on lazy growth and propagate
+     * changes to the food potentials before drawing.
+     */
+    private FoodMap foodMap;
 
     // PORTRAYALS
     private final ContinuousPortrayal2D agentWorldPortrayal = new ContinuousPortrayal2D();
     private final FastValueGridPortrayal2D habitatMapPortrayal = new FastValueGridPortrayal2D(HABITAT_VALUE_NAME, true);
-    private final FastValueGridPortrayal2D foodMapPortrayal = new FastValueGridPortrayal2D(FOOD_DENSITY_VALUE_NAME);
+    private final FastValueGridPortrayal2D foodMapPortrayal = new FastValueGridPortrayal2D(FOOD_DENSITY_VALUE_NAME) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void draw(Object object, Graphics2D graphics, DrawInfo2D info) {
+            if (foodMap != null) {
+                foodMap.catchUpGrowth();
+            }
+            super.draw(object, graphics, info);
+        }
+    };
     private final MemoryPortrayal memoryPortrayal = new MemoryPortrayal();
     private final ContinuousPortrayal2D trailsPortrayal = new ContinuousPortrayal2D();
     private final FastValueGridPortrayal2D foodPotentialsPortrayal = new FastValueGridPortrayal2D(
-            FOOD_POTENTIAL_VALUE_NAME);
+            FOOD_POTENTIAL_VALUE_NAME) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void draw(Object object, Graphics2D graphics, DrawInfo2D info) {
+            if (foodMap != null) {
+                foodMap.updatePathfinding();
+            }
+            super.draw(object, graphics, info);
+        }
+    };
     private final Map<SpeciesDefinition, ValueGridPortrayal2D> riskPortrayals = new HashMap<>();
 
     public DisplayHandler(GUIState guiState) {
@@ -193,7 +220,8 @@ class DisplayHandler implements GuiListener {
     }
 
     private void setupFieldPortrayals(Entity environment) {
-        foodMapPortrayal.setField(environment.get(FoodMap.class).providePortrayable().getField());
+        foodMap = environment.get(FoodMap.class);
+        foodMapPortrayal.setField(foodMap.providePortrayable().getField());
         foodMapPortrayal.setMap(FOOD_COLOR_MAP);
 
         // set portrayal to display the agents
@@ -1,17 +1,26 @@
 package sim.display;
 
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
 import org.jscience.physics.amount.AmountFormat;
 
 import de.zmt.util.AmountUtil;
 import sim.engine.Kitt;
+import sim.engine.SimState;
 
 /**
- * {@link GUIState} for kitt simulation.
+ * {@link GUIState} for kitt simulation. Checkpoints are written to the output
+ * path like in batch runs. Opening one of them in the console resumes the run,
+ * appending to its output files.
  * 
  * @author mey
  * 
  */
 public class KittWithUI extends ZmtGUIState {
+    private static final Logger logger = Logger.getLogger(KittWithUI.class.getName());
+
     static {
         // only exact digits when formatting amounts
         AmountFormat.setInstance(AmountUtil.FORMAT);
@@ -22,6 +31,27 @@ public class KittWithUI extends ZmtGUIState {
         addListener(new DisplayHandler(this));
     }
 
+    @Override
+    public boolean step() {
+        boolean running = super.step();
+        try {
+            ((Kitt) state).checkpointIfDue();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not write checkpoint.", e);
+        }
+        return running;
+    }
+
+    @Override
+    public void load(SimState state) {
+        try {
+            ((Kitt) state).restoreOutputFiles();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not restore output files.", e);
+        }
+        super.load(state);
+    }
+
     @Override
     public Controller createController() {
         ZmtConsole console = new KittConsole(this);
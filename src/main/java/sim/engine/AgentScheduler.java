@@ -0,0 +1,341 @@
+package sim.engine;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import de.zmt.ecs.Entity;
+import de.zmt.ecs.component.agent.Moving;
+import ec.util.MersenneTwisterFast;
+import sim.util.Bag;
+import sim.util.DoubleBag;
+
+/**
+ * Updates agent entities that are due at the current schedule time, either
+ * serially or across a pool of threads. Agents are kept in a
+ * {@link TimingWheel}, which makes rescheduling O(1). This steppable needs to
+ * be scheduled repeating on every step with the ordering of agents.
+ * <p>
+ * When updating in parallel, agents are assigned to horizontal stripes of the
+ * map according to their position. Stripes are updated in two passes: first
+ * all even, then all odd ones. Stripes updated concurrently are therefore
+ * always separated by another stripe, which is high enough for agents not to
+ * reach cells of their neighbors when feeding. Each stripe is updated by a
+ * single thread in an order shuffled by the stripe's own random number
+ * generator.
+ * <p>
+ * Actions reaching beyond an agent and its surrounding cells, like killing or
+ * creating entities and notifying pathfinding maps, are passed to
+ * {@link #runOrDefer(Runnable)}. During a pass they are deferred and run on the
+ * simulation thread after it finished, ordered by stripe. Results are thus
+ * reproducible for a fixed seed.
+ *
+ * @author mey
+ *
+ */
+public class AgentScheduler implements Steppable {
+    private static final long serialVersionUID = 1L;
+
+    @SuppressWarnings("unused")
+    private static final Logger logger = Logger.getLogger(AgentScheduler.class.getName());
+
+    /** The stripe updated by the current thread, if any. */
+    private static final ThreadLocal<Stripe> CURRENT_STRIPE = new ThreadLocal<>();
+
+    private final int threadCount;
+    private final int stripeHeight;
+    private final Stripe[] stripes;
+    /** Agents waiting for their update. */
+    private final TimingWheel wheel;
+
+    private transient ExecutorService executor;
+
+    /**
+     * Constructs a new {@link AgentScheduler} updating agents serially.
+     *
+     * @param startTime
+     *            the current schedule time
+     */
+    public AgentScheduler(double startTime) {
+        this.threadCount = 1;
+        this.stripeHeight = 1;
+        this.stripes = new Stripe[0];
+        this.wheel = new TimingWheel((long) startTime);
+    }
+
+    /**
+     * Constructs a new {@link AgentScheduler} updating agents in parallel.
+     *
+     * @param startTime
+     *            the current schedule time
+     * @param threadCount
+     *            the number of threads used for updating agents
+     * @param mapHeight
+     *            the height of the map agents are moving in
+     * @param stripeHeight
+     *            the height of each stripe, needs to be at least twice the
+     *            number of cells an agent can reach in one update
+     * @param random
+     *            the random number generator used to seed the stripes'
+     *            generators
+     */
+    public AgentScheduler(double startTime, int threadCount, int mapHeight, int stripeHeight,
+            MersenneTwisterFast random) {
+        if (threadCount < 1 || stripeHeight < 1) {
+            throw new IllegalArgumentException(
+                    "Thread count and stripe height must be positive: " + threadCount + ", " + stripeHeight);
+        }
+        this.threadCount = threadCount;
+        this.stripeHeight = stripeHeight;
+        this.wheel = new TimingWheel((long) startTime);
+
+        stripes = new Stripe[(mapHeight + stripeHeight - 1) / stripeHeight];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe(new MersenneTwisterFast(random.nextLong()));
+        }
+    }
+
+    /**
+     * Runs given action immediately, or defers it until the current pass is
+     * finished if called from within a stripe update.
+     *
+     * @param action
+     *            the action to run
+     */
+    public static void runOrDefer(Runnable action) {
+        Stripe stripe = CURRENT_STRIPE.get();
+        if (stripe != null) {
+            stripe.deferredActions.add(action);
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * @return {@code true} if the calling thread is updating a stripe
+     */
+    public static boolean isUpdatingStripe() {
+        return CURRENT_STRIPE.get() != null;
+    }
+
+    /**
+     * @return the random number generator of the stripe updated by the calling
+     *         thread or <code>null</code> if not within a stripe update
+     */
+    static MersenneTwisterFast getStripeRandom() {
+        Stripe stripe = CURRENT_STRIPE.get();
+        return stripe != null ? stripe.random : null;
+    }
+
+    /** @return the height of each stripe, if updating in parallel */
+    int getStripeHeight() {
+        return stripeHeight;
+    }
+
+    /**
+     * @param time
+     *            the time to check
+     * @return {@code true} if agents can be scheduled at {@code time},
+     *         otherwise it is too far in the future
+     */
+    public boolean isWithinHorizon(double time) {
+        return wheel.isWithinHorizon((long) time);
+    }
+
+    /**
+     * Schedules an agent to be updated at given time. If called from within a
+     * stripe update, the agent is added after the pass if still alive.
+     *
+     * @param agent
+     *            the agent to schedule
+     * @param time
+     *            the schedule time the agent is to be updated at, needs to be
+     *            {@link #isWithinHorizon(double)}
+     */
+    public void schedule(Entity agent, double time) {
+        Stripe stripe = CURRENT_STRIPE.get();
+        if (stripe != null) {
+            stripe.rescheduledAgents.add(agent);
+            stripe.rescheduleTimes.add(time);
+        } else {
+            wheel.add(agent, (long) time);
+        }
+    }
+
+    @Override
+    public void step(SimState state) {
+        // catch up if not stepped on every step
+        while (wheel.getCurrentTime() < (long) state.schedule.getTime()) {
+            Bag agents = wheel.dispatch();
+            if (agents.isEmpty()) {
+                continue;
+            }
+
+            if (stripes.length == 0) {
+                // same as the schedule does for simultaneous events
+                agents.shuffle(state.random);
+                for (int i = 0; i < agents.numObjs; i++) {
+                    Entity agent = (Entity) agents.objs[i];
+                    if (agent.isAlive()) {
+                        agent.step(state);
+                    }
+                }
+            } else {
+                for (int i = 0; i < agents.numObjs; i++) {
+                    Entity agent = (Entity) agents.objs[i];
+                    if (!agent.isAlive()) {
+                        continue;
+                    }
+                    int stripeIndex = agent.get(Moving.class).getMapPosition().y / stripeHeight;
+                    stripes[Math.min(Math.max(stripeIndex, 0), stripes.length - 1)].agents.add(agent);
+                }
+
+                updatePass(state, 0);
+                updatePass(state, 1);
+            }
+        }
+    }
+
+    /**
+     * Updates every second stripe beginning at {@code firstIndex}, then runs
+     * their deferred actions in stripe order.
+     *
+     * @param state
+     *            the simulation state
+     * @param firstIndex
+     *            the index of the first stripe to update
+     */
+    private void updatePass(SimState state, int firstIndex) {
+        List<Stripe> stripesToUpdate = new ArrayList<>();
+        for (int i = firstIndex; i < stripes.length; i += 2) {
+            if (!stripes[i].agents.isEmpty()) {
+                stripesToUpdate.add(stripes[i]);
+            }
+        }
+
+        if (threadCount > 1 && stripesToUpdate.size() > 1) {
+            List<Callable<Void>> tasks = new ArrayList<>(stripesToUpdate.size());
+            for (Stripe stripe : stripesToUpdate) {
+                tasks.add(() -> {
+                    stripe.update(state);
+                    return null;
+                });
+            }
+            invokeAll(tasks);
+        } else {
+            for (Stripe stripe : stripesToUpdate) {
+                stripe.update(state);
+            }
+        }
+
+        for (Stripe stripe : stripesToUpdate) {
+            stripe.runDeferredActions();
+            stripe.rescheduleAgents(wheel);
+        }
+    }
+
+    private void invokeAll(List<Callable<Void>> tasks) {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(threadCount, runnable -> {
+                Thread thread = new Thread(runnable, AgentScheduler.class.getSimpleName());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while updating agents.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /** Shuts down the threads used for updating agents. */
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * A horizontal stripe of the map containing the agents to be updated.
+     *
+     * @author mey
+     *
+     */
+    private static class Stripe implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final MersenneTwisterFast random;
+        private final Bag agents = new Bag();
+        private final List<Runnable> deferredActions = new ArrayList<>();
+        private final Bag rescheduledAgents = new Bag();
+        private final DoubleBag rescheduleTimes = new DoubleBag();
+
+        public Stripe(MersenneTwisterFast random) {
+            this.random = random;
+        }
+
+        /**
+         * Updates the agents of this stripe in random order.
+         *
+         * @param state
+         *            the simulation state
+         */
+        private void update(SimState state) {
+            CURRENT_STRIPE.set(this);
+            try {
+                agents.shuffle(random);
+                for (int i = 0; i < agents.numObjs; i++) {
+                    ((Steppable) agents.objs[i]).step(state);
+                }
+            } finally {
+                CURRENT_STRIPE.remove();
+                agents.clear();
+            }
+        }
+
+        private void runDeferredActions() {
+            for (Runnable action : deferredActions) {
+                action.run();
+            }
+            deferredActions.clear();
+        }
+
+        /**
+         * Adds agents rescheduled during update to the wheel if they are still
+         * alive.
+         *
+         * @param wheel
+         *            the {@link TimingWheel} to add the agents to
+         */
+        private void rescheduleAgents(TimingWheel wheel) {
+            for (int i = 0; i < rescheduledAgents.numObjs; i++) {
+                Entity agent = (Entity) rescheduledAgents.objs[i];
+                if (agent.isAlive()) {
+                    wheel.add(agent, (long) rescheduleTimes.objs[i]);
+                }
+            }
+            rescheduledAgents.clear();
+            rescheduleTimes.clear();
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package sim.engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes checkpoints of a {@link Kitt} simulation to its output directory at
+ * a fixed interval in simulation time, so that a run can be resumed after it
+ * died, see {@link #resume(Path)}.
+ * <p>
+ * The state is serialized into memory on the simulation thread, which is
+ * needed as it keeps changing once the simulation continues. The simulation
+ * therefore stalls for the time Java serialization takes on every checkpoint,
+ * which grows with the number of agents. Choose the interval accordingly.
+ * Compressing and writing to file is done in the background. Checkpoints are
+ * written in the same format as
+ * {@link SimState#writeToCheckpoint(java.io.File)}, first to a temporary file
+ * that is moved into place when complete. Only the newest {@value #KEPT_COUNT}
+ * checkpoints are kept.
+ *
+ * @author mey
+ *
+ */
+class Checkpointer implements Closeable {
+    private static final Logger logger = Logger.getLogger(Checkpointer.class.getName());
+
+    private static final String FILE_PREFIX = "checkpoint_";
+    private static final String FILE_EXTENSION = ".checkpoint";
+    /** Number of digits of steps in file names, sorting them by age. */
+    private static final String FILE_NAME_FORMAT = FILE_PREFIX + "%015d" + FILE_EXTENSION;
+    /** Number of checkpoints kept, older ones are deleted. */
+    private static final int KEPT_COUNT = 2;
+    private static final int BUFFER_SIZE = 1 << 16;
+    /** Maximum size of the chunks a snapshot is kept in. */
+    private static final int CHUNK_SIZE = 1 << 24;
+
+    /** Directory to write checkpoints to. */
+    private final Path directory;
+    /** Interval in simulation time between checkpoints. */
+    private final double interval;
+    /** Simulation time the next checkpoint is due. */
+    private double nextTime;
+    private final ExecutorService executor;
+    /** Writing of the last checkpoint, <code>null</code> if none. */
+    private Future<?> pendingWrite;
+
+    /**
+     * Constructs a new {@link Checkpointer}. Checkpoints are due at multiples
+     * of {@code interval}, so that resumed runs write them at the same times.
+     *
+     * @param directory
+     *            the directory to write checkpoints to
+     * @param interval
+     *            the interval in simulation time between checkpoints
+     * @param time
+     *            the current simulation time
+     * @throws IllegalArgumentException
+     *             if {@code interval} is not positive
+     */
+    public Checkpointer(Path directory, double interval, double time) {
+        if (!(interval > 0)) {
+            throw new IllegalArgumentException("Interval must be positive: " + interval);
+        }
+        this.directory = directory;
+        this.interval = interval;
+        this.nextTime = computeNextTime(time);
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "checkpoint-" + directory.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private double computeNextTime(double time) {
+        return (Math.floor(Math.max(time, Schedule.EPOCH) / interval) + 1) * interval;
+    }
+
+    /**
+     * Writes a checkpoint if one is due at the current simulation time. Needs
+     * to be called between steps, when the state is consistent.
+     *
+     * @param state
+     *            the simulation state
+     * @throws IOException
+     *             if the state cannot be serialized
+     */
+    public void checkpointIfDue(SimState state) throws IOException {
+        double time = state.schedule.getTime();
+        if (time < nextTime) {
+            return;
+        }
+        nextTime = computeNextTime(time);
+        checkpoint(state);
+    }
+
+    /**
+     * Takes a snapshot of the state and writes it in the background. Waits
+     * for the previous checkpoint to be written before, so that there is
+     * never more than one snapshot in memory. The snapshot is kept in chunks,
+     * so that it is not limited to the size of an array.
+     *
+     * @param state
+     *            the simulation state
+     * @throws IOException
+     *             if the state cannot be serialized
+     */
+    public void checkpoint(SimState state) throws IOException {
+        awaitPendingWrite();
+
+        Snapshot snapshot = new Snapshot();
+        state.preCheckpoint();
+        try (ObjectOutputStream output = new ObjectOutputStream(snapshot)) {
+            output.writeObject(state);
+        } finally {
+            state.postCheckpoint();
+        }
+
+        Path path = directory.resolve(String.format(FILE_NAME_FORMAT, state.schedule.getSteps()));
+        pendingWrite = executor.submit(() -> {
+            write(snapshot, path);
+            return null;
+        });
+    }
+
+    /** Compresses the snapshot to a temporary file and moves it into place. */
+    private void write(Snapshot snapshot, Path path) throws IOException {
+        Path temporaryPath = Files.createTempFile(directory, FILE_PREFIX, null);
+        try {
+            try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.WRITE)) {
+                GZIPOutputStream output = new GZIPOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+                try {
+                    snapshot.writeTo(output);
+                    output.finish();
+                    // make sure the checkpoint survives a crash before deleting older ones
+                    channel.force(true);
+                } finally {
+                    output.close();
+                }
+            }
+            Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporaryPath);
+        }
+        logger.fine("Wrote checkpoint " + path);
+
+        List<Path> checkpoints = listCheckpoints(directory);
+        for (Path oldCheckpoint : checkpoints.subList(Math.min(KEPT_COUNT, checkpoints.size()), checkpoints.size())) {
+            Files.deleteIfExists(oldCheckpoint);
+        }
+    }
+
+    /**
+     * Waits for the last checkpoint to be written. A failure is logged without
+     * stopping the simulation.
+     */
+    private void awaitPendingWrite() {
+        if (pendingWrite == null) {
+            return;
+        }
+        try {
+            pendingWrite.get();
+        } catch (ExecutionException e) {
+            logger.log(Level.WARNING, "Could not write checkpoint to " + directory, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        pendingWrite = null;
+    }
+
+    /** Waits for the last checkpoint to be written and stops the writer thread. */
+    @Override
+    public void close() {
+        awaitPendingWrite();
+        executor.shutdown();
+    }
+
+    /**
+     * Restores the simulation from the newest valid checkpoint within the
+     * given directory. Outputs write to this directory, even if the
+     * checkpoint was written at another location. Output files are truncated
+     * to their size at the time of the checkpoint, so that the restored
+     * simulation continues appending to them where it left off.
+     *
+     * @param directory
+     *            the directory checkpoints were written to
+     * @return {@link Optional} containing the restored simulation, empty if
+     *         there is no valid checkpoint
+     * @throws IOException
+     *             if the directory cannot be read or output files cannot be
+     *             truncated
+     */
+    public static Optional<Kitt> resume(Path directory) throws IOException {
+        for (Path checkpoint : listCheckpoints(directory)) {
+            SimState state;
+            try (InputStream input = Files.newInputStream(checkpoint)) {
+                state = SimState.readFromCheckpoint(input);
+            } catch (IOException | ClassNotFoundException | RuntimeException e) {
+                logger.log(Level.WARNING, "Skipping invalid checkpoint " + checkpoint, e);
+                continue;
+            }
+            if (!(state instanceof Kitt)) {
+                logger.warning("Skipping checkpoint of other simulation " + checkpoint);
+                continue;
+            }
+
+            Kitt kitt = (Kitt) state;
+            kitt.setOutputPath(directory);
+            kitt.restoreOutputFiles();
+            logger.info("Resuming from checkpoint " + checkpoint + " at step " + kitt.schedule.getSteps());
+            return Optional.of(kitt);
+        }
+        return Optional.empty();
+    }
+
+    /** @return checkpoints within the directory, newest first */
+    private static List<Path> listCheckpoints(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return Collections.emptyList();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                String fileName = path.getFileName().toString();
+                return fileName.startsWith(FILE_PREFIX) && fileName.endsWith(FILE_EXTENSION);
+            }).sorted((first, second) -> second.getFileName().compareTo(first.getFileName()))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Serialized state kept in memory as a list of chunks, growing in size up
+     * to {@value #CHUNK_SIZE} bytes.
+     *
+     * @author mey
+     *
+     */
+    private static class Snapshot extends OutputStream {
+        private final List<byte[]> chunks = new ArrayList<>();
+        /** The chunk currently written to, the last one in {@link #chunks}. */
+        private byte[] chunk = new byte[0];
+        /** Number of bytes used within {@link #chunk}. */
+        private int position = 0;
+
+        @Override
+        public void write(int b) {
+            if (position == chunk.length) {
+                addChunk();
+            }
+            chunk[position++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            while (len > 0) {
+                if (position == chunk.length) {
+                    addChunk();
+                }
+                int count = Math.min(len, chunk.length - position);
+                System.arraycopy(b, off, chunk, position, count);
+                position += count;
+                off += count;
+                len -= count;
+            }
+        }
+
+        private void addChunk() {
+            chunk = new byte[chunks.isEmpty() ? BUFFER_SIZE : Math.min(CHUNK_SIZE, chunk.length * 2)];
+            chunks.add(chunk);
+            position = 0;
+        }
+
+        /**
+         * Writes the snapshot to the given stream.
+         *
+         * @param output
+         *            the stream to write to
+         * @throws IOException
+         *             if writing fails
+         */
+        public void writeTo(OutputStream output) throws IOException {
+            for (byte[] filledChunk : chunks) {
+                output.write(filledChunk, 0, filledChunk == chunk ? position : filledChunk.length);
+            }
+        }
+    }
+}
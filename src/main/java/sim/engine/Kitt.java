@@ -2,7 +2,16 @@ package sim.engine;
 
 import static javax.measure.unit.NonSI.DAY;
 
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
@@ -16,6 +25,7 @@ import org.jscience.physics.amount.Amount;
 
 import de.zmt.ecs.Entity;
 import de.zmt.ecs.EntityManager;
+import de.zmt.ecs.component.agent.AgentStore;
 import de.zmt.ecs.component.environment.FoodMap;
 import de.zmt.ecs.component.environment.HabitatMap;
 import de.zmt.ecs.component.environment.SimulationTime;
@@ -32,11 +42,18 @@ import de.zmt.ecs.system.agent.move.MoveSystem;
 import de.zmt.ecs.system.environment.FoodSystem;
 import de.zmt.ecs.system.environment.SimulationTimeSystem;
 import de.zmt.output.KittOutput;
+import de.zmt.output.LifeCycleLog;
+import de.zmt.output.LocationStayDurations;
 import de.zmt.output.Output;
+import de.zmt.output.PopulationStatistics;
+import de.zmt.output.StatisticsOutput;
+import de.zmt.output.StatisticsOutput.Kind;
 import de.zmt.params.EnvironmentDefinition;
 import de.zmt.params.KittParams;
 import de.zmt.params.SpeciesDefinition;
-import sim.util.Int2DCache;
+import de.zmt.util.GridPositions;
+import de.zmt.util.UnitConstants;
+import ec.util.MersenneTwisterFast;
 
 /**
  * Central simulation class of kitt.
@@ -52,6 +69,16 @@ public class Kitt extends BaseZmtSimState<KittParams> {
 
     /** Output is stepped last in scheduler. */
     private static final int OUTPUT_ORDERING = Integer.MAX_VALUE;
+    /** File name of the life cycle log within the output path, without extension. */
+    private static final String LIFE_CYCLE_LOG_FILENAME = "lifeCycling";
+    /** File name of the stay durations within the output path, without extension. */
+    private static final String STAY_DURATIONS_FILENAME = "stay";
+    /** File name of population data within the output path, without extension. */
+    private static final String POPULATION_FILENAME = "population";
+    /** File name of age data within the output path, without extension. */
+    private static final String AGE_FILENAME = "age";
+    /** File name of length data within the output path, without extension. */
+    private static final String LENGTH_FILENAME = "length";
     /** Interval for checking if there are still agents in the simulation. */
     private static final Amount<Duration> EXTINCTION_CHECK_INTERVAL = Amount.valueOf(1, DAY);
 
@@ -61,6 +88,21 @@ public class Kitt extends BaseZmtSimState<KittParams> {
     private Entity environment;
     /** Simulation output (GUI and file) */
     private Output output;
+    /** Statistics of the population, collected by {@link #output}. */
+    private PopulationStatistics populationStatistics;
+    /** Log of life cycle events, <code>null</code> if disabled. */
+    private LifeCycleLog lifeCycleLog;
+    /** Stay durations written to file, <code>null</code> if disabled. */
+    private LocationStayDurations stayDurations;
+    /** Population, age and length data written to file. */
+    private final Collection<StatisticsOutput> statisticsOutputs = new ArrayList<>();
+    /**
+     * Sizes of output files by name within the output path when the last
+     * checkpoint was written, to discard rows written after it when resuming.
+     */
+    private final Map<String, Long> checkpointFileSizes = new HashMap<>();
+    /** Writes checkpoints to the output path, <code>null</code> until needed. */
+    private transient Checkpointer checkpointer;
 
     public Entity getEnvironment() {
         return environment;
@@ -94,9 +136,21 @@ public class Kitt extends BaseZmtSimState<KittParams> {
         EnvironmentDefinition envDef = getParams().getEnvironmentDefinition();
 
         manager.clear();
+        entityCreationHandler.getPopulation().clear();
+        if (lifeCycleLog != null) {
+            entityCreationHandler.getPopulation().removeListener(lifeCycleLog);
+            lifeCycleLog = null;
+        }
+        if (populationStatistics != null) {
+            entityCreationHandler.getPopulation().removeListener(populationStatistics);
+        }
+        // need to listen before the population is created
+        populationStatistics = new PopulationStatistics(getParams().getSpeciesDefs());
+        entityCreationHandler.getPopulation().addListener(populationStatistics);
 
         // create entities
         environment = entityCreationHandler.createEnvironment(envDef, random);
+        entityCreationHandler.setAgentScheduler(createAgentScheduler(envDef));
 
         //specific distribution of juv-init-term
         if(envDef.ignoreSpeciesCount()) {
@@ -108,9 +162,38 @@ public class Kitt extends BaseZmtSimState<KittParams> {
 
 
         // create output
-        output = new KittOutput(getOutputPath(), getParams(), environment.get(HabitatMap.class),
-                environment.get(FoodMap.class));
+        output = new KittOutput(getOutputPath(), getParams(), populationStatistics);
         schedule.scheduleRepeating(schedule.getTime() + 1, OUTPUT_ORDERING, output);
+        if (envDef.lifeCyclingOutput()) {
+            lifeCycleLog = new LifeCycleLog(getOutputPath(), LIFE_CYCLE_LOG_FILENAME,
+                    envDef.getOutputFormat(), envDef.getOutputTimeUnit(), envDef.getStepDuration(),
+                    entityCreationHandler.getPopulation(), manager, environment.get(HabitatMap.class),
+                    environment.get(FoodMap.class), schedule);
+            entityCreationHandler.getPopulation().addListener(lifeCycleLog);
+            schedule.scheduleRepeating(schedule.getTime() + 1, OUTPUT_ORDERING, lifeCycleLog,
+                    envDef.getOutputLifeCycleInterval().to(UnitConstants.SIMULATION_TIME).getExactValue());
+        }
+        statisticsOutputs.clear();
+        if (envDef.populationOutput()) {
+            scheduleStatisticsOutput(POPULATION_FILENAME, Kind.POPULATION, envDef.getOutputPopulationInterval());
+        }
+        if (envDef.ageOutput()) {
+            scheduleStatisticsOutput(AGE_FILENAME, Kind.AGE, envDef.getOutputAgeInterval());
+        }
+        if (envDef.lengthOutput()) {
+            scheduleStatisticsOutput(LENGTH_FILENAME, Kind.LENGTH, envDef.getOutputLengthInterval());
+        }
+        stayDurations = null;
+        if (envDef.stayOutput()) {
+            // need to collect on every step but write only at the given one
+            stayDurations = new LocationStayDurations(getOutputPath(), STAY_DURATIONS_FILENAME,
+                    envDef.getOutputFormat(), envDef.getOutputTimeUnit(),
+                    envDef.getOutputStayDurationsInterval().to(UnitConstants.SIMULATION_TIME).getExactValue(),
+                    envDef.getStayBlockSize(), envDef.getStepDuration(), environment.get(HabitatMap.class),
+                    environment.get(FoodMap.class), environment.get(AgentStore.class),
+                    environment.get(SimulationTime.class));
+            schedule.scheduleRepeating(schedule.getTime() + 1, OUTPUT_ORDERING, stayDurations);
+        }
 
         // schedule extinction check after everything else
         schedule.scheduleRepeating(new ExtinctionCheck(), Integer.MAX_VALUE, EXTINCTION_CHECK_INTERVAL
@@ -134,10 +217,212 @@ public class Kitt extends BaseZmtSimState<KittParams> {
         manager.addSystem(new FoodSystem());
     }
 
+    /**
+     * Creates a {@link StatisticsOutput} and schedules it at the given
+     * interval.
+     * 
+     * @param fileName
+     *            the file name within the output path, without extension
+     * @param kind
+     *            the kind of data to write
+     * @param interval
+     *            the interval to write at
+     */
+    private void scheduleStatisticsOutput(String fileName, Kind kind, Amount<Duration> interval) {
+        EnvironmentDefinition envDef = getParams().getEnvironmentDefinition();
+        StatisticsOutput statisticsOutput = new StatisticsOutput(getOutputPath(), fileName, kind,
+                envDef.getOutputFormat(), envDef.getOutputTimeUnit(), envDef.getStepDuration(),
+                populationStatistics);
+        statisticsOutputs.add(statisticsOutput);
+        schedule.scheduleRepeating(schedule.getTime() + 1, OUTPUT_ORDERING, statisticsOutput,
+                interval.to(UnitConstants.SIMULATION_TIME).getExactValue());
+    }
+
+    /**
+     * Creates the {@link AgentScheduler} for updating agents, either serially
+     * or in parallel depending on the agent thread count.
+     * 
+     * @param envDef
+     *            the environment definition
+     * @return the {@link AgentScheduler}
+     */
+    AgentScheduler createAgentScheduler(EnvironmentDefinition envDef) {
+        if (envDef.getAgentThreadCount() <= 1) {
+            return new AgentScheduler(schedule.getTime());
+        }
+        return createStripedAgentScheduler(envDef, envDef.getAgentThreadCount());
+    }
+
+    /**
+     * Creates an {@link AgentScheduler} updating agents in stripes. Stripes
+     * are made twice as high as the cells an agent can reach in one update,
+     * within its food perception radius and the cells passed. The layout of
+     * stripes does not depend on the thread count.
+     * 
+     * @param envDef
+     *            the environment definition
+     * @param threadCount
+     *            the number of threads used for updating agents
+     * @return the {@link AgentScheduler}
+     */
+    AgentScheduler createStripedAgentScheduler(EnvironmentDefinition envDef, int threadCount) {
+        int maxReach = 0;
+        for (SpeciesDefinition definition : getParams().getSpeciesDefs()) {
+            int reach = (int) Math.ceil(envDef.worldToMap(definition.getPerceptionRadiusFood()))
+                    + (int) Math.ceil(definition.getCellPassPerUpdate()) + 1;
+            maxReach = Math.max(maxReach, reach);
+        }
+        return new AgentScheduler(schedule.getTime(), threadCount, environment.get(HabitatMap.class).getHeight(),
+                2 * maxReach, random);
+    }
+
+    /**
+     * Returns the random number generator to be used when updating agents.
+     * During a parallel update, this is the generator of the partition updated
+     * by the calling thread, otherwise {@link #random}.
+     * 
+     * @return the random number generator for updating agents
+     */
+    public MersenneTwisterFast getAgentRandom() {
+        MersenneTwisterFast stripeRandom = AgentScheduler.getStripeRandom();
+        if (stripeRandom != null) {
+            return stripeRandom;
+        }
+        return random;
+    }
+
+    /**
+     * Writes a checkpoint to the output path if one is due at the interval
+     * given in the parameters. Needs to be called between steps, because
+     * MASON's schedule is not consistent while steppables are run. This is
+     * done by {@link KittBatchRunner} and {@link sim.display.KittWithUI} after
+     * every step.
+     *
+     * @throws IOException
+     *             if the state cannot be serialized
+     */
+    public void checkpointIfDue() throws IOException {
+        if (checkpointer == null) {
+            double interval = getParams().getEnvironmentDefinition().getCheckpointInterval()
+                    .to(UnitConstants.SIMULATION_TIME).getExactValue();
+            if (!(interval > 0)) {
+                return;
+            }
+            checkpointer = new Checkpointer(getOutputPath(), interval, schedule.getTime());
+        }
+        checkpointer.checkpointIfDue(this);
+    }
+
+    @Override
+    public void finish() {
+        super.finish();
+        closeOutputFiles();
+        if (checkpointer != null) {
+            checkpointer.close();
+            checkpointer = null;
+        }
+        AgentScheduler agentScheduler = entityCreationHandler.getAgentScheduler();
+        if (agentScheduler != null) {
+            agentScheduler.shutdown();
+        }
+    }
+
+    /**
+     * Closes output files, waiting for all rows to be written. Writing
+     * continues by appending to them.
+     */
+    private void closeOutputFiles() {
+        if (lifeCycleLog != null) {
+            lifeCycleLog.close();
+        }
+        if (stayDurations != null) {
+            stayDurations.close();
+        }
+        // wait for all statistics to be written
+        for (StatisticsOutput statisticsOutput : statisticsOutputs) {
+            statisticsOutput.close();
+        }
+    }
+
+    /** @return paths of the files written by outputs */
+    private Collection<Path> obtainOutputFiles() {
+        Collection<Path> outputFiles = new ArrayList<>();
+        if (lifeCycleLog != null) {
+            outputFiles.add(lifeCycleLog.getFilePath());
+        }
+        if (stayDurations != null) {
+            outputFiles.add(stayDurations.getFilePath());
+        }
+        for (StatisticsOutput statisticsOutput : statisticsOutputs) {
+            outputFiles.add(statisticsOutput.getFilePath());
+        }
+        return outputFiles;
+    }
+
+    /**
+     * Writes pending rows to output files, which are kept open, and records
+     * their sizes, so that they match the state written to the checkpoint.
+     *
+     * @see #restoreOutputFiles()
+     */
+    @Override
+    public void preCheckpoint() {
+        super.preCheckpoint();
+        if (lifeCycleLog != null) {
+            lifeCycleLog.sync();
+        }
+        if (stayDurations != null) {
+            stayDurations.sync();
+        }
+        for (StatisticsOutput statisticsOutput : statisticsOutputs) {
+            statisticsOutput.sync();
+        }
+        checkpointFileSizes.clear();
+        for (Path outputFile : obtainOutputFiles()) {
+            if (Files.isRegularFile(outputFile)) {
+                checkpointFileSizes.put(outputFile.getFileName().toString(), outputFile.toFile().length());
+            }
+        }
+    }
+
+    /**
+     * Points outputs to the current output path, which may have moved since
+     * the checkpoint was written. Output files are truncated to their size at
+     * that time, discarding rows written after it. Needs to be called before
+     * resuming a simulation restored from a checkpoint, which appends to these
+     * files.
+     *
+     * @throws IOException
+     *             if a file cannot be truncated
+     */
+    public void restoreOutputFiles() throws IOException {
+        if (lifeCycleLog != null) {
+            lifeCycleLog.setDirectory(getOutputPath());
+        }
+        if (stayDurations != null) {
+            stayDurations.setDirectory(getOutputPath());
+        }
+        for (StatisticsOutput statisticsOutput : statisticsOutputs) {
+            statisticsOutput.setDirectory(getOutputPath());
+        }
+
+        for (Map.Entry<String, Long> entry : checkpointFileSizes.entrySet()) {
+            Path outputFile = getOutputPath().resolve(entry.getKey());
+            if (!Files.isRegularFile(outputFile)) {
+                logger.warning("Output file written before checkpoint is missing: " + outputFile);
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(outputFile, StandardOpenOption.WRITE)) {
+                channel.truncate(entry.getValue());
+            }
+        }
+    }
+
     @Override
     public void awakeFromCheckpoint() {
         HabitatMap habitatMap = getEnvironment().get(HabitatMap.class);
-        Int2DCache.adjustCacheSize(habitatMap.getWidth(), habitatMap.getHeight());
+        GridPositions.ensureSize(habitatMap.getWidth(), habitatMap.getHeight());
+        entityCreationHandler.getPopulation().rebuild(entityCreationHandler.getManager());
         super.awakeFromCheckpoint();
     }
 
@@ -152,8 +437,7 @@ public class Kitt extends BaseZmtSimState<KittParams> {
 
         @Override
         public void step(SimState state) {
-            if (((Kitt) state).getEntityCreationHandler().getManager()
-                    .getAllEntitiesPossessingComponent(SpeciesDefinition.class).isEmpty()) {
+            if (((Kitt) state).getEntityCreationHandler().getPopulation().getAgentCount() == 0) {
                 state.kill();
                 logger.info("Simulation was killed: No agents left.");
             }
@@ -0,0 +1,248 @@
+package sim.engine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import de.zmt.params.KittParams;
+import de.zmt.util.ParamsUtil;
+
+/**
+ * Runs several {@link Kitt} simulations concurrently within one JVM, sharing
+ * JIT compilation and heap instead of paying for them on every run. Each run
+ * is given by its output directory containing a {@value #PARAMS_FILENAME}, as
+ * generated by a dry batch run. All output of a run is written to its
+ * directory.
+ * <p>
+ * Runs are independent of each other: a failing run does not affect the
+ * others and is listed in the report returned after all runs have finished.
+ * Runs write checkpoints to their directory and are resumed from them when
+ * started again, see {@link Checkpointer}.
+ * Agents of each run are updated with the number of threads given in its
+ * parameters, in addition to the threads running the simulations.
+ *
+ * @author mey
+ *
+ */
+public class KittBatchRunner {
+    private static final Logger logger = Logger.getLogger(KittBatchRunner.class.getName());
+
+    /** Name of the parameters file within each output directory. */
+    public static final String PARAMS_FILENAME = "params.xml";
+    private static final String USAGE = "USAGE: " + KittBatchRunner.class.getSimpleName()
+            + " <until time> <thread count> <output directories>";
+
+    /** Number of simulations running at the same time. */
+    private final int threadCount;
+    /** Simulation time at which runs are stopped. */
+    private final double untilTime;
+
+    /**
+     * Constructs a new {@link KittBatchRunner}.
+     *
+     * @param threadCount
+     *            the number of simulations running at the same time
+     * @param untilTime
+     *            the simulation time at which runs are stopped
+     * @throws IllegalArgumentException
+     *             if {@code threadCount} is not positive
+     */
+    public KittBatchRunner(int threadCount, double untilTime) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be positive: " + threadCount);
+        }
+        this.threadCount = threadCount;
+        this.untilTime = untilTime;
+    }
+
+    /**
+     * Runs a simulation for every output directory and waits for all of them
+     * to finish.
+     *
+     * @param outputDirectories
+     *            the output directories, each containing a
+     *            {@value #PARAMS_FILENAME}
+     * @return {@link List} of results in the order of the given directories
+     * @throws InterruptedException
+     *             if interrupted while waiting for runs to finish
+     */
+    public List<Result> run(Collection<Path> outputDirectories) throws InterruptedException {
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount,
+                runnable -> new Thread(runnable, "run-" + threadIndex.getAndIncrement()));
+        try {
+            List<Future<Long>> futures = new ArrayList<>(outputDirectories.size());
+            for (Path outputDirectory : outputDirectories) {
+                futures.add(executor.submit(() -> runSingle(outputDirectory, untilTime)));
+            }
+
+            List<Result> results = new ArrayList<>(futures.size());
+            int i = 0;
+            for (Path outputDirectory : outputDirectories) {
+                try {
+                    results.add(new Result(outputDirectory, futures.get(i++).get(), null));
+                } catch (ExecutionException e) {
+                    logger.log(Level.WARNING, "Run failed: " + outputDirectory, e.getCause());
+                    results.add(new Result(outputDirectory, 0, e.getCause()));
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs a simulation with the parameters found in the output directory
+     * until the given time or until it is killed. If the directory contains a
+     * checkpoint from an earlier attempt, the run is resumed from the newest
+     * one, appending to the existing output. Checkpoints are written at the
+     * interval given in the parameters.
+     *
+     * @param outputDirectory
+     *            the output directory containing a {@value #PARAMS_FILENAME}
+     * @param untilTime
+     *            the simulation time at which the run is stopped
+     * @return the number of steps simulated
+     * @throws IOException
+     *             if the parameters could not be read or a checkpoint could
+     *             not be created
+     */
+    static long runSingle(Path outputDirectory, double untilTime) throws IOException {
+        Optional<Kitt> resumedState = Checkpointer.resume(outputDirectory);
+        Kitt state;
+        if (resumedState.isPresent()) {
+            state = resumedState.get();
+        } else {
+            KittParams params = ParamsUtil.readFromXml(outputDirectory.resolve(PARAMS_FILENAME), KittParams.class);
+            state = new Kitt();
+            state.setParams(params);
+            state.setOutputPath(outputDirectory);
+            state.setSeed(params.getSeed());
+
+            logger.info("Starting run: " + outputDirectory);
+            state.start();
+        }
+
+        try {
+            while (state.schedule.getTime() < untilTime && state.schedule.step(state)) {
+                state.checkpointIfDue();
+            }
+        } finally {
+            state.finish();
+        }
+        logger.info("Finished run: " + outputDirectory + " after " + state.schedule.getSteps() + " steps");
+        return state.schedule.getSteps();
+    }
+
+    /**
+     * Creates a report summarizing how many runs succeeded, followed by the
+     * outcome of every run, including the cause of failure.
+     *
+     * @param results
+     *            the results of the runs
+     * @return the report
+     */
+    public static String createReport(Collection<Result> results) {
+        long successCount = results.stream().filter(Result::isSuccess).count();
+        StringBuilder report = new StringBuilder();
+        report.append(successCount).append(" of ").append(results.size())
+                .append(" runs finished successfully.").append(System.lineSeparator());
+        for (Result result : results) {
+            report.append(result).append(System.lineSeparator());
+        }
+        return report.toString();
+    }
+
+    /**
+     * Runs the simulations for the given output directories and prints a
+     * report. Exits with status 1 if any run failed.
+     *
+     * @param args
+     *            until time, thread count and output directories
+     * @throws InterruptedException
+     */
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 3) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+
+        double untilTime = Double.parseDouble(args[0]);
+        int threadCount = Integer.parseInt(args[1]);
+        List<Path> outputDirectories = Arrays.stream(args, 2, args.length).map(Paths::get)
+                .collect(Collectors.toList());
+        for (Path outputDirectory : outputDirectories) {
+            if (!Files.isRegularFile(outputDirectory.resolve(PARAMS_FILENAME))) {
+                System.err.println("No " + PARAMS_FILENAME + " found in " + outputDirectory);
+                System.err.println(USAGE);
+                System.exit(1);
+            }
+        }
+
+        List<Result> results = new KittBatchRunner(threadCount, untilTime).run(outputDirectories);
+        System.out.print(createReport(results));
+        if (results.stream().anyMatch(result -> !result.isSuccess())) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Outcome of a single run.
+     *
+     * @author mey
+     *
+     */
+    public static class Result {
+        private final Path outputDirectory;
+        private final long steps;
+        /** The cause of failure, <code>null</code> if successful. */
+        private final Throwable failure;
+
+        private Result(Path outputDirectory, long steps, Throwable failure) {
+            this.outputDirectory = outputDirectory;
+            this.steps = steps;
+            this.failure = failure;
+        }
+
+        public Path getOutputDirectory() {
+            return outputDirectory;
+        }
+
+        /** @return the number of steps simulated, 0 if failed */
+        public long getSteps() {
+            return steps;
+        }
+
+        public boolean isSuccess() {
+            return failure == null;
+        }
+
+        /** @return the cause of failure, <code>null</code> if successful */
+        public Throwable getFailure() {
+            return failure;
+        }
+
+        @Override
+        public String toString() {
+            if (isSuccess()) {
+                return "OK     " + outputDirectory + " (" + steps + " steps)";
+            }
+            return "FAILED " + outputDirectory + ": " + failure;
+        }
+    }
+}
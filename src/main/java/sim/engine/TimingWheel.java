@@ -0,0 +1,132 @@
+package sim.engine;
+
+import java.io.Serializable;
+
+import sim.util.Bag;
+import sim.util.IntBag;
+
+/**
+ * Hierarchical timing wheel for objects due at integral schedule times.
+ * Insertion and dispatch are O(1), in contrast to the binary heap used by
+ * {@link Schedule}.
+ * <p>
+ * The inner wheel has one slot per step for the current block of
+ * {@value #INNER_SLOTS} steps. The outer wheel has one slot for each of the
+ * following {@value #OUTER_SLOTS} blocks, which is cascaded into the inner
+ * wheel when its block is reached. Times beyond are outside the horizon and
+ * need to be scheduled elsewhere.
+ * <p>
+ * The wheel needs to be advanced by one step at a time.
+ *
+ * @author mey
+ *
+ */
+class TimingWheel implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final int INNER_BITS = 11;
+    /** Number of steps covered by the inner wheel. */
+    static final int INNER_SLOTS = 1 << INNER_BITS;
+    private static final int INNER_MASK = INNER_SLOTS - 1;
+    /** Number of blocks covered by the outer wheel. */
+    static final int OUTER_SLOTS = 64;
+
+    private final Bag[] innerSlots = new Bag[INNER_SLOTS];
+    private final Bag[] outerSlots = new Bag[OUTER_SLOTS];
+    /** Inner slot indices for the objects in {@link #outerSlots}. */
+    private final IntBag[] outerIndices = new IntBag[OUTER_SLOTS];
+    /** Bag returned on last dispatch, reused in the next one. */
+    private Bag dispatched = new Bag();
+    /** Time of the last dispatch. Objects can be added after it. */
+    private long currentTime;
+
+    /**
+     * Constructs a new {@link TimingWheel}.
+     *
+     * @param startTime
+     *            the time before the first dispatch
+     */
+    public TimingWheel(long startTime) {
+        this.currentTime = startTime;
+        for (int i = 0; i < INNER_SLOTS; i++) {
+            innerSlots[i] = new Bag();
+        }
+        for (int i = 0; i < OUTER_SLOTS; i++) {
+            outerSlots[i] = new Bag();
+            outerIndices[i] = new IntBag();
+        }
+    }
+
+    private static long block(long time) {
+        return time >> INNER_BITS;
+    }
+
+    /**
+     * @param time
+     *            the time to check
+     * @return {@code true} if objects can be added at {@code time}
+     */
+    public boolean isWithinHorizon(long time) {
+        return time > currentTime && block(time) - block(currentTime) < OUTER_SLOTS;
+    }
+
+    /**
+     * Adds an object to be dispatched at given time.
+     *
+     * @param object
+     *            the object to add
+     * @param time
+     *            the time the object is to be dispatched
+     * @throws IllegalArgumentException
+     *             if {@code time} is not within horizon
+     */
+    public void add(Object object, long time) {
+        if (!isWithinHorizon(time)) {
+            throw new IllegalArgumentException(
+                    time + " is not within horizon of timing wheel at " + currentTime + ".");
+        }
+
+        if (block(time) == block(currentTime)) {
+            innerSlots[(int) (time & INNER_MASK)].add(object);
+        } else {
+            int outerIndex = (int) (block(time) % OUTER_SLOTS);
+            outerSlots[outerIndex].add(object);
+            outerIndices[outerIndex].add((int) (time & INNER_MASK));
+        }
+    }
+
+    /**
+     * Advances the wheel by one step and returns the objects due at the new
+     * time. The returned bag is only valid until the next dispatch.
+     *
+     * @return the objects due
+     */
+    public Bag dispatch() {
+        currentTime++;
+
+        // entered a new block: cascade its outer slot into the inner wheel
+        if ((currentTime & INNER_MASK) == 0) {
+            int outerIndex = (int) (block(currentTime) % OUTER_SLOTS);
+            Bag outerSlot = outerSlots[outerIndex];
+            IntBag indices = outerIndices[outerIndex];
+            for (int i = 0; i < outerSlot.numObjs; i++) {
+                innerSlots[indices.objs[i]].add(outerSlot.objs[i]);
+            }
+            outerSlot.clear();
+            indices.clear();
+        }
+
+        // swap due slot with the bag from the last dispatch
+        int innerIndex = (int) (currentTime & INNER_MASK);
+        Bag due = innerSlots[innerIndex];
+        dispatched.clear();
+        innerSlots[innerIndex] = dispatched;
+        dispatched = due;
+        return due;
+    }
+
+    /** @return the time of the last dispatch */
+    public long getCurrentTime() {
+        return currentTime;
+    }
+}
@@ -56,10 +56,9 @@ public class AgentPortrayal extends SimplePortrayal2D {
     /** Default value for biomass drawn with {@link #DRAW_SCALE_MAX} */
     private static final double PORTRAYED_DEFAULT_MAX_BIOMASS_G = 1000;
 
-    /** Color for each species */
-    private static final Map<SpeciesDefinition, Color> DRAW_COLORS = new HashMap<>();
-
     private final MemoryPortrayal memoryPortrayal;
+    /** Color for each species */
+    private final Map<SpeciesDefinition, Color> drawColors = new HashMap<>();
     private final OrientedPortrayal2D fill = new OrientedPortrayal2D(new SimplePortrayal2D());
     private final OrientedPortrayal2D stroke = new OrientedPortrayal2D(new SimplePortrayal2D(), STROKE_COLOR_JUVENILE);
     /** Biomass in g to draw at {@link #DRAW_SCALE_MIN} */
@@ -156,8 +155,8 @@ public class AgentPortrayal extends SimplePortrayal2D {
      * @param speciesDefinition
      * @return draw color
      */
-    private static Color obtainFillColor(final DrawInfo2D info, SpeciesDefinition speciesDefinition) {
-        Color drawColor = DRAW_COLORS.get(speciesDefinition);
+    private Color obtainFillColor(final DrawInfo2D info, SpeciesDefinition speciesDefinition) {
+        Color drawColor = drawColors.get(speciesDefinition);
         // otherwise create a random one and store it in the map
         if (drawColor == null) {
             MersenneTwisterFast guirandom = info.gui.guirandom;
@@ -165,7 +164,7 @@ public class AgentPortrayal extends SimplePortrayal2D {
             int g = generateRandomColorComponent(guirandom);
             int b = generateRandomColorComponent(guirandom);
             drawColor = new Color(r, g, b);
-            DRAW_COLORS.put(speciesDefinition, drawColor);
+            drawColors.put(speciesDefinition, drawColor);
         }
         return drawColor;
     }
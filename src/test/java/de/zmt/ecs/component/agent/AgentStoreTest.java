@@ -0,0 +1,85 @@
+package de.zmt.ecs.component.agent;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.zmt.ecs.component.agent.Metabolizing.BehaviorMode;
+import de.zmt.util.AmountUtil;
+import de.zmt.util.UnitConstants;
+import sim.util.Double2D;
+import sim.util.Int2D;
+
+public class AgentStoreTest {
+    private static final Double2D POSITION = new Double2D(1.5, 2.5);
+    private static final Int2D MAP_POSITION = new Int2D(1, 2);
+
+    private AgentStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        store = new AgentStore(1);
+    }
+
+    @Test
+    public void allocateGrowing() {
+        AgentStore.Slot first = store.allocate();
+        AgentStore.Slot second = store.allocate();
+
+        assertThat(first.getIndex(), is(0));
+        assertThat(second.getIndex(), is(1));
+        assertThat(store.size(), is(2));
+        assertThat(store.getAgentCount(), is(2));
+    }
+
+    @Test
+    public void viewsWriteToStore() {
+        AgentStore.Slot slot = store.allocate();
+        Moving moving = new Moving(slot);
+        Metabolizing metabolizing = new Metabolizing(AmountUtil.zero(UnitConstants.ENERGY_PER_TIME), slot);
+
+        moving.setPosition(POSITION, MAP_POSITION);
+        metabolizing.setBehaviorMode(BehaviorMode.FORAGING);
+
+        assertThat(store.getWorldX()[slot.getIndex()], is(POSITION.x));
+        assertThat(store.getMapY()[slot.getIndex()], is(MAP_POSITION.y));
+        assertThat(store.getBehaviorMode(slot.getIndex()), is(BehaviorMode.FORAGING));
+        assertThat(moving.getWorldPosition(), is(POSITION));
+    }
+
+    @Test
+    public void primitiveAccessorsReadStore() {
+        AgentStore.Slot slot = store.allocate();
+        Moving moving = new Moving(slot);
+
+        moving.setPosition(POSITION.x, POSITION.y, MAP_POSITION);
+        moving.setVelocity(new Double2D(0, 1), 2);
+
+        assertThat(moving.getWorldX(), is(POSITION.x));
+        assertThat(moving.getWorldY(), is(POSITION.y));
+        assertThat(moving.getDirectionX(), is(0d));
+        assertThat(moving.getDirectionY(), is(1d));
+        assertThat(moving.getWorldPosition(), is(POSITION));
+        assertThat(moving.getMapPosition(), is(MAP_POSITION));
+    }
+
+    @Test
+    public void release() {
+        AgentStore.Slot slot = store.allocate();
+        Moving moving = new Moving(slot);
+        moving.setPosition(POSITION, MAP_POSITION);
+
+        slot.release();
+        assertThat(store.isUsed(0), is(false));
+        assertThat(store.getAgentCount(), is(0));
+        // values are kept in the component
+        assertThat(moving.getWorldPosition(), is(POSITION));
+        assertThat(moving.getMapPosition(), is(MAP_POSITION));
+
+        // released index is reused
+        assertThat(store.allocate().getIndex(), is(0));
+        assertThat(moving.getWorldPosition(), is(POSITION));
+    }
+}
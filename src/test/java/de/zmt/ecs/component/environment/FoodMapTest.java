@@ -19,9 +19,11 @@ import de.zmt.ecs.component.environment.FoodMap.FindFoodConverter;
 import de.zmt.ecs.component.environment.FoodMap.FoundFood;
 import de.zmt.pathfinding.DynamicMap;
 import de.zmt.util.AmountUtil;
+import de.zmt.util.Habitat;
 import de.zmt.util.UnitConstants;
 import de.zmt.util.quantity.AreaDensity;
 import sim.field.grid.DoubleGrid2D;
+import sim.field.grid.IntGrid2D;
 import sim.util.Double2D;
 import sim.util.Int2D;
 
@@ -65,6 +67,10 @@ public class FoodMapTest {
     /** Maximum error accepted due to imprecision in calculations. */
     private static final double MAX_ERROR = 1E-10;
 
+    private static final Habitat HABITAT = Habitat.CORALREEF;
+    private static final double GROWTH_FACTOR = 1.1;
+    private static final int GROWTH_DAYS = 20;
+
     /**
      * Available food value for five squares with factors by distance:<br>
      * 
@@ -83,7 +89,7 @@ public class FoodMapTest {
     @Before
     public void setUp() {
         foodPathfindingMap = mock(DynamicMap.class);
-        habitatMap = mock(HabitatMap.class);
+        habitatMap = new HabitatMap(new IntGrid2D(FOOD_FIELD_WIDTH, FOOD_FIELD_HEIGHT, HABITAT.ordinal()));
         foodMap = new FoodMap(new DoubleGrid2D(FOOD_FIELD_WIDTH, FOOD_FIELD_HEIGHT, FOOD_FIELD_INIT_VALUE),
                 foodPathfindingMap, habitatMap);
     }
@@ -103,6 +109,7 @@ public class FoodMapTest {
         assertThat(foodMap.getFoodDensity(MAP_CENTER_POS.x, MAP_CENTER_POS.y).getEstimatedValue(),
                 is(closeTo(REMAINING_FOOD_AT_CENTER, MAX_ERROR)));
 
+        foodMap.updatePathfinding(MAP_CENTER_POS.x, MAP_CENTER_POS.y);
         verify(foodPathfindingMap).forceUpdate(MAP_CENTER_POS.x, MAP_CENTER_POS.y);
     }
 
@@ -130,6 +137,7 @@ public class FoodMapTest {
 
         Amount<Mass> rejectedFood = availableFood.times(REJECTED_FOOD_PROPORTION);
         foundFood.returnRejected(rejectedFood);
+        foodMap.updatePathfinding(MAP_CENTER_POS.x, MAP_CENTER_POS.y);
 
         // center
         assertThat(foodMap.getFoodDensity(MAP_CENTER_POS.x, MAP_CENTER_POS.y).getEstimatedValue(),
@@ -180,6 +188,113 @@ public class FoodMapTest {
         } while (availableFood.getEstimatedValue() > 0);
     }
 
+    @Test
+    public void updatePathfindingOnce() {
+        foodMap.setFoodDensity(0, 0, AmountUtil.zero(UnitConstants.FOOD_DENSITY));
+        foodMap.setFoodDensity(0, 0, AmountUtil.zero(UnitConstants.FOOD_DENSITY));
+        verify(foodPathfindingMap, never()).forceUpdate(anyInt(), anyInt());
+
+        foodMap.updatePathfinding(0, 0);
+        foodMap.updatePathfinding(0, 0);
+        verify(foodPathfindingMap).forceUpdate(0, 0);
+    }
+
+    @Test
+    public void updatePathfindingOnManyChanges() {
+        for (int i = 0; i <= FoodMap.MAX_DIRTY_LOCATIONS; i++) {
+            foodMap.setFoodDensity(0, 0, AmountUtil.zero(UnitConstants.FOOD_DENSITY));
+        }
+
+        // too many changes collected: the whole tile is propagated
+        foodMap.updatePathfinding(0, 0);
+        for (int x = 0; x < FOOD_FIELD_WIDTH; x++) {
+            for (int y = 0; y < FOOD_FIELD_HEIGHT; y++) {
+                verify(foodPathfindingMap).forceUpdate(x, y);
+            }
+        }
+
+        // collecting again after propagation
+        foodMap.setFoodDensity(0, 0, AmountUtil.zero(UnitConstants.FOOD_DENSITY));
+        foodMap.updatePathfinding(0, 0);
+        verify(foodPathfindingMap, times(2)).forceUpdate(0, 0);
+        verify(foodPathfindingMap).forceUpdate(0, 1);
+    }
+
+    @Test
+    public void growFoodOnChangedTiles() {
+        int tileSize = FoodMap.DIRTY_TILE_SIZE;
+        double min = HABITAT.getFoodDensityMin().doubleValue(UnitConstants.FOOD_DENSITY);
+        double max = HABITAT.getFoodDensityMax().doubleValue(UnitConstants.FOOD_DENSITY);
+        FoodMap tiledFoodMap = new FoodMap(new DoubleGrid2D(2 * tileSize, tileSize, max), foodPathfindingMap,
+                new HabitatMap(new IntGrid2D(2 * tileSize, tileSize, HABITAT.ordinal())));
+        // only the second tile can grow
+        tiledFoodMap.getGrid().set(tileSize, 0, min);
+
+        tiledFoodMap.growFood(GROWTH_FACTOR);
+        assertThat(tiledFoodMap.getFoodDensityValue(tileSize, 0), is(closeTo(min * GROWTH_FACTOR, MAX_ERROR)));
+        verify(foodPathfindingMap, never()).forceUpdate(anyInt(), anyInt());
+
+        // the grown tile is propagated as a whole, the other one not at all
+        tiledFoodMap.updatePathfinding();
+        for (int x = 0; x < 2 * tileSize; x++) {
+            for (int y = 0; y < tileSize; y++) {
+                verify(foodPathfindingMap, times(x < tileSize ? 0 : 1)).forceUpdate(x, y);
+            }
+        }
+    }
+
+    @Test
+    public void growOnClosedForm() {
+        double min = HABITAT.getFoodDensityMin().doubleValue(UnitConstants.FOOD_DENSITY);
+        double max = HABITAT.getFoodDensityMax().doubleValue(UnitConstants.FOOD_DENSITY);
+
+        for (double density : new double[] { 0, min * 0.5, min, (min + max) * 0.5, max }) {
+            double grownDaily = density;
+            for (int days = 1; days <= GROWTH_DAYS; days++) {
+                grownDaily = FoodMap.grow(grownDaily, GROWTH_FACTOR, 1, min, max);
+                assertThat(FoodMap.grow(density, GROWTH_FACTOR, days, min, max), is(closeTo(grownDaily, MAX_ERROR)));
+            }
+        }
+    }
+
+    @Test
+    public void growFoodLazily() {
+        double initialDensity = HABITAT.getFoodDensityMin().doubleValue(UnitConstants.FOOD_DENSITY);
+        FoodMap lazyFoodMap = new FoodMap(new DoubleGrid2D(FOOD_FIELD_WIDTH, FOOD_FIELD_HEIGHT, initialDensity),
+                foodPathfindingMap, habitatMap, true);
+        foodMap.getGrid().setTo(initialDensity);
+
+        for (int i = 0; i < 3; i++) {
+            foodMap.growFood(GROWTH_FACTOR);
+            lazyFoodMap.growFood(GROWTH_FACTOR);
+        }
+        // lazy map is only updated on read
+        assertThat(lazyFoodMap.getGrid().get(0, 0), is(initialDensity));
+        assertThat(lazyFoodMap.getFoodDensityValue(0, 0), is(closeTo(foodMap.getFoodDensityValue(0, 0), MAX_ERROR)));
+        assertThat(lazyFoodMap.getGrid().get(0, 0), is(lazyFoodMap.getFoodDensityValue(0, 0)));
+    }
+
+    @Test
+    public void updatePathfindingOnLazyGrowth() {
+        FoodMap lazyFoodMap = new FoodMap(new DoubleGrid2D(FOOD_FIELD_WIDTH, FOOD_FIELD_HEIGHT, FOOD_FIELD_INIT_VALUE),
+                foodPathfindingMap, habitatMap, true);
+        // graze location to the minimum
+        lazyFoodMap.setFoodDensity(0, 0, AmountUtil.zero(UnitConstants.FOOD_DENSITY));
+        lazyFoodMap.updatePathfinding(0, 0);
+        verify(foodPathfindingMap).forceUpdate(0, 0);
+
+        for (int i = 0; i < GROWTH_DAYS; i++) {
+            lazyFoodMap.growFood(GROWTH_FACTOR);
+        }
+        // regrowth is not propagated until the location is read
+        lazyFoodMap.updatePathfinding(0, 0);
+        verify(foodPathfindingMap).forceUpdate(0, 0);
+
+        lazyFoodMap.getFoodDensityValue(0, 0);
+        lazyFoodMap.updatePathfinding(0, 0);
+        verify(foodPathfindingMap, times(2)).forceUpdate(0, 0);
+    }
+
     private Amount<Mass> findAndConsumeAll(Double2D position, Amount<Length> radius) {
         FoundFood foundFood = foodMap.findAvailableFood(position, radius, CONVERTER);
         foundFood.returnRejected(AmountUtil.zero(UnitConstants.FOOD));
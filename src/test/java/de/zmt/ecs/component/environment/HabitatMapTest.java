@@ -1,8 +1,10 @@
 package de.zmt.ecs.component.environment;
 
 import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.HashSet;
@@ -53,4 +55,49 @@ public class HabitatMapTest {
         }
     }
 
+    @Test(expected = IllegalArgumentException.class)
+    public void generateRandomPositionOnMissingHabitat() {
+        habitatMap.generateRandomPosition(RANDOM, EnumSet.of(Habitat.MAINLAND));
+    }
+
+    @Test
+    public void obtainHabitat() {
+        for (Int2D position : CORALREEF_POSITIONS) {
+            assertThat(habitatMap.obtainHabitat(position), is(Habitat.CORALREEF));
+        }
+        for (Int2D position : SEAGRASS_POSITIONS) {
+            assertThat(habitatMap.obtainHabitat(position), is(Habitat.SEAGRASS));
+        }
+    }
+
+    @Test
+    public void providePortrayable() {
+        assertThat(habitatMap.providePortrayable().getField().field, is(HABITAT_MAP_GRID.field));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructOnInvalidOrdinal() {
+        new HabitatMap(new IntGrid2D(1, 1, Habitat.values().length));
+    }
+
+    @Test
+    public void constructFromCells() {
+        // row by row
+        ByteBuffer cells = ByteBuffer.wrap(new byte[] { (byte) ORDINAL_CORALREEF, (byte) ORDINAL_SEAGRASS,
+                (byte) ORDINAL_CORALREEF, (byte) ORDINAL_SEAGRASS });
+        HabitatMap cellsHabitatMap = new HabitatMap(2, 2, cells);
+
+        assertThat(cellsHabitatMap.providePortrayable().getField().field, is(HABITAT_MAP_GRID.field));
+        assertThat(cells.position(), is(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructFromCellsOnSizeMismatch() {
+        new HabitatMap(2, 2, ByteBuffer.allocate(3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructFromCellsOnInvalidOrdinal() {
+        new HabitatMap(1, 1, ByteBuffer.wrap(new byte[] { -1 }));
+    }
 }
@@ -0,0 +1,30 @@
+package de.zmt.ecs.component.environment;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class RadialStencilTest {
+    @Test
+    public void sizeOnRadius() {
+        assertThat(new RadialStencil(0).size(), is(1));
+        assertThat(new RadialStencil(0.5).size(), is(1));
+        assertThat(new RadialStencil(1).size(), is(5));
+        assertThat(new RadialStencil(1.5).size(), is(9));
+    }
+
+    @Test
+    public void weights() {
+        RadialStencil stencil = new RadialStencil(1);
+        for (int i = 0; i < stencil.size(); i++) {
+            int distanceSq = stencil.offsetsX[i] * stencil.offsetsX[i] + stencil.offsetsY[i] * stencil.offsetsY[i];
+            assertThat(stencil.weights[i], is(distanceSq == 0 ? 1 : 0.5));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeRadius() {
+        new RadialStencil(-1);
+    }
+}
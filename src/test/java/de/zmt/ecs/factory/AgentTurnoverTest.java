@@ -0,0 +1,166 @@
+package de.zmt.ecs.factory;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.zmt.ecs.Component;
+import de.zmt.ecs.Entity;
+import de.zmt.ecs.EntitySystem;
+import de.zmt.ecs.component.agent.AgentStore;
+import de.zmt.ecs.component.agent.LifeCycling.CauseOfDeath;
+import de.zmt.ecs.system.agent.AgentSystem;
+import de.zmt.output.RowWriter.Format;
+import de.zmt.params.EnvironmentDefinition;
+import de.zmt.params.KittParams;
+import de.zmt.params.SpeciesDefinition;
+import sim.engine.Kitt;
+import sim.engine.SimState;
+
+public class AgentTurnoverTest {
+    private static final String HABITAT_MAP_PATH = "/sim/engine/test-habitat-map.png";
+    /** Number of fish kept alive. */
+    private static final int ALIVE_COUNT = 20;
+    /** Number of larvae created and fish killed on every step. */
+    private static final int TURNOVER_PER_STEP = 10;
+    /** Number of turnovers before measuring the first time. */
+    private static final int TURNOVER = 10000;
+    /** Bytes the heap may grow per additional turnover, below any state kept for an agent. */
+    private static final long MAX_HEAP_GROWTH_PER_TURNOVER = 32;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests if state kept for agents is released when they die, so that
+     * memory stays bounded on high turnover. Larvae are hatched and grow by
+     * the systems of the simulation, with the life cycle log written, while
+     * fish are killed like in {@link AgentSystem}.
+     */
+    @Test
+    public void turnoverOnBoundedMemory() throws IOException {
+        Kitt state = createState();
+        state.start();
+        KittEntityCreationHandler handler = state.getEntityCreationHandler();
+        Population population = handler.getPopulation();
+        AgentStore store = state.getEnvironment().get(AgentStore.class);
+        KillingSystem killingSystem = new KillingSystem();
+
+        runTurnover(state, killingSystem, TURNOVER);
+        long firstUsedHeap = measureUsedHeap();
+        runTurnover(state, killingSystem, 9 * TURNOVER);
+        long secondUsedHeap = measureUsedHeap();
+
+        // every table kept per agent only contains those alive
+        int agentCount = population.getAgentCount();
+        assertThat(agentCount, is(lessThanOrEqualTo(ALIVE_COUNT + TURNOVER_PER_STEP)));
+        assertThat(handler.getManager().getAllEntitiesPossessingComponent(SpeciesDefinition.class).size(),
+                is(agentCount));
+        assertThat(store.getAgentCount(), is(population.getFishCount()));
+        // released indices are reused
+        assertThat(store.size(), is(lessThanOrEqualTo(2 * (ALIVE_COUNT + TURNOVER_PER_STEP))));
+        // ... and nothing else is kept
+        assertThat(secondUsedHeap - firstUsedHeap, is(lessThan(9 * TURNOVER * MAX_HEAP_GROWTH_PER_TURNOVER)));
+
+        state.finish();
+    }
+
+    private Kitt createState() throws IOException {
+        KittParams params = new KittParams();
+        for (SpeciesDefinition definition : params.getSpeciesDefs()) {
+            SpeciesDefinition.MyPropertiesProxy speciesProxy = (SpeciesDefinition.MyPropertiesProxy) definition
+                    .propertiesProxy();
+            speciesProxy.setInitialNum(ALIVE_COUNT);
+            // metamorphose on the step after hatching
+            speciesProxy.setPostSettlementAge("1 s");
+        }
+        EnvironmentDefinition.MyPropertiesProxy environmentProxy = (EnvironmentDefinition.MyPropertiesProxy) params
+                .getEnvironmentDefinition().propertiesProxy();
+        environmentProxy.setMapImagePath(getClass().getResource(HABITAT_MAP_PATH).getPath());
+        environmentProxy.setLifeCyclingOutput(true);
+        environmentProxy.setOutputFormat(Format.BINARY.ordinal());
+        environmentProxy.setCheckpointInterval("0 s");
+
+        Kitt state = new Kitt();
+        state.setParams(params);
+        state.setOutputPath(folder.newFolder("output").toPath());
+        state.setSeed(0);
+        return state;
+    }
+
+    /**
+     * Hatches larvae and kills fish, keeping {@link #ALIVE_COUNT} fish alive,
+     * while stepping the simulation.
+     *
+     * @param state
+     *            the simulation state
+     * @param killingSystem
+     *            the system to kill fish with
+     * @param turnover
+     *            the number of larvae to hatch and fish to kill
+     */
+    private static void runTurnover(Kitt state, KillingSystem killingSystem, int turnover) {
+        KittEntityCreationHandler handler = state.getEntityCreationHandler();
+        Population population = handler.getPopulation();
+        SpeciesDefinition definition = state.getParams().getSpeciesDefs().iterator().next();
+        for (int i = 0; i < turnover; i += TURNOVER_PER_STEP) {
+            for (int j = 0; j < TURNOVER_PER_STEP; j++) {
+                handler.createLarva(definition, state.getParams().getEnvironmentDefinition().getStepDuration(),
+                        state.random);
+            }
+            // larvae metamorphose into fish, which grow and are logged
+            state.schedule.step(state);
+
+            List<UUID> excessFish = new ArrayList<>(population.getFish());
+            for (UUID uuid : excessFish.subList(0, Math.max(0, excessFish.size() - ALIVE_COUNT))) {
+                killingSystem.kill(Entity.loadFromEntityManager(handler.getManager(), uuid));
+            }
+        }
+    }
+
+    private static long measureUsedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Kills agents like systems do when they die.
+     *
+     * @author mey
+     *
+     */
+    private static class KillingSystem extends AgentSystem {
+        public void kill(Entity agent) {
+            killAgent(agent, CauseOfDeath.NATURAL);
+        }
+
+        @Override
+        protected void systemUpdate(Entity entity, SimState state) {
+        }
+
+        @Override
+        protected Collection<Class<? extends Component>> getRequiredComponentTypes() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Collection<Class<? extends EntitySystem>> getDependencies() {
+            return Collections.emptySet();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package de.zmt.ecs.factory;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.zmt.ecs.factory.EnvironmentCache.KeyBuilder;
+import de.zmt.util.Habitat;
+import sim.field.grid.DoubleGrid2D;
+import sim.field.grid.IntGrid2D;
+
+public class EnvironmentCacheTest {
+    private static final String KEY = new KeyBuilder("test").add(1.5).build();
+    private static final int WIDTH = 3;
+    private static final int HEIGHT = 2;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+    private AtomicInteger createCount;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = folder.newFolder().toPath();
+        createCount = new AtomicInteger();
+    }
+
+    @Test
+    public void obtainDoubleGrid() {
+        EnvironmentCache cache = new EnvironmentCache(directory);
+        DoubleGrid2D grid = cache.obtainDoubleGrid(KEY, this::createDoubleGrid);
+        DoubleGrid2D cachedGrid = cache.obtainDoubleGrid(KEY, this::createDoubleGrid);
+
+        assertThat(createCount.get(), is(1));
+        assertThat(cachedGrid.field, is(grid.field));
+        assertThat(cachedGrid.get(2, 1), is(21.5));
+        // every caller gets its own copy
+        cachedGrid.set(0, 0, -1);
+        assertThat(cache.obtainDoubleGrid(KEY, this::createDoubleGrid).get(0, 0), is(0.5));
+    }
+
+    @Test
+    public void obtainIntGridFromFile() {
+        new EnvironmentCache(directory).obtainIntGrid(KEY, this::createIntGrid);
+        IntGrid2D grid = new EnvironmentCache(directory).obtainIntGrid(KEY, this::createIntGrid);
+
+        assertThat(createCount.get(), is(1));
+        assertThat(grid.getWidth(), is(WIDTH));
+        assertThat(grid.getHeight(), is(HEIGHT));
+        assertThat(grid.get(2, 1), is(21));
+    }
+
+    @Test
+    public void obtainOnInvalidFile() throws IOException {
+        IntGrid2D grid = new EnvironmentCache(directory).obtainIntGrid(KEY, this::createIntGrid);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.write(file, new byte[] { 'K', 'E', 'N', 'V' });
+            }
+        }
+
+        assertThat(new EnvironmentCache(directory).obtainIntGrid(KEY, this::createIntGrid).field, is(grid.field));
+        assertThat(createCount.get(), is(2));
+    }
+
+    @Test
+    public void obtainOnOtherType() {
+        new EnvironmentCache(directory).obtainIntGrid(KEY, this::createIntGrid);
+        DoubleGrid2D grid = new EnvironmentCache(directory).obtainDoubleGrid(KEY, this::createDoubleGrid);
+
+        assertThat(createCount.get(), is(2));
+        assertThat(grid.get(2, 1), is(21.5));
+    }
+
+    @Test
+    public void obtainInMemory() {
+        EnvironmentCache cache = new EnvironmentCache(null);
+        cache.obtainIntGrid(KEY, this::createIntGrid);
+        cache.obtainIntGrid(KEY, this::createIntGrid);
+        assertThat(createCount.get(), is(1));
+    }
+
+    @Test
+    public void obtainHabitatRasterFromFile() {
+        new EnvironmentCache(directory).obtainHabitatRaster(KEY, this::createHabitatRaster);
+        HabitatRaster raster = new EnvironmentCache(directory).obtainHabitatRaster(KEY,
+                this::createHabitatRaster);
+
+        assertThat(createCount.get(), is(1));
+        assertThat(raster.getWidth(), is(WIDTH));
+        assertThat(raster.getHeight(), is(HEIGHT));
+        assertThat(raster.getCells(), is(createHabitatRaster().getCells()));
+    }
+
+    @Test
+    public void obtainOnTooLarge() throws IOException {
+        EnvironmentCache cache = new EnvironmentCache(directory, WIDTH * HEIGHT);
+        IntGrid2D grid = cache.obtainIntGrid(KEY, this::createIntGrid);
+        cache.obtainIntGrid(KEY, this::createIntGrid);
+
+        // created for every caller without being stored
+        assertThat(createCount.get(), is(2));
+        assertThat(grid.get(2, 1), is(21));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files.count(), is(0L));
+        }
+    }
+
+    @Test
+    public void buildKey() {
+        assertThat(new KeyBuilder("test").add(1.5).build(), is(KEY));
+        assertThat(new KeyBuilder("test").add(2.5).build(), is(not(KEY)));
+        assertThat(new KeyBuilder("tes").add("t").add(1.5).build(), is(not(KEY)));
+    }
+
+    private IntGrid2D createIntGrid() {
+        createCount.incrementAndGet();
+        IntGrid2D grid = new IntGrid2D(WIDTH, HEIGHT);
+        for (int x = 0; x < WIDTH; x++) {
+            for (int y = 0; y < HEIGHT; y++) {
+                grid.set(x, y, x * 10 + y);
+            }
+        }
+        return grid;
+    }
+
+    private HabitatRaster createHabitatRaster() {
+        createCount.incrementAndGet();
+        byte[] cells = new byte[WIDTH * HEIGHT];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = (byte) (i % Habitat.values().length);
+        }
+        return new HabitatRaster(WIDTH, HEIGHT, ByteBuffer.wrap(cells).asReadOnlyBuffer());
+    }
+
+    private DoubleGrid2D createDoubleGrid() {
+        createCount.incrementAndGet();
+        DoubleGrid2D grid = new DoubleGrid2D(WIDTH, HEIGHT);
+        for (int x = 0; x < WIDTH; x++) {
+            for (int y = 0; y < HEIGHT; y++) {
+                grid.set(x, y, x * 10 + y + 0.5);
+            }
+        }
+        return grid;
+    }
+}
@@ -0,0 +1,93 @@
+package de.zmt.ecs.factory;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.zmt.util.Habitat;
+import sim.field.grid.IntGrid2D;
+
+public class HabitatRasterTest {
+    private static final int WIDTH = 4;
+    private static final int HEIGHT = 3;
+    private static final Color UNKNOWN_COLOR = new Color(1, 2, 3);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void fromImage() {
+        // including a type without direct access
+        for (int type : new int[] { BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB,
+                BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_INT_BGR }) {
+            assertMatchesImage(HabitatRaster.fromImage(createImage(new BufferedImage(WIDTH, HEIGHT, type))).toGrid());
+        }
+    }
+
+    @Test
+    public void fromIndexedImage() {
+        Habitat[] habitats = Habitat.values();
+        int[] palette = new int[habitats.length + 1];
+        for (Habitat habitat : habitats) {
+            palette[habitat.ordinal()] = habitat.getColor().getRGB();
+        }
+        palette[habitats.length] = UNKNOWN_COLOR.getRGB();
+        IndexColorModel colorModel = new IndexColorModel(Byte.SIZE, palette.length, palette, 0, false, -1,
+                DataBuffer.TYPE_BYTE);
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_INDEXED, colorModel);
+
+        assertMatchesImage(HabitatRaster.fromImage(createImage(image)).toGrid());
+    }
+
+    @Test
+    public void writeAndMap() throws IOException {
+        Path path = folder.newFile("map" + HabitatRaster.FILE_EXTENSION).toPath();
+        HabitatRaster.fromImage(createImage(new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB)))
+                .write(path);
+
+        HabitatRaster raster = HabitatRaster.map(path);
+        assertThat(raster.getWidth(), is(WIDTH));
+        assertThat(raster.getHeight(), is(HEIGHT));
+        assertMatchesImage(raster.toGrid());
+    }
+
+    @Test(expected = IOException.class)
+    public void mapOnInvalid() throws IOException {
+        Path path = folder.newFile().toPath();
+        Files.write(path, new byte[] { 1, 2, 3 });
+        HabitatRaster.map(path);
+    }
+
+    /**
+     * Fills an image with a habitat color in every cell of the first row,
+     * followed by rows of an unknown color.
+     */
+    private static BufferedImage createImage(BufferedImage image) {
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                image.setRGB(x, y, y == 0 ? Habitat.values()[x].getColor().getRGB() : UNKNOWN_COLOR.getRGB());
+            }
+        }
+        return image;
+    }
+
+    private static void assertMatchesImage(IntGrid2D grid) {
+        assertThat(grid.getWidth(), is(WIDTH));
+        assertThat(grid.getHeight(), is(HEIGHT));
+        for (int x = 0; x < WIDTH; x++) {
+            assertThat(grid.get(x, 0), is(x));
+            assertThat(grid.get(x, HEIGHT - 1), is(Habitat.DEFAULT.ordinal()));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package de.zmt.ecs.factory;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.zmt.ecs.Entity;
+import de.zmt.ecs.EntityManager;
+import de.zmt.ecs.component.agent.LifeCycling;
+import de.zmt.ecs.component.agent.LifeCycling.Phase;
+import de.zmt.ecs.component.agent.LifeCycling.Sex;
+import de.zmt.ecs.component.agent.Moving;
+import de.zmt.params.SpeciesDefinition;
+
+public class PopulationTest {
+    private SpeciesDefinition definition;
+    private EntityManager manager;
+    private Population population;
+
+    @Before
+    public void setUp() throws Exception {
+        definition = new SpeciesDefinition();
+        manager = new EntityManager();
+        population = new Population();
+        manager.addListener(population);
+    }
+
+    @Test
+    public void addAndRemove() {
+        Entity larva = new Entity(manager, Collections.singleton(definition));
+        Entity fish = createFish();
+        population.add(larva);
+        population.add(fish);
+
+        assertThat(population.getAgentCount(), is(2));
+        assertThat(population.getAgentCount(definition), is(2));
+        assertThat(population.getLarvaCount(), is(1));
+        assertThat(population.getFish(), is(Collections.singleton(fish.getUuid())));
+        assertThat(population.getFishCount(definition, Phase.JUVENILE), is(1));
+
+        larva.stop();
+        fish.stop();
+        assertThat(population.getAgentCount(), is(0));
+        assertThat(population.getAgentCount(definition), is(0));
+        assertThat(population.getFishCount(definition, Phase.JUVENILE), is(0));
+    }
+
+    @Test
+    public void updatePhase() {
+        Entity fish = createFish();
+        population.add(fish);
+
+        fish.get(LifeCycling.class).enterNextPhase();
+        population.updatePhase(fish);
+        assertThat(population.getFishCount(definition, Phase.JUVENILE), is(0));
+        assertThat(population.getFishCount(definition, Phase.INITIAL), is(1));
+    }
+
+    private Entity createFish() {
+        return new Entity(manager, Arrays.asList(definition, new Moving(), new LifeCycling(Sex.FEMALE)));
+    }
+}
@@ -18,6 +18,7 @@ import org.junit.Test;
 import de.zmt.ecs.Entity;
 import de.zmt.ecs.EntityManager;
 import de.zmt.ecs.factory.KittEntityCreationHandler;
+import de.zmt.ecs.factory.Population;
 import de.zmt.params.SpeciesDefinition;
 import de.zmt.util.AmountUtil;
 import ec.util.MersenneTwisterFast;
@@ -41,10 +42,15 @@ public class ReproductionSystemTest {
     public void reproduceOnMaxCount() {
         KittEntityCreationHandler mockCreationHandler = mock(KittEntityCreationHandler.class);
         
+        Population population = new Population();
         when(mockCreationHandler.getManager()).thenReturn(manager);
-        // add entity to manager when larva creation is called
-        doAnswer(invocation -> new Entity(manager, Collections.singleton(speciesDefinition))).when(mockCreationHandler)
-                .createLarva(speciesDefinition, STEP_DURATION, RANDOM);
+        when(mockCreationHandler.getPopulation()).thenReturn(population);
+        // add entity to manager and population when larva creation is called
+        doAnswer(invocation -> {
+            Entity larva = new Entity(manager, Collections.singleton(speciesDefinition));
+            population.add(larva);
+            return larva;
+        }).when(mockCreationHandler).createLarva(speciesDefinition, STEP_DURATION, RANDOM);
         // mock that returns ints up to NUM_OFFSPRING
         ((SpeciesDefinition.MyPropertiesProxy) speciesDefinition.propertiesProxy()).setNumOffspring(NUM_OFFSPRING);
 
@@ -0,0 +1,92 @@
+package de.zmt.output;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AsyncTextWriterTest {
+    private static final int LINE_COUNT = 100000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writeOnClose() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("out.txt");
+        StringBuilder expected = new StringBuilder();
+        try (AsyncTextWriter writer = new AsyncTextWriter(path)) {
+            for (int i = 0; i < LINE_COUNT; i++) {
+                String line = i + "\n";
+                writer.append(line);
+                expected.append(line);
+            }
+        }
+
+        assertThat(new String(Files.readAllBytes(path), StandardCharsets.UTF_8), is(expected.toString()));
+    }
+
+    @Test
+    public void writeOnAppend() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("out.txt");
+        try (AsyncTextWriter writer = new AsyncTextWriter(path)) {
+            writer.append("first\n");
+        }
+        try (AsyncTextWriter writer = new AsyncTextWriter(path, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND)) {
+            writer.chunk().append("second\n");
+            writer.commit();
+            writer.flush();
+        }
+
+        assertThat(new String(Files.readAllBytes(path), StandardCharsets.UTF_8), is("first\nsecond\n"));
+    }
+
+    @Test
+    public void writeOnCallingThread() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("out.txt");
+        StringBuilder expected = new StringBuilder();
+        try (AsyncTextWriter writer = AsyncTextWriter.open(path, false, false)) {
+            for (int i = 0; i < LINE_COUNT; i++) {
+                String line = i + "\n";
+                writer.append(line);
+                expected.append(line);
+            }
+            writer.flush();
+            // written once flushed, without waiting for another thread
+            assertThat(new String(Files.readAllBytes(path), StandardCharsets.UTF_8), is(expected.toString()));
+            writer.append("last\n");
+        }
+
+        assertThat(new String(Files.readAllBytes(path), StandardCharsets.UTF_8), is(expected + "last\n"));
+    }
+
+    @Test
+    public void writeOnSync() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("out.txt");
+        try (AsyncTextWriter writer = new AsyncTextWriter(path)) {
+            writer.append("first\n");
+            writer.sync();
+            // written by the background thread, kept open
+            assertThat(new String(Files.readAllBytes(path), StandardCharsets.UTF_8), is("first\n"));
+            writer.append("second\n");
+        }
+
+        assertThat(new String(Files.readAllBytes(path), StandardCharsets.UTF_8), is("first\nsecond\n"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void appendOnClosed() throws IOException {
+        AsyncTextWriter writer = new AsyncTextWriter(folder.getRoot().toPath().resolve("out.txt"));
+        writer.close();
+        writer.append("text");
+    }
+}
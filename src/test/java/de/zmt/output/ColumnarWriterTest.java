@@ -0,0 +1,121 @@
+package de.zmt.output;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.zmt.output.RowWriter.Column;
+import de.zmt.output.RowWriter.Format;
+import de.zmt.output.RowWriter.Type;
+
+public class ColumnarWriterTest {
+    private static final List<Column> COLUMNS = Arrays.asList(new Column("steps", Type.LONG),
+            new Column("value", Type.DOUBLE), new Column("name", Type.STRING));
+    private static final int ROW_COUNT = ColumnarWriter.BLOCK_ROWS + 10;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path basePath;
+    private Path path;
+
+    @Before
+    public void setUp() throws Exception {
+        basePath = folder.getRoot().toPath().resolve("output");
+        path = folder.getRoot().toPath().resolve("output." + Format.BINARY.getExtension());
+    }
+
+    @Test
+    public void readBlock() throws IOException {
+        write(0, ROW_COUNT, false);
+
+        try (ColumnarReader reader = new ColumnarReader(path)) {
+            assertThat(reader.getColumns().toString(), is(COLUMNS.toString()));
+            assertThat(reader.readBlock(), is(ColumnarWriter.BLOCK_ROWS));
+            assertRow(reader, 0, 0);
+            assertRow(reader, ColumnarWriter.BLOCK_ROWS - 1, ColumnarWriter.BLOCK_ROWS - 1);
+            assertThat(reader.readBlock(), is(ROW_COUNT - ColumnarWriter.BLOCK_ROWS));
+            assertRow(reader, 0, ColumnarWriter.BLOCK_ROWS);
+            assertThat(reader.readBlock(), is(-1));
+        }
+    }
+
+    @Test
+    public void readBlockOnCallingThread() throws IOException {
+        try (RowWriter writer = RowWriter.open(basePath, Format.BINARY, COLUMNS, null, false, false)) {
+            for (int i = 0; i < ROW_COUNT; i++) {
+                writer.add(i).add(i * 0.5).add("name" + i).endRow();
+            }
+        }
+
+        try (ColumnarReader reader = new ColumnarReader(path)) {
+            assertThat(reader.readBlock(), is(ColumnarWriter.BLOCK_ROWS));
+            assertRow(reader, 0, 0);
+            assertThat(reader.readBlock(), is(ROW_COUNT - ColumnarWriter.BLOCK_ROWS));
+            assertRow(reader, 0, ColumnarWriter.BLOCK_ROWS);
+            assertThat(reader.readBlock(), is(-1));
+        }
+    }
+
+    @Test
+    public void readBlockOnAppend() throws IOException {
+        write(0, 1, false);
+        write(1, 2, true);
+
+        try (ColumnarReader reader = new ColumnarReader(path)) {
+            assertThat(reader.readBlock(), is(1));
+            assertRow(reader, 0, 0);
+            assertThat(reader.readBlock(), is(1));
+            assertRow(reader, 0, 1);
+            assertThat(reader.readBlock(), is(-1));
+        }
+    }
+
+    @Test
+    public void exportToText() throws IOException {
+        write(0, 2, false);
+        Path textPath = folder.getRoot().toPath().resolve("output.csv");
+        ColumnarReader.exportToText(path, textPath);
+
+        assertThat(Files.readAllLines(textPath),
+                is(Arrays.asList("steps\tvalue\tname\t", "0\t0.0\tname0\t", "1\t0.5\tname1\t")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void addOnWrongType() throws IOException {
+        try (RowWriter writer = RowWriter.open(basePath, Format.BINARY, COLUMNS, null, false)) {
+            writer.add(0.5);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void endRowOnIncomplete() throws IOException {
+        try (RowWriter writer = RowWriter.open(basePath, Format.BINARY, COLUMNS, null, false)) {
+            writer.add(0).endRow();
+        }
+    }
+
+    private void write(int from, int to, boolean append) throws IOException {
+        try (RowWriter writer = RowWriter.open(basePath, Format.BINARY, COLUMNS, null, append)) {
+            for (int i = from; i < to; i++) {
+                writer.add(i).add(i * 0.5).add("name" + i).endRow();
+            }
+        }
+    }
+
+    private static void assertRow(ColumnarReader reader, int row, int expected) {
+        assertThat(reader.getLong(0, row), is((long) expected));
+        assertThat(reader.getDouble(1, row), is(expected * 0.5));
+        assertThat(reader.getString(2, row), is("name" + expected));
+    }
+}
@@ -0,0 +1,59 @@
+package de.zmt.output;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class DecimalFormatterTest {
+    private static final double[] SPECIAL_VALUES = { 0, -0d, 1, -1, 0.5, 1.5, 2.5, 0.125, 0.000000005, 0.000000015,
+            0.0000000049999, 1e-12, 123456789.123456789, 1e15, 1e20, -1e20, Double.MIN_VALUE, Double.MAX_VALUE,
+            Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY };
+    private static final int RANDOM_VALUES_COUNT = 100000;
+
+    @Test
+    public void formatDefault() {
+        assertEqualsDecimalFormat(DecimalFormatter.DEFAULT);
+    }
+
+    @Test
+    public void formatTwelveDigits() {
+        assertEqualsDecimalFormat(new DecimalFormatter(12));
+    }
+
+    @Test
+    public void append() {
+        StringBuilder builder = new StringBuilder("x=");
+        DecimalFormatter.DEFAULT.append(builder, 2.50);
+        assertThat(builder.toString(), is("x=2.5"));
+    }
+
+    @Test
+    public void toPattern() {
+        assertThat(new DecimalFormatter(3).toPattern(), is("##0.0##"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructOnInvalid() {
+        new DecimalFormatter(0);
+    }
+
+    private static void assertEqualsDecimalFormat(DecimalFormatter formatter) {
+        DecimalFormat format = (DecimalFormat) NumberFormat.getNumberInstance(new Locale("en", "US"));
+        format.applyPattern(formatter.toPattern());
+
+        for (double value : SPECIAL_VALUES) {
+            assertThat(formatter.format(value), is(format.format(value)));
+        }
+        Random random = new Random(0);
+        for (int i = 0; i < RANDOM_VALUES_COUNT; i++) {
+            double value = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(14) - 6);
+            assertThat(formatter.format(value), is(format.format(value)));
+        }
+    }
+}
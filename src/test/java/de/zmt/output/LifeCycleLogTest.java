@@ -0,0 +1,182 @@
+package de.zmt.output;
+
+import static javax.measure.unit.NonSI.YEAR;
+import static javax.measure.unit.SI.SECOND;
+import static org.hamcrest.CoreMatchers.endsWith;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.jscience.physics.amount.Amount;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.zmt.ecs.Entity;
+import de.zmt.ecs.EntityManager;
+import de.zmt.ecs.component.agent.Aging;
+import de.zmt.ecs.component.agent.Compartments;
+import de.zmt.ecs.component.agent.Growing;
+import de.zmt.ecs.component.agent.LifeCycling;
+import de.zmt.ecs.component.agent.LifeCycling.CauseOfDeath;
+import de.zmt.ecs.component.agent.LifeCycling.Phase;
+import de.zmt.ecs.component.agent.LifeCycling.Sex;
+import de.zmt.ecs.component.agent.Metabolizing;
+import de.zmt.ecs.component.agent.Moving;
+import de.zmt.ecs.component.environment.FoodMap;
+import de.zmt.ecs.component.environment.HabitatMap;
+import de.zmt.ecs.factory.Population;
+import de.zmt.output.LifeCycleLog.Event;
+import de.zmt.output.RowWriter.Column;
+import de.zmt.output.RowWriter.Format;
+import de.zmt.params.SpeciesDefinition;
+import de.zmt.storage.ExcessStorage;
+import de.zmt.storage.FatStorage;
+import de.zmt.storage.Gut;
+import de.zmt.storage.ProteinStorage;
+import de.zmt.storage.ReproductionStorage;
+import de.zmt.storage.ShorttermStorage;
+import de.zmt.util.Habitat;
+import de.zmt.util.UnitConstants;
+import ec.util.MersenneTwisterFast;
+import sim.engine.Schedule;
+import sim.field.grid.DoubleGrid2D;
+import sim.field.grid.IntGrid2D;
+import sim.util.Double2D;
+import sim.util.Int2D;
+
+public class LifeCycleLogTest {
+    private static final Habitat HABITAT = Habitat.DEFAULT;
+    private static final int MAP_SIZE = 2;
+    private static final Int2D POSITION = new Int2D(1, 0);
+    /** Values formatted with 12 fraction digits in the golden row. */
+    private static final double BIOMASS = 1d / 3;
+    private static final double FOOD_DENSITY = 2d / 3;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private EntityManager manager;
+    private Population population;
+    private LifeCycleLog log;
+    private FoodMap foodMap;
+    private SpeciesDefinition definition;
+    private MersenneTwisterFast random;
+
+    @Before
+    public void setUp() throws Exception {
+        manager = new EntityManager();
+        population = new Population();
+        manager.addListener(population);
+        definition = new SpeciesDefinition();
+        random = new MersenneTwisterFast(0);
+
+        HabitatMap habitatMap = new HabitatMap(new IntGrid2D(MAP_SIZE, MAP_SIZE, HABITAT.ordinal()));
+        foodMap = new FoodMap(new DoubleGrid2D(MAP_SIZE, MAP_SIZE, 0), null, habitatMap);
+        log = new LifeCycleLog(folder.getRoot().toPath(), "life_cycle", Format.TEXT,
+                OutputTimeUnit.STEPS, Amount.valueOf(1, SECOND), population, manager, habitatMap, foodMap,
+                new Schedule());
+        population.addListener(log);
+    }
+
+    @Test
+    public void writeOnEvents() throws IOException {
+        Entity fish = createFish();
+        population.add(fish);
+
+        Compartments compartments = fish.get(Compartments.class);
+        // without energy the reproduction limit is always reached
+        compartments.tryReproduction(random);
+        compartments.tryReproduction(random);
+        LifeCycling lifeCycling = fish.get(LifeCycling.class);
+        lifeCycling.enterNextPhase();
+        population.updatePhase(fish);
+        assertThat(compartments.getReproductionsSinceLastUpdate(), is(0));
+
+        compartments.tryReproduction(random);
+        lifeCycling.die(CauseOfDeath.STARVATION);
+        fish.stop();
+        log.close();
+
+        List<List<String>> rows = readRows();
+        assertThat(rows.size(), is(3));
+        assertThat(values(rows, "Event"),
+                is(Arrays.asList(Event.BIRTH.name(), Event.PHASE_CHANGE.name(), Event.DEATH.name())));
+        assertThat(values(rows, "Phase"),
+                is(Arrays.asList(Phase.JUVENILE.name(), Phase.INITIAL.name(), Phase.INITIAL.name())));
+        // reset once after each row: counted between rows, not lost or repeated
+        assertThat(values(rows, "Reproductions"), is(Arrays.asList("0", "2", "1")));
+        assertThat(values(rows, "Cause_of_Death"), is(Arrays.asList(CauseOfDeath.NONE.name(),
+                CauseOfDeath.NONE.name(), CauseOfDeath.STARVATION.name())));
+        assertThat(values(rows, "Habitat"), is(Arrays.asList(HABITAT.name(), HABITAT.name(), HABITAT.name())));
+        assertThat(values(rows, "Pos_X"), is(Arrays.asList("1", "1", "1")));
+        assertThat(values(rows, "ID"), is(Arrays.asList("0", "0", "0")));
+    }
+
+    @Test
+    public void writeOnRemoveWithoutDeath() throws IOException {
+        Entity fish = createFish();
+        population.add(fish);
+        fish.stop();
+        log.close();
+
+        // only the birth is logged if the fish did not die
+        assertThat(values(readRows(), "Event"), is(Arrays.asList(Event.BIRTH.name())));
+    }
+
+    /**
+     * Tests the bytes written for values set by the test, at the start and
+     * the end of a row. Columns in between are derived from these.
+     */
+    @Test
+    public void writeGoldenRow() throws IOException {
+        Entity fish = createFish();
+        fish.get(Growing.class).setBiomassValue(BIOMASS);
+        foodMap.getGrid().set(POSITION.x, POSITION.y, FOOD_DENSITY);
+        population.add(fish);
+        log.close();
+
+        List<String> lines = Files.readAllLines(log.getFilePath());
+        assertThat(lines.size(), is(2));
+        assertThat(lines.get(1), startsWith("0\tBIRTH\tFEMALE\tJUVENILE\t0.0\t1.0\t0.333333333333\t"));
+        assertThat(lines.get(1), endsWith("\tNONE\t" + HABITAT.name() + "\t0.666666666667\t1\t0\t0\t"));
+    }
+
+    /** Creates a juvenile fish without energy, not yet added to population. */
+    private Entity createFish() {
+        Moving moving = new Moving();
+        moving.setPosition(new Double2D(POSITION.x + 0.5, POSITION.y + 0.5), POSITION);
+        Growing growing = new Growing(Amount.valueOf(1, UnitConstants.BIOMASS),
+                Amount.valueOf(1, UnitConstants.BODY_LENGTH), definition);
+        Aging aging = new Aging(Amount.valueOf(0, YEAR), Amount.valueOf(1, YEAR));
+        Metabolizing metabolizing = new Metabolizing(Amount.valueOf(0, UnitConstants.ENERGY_PER_TIME));
+        Compartments compartments = new Compartments(new Gut(definition, growing, aging),
+                new ShorttermStorage(metabolizing, 0, definition.getShorttermUpperLimitRmr()),
+                new FatStorage(Amount.valueOf(0, UnitConstants.CELLULAR_ENERGY), growing),
+                new ProteinStorage(Amount.valueOf(0, UnitConstants.CELLULAR_ENERGY), growing),
+                new ReproductionStorage(growing),
+                new ExcessStorage(metabolizing, definition.getDesiredExcessRmr()));
+        return new Entity(manager, Arrays.asList(definition, moving, growing, aging, metabolizing,
+                new LifeCycling(Sex.FEMALE), compartments));
+    }
+
+    /** Reads the rows written, skipping the header, split into columns. */
+    private List<List<String>> readRows() throws IOException {
+        return Files.readAllLines(log.getFilePath()).stream().skip(1).map(line -> Arrays.asList(line.split("\t")))
+                .collect(Collectors.toList());
+    }
+
+    /** @return values of the column with given name within every row */
+    private static List<String> values(List<List<String>> rows, String columnName) {
+        int index = LifeCycleLog.obtainColumns(OutputTimeUnit.STEPS).stream().map(Column::getName)
+                .collect(Collectors.toList()).indexOf(columnName);
+        return rows.stream().map(row -> row.get(index)).collect(Collectors.toList());
+    }
+}
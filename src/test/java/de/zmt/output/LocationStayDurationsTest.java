@@ -1,28 +1,32 @@
 package de.zmt.output;
 
+import static javax.measure.unit.NonSI.DAY;
 import static javax.measure.unit.SI.SECOND;
-import static org.hamcrest.CoreMatchers.everyItem;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.Matchers.closeTo;
-import static org.hamcrest.Matchers.contains;
-import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.junit.Assert.assertThat;
 
-import java.util.Collection;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.stream.Collectors;
 
 import org.jscience.physics.amount.Amount;
 import org.junit.Before;
-import org.junit.Ignore;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
-import com.google.common.collect.Multimap;
-
+import de.zmt.ecs.component.agent.AgentStore;
 import de.zmt.ecs.component.environment.FoodMap;
 import de.zmt.ecs.component.environment.HabitatMap;
 import de.zmt.output.LocationStayDurations.Headers;
+import de.zmt.output.RowWriter.Format;
 import de.zmt.util.Habitat;
 import de.zmt.util.TimeOfDay;
 import de.zmt.util.UnitConstants;
@@ -34,6 +38,7 @@ public class LocationStayDurationsTest {
     private static final Habitat HABITAT = Habitat.DEFAULT;
     private static final double FOOD_DENSITY = 1;
     private static final long STEP_DURATION_SECOND = 1;
+    private static final long STEPS = 5;
     /**
      * Inverse map of {@link LocationStayDurations.Headers#STAY_DURATIONS} to
      * make headers accessible via {@link TimeOfDay}.
@@ -41,49 +46,142 @@ public class LocationStayDurationsTest {
     private static final Map<TimeOfDay, String> STAY_DURATION_HEADERS = Headers.STAY_DURATIONS.entrySet().stream()
             .collect(Collectors.toMap(Entry::getValue, Entry::getKey));
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path path;
+
     @Before
     public void setUp() throws Exception {
+        path = folder.getRoot().toPath().resolve("stay");
+    }
 
+    @Test
+    public void writeValues() throws IOException {
+        LocationStayDurations locationStayDurations = create(2, 2, 1);
+        locationStayDurations.registerStay(new Int2D(0, 1), TimeOfDay.DAY);
+        locationStayDurations.registerStay(new Int2D(1, 0), TimeOfDay.DAY);
+        List<List<String>> rows = write(locationStayDurations);
+
+        // only visited cells, row by row
+        assertThat(rows.size(), is(2));
+        assertThat(rows.stream().map(row -> row.get(column(Headers.CELL_X))).collect(Collectors.toList()),
+                is(Arrays.asList("1", "0")));
+        assertThat(rows.stream().map(row -> row.get(column(Headers.CELL_Y))).collect(Collectors.toList()),
+                is(Arrays.asList("0", "1")));
+        for (List<String> row : rows) {
+            assertThat(row.get(0), is(Long.toString(STEPS)));
+            assertThat(row.get(column(Headers.HABITAT)), is(HABITAT.toString()));
+            assertThat(Double.parseDouble(row.get(column(Headers.FOOD_DENSITY))), closeTo(
+                    FOOD_DENSITY + HABITAT.getFoodDensityMin().doubleValue(UnitConstants.FOOD_DENSITY), 1E-6));
+            assertThat(row.get(column(Headers.BLOCK_SIZE)), is("1"));
+        }
     }
 
-    /*
-    MKR: test goal unclear
-    seemingly assert/method used wrongly?
-    */
-    @SuppressWarnings("unchecked")
-    @Test @Ignore
-    public void obtainValues() {
-        Multimap<String, ?> valuesMap = create(2, 2).toMultimap();
-
-        assertThat(valuesMap.get(Headers.CELL_X), containsInAnyOrder(0, 0, 1, 1));
-        assertThat(valuesMap.get(Headers.CELL_Y), containsInAnyOrder(0, 0, 1, 1));
-        assertThat((Collection<Habitat>) valuesMap.get(Headers.HABITAT), everyItem(is(HABITAT)));
-        assertThat((Collection<Double>) valuesMap.get(Headers.FOOD_DENSITY), everyItem(
-                closeTo(FOOD_DENSITY + HABITAT.getFoodDensityMin().doubleValue(UnitConstants.FOOD_DENSITY), 1E-14d)));
+    @Test
+    public void writeValuesOnBlocks() throws IOException {
+        LocationStayDurations locationStayDurations = create(5, 5, 2);
+        locationStayDurations.registerStay(new Int2D(0, 0), TimeOfDay.DAY);
+        locationStayDurations.registerStay(new Int2D(1, 1), TimeOfDay.NIGHT);
+        locationStayDurations.registerStay(new Int2D(4, 4), TimeOfDay.DAY);
+        List<List<String>> rows = write(locationStayDurations);
+
+        assertThat(rows.size(), is(2));
+        List<String> first = rows.get(0);
+        assertThat(first.get(column(Headers.CELL_X)), is("0"));
+        assertThat(first.get(column(Headers.CELL_Y)), is("0"));
+        assertThat(first.get(column(Headers.STAY_DURATION_TOTAL)), is(Long.toString(2 * STEP_DURATION_SECOND)));
+        assertThat(first.get(column(Headers.BLOCK_SIZE)), is("2"));
+        // block at the edge is clipped to the map
+        List<String> second = rows.get(1);
+        assertThat(second.get(column(Headers.CELL_X)), is("4"));
+        assertThat(second.get(column(Headers.CELL_Y)), is("4"));
+        assertThat(second.get(column(Headers.STAY_DURATION_TOTAL)), is(Long.toString(STEP_DURATION_SECOND)));
+        assertThat(Double.parseDouble(second.get(column(Headers.FOOD_DENSITY))), closeTo(
+                FOOD_DENSITY + HABITAT.getFoodDensityMin().doubleValue(UnitConstants.FOOD_DENSITY), 1E-6));
     }
 
-    /*
-    mkr: test goal unclear
-    seemingly want to check actual value in a string, but method used in the wrong way maybe?
-     */
-    @Test @Ignore
-    public void registerStay() {
-        LocationStayDurations locationStayDurations = create(1, 1);
+    @Test
+    public void writeValuesInDays() throws IOException {
+        LocationStayDurations locationStayDurations = create(1, 1, 1, OutputTimeUnit.DAYS);
+        locationStayDurations.registerStay(new Int2D(0, 0), TimeOfDay.DAY);
+        List<String> row = write(locationStayDurations).get(0);
+
+        assertThat(Double.parseDouble(row.get(0)),
+                closeTo(Amount.valueOf(STEPS * STEP_DURATION_SECOND, SECOND).doubleValue(DAY), 1E-6));
+        // durations are still given in simulation time
+        assertThat(row.get(column(Headers.STAY_DURATION_TOTAL)), is(Long.toString(STEP_DURATION_SECOND)));
+    }
+
+    @Test
+    public void schema() throws IOException {
+        write(create(1, 1, 1));
+
+        List<String> schema = Files.readAllLines(path.resolveSibling("stay." + OutputSchema.EXTENSION));
+        assertThat(schema.get(1), is("steps\tLONG"));
+        assertThat(schema.get(column(Headers.FOOD_DENSITY) + 1),
+                is(Headers.FOOD_DENSITY + "\tDOUBLE\t" + UnitConstants.FOOD_DENSITY));
+    }
+
+    @Test
+    public void clear() throws IOException {
+        LocationStayDurations locationStayDurations = create(1, 1, 1);
+        locationStayDurations.registerStay(new Int2D(0, 0), TimeOfDay.DAY);
+        locationStayDurations.clear();
+
+        assertThat(write(locationStayDurations).size(), is(0));
+    }
+
+    @Test
+    public void registerStay() throws IOException {
+        LocationStayDurations locationStayDurations = create(1, 1, 1);
 
         locationStayDurations.registerStay(new Int2D(0, 0), TimeOfDay.DAY);
         locationStayDurations.registerStay(new Int2D(0, 0), TimeOfDay.NIGHT);
-        Multimap<String, Object> values = locationStayDurations.toMultimap();
+        List<String> row = write(locationStayDurations).get(0);
+
+        assertThat(row.get(column(Headers.STAY_DURATION_TOTAL)), is(Long.toString(2 * STEP_DURATION_SECOND)));
+        assertThat(row.get(column(STAY_DURATION_HEADERS.get(TimeOfDay.DAY))),
+                is(Long.toString(STEP_DURATION_SECOND)));
+        assertThat(row.get(column(STAY_DURATION_HEADERS.get(TimeOfDay.NIGHT))),
+                is(Long.toString(STEP_DURATION_SECOND)));
+        assertThat(row.get(column(STAY_DURATION_HEADERS.get(TimeOfDay.SUNSET))), is("0"));
+    }
 
-        assertThat(values.get(Headers.STAY_DURATION_TOTAL), contains(2 * STEP_DURATION_SECOND));
-        assertThat(values.get(STAY_DURATION_HEADERS.get(TimeOfDay.DAY)), contains(STEP_DURATION_SECOND));
-        assertThat(values.get(STAY_DURATION_HEADERS.get(TimeOfDay.NIGHT)), contains(STEP_DURATION_SECOND));
+    @Test
+    public void appendFixed() {
+        for (double value : new double[] { 0, -0d, 1, 0.5, -2.25, 1234.5678, 0.0000004, 12.000001, 3.9999999,
+                1E13 }) {
+            StringBuilder builder = new StringBuilder();
+            LocationStayDurations.appendFixed(builder, value);
+            assertThat(builder.toString(), is(String.format(Locale.US, "%f", value)));
+        }
     }
 
-    private static LocationStayDurations create(int width, int height) {
+    /** Writes values and returns the rows split into columns. */
+    private List<List<String>> write(LocationStayDurations locationStayDurations) throws IOException {
+        try (RowWriter writer = RowWriter.open(path, Format.TEXT, Headers.obtainColumns(OutputTimeUnit.STEPS),
+                LocationStayDurations::appendFixed, false)) {
+            locationStayDurations.writeValues(STEPS, writer);
+        }
+        // skip header
+        return Files.readAllLines(path.resolveSibling("stay." + Format.TEXT.getExtension())).stream().skip(1)
+                .map(line -> Arrays.asList(line.split("\t"))).collect(Collectors.toList());
+    }
 
-        HabitatMap habitatMap = new HabitatMap(new IntGrid2D(width, height, HABITAT.ordinal()));
-        FoodMap foodMap = new FoodMap(new DoubleGrid2D(width, height, FOOD_DENSITY), null, null);
-        return new LocationStayDurations(Amount.valueOf(STEP_DURATION_SECOND, SECOND), habitatMap, foodMap);
+    /** Returns the index of the column with given header, after steps. */
+    private static int column(String header) {
+        return Headers.LIST.indexOf(header) + 1;
+    }
+
+    private LocationStayDurations create(int width, int height, int blockSize) {
+        return create(width, height, blockSize, OutputTimeUnit.STEPS);
     }
 
+    private LocationStayDurations create(int width, int height, int blockSize, OutputTimeUnit timeUnit) {
+        HabitatMap habitatMap = new HabitatMap(new IntGrid2D(width, height, HABITAT.ordinal()));
+        FoodMap foodMap = new FoodMap(new DoubleGrid2D(width, height, FOOD_DENSITY), null, habitatMap);
+        return new LocationStayDurations(path.getParent(), "stay", Format.TEXT, timeUnit, 1, blockSize,
+                Amount.valueOf(STEP_DURATION_SECOND, SECOND), habitatMap, foodMap, new AgentStore(), null);
+    }
 }
@@ -0,0 +1,177 @@
+package de.zmt.output;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.measure.quantity.Duration;
+import javax.measure.quantity.Length;
+
+import org.jscience.physics.amount.Amount;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.zmt.ecs.Entity;
+import de.zmt.ecs.EntityManager;
+import de.zmt.ecs.component.agent.Aging;
+import de.zmt.ecs.component.agent.Growing;
+import de.zmt.ecs.component.agent.LifeCycling;
+import de.zmt.ecs.component.agent.LifeCycling.Sex;
+import de.zmt.ecs.component.agent.Moving;
+import de.zmt.ecs.factory.Population;
+import de.zmt.output.PopulationStatistics.Group;
+import de.zmt.output.PopulationStatistics.Snapshot;
+import de.zmt.params.SpeciesDefinition;
+import de.zmt.util.UnitConstants;
+
+public class PopulationStatisticsTest {
+    private static final double INITIAL_BIOMASS = 10.5;
+    private static final double INITIAL_LENGTH = 10;
+    /** Index of partition 8-10.5 cm for juveniles. */
+    private static final int INITIAL_LENGTH_INDEX = 1 * PopulationStatistics.PHASES_COUNT;
+
+    private SpeciesDefinition definition;
+    private EntityManager manager;
+    private Population population;
+    private PopulationStatistics statistics;
+
+    @Before
+    public void setUp() throws Exception {
+        definition = new SpeciesDefinition();
+        manager = new EntityManager();
+        population = new Population();
+        manager.addListener(population);
+        statistics = new PopulationStatistics(Collections.singleton(definition));
+        population.addListener(statistics);
+    }
+
+    @Test
+    public void addAndRemove() {
+        Entity fish = createFish();
+        population.add(fish);
+
+        assertThat(snapshot().getTotalCount(), is(1));
+        assertThat(snapshot().getCount(Group.JUVENILE), is(1));
+        assertThat(snapshot().getMass(Group.JUVENILE), is(INITIAL_BIOMASS));
+        assertThat(snapshot().getLengthCount(INITIAL_LENGTH_INDEX), is(1));
+        assertThat(snapshot().getAgeCount(0), is(1));
+
+        fish.stop();
+        assertThat(snapshot().getTotalCount(), is(0));
+        assertThat(snapshot().getTotalMass(), is(0d));
+        assertThat(snapshot().getLengthCount(INITIAL_LENGTH_INDEX), is(0));
+        assertThat(snapshot().getAgeCount(0), is(0));
+    }
+
+    @Test
+    public void updateGrowth() {
+        Entity fish = createFish();
+        population.add(fish);
+
+        Growing growing = fish.get(Growing.class);
+        growing.setBiomassValue(20.25);
+        growing.setLength(Amount.valueOf(200, UnitConstants.BODY_LENGTH));
+        population.updateGrowth(fish);
+
+        assertThat(snapshot().getTotalMass(), is(20.25));
+        assertThat(snapshot().getLengthCount(INITIAL_LENGTH_INDEX), is(0));
+        // exceeding the last partition's maximum
+        int lastIndex = (LengthData.obtainIntervalMaxima().size() - 1) * PopulationStatistics.PHASES_COUNT;
+        assertThat(snapshot().getLengthCount(lastIndex), is(1));
+        assertThat(statistics.getClampedCount(), is(1L));
+    }
+
+    @Test
+    public void updateGrowthOnBounds() {
+        Entity fish = createFish();
+        population.add(fish);
+        List<Amount<Length>> maxima = LengthData.obtainIntervalMaxima();
+        int lastIndex = (maxima.size() - 1) * PopulationStatistics.PHASES_COUNT;
+        Growing growing = fish.get(Growing.class);
+
+        // upper bounds are inclusive
+        growing.setLength(maxima.get(maxima.size() - 2));
+        population.updateGrowth(fish);
+        assertThat(snapshot().getLengthCount(lastIndex - PopulationStatistics.PHASES_COUNT), is(1));
+
+        growing.setLength(maxima.get(maxima.size() - 1));
+        population.updateGrowth(fish);
+        assertThat(snapshot().getLengthCount(lastIndex), is(1));
+        assertThat(statistics.getClampedCount(), is(0L));
+
+        // beyond the last bound: counted in last partition and as clamped
+        growing.setLength(maxima.get(maxima.size() - 1).times(2));
+        population.updateGrowth(fish);
+        population.updateGrowth(fish);
+        assertThat(snapshot().getLengthCount(lastIndex), is(1));
+        assertThat(statistics.getClampedCount(), is(2L));
+    }
+
+    @Test
+    public void updateAgeOnBounds() {
+        Entity fish = createFish();
+        population.add(fish);
+        List<Amount<Duration>> maxima = AgeData.obtainIntervalMaxima(definition);
+        int lastIndex = (maxima.size() - 1) * PopulationStatistics.PHASES_COUNT;
+
+        // beyond the last bound: counted in last partition and as clamped
+        fish.get(Aging.class).addAge(maxima.get(maxima.size() - 1));
+        population.updateAge(fish);
+        assertThat(snapshot().getAgeCount(lastIndex), is(1));
+        assertThat(statistics.getClampedCount(), is(1L));
+    }
+
+    @Test
+    public void updateAge() {
+        Entity fish = createFish();
+        population.add(fish);
+
+        fish.get(Aging.class).addAge(AgeData.obtainIntervalMaxima(definition).get(0).times(1.5));
+        population.updateAge(fish);
+
+        assertThat(snapshot().getAgeCount(0), is(0));
+        assertThat(snapshot().getAgeCount(PopulationStatistics.PHASES_COUNT), is(1));
+    }
+
+    @Test
+    public void updatePhase() {
+        Entity fish = createFish();
+        population.add(fish);
+
+        fish.get(LifeCycling.class).enterNextPhase();
+        population.updatePhase(fish);
+
+        assertThat(snapshot().getCount(Group.JUVENILE), is(0));
+        assertThat(snapshot().getCount(Group.ADULT_FEMALE), is(1));
+        assertThat(snapshot().getMass(Group.ADULT_FEMALE), is(INITIAL_BIOMASS));
+        assertThat(snapshot().getLengthCount(INITIAL_LENGTH_INDEX), is(0));
+        assertThat(snapshot().getLengthCount(INITIAL_LENGTH_INDEX + 1), is(1));
+    }
+
+    @Test
+    public void findBucket() {
+        double[] bounds = { 1, 2, 3 };
+        assertThat(PopulationStatistics.findBucket(bounds, 0, 2), is(0));
+        assertThat(PopulationStatistics.findBucket(bounds, 1, 0), is(0));
+        assertThat(PopulationStatistics.findBucket(bounds, 1.5, 0), is(1));
+        assertThat(PopulationStatistics.findBucket(bounds, 2, 2), is(1));
+        assertThat(PopulationStatistics.findBucket(bounds, 3, 0), is(2));
+        assertThat(PopulationStatistics.findBucket(bounds, 5, 0), is(2));
+        assertThat(PopulationStatistics.findBucket(bounds, -1, 2), is(0));
+    }
+
+    private Snapshot snapshot() {
+        return statistics.createSnapshots().get(0);
+    }
+
+    private Entity createFish() {
+        return new Entity(manager,
+                Arrays.asList(definition, new Moving(), new LifeCycling(Sex.FEMALE),
+                        new Growing(Amount.valueOf(INITIAL_BIOMASS, UnitConstants.BIOMASS),
+                                Amount.valueOf(INITIAL_LENGTH, UnitConstants.BODY_LENGTH), definition),
+                        new Aging(definition.getPostSettlementAge(), definition.getOverallMaxAge())));
+    }
+}
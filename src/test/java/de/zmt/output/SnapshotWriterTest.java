@@ -0,0 +1,87 @@
+package de.zmt.output;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.zmt.output.RowWriter.Column;
+import de.zmt.output.RowWriter.Format;
+import de.zmt.output.RowWriter.Type;
+
+public class SnapshotWriterTest {
+    private static final List<Column> COLUMNS = Arrays.asList(new Column("value", Type.LONG));
+    private static final int SNAPSHOT_COUNT = 1000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path basePath;
+
+    @Before
+    public void setUp() throws Exception {
+        basePath = folder.getRoot().toPath().resolve("output");
+    }
+
+    @Test
+    public void closeWritesAll() throws IOException {
+        try (SnapshotWriter<Long> writer = open()) {
+            for (long i = 0; i < SNAPSHOT_COUNT; i++) {
+                writer.submit(i);
+            }
+        }
+
+        List<String> lines = Files.readAllLines(basePath.resolveSibling("output." + Format.TEXT.getExtension()));
+        assertThat(lines.size(), is(SNAPSHOT_COUNT + 1));
+        assertThat(lines.get(SNAPSHOT_COUNT), is((SNAPSHOT_COUNT - 1) + "\t"));
+    }
+
+    @Test
+    public void syncWritesAll() throws IOException {
+        Path path = basePath.resolveSibling("output." + Format.TEXT.getExtension());
+        try (SnapshotWriter<Long> writer = open()) {
+            for (long i = 0; i < SNAPSHOT_COUNT; i++) {
+                writer.submit(i);
+            }
+            writer.sync();
+            assertThat(Files.readAllLines(path).size(), is(SNAPSHOT_COUNT + 1));
+            writer.submit((long) SNAPSHOT_COUNT);
+        }
+
+        assertThat(Files.readAllLines(path).size(), is(SNAPSHOT_COUNT + 2));
+    }
+
+    @Test(expected = IOException.class)
+    public void closeOnFailure() throws IOException {
+        SnapshotWriter<Long> writer = new SnapshotWriter<>("test", openRowWriter(), (rowWriter, snapshot) -> {
+            throw new UncheckedIOException(new IOException("failed"));
+        });
+        writer.submit(0L);
+        writer.close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void submitOnClosed() throws IOException {
+        SnapshotWriter<Long> writer = open();
+        writer.close();
+        writer.submit(0L);
+    }
+
+    private SnapshotWriter<Long> open() throws IOException {
+        return new SnapshotWriter<>("test", openRowWriter(), (rowWriter, snapshot) -> rowWriter.add(snapshot).endRow());
+    }
+
+    private RowWriter openRowWriter() throws IOException {
+        return RowWriter.open(basePath, Format.TEXT, COLUMNS, null, false, false);
+    }
+}
@@ -0,0 +1,79 @@
+package de.zmt.output;
+
+import static javax.measure.unit.SI.SECOND;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.jscience.physics.amount.Amount;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.zmt.ecs.Entity;
+import de.zmt.ecs.EntityManager;
+import de.zmt.ecs.component.agent.Aging;
+import de.zmt.ecs.component.agent.Growing;
+import de.zmt.ecs.component.agent.LifeCycling;
+import de.zmt.ecs.component.agent.LifeCycling.Sex;
+import de.zmt.ecs.component.agent.Moving;
+import de.zmt.ecs.factory.Population;
+import de.zmt.output.RowWriter.Format;
+import de.zmt.output.StatisticsOutput.Kind;
+import de.zmt.params.SpeciesDefinition;
+import de.zmt.util.UnitConstants;
+import sim.engine.SimState;
+
+public class StatisticsOutputTest {
+    private static final double LARGE_BIOMASS = 10.5;
+    private static final double SMALL_BIOMASS = 0.125;
+    private static final double LENGTH = 10;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SpeciesDefinition definition;
+    private EntityManager manager;
+    private Population population;
+    private PopulationStatistics statistics;
+
+    @Before
+    public void setUp() throws Exception {
+        definition = new SpeciesDefinition();
+        manager = new EntityManager();
+        population = new Population();
+        manager.addListener(population);
+        statistics = new PopulationStatistics(Collections.singleton(definition));
+        population.addListener(statistics);
+    }
+
+    @Test
+    public void writeGoldenPopulationRows() throws IOException {
+        StatisticsOutput output = new StatisticsOutput(folder.getRoot().toPath(), "population", Kind.POPULATION,
+                Format.TEXT, OutputTimeUnit.STEPS, Amount.valueOf(1, SECOND), statistics);
+        SimState state = new SimState(0);
+        output.step(state);
+        population.add(createFish(LARGE_BIOMASS));
+        population.add(createFish(SMALL_BIOMASS));
+        output.step(state);
+        output.close();
+
+        assertThat(Files.readAllLines(output.getFilePath()), is(Arrays.asList(
+                "steps\tTOTAL_count\tJUV_count\tIP_count\tTP_count\tTOTAL_mass\tJUV_mass\tIP_mass\tTP_mass\t",
+                "0\t0\t0\t0\t0\t0.0\t0.0\t0.0\t0.0\t",
+                "0\t2\t2\t0\t0\t10.625\t10.625\t0.0\t0.0\t")));
+    }
+
+    private Entity createFish(double biomass) {
+        return new Entity(manager,
+                Arrays.asList(definition, new Moving(), new LifeCycling(Sex.FEMALE),
+                        new Growing(Amount.valueOf(biomass, UnitConstants.BIOMASS),
+                                Amount.valueOf(LENGTH, UnitConstants.BODY_LENGTH), definition),
+                        new Aging(definition.getPostSettlementAge(), definition.getOverallMaxAge())));
+    }
+}
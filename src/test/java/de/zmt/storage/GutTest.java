@@ -0,0 +1,147 @@
+package de.zmt.storage;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.closeTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import javax.measure.quantity.Duration;
+import javax.measure.quantity.Energy;
+
+import org.jscience.physics.amount.Amount;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.zmt.ecs.component.agent.Aging;
+import de.zmt.ecs.component.agent.Growing;
+import de.zmt.params.SpeciesDefinition;
+import de.zmt.util.UnitConstants;
+import ec.util.MersenneTwisterFast;
+
+public class GutTest {
+    private static final double MAX_ERROR = 1E-9;
+    /** Small enough to fit into the gut many times. */
+    private static final Amount<Energy> ENERGY = Amount.valueOf(1E-3, UnitConstants.CELLULAR_ENERGY);
+    private static final Amount<Duration> STEP = Amount.valueOf(60, UnitConstants.SIMULATION_TIME);
+    /** Number of digesta added within a transit duration, below the initial buffer capacity. */
+    private static final int DIGESTA_IN_TRANSIT = 8;
+    /** Number of digesta added to make the buffer head wrap around at least twice. */
+    private static final int WRAP_AROUND_ADD_COUNT = 48;
+    /** Resolution of the fixed-point gut ledger (kJ): one micro joule. */
+    private static final double LEDGER_UNIT = 1E-9;
+    /** Maximum energy (&micro;J) added per step in ledger comparison. */
+    private static final int MAX_MICRO_JOULES_PER_STEP = 1000000;
+
+    private SpeciesDefinition definition;
+    private Aging aging;
+    private Gut gut;
+
+    @Before
+    public void setUp() throws Exception {
+        definition = new SpeciesDefinition();
+        aging = new Aging(Amount.valueOf(0, UnitConstants.AGE), Amount.valueOf(1, UnitConstants.AGE_GUI));
+        Growing growing = new Growing(Amount.valueOf(100, UnitConstants.BIOMASS),
+                Amount.valueOf(20, UnitConstants.BODY_LENGTH), definition);
+        gut = new Gut(definition, growing, aging);
+    }
+
+    @Test
+    public void getAndRemoveProcessed() {
+        gut.add(ENERGY);
+        assertThat(gut.getAndRemoveProcessedValue(), is(0d));
+        assertThat(gut.getGutSize(), is(1));
+
+        aging.addAge(definition.getGutTransitDuration());
+        assertThat(gut.getAndRemoveProcessedValue(),
+                is(closeTo(ENERGY.getEstimatedValue() * definition.getAssimilationEfficiency(), MAX_ERROR)));
+        assertThat(gut.getGutSize(), is(0));
+        assertThat(gut.doubleValue(), is(0d));
+    }
+
+    @Test
+    public void getAndRemoveProcessedOnWrapAround() {
+        Amount<Duration> step = definition.getGutTransitDuration().divide(DIGESTA_IN_TRANSIT);
+        double released = ENERGY.getEstimatedValue() * definition.getAssimilationEfficiency();
+
+        // head passes the end of the buffer several times without growing it
+        for (int i = 0; i < WRAP_AROUND_ADD_COUNT; i++) {
+            gut.add(ENERGY);
+            aging.addAge(step);
+            // each digesta is finished after passing the transit duration
+            boolean finished = i >= DIGESTA_IN_TRANSIT - 1;
+            assertThat(gut.getAndRemoveProcessedValue(), is(closeTo(finished ? released : 0, MAX_ERROR)));
+            assertThat(gut.getGutSize(), is(finished ? DIGESTA_IN_TRANSIT - 1 : i + 1));
+        }
+        assertThat(gut.doubleValue(),
+                is(closeTo((DIGESTA_IN_TRANSIT - 1) * ENERGY.getEstimatedValue(), MAX_ERROR)));
+
+        aging.addAge(definition.getGutTransitDuration());
+        assertThat(gut.getAndRemoveProcessedValue(), is(closeTo((DIGESTA_IN_TRANSIT - 1) * released, MAX_ERROR)));
+        // sum is exact when empty
+        assertThat(gut.getGutSize(), is(0));
+        assertThat(gut.doubleValue(), is(0d));
+    }
+
+    @Test
+    public void getAndRemoveProcessedOnGrowAfterWrapAround() {
+        Amount<Duration> step = definition.getGutTransitDuration().divide(DIGESTA_IN_TRANSIT);
+        for (int i = 0; i < WRAP_AROUND_ADD_COUNT; i++) {
+            gut.add(ENERGY);
+            aging.addAge(step);
+            gut.getAndRemoveProcessedValue();
+        }
+
+        // grow the buffer while its head is not at the start
+        int addCount = WRAP_AROUND_ADD_COUNT;
+        for (int i = 0; i < addCount; i++) {
+            gut.add(ENERGY);
+        }
+        int count = DIGESTA_IN_TRANSIT - 1 + addCount;
+        assertThat(gut.getGutSize(), is(count));
+
+        // the older digesta are finished first
+        aging.addAge(step);
+        assertThat(gut.getAndRemoveProcessedValue(),
+                is(closeTo(ENERGY.getEstimatedValue() * definition.getAssimilationEfficiency(), MAX_ERROR)));
+        aging.addAge(definition.getGutTransitDuration());
+        assertThat(gut.getAndRemoveProcessedValue(), is(closeTo(
+                (count - 1) * ENERGY.getEstimatedValue() * definition.getAssimilationEfficiency(), MAX_ERROR)));
+        assertThat(gut.getGutSize(), is(0));
+        assertThat(gut.doubleValue(), is(0d));
+    }
+
+    @Test
+    public void ledgerOnManyStepsAgreesWithAmounts() {
+        MersenneTwisterFast random = new MersenneTwisterFast(0);
+        // baseline digesta and their sum computed with amounts
+        Queue<Amount<Duration>> finishAges = new ArrayDeque<>();
+        Queue<Amount<Energy>> energies = new ArrayDeque<>();
+        Amount<Energy> sum = Amount.valueOf(0, UnitConstants.CELLULAR_ENERGY);
+
+        for (int i = 0; i < 10000; i++) {
+            // amounts at the resolution of the ledger
+            Amount<Energy> energy = Amount.valueOf((1 + random.nextInt(MAX_MICRO_JOULES_PER_STEP)) * LEDGER_UNIT,
+                    UnitConstants.CELLULAR_ENERGY);
+            assertThat(gut.add(energy).getRejected().getEstimatedValue(), is(0d));
+            finishAges.add(aging.getAge().plus(definition.getGutTransitDuration()));
+            energies.add(energy);
+            sum = sum.plus(energy);
+
+            aging.addAge(STEP);
+            Amount<Energy> processed = Amount.valueOf(0, UnitConstants.CELLULAR_ENERGY);
+            while (!finishAges.isEmpty() && finishAges.peek().compareTo(aging.getAge()) <= 0) {
+                finishAges.remove();
+                Amount<Energy> removed = energies.remove();
+                processed = processed.plus(removed);
+                sum = sum.minus(removed);
+            }
+
+            assertThat(gut.getAndRemoveProcessedValue(), is(closeTo(
+                    processed.times(definition.getAssimilationEfficiency()).getEstimatedValue(), LEDGER_UNIT)));
+            assertThat(gut.getGutSize(), is(energies.size()));
+            assertThat(gut.doubleValue(), is(closeTo(sum.getEstimatedValue(), LEDGER_UNIT)));
+        }
+    }
+}
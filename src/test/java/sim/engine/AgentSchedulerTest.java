@@ -0,0 +1,195 @@
+package sim.engine;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import de.zmt.ecs.AbstractSystem;
+import de.zmt.ecs.Component;
+import de.zmt.ecs.Entity;
+import de.zmt.ecs.EntityManager;
+import de.zmt.ecs.EntitySystem;
+import de.zmt.ecs.component.agent.Moving;
+import ec.util.MersenneTwisterFast;
+import sim.util.Double2D;
+import sim.util.Int2D;
+
+public class AgentSchedulerTest {
+    private static final long SEED = 0;
+    /** Not a multiple of {@link #STRIPE_HEIGHT}, so that the last stripe is lower. */
+    private static final int MAP_HEIGHT = 10;
+    private static final int STRIPE_HEIGHT = 3;
+    private static final int STRIPE_COUNT = 4;
+    private static final int MAP_WIDTH = 5;
+    private static final int AGENT_COUNT = MAP_WIDTH * MAP_HEIGHT;
+    private static final int THREAD_COUNT = 4;
+
+    @Test
+    public void stepOnPartialStripe() {
+        RecordingSystem system = run(createParallelScheduler(THREAD_COUNT));
+
+        // every agent updated exactly once
+        assertThat(system.updated.size(), is(AGENT_COUNT));
+        assertThat(new HashSet<>(system.updated).size(), is(AGENT_COUNT));
+        // including those in the lower last stripe
+        assertThat(system.updatedByStripe.get(STRIPE_COUNT - 1).size(), is(MAP_WIDTH));
+    }
+
+    @Test
+    public void stepOnDeferred() {
+        RecordingSystem system = run(createParallelScheduler(THREAD_COUNT));
+
+        // even stripes first, then odd ones, each in stripe order
+        List<Integer> expectedStripeIndices = new ArrayList<>();
+        for (int firstIndex = 0; firstIndex < 2; firstIndex++) {
+            for (int stripeIndex = firstIndex; stripeIndex < STRIPE_COUNT; stripeIndex += 2) {
+                expectedStripeIndices.addAll(
+                        Collections.nCopies(system.updatedByStripe.get(stripeIndex).size(), stripeIndex));
+            }
+        }
+        List<Integer> stripeIndices = new ArrayList<>();
+        for (Int2D position : system.deferred) {
+            stripeIndices.add(obtainStripeIndex(position));
+        }
+        assertThat(stripeIndices, is(expectedStripeIndices));
+
+        // within a stripe in update order
+        for (int stripeIndex = 0; stripeIndex < STRIPE_COUNT; stripeIndex++) {
+            List<Int2D> deferredInStripe = new ArrayList<>();
+            for (Int2D position : system.deferred) {
+                if (obtainStripeIndex(position) == stripeIndex) {
+                    deferredInStripe.add(position);
+                }
+            }
+            assertThat(deferredInStripe, is(system.updatedByStripe.get(stripeIndex)));
+        }
+
+        // after all agents of their pass are updated, before the next pass
+        for (Int2D deferredPosition : system.deferred) {
+            int deferIndex = system.deferIndices.get(deferredPosition);
+            boolean firstPass = obtainStripeIndex(deferredPosition) % 2 == 0;
+            for (Int2D updatedPosition : system.updated) {
+                boolean sameOrEarlierPass = firstPass == (obtainStripeIndex(updatedPosition) % 2 == 0) || !firstPass;
+                assertThat(system.updateIndices.get(updatedPosition) < deferIndex, is(sameOrEarlierPass));
+            }
+        }
+    }
+
+    @Test
+    public void stepOnRepeat() {
+        RecordingSystem firstSystem = run(createParallelScheduler(THREAD_COUNT));
+        RecordingSystem secondSystem = run(createParallelScheduler(THREAD_COUNT));
+
+        assertThat(secondSystem.updatedByStripe, is(firstSystem.updatedByStripe));
+        assertThat(secondSystem.deferred, is(firstSystem.deferred));
+    }
+
+    @Test
+    public void stepOnSingleThread() {
+        RecordingSystem parallelSystem = run(createParallelScheduler(THREAD_COUNT));
+        RecordingSystem singleThreadSystem = run(createParallelScheduler(1));
+        RecordingSystem serialSystem = run(new AgentScheduler(Schedule.BEFORE_SIMULATION));
+
+        // same results regardless of thread count
+        assertThat(singleThreadSystem.updatedByStripe, is(parallelSystem.updatedByStripe));
+        assertThat(singleThreadSystem.deferred, is(parallelSystem.deferred));
+        // serial updates the same agents, running actions immediately
+        assertThat(new HashSet<>(serialSystem.updated), is(new HashSet<>(singleThreadSystem.updated)));
+        assertThat(serialSystem.deferred, is(serialSystem.updated));
+    }
+
+    private static AgentScheduler createParallelScheduler(int threadCount) {
+        return new AgentScheduler(Schedule.BEFORE_SIMULATION, threadCount, MAP_HEIGHT, STRIPE_HEIGHT,
+                new MersenneTwisterFast(SEED));
+    }
+
+    /**
+     * Creates an agent on every cell of the map, schedules them at the first
+     * step and executes it.
+     *
+     * @param agentScheduler
+     *            the scheduler to update agents
+     * @return the system that recorded the updates
+     */
+    private static RecordingSystem run(AgentScheduler agentScheduler) {
+        EntityManager manager = new EntityManager();
+        RecordingSystem system = new RecordingSystem();
+        manager.addSystem(system);
+        for (int y = 0; y < MAP_HEIGHT; y++) {
+            for (int x = 0; x < MAP_WIDTH; x++) {
+                Moving moving = new Moving();
+                moving.setPosition(new Double2D(x, y), new Int2D(x, y));
+                agentScheduler.schedule(new Entity(manager, Collections.singleton(moving)), Schedule.EPOCH);
+            }
+        }
+
+        SimState state = new SimState(SEED);
+        state.schedule.scheduleRepeating(Schedule.EPOCH, agentScheduler);
+        try {
+            state.schedule.step(state);
+        } finally {
+            agentScheduler.shutdown();
+        }
+        return system;
+    }
+
+    private static int obtainStripeIndex(Int2D position) {
+        return position.y / STRIPE_HEIGHT;
+    }
+
+    /**
+     * Records the order agents are updated in and defers an action for each of
+     * them, which is recorded as well. Agents are identified by their
+     * position.
+     *
+     * @author mey
+     *
+     */
+    private static class RecordingSystem extends AbstractSystem {
+        private final List<Int2D> updated = Collections.synchronizedList(new ArrayList<>());
+        private final Map<Integer, List<Int2D>> updatedByStripe = Collections.synchronizedMap(new HashMap<>());
+        private final List<Int2D> deferred = new ArrayList<>();
+        private final Map<Int2D, Integer> updateIndices = new HashMap<>();
+        private final Map<Int2D, Integer> deferIndices = new HashMap<>();
+        /** Counts updates and deferred actions together to compare their order. */
+        private int eventCount;
+
+        @Override
+        protected void systemUpdate(Entity entity, SimState state) {
+            Int2D position = entity.get(Moving.class).getMapPosition();
+            synchronized (this) {
+                updateIndices.put(position, eventCount++);
+            }
+            updated.add(position);
+            // each stripe is updated by a single thread
+            updatedByStripe.computeIfAbsent(obtainStripeIndex(position), key -> new ArrayList<>()).add(position);
+            AgentScheduler.runOrDefer(() -> {
+                assertThat(AgentScheduler.isUpdatingStripe(), is(false));
+                synchronized (this) {
+                    deferIndices.put(position, eventCount++);
+                }
+                deferred.add(position);
+            });
+        }
+
+        @Override
+        protected Collection<Class<? extends Component>> getRequiredComponentTypes() {
+            return Arrays.<Class<? extends Component>> asList(Moving.class);
+        }
+
+        @Override
+        public Collection<Class<? extends EntitySystem>> getDependencies() {
+            return Collections.emptySet();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package sim.engine;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.zmt.params.EnvironmentDefinition;
+import de.zmt.params.KittParams;
+import de.zmt.params.SpeciesDefinition;
+import de.zmt.util.ParamsUtil;
+import sim.engine.KittBatchRunner.Result;
+
+public class KittBatchRunnerTest {
+    private static final String HABITAT_MAP_FILENAME = "test-habitat-map.png";
+    private static final double UNTIL_TIME = 2;
+    private static final String POPULATION_FILENAME = "population.csv";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void run() throws IOException, InterruptedException {
+        Path first = createRunDirectory("first", 1);
+        Path second = createRunDirectory("second", 2);
+        // no parameters in there
+        Path failing = folder.newFolder("failing").toPath();
+
+        List<Result> results = new KittBatchRunner(2, UNTIL_TIME).run(Arrays.asList(first, failing, second));
+
+        assertThat(results.get(0).getOutputDirectory(), is(first));
+        assertThat(results.get(0).isSuccess(), is(true));
+        assertThat(results.get(1).isSuccess(), is(false));
+        assertThat(results.get(1).getFailure(), notNullValue());
+        assertThat(results.get(2).isSuccess(), is(true));
+        assertThat(results.get(2).getSteps(), is(results.get(0).getSteps()));
+    }
+
+    @Test
+    public void runSingleOnResume() throws IOException {
+        Path uninterrupted = createRunDirectory("uninterrupted", createCheckpointingParams());
+        Path resumed = createRunDirectory("resumed", createCheckpointingParams());
+
+        long steps = KittBatchRunner.runSingle(uninterrupted, UNTIL_TIME + 2);
+        KittBatchRunner.runSingle(resumed, UNTIL_TIME + 1);
+        // resume from the older checkpoint, discarding population data written after it
+        List<Path> checkpoints;
+        try (Stream<Path> files = Files.list(resumed)) {
+            checkpoints = files.filter(path -> path.toString().endsWith(".checkpoint")).sorted()
+                    .collect(Collectors.toList());
+        }
+        assertThat(checkpoints.size(), is(2));
+        Files.delete(checkpoints.get(1));
+
+        assertThat(KittBatchRunner.runSingle(resumed, UNTIL_TIME + 2), is(steps));
+        assertThat(Files.readAllLines(resumed.resolve(POPULATION_FILENAME)),
+                is(Files.readAllLines(uninterrupted.resolve(POPULATION_FILENAME))));
+    }
+
+    @Test
+    public void runSingleOnResumeFromCopy() throws IOException {
+        Path uninterrupted = createRunDirectory("uninterrupted", createCheckpointingParams());
+        Path original = createRunDirectory("original", createCheckpointingParams());
+
+        long steps = KittBatchRunner.runSingle(uninterrupted, UNTIL_TIME + 2);
+        KittBatchRunner.runSingle(original, UNTIL_TIME + 1);
+        List<String> originalLines = Files.readAllLines(original.resolve(POPULATION_FILENAME));
+        // resume from a copy of the older checkpoint, which still refers to the original directory
+        Path copied = folder.newFolder("copied").toPath();
+        try (Stream<Path> files = Files.list(original)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                Files.copy(file, copied.resolve(file.getFileName()));
+            }
+        }
+        List<Path> checkpoints;
+        try (Stream<Path> files = Files.list(copied)) {
+            checkpoints = files.filter(path -> path.toString().endsWith(".checkpoint")).sorted()
+                    .collect(Collectors.toList());
+        }
+        Files.delete(checkpoints.get(1));
+
+        assertThat(KittBatchRunner.runSingle(copied, UNTIL_TIME + 2), is(steps));
+        assertThat(Files.readAllLines(copied.resolve(POPULATION_FILENAME)),
+                is(Files.readAllLines(uninterrupted.resolve(POPULATION_FILENAME))));
+        // original left untouched
+        assertThat(Files.readAllLines(original.resolve(POPULATION_FILENAME)), is(originalLines));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructOnInvalidThreadCount() {
+        new KittBatchRunner(0, UNTIL_TIME);
+    }
+
+    private Path createRunDirectory(String name, long seed) throws IOException {
+        return createRunDirectory(name, createParams(seed));
+    }
+
+    /** @return parameters checkpointing and writing population data on every step */
+    private KittParams createCheckpointingParams() {
+        KittParams params = createParams(1);
+        EnvironmentDefinition.MyPropertiesProxy environmentProxy = (EnvironmentDefinition.MyPropertiesProxy) params
+                .getEnvironmentDefinition().propertiesProxy();
+        environmentProxy.setCheckpointInterval("1 s");
+        environmentProxy.setOutputPopulationInterval("1 s");
+        return params;
+    }
+
+    private KittParams createParams(long seed) {
+        KittParams params = new KittParams();
+        // use only one fish to make test faster
+        params.getSpeciesDefs().stream().forEach(
+                definition -> ((SpeciesDefinition.MyPropertiesProxy) definition.propertiesProxy()).setInitialNum(1));
+        EnvironmentDefinition.MyPropertiesProxy environmentProxy = (EnvironmentDefinition.MyPropertiesProxy) params
+                .getEnvironmentDefinition().propertiesProxy();
+        environmentProxy.setMapImagePath(getClass().getResource(HABITAT_MAP_FILENAME).getPath());
+        environmentProxy.setSeed(seed);
+        return params;
+    }
+
+    private Path createRunDirectory(String name, KittParams params) throws IOException {
+        Path directory = folder.newFolder(name).toPath();
+        ParamsUtil.writeToXml(params, directory.resolve(KittBatchRunner.PARAMS_FILENAME));
+        assertThat(Files.isRegularFile(directory.resolve(KittBatchRunner.PARAMS_FILENAME)), is(true));
+        return directory;
+    }
+}
@@ -1,19 +1,60 @@
 package sim.engine;
 
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.closeTo;
+import static org.junit.Assert.assertThat;
+
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
 
+import org.jscience.physics.amount.Amount;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import de.zmt.ecs.Component;
+import de.zmt.ecs.Entity;
+import de.zmt.ecs.EntityManager;
+import de.zmt.ecs.EntitySystem;
+import de.zmt.ecs.component.agent.Metabolizing;
+import de.zmt.ecs.component.agent.Moving;
+import de.zmt.ecs.component.environment.FoodMap;
+import de.zmt.ecs.component.environment.HabitatMap;
+import de.zmt.ecs.factory.Population;
+import de.zmt.ecs.system.agent.AgentSystem;
+import de.zmt.ecs.system.agent.FeedSystem;
 import de.zmt.params.EnvironmentDefinition;
 import de.zmt.params.KittParams;
 import de.zmt.params.SpeciesDefinition;
+import de.zmt.util.Habitat;
+import de.zmt.util.UnitConstants;
+import sim.util.Int2D;
 
 public class KittTest {
     private static final String HABITAT_MAP_FILENAME = "test-habitat-map.png";
+    private static final String POPULATION_FILENAME = "population.csv";
+    private static final long SEED = 0;
+    private static final int PARALLEL_FISH_COUNT = 20;
+    private static final int PARALLEL_THREAD_COUNT = 4;
+    private static final int PARALLEL_STEPS = 100;
+    private static final int CHECKPOINT_STEPS = 3;
+    private static final int BOUNDARY_FISH_COUNT = 40;
+    /** Number of columns along the stripe boundary agents are crowded onto. */
+    private static final int BOUNDARY_COLUMNS = 4;
+    /** Fraction of the habitat's food range available at start. */
+    private static final double SCARCE_FOOD_FRACTION = 0.01;
+    /** Maximum error accepted relative to the total food mass. */
+    private static final double MAX_RELATIVE_FOOD_ERROR = 1E-9;
 
     private Kitt state;
 
@@ -55,6 +96,222 @@ public class KittTest {
         testFromCheckpoint(stepCheckpoint, folder.newFolder("step_output"));
     }
 
+    @Test
+    public void checkpointIfDue() throws IOException {
+        Path checkpointed = folder.newFolder("checkpointed").toPath();
+        List<String> checkpointedOutput = runCheckpointing(checkpointed, "1 s");
+        List<String> uncheckpointedOutput = runCheckpointing(folder.newFolder("uncheckpointed").toPath(), "0 s");
+
+        try (Stream<Path> files = Files.list(checkpointed)) {
+            assertThat(files.filter(path -> path.toString().endsWith(".checkpoint")).count(), is(2L));
+        }
+        // output files are kept open during checkpoints, without rows lost or repeated
+        assertThat(checkpointedOutput, is(uncheckpointedOutput));
+    }
+
+    @Test
+    public void runOnParallel() throws IOException {
+        List<String> firstOutput = runParallel(folder.newFolder("first_output").toPath());
+        List<String> secondOutput = runParallel(folder.newFolder("second_output").toPath());
+
+        assertThat(secondOutput, is(firstOutput));
+    }
+
+    /**
+     * Tests parallel updates with agents crowded onto a stripe boundary,
+     * competing for scarce food. Runs on a single thread and in parallel with
+     * the same stripe layout must lead to the same results.
+     */
+    @Test
+    public void runOnParallelAtStripeBoundary() throws IOException {
+        BoundaryRun singleThreadRun = runAtStripeBoundary(new SingleThreadStripedKitt(),
+                folder.newFolder("single_thread_output").toPath());
+        BoundaryRun parallelRun = runAtStripeBoundary(new Kitt(), folder.newFolder("parallel_output").toPath());
+
+        assertThat(parallelRun.populationOutput, is(singleThreadRun.populationOutput));
+        assertThat(parallelRun.foodMass, is(singleThreadRun.foodMass));
+        assertThat(parallelRun.ingestedFoodMass, is(singleThreadRun.ingestedFoodMass));
+    }
+
+    /**
+     * Runs the simulation with agents updated in parallel.
+     *
+     * @param outputPath
+     *            the output path
+     * @return lines of population data written on every step
+     */
+    private List<String> runParallel(Path outputPath) throws IOException {
+        KittParams params = new KittParams();
+        params.getSpeciesDefs().stream()
+                .forEach(definition -> ((SpeciesDefinition.MyPropertiesProxy) definition.propertiesProxy())
+                        .setInitialNum(PARALLEL_FISH_COUNT));
+        EnvironmentDefinition.MyPropertiesProxy environmentProxy = (EnvironmentDefinition.MyPropertiesProxy) params
+                .getEnvironmentDefinition().propertiesProxy();
+        environmentProxy.setMapImagePath(getClass().getResource(HABITAT_MAP_FILENAME).getPath());
+        environmentProxy.setAgentThreadCount(PARALLEL_THREAD_COUNT);
+        environmentProxy.setOutputPopulationInterval("1 s");
+
+        Kitt parallelState = new Kitt();
+        parallelState.setParams(params);
+        parallelState.setOutputPath(outputPath);
+        parallelState.setSeed(SEED);
+        parallelState.start();
+        for (int i = 0; i < PARALLEL_STEPS; i++) {
+            parallelState.schedule.step(parallelState);
+        }
+        parallelState.finish();
+        return Files.readAllLines(outputPath.resolve(POPULATION_FILENAME));
+    }
+
+    /**
+     * Runs the simulation, checkpointing after every step if due.
+     *
+     * @param outputPath
+     *            the output path
+     * @param checkpointInterval
+     *            the interval between checkpoints
+     * @return lines of population data written on every step
+     */
+    private List<String> runCheckpointing(Path outputPath, String checkpointInterval) throws IOException {
+        EnvironmentDefinition.MyPropertiesProxy environmentProxy = (EnvironmentDefinition.MyPropertiesProxy) state
+                .getParams().getEnvironmentDefinition().propertiesProxy();
+        environmentProxy.setCheckpointInterval(checkpointInterval);
+        environmentProxy.setOutputPopulationInterval("1 s");
+        state.setOutputPath(outputPath);
+        state.setSeed(SEED);
+        state.start();
+        for (int i = 0; i < CHECKPOINT_STEPS; i++) {
+            state.schedule.step(state);
+            state.checkpointIfDue();
+        }
+        state.finish();
+        return Files.readAllLines(outputPath.resolve(POPULATION_FILENAME));
+    }
+
+    /**
+     * Runs the simulation with agents crowded onto the boundary between the
+     * first two stripes and scarce food. Verifies that food is conserved and
+     * that the population changes only by agents born and dying.
+     *
+     * @param state
+     *            the simulation state to run
+     * @param outputPath
+     *            the output path
+     * @return the results of the run
+     */
+    private BoundaryRun runAtStripeBoundary(Kitt state, Path outputPath) throws IOException {
+        KittParams params = new KittParams();
+        params.getSpeciesDefs().stream()
+                .forEach(definition -> ((SpeciesDefinition.MyPropertiesProxy) definition.propertiesProxy())
+                        .setInitialNum(BOUNDARY_FISH_COUNT));
+        EnvironmentDefinition.MyPropertiesProxy environmentProxy = (EnvironmentDefinition.MyPropertiesProxy) params
+                .getEnvironmentDefinition().propertiesProxy();
+        environmentProxy.setMapImagePath(getClass().getResource(HABITAT_MAP_FILENAME).getPath());
+        environmentProxy.setAgentThreadCount(PARALLEL_THREAD_COUNT);
+        environmentProxy.setOutputPopulationInterval("1 s");
+
+        state.setParams(params);
+        state.setOutputPath(outputPath);
+        state.setSeed(SEED);
+        state.start();
+        // the run is shorter than a day: food does not grow
+        makeFoodScarce(state);
+        crowdOntoStripeBoundary(state);
+
+        IngestionSystem ingestionSystem = new IngestionSystem();
+        EntityManager manager = state.getEntityCreationHandler().getManager();
+        manager.addSystem(ingestionSystem);
+        Population population = state.getEntityCreationHandler().getPopulation();
+        PopulationChanges changes = new PopulationChanges();
+        population.addListener(changes);
+        int initialCount = population.getAgentCount();
+        double initialFoodMass = computeFoodMass(state);
+
+        for (int i = 0; i < PARALLEL_STEPS; i++) {
+            state.schedule.step(state);
+        }
+
+        double foodMass = computeFoodMass(state);
+        assertThat(foodMass + ingestionSystem.ingestedFoodMass,
+                is(closeTo(initialFoodMass, initialFoodMass * MAX_RELATIVE_FOOD_ERROR)));
+        assertThat(population.getAgentCount(), is(initialCount + changes.births - changes.deaths));
+        assertThat(manager.getAllEntitiesPossessingComponent(SpeciesDefinition.class).size(),
+                is(population.getAgentCount()));
+
+        state.finish();
+        return new BoundaryRun(Files.readAllLines(outputPath.resolve(POPULATION_FILENAME)), foodMass,
+                ingestionSystem.ingestedFoodMass);
+    }
+
+    /**
+     * Sets food on every location to a small fraction above the minimum of its
+     * habitat.
+     *
+     * @param state
+     *            the simulation state
+     */
+    private static void makeFoodScarce(Kitt state) {
+        HabitatMap habitatMap = state.getEnvironment().get(HabitatMap.class);
+        FoodMap foodMap = state.getEnvironment().get(FoodMap.class);
+        for (int x = 0; x < foodMap.getWidth(); x++) {
+            for (int y = 0; y < foodMap.getHeight(); y++) {
+                Habitat habitat = habitatMap.obtainHabitat(x, y);
+                double min = habitat.getFoodDensityMin().doubleValue(UnitConstants.FOOD_DENSITY);
+                double max = habitat.getFoodDensityMax().doubleValue(UnitConstants.FOOD_DENSITY);
+                foodMap.setFoodDensity(x, y,
+                        Amount.valueOf(min + (max - min) * SCARCE_FOOD_FRACTION, UnitConstants.FOOD_DENSITY));
+            }
+        }
+    }
+
+    /**
+     * Moves all fish onto accessible cells right above and below the boundary
+     * between the first two stripes.
+     *
+     * @param state
+     *            the simulation state
+     */
+    private static void crowdOntoStripeBoundary(Kitt state) {
+        int boundaryY = state.getEntityCreationHandler().getAgentScheduler().getStripeHeight();
+        HabitatMap habitatMap = state.getEnvironment().get(HabitatMap.class);
+        List<Int2D> boundaryCells = new ArrayList<>();
+        for (int x = 0; x < habitatMap.getWidth() && boundaryCells.size() < 2 * BOUNDARY_COLUMNS; x++) {
+            if (habitatMap.obtainHabitat(x, boundaryY - 1).isAccessible()
+                    && habitatMap.obtainHabitat(x, boundaryY).isAccessible()) {
+                boundaryCells.add(new Int2D(x, boundaryY - 1));
+                boundaryCells.add(new Int2D(x, boundaryY));
+            }
+        }
+        assertThat(boundaryCells.isEmpty(), is(false));
+
+        EnvironmentDefinition environmentDefinition = state.getEnvironment().get(EnvironmentDefinition.class);
+        EntityManager manager = state.getEntityCreationHandler().getManager();
+        int i = 0;
+        for (UUID uuid : state.getEntityCreationHandler().getPopulation().getFish()) {
+            Int2D cell = boundaryCells.get(i++ % boundaryCells.size());
+            Entity.loadFromEntityManager(manager, uuid).get(Moving.class)
+                    .setPosition(environmentDefinition.mapToWorld(cell), cell);
+        }
+    }
+
+    /**
+     * @param state
+     *            the simulation state
+     * @return the total mass of food on the map
+     */
+    private static double computeFoodMass(Kitt state) {
+        FoodMap foodMap = state.getEnvironment().get(FoodMap.class);
+        double densitySum = 0;
+        for (int x = 0; x < foodMap.getWidth(); x++) {
+            for (int y = 0; y < foodMap.getHeight(); y++) {
+                densitySum += foodMap.getFoodDensityValue(x, y);
+            }
+        }
+        return state.getEnvironment().get(EnvironmentDefinition.class)
+                .densityToMass(Amount.valueOf(densitySum, UnitConstants.FOOD_DENSITY))
+                .doubleValue(UnitConstants.FOOD);
+    }
+
     private static void testFromCheckpoint(File startCheckpoint, File outputFolder) {
         Kitt restoredStartState = (Kitt) SimState.readFromCheckpoint(startCheckpoint);
         restoredStartState.setOutputPath(outputFolder.toPath());
@@ -62,4 +319,85 @@ public class KittTest {
         restoredStartState.finish();
     }
 
+    private static class BoundaryRun {
+        private final List<String> populationOutput;
+        private final double foodMass;
+        private final double ingestedFoodMass;
+
+        public BoundaryRun(List<String> populationOutput, double foodMass, double ingestedFoodMass) {
+            this.populationOutput = populationOutput;
+            this.foodMass = foodMass;
+            this.ingestedFoodMass = ingestedFoodMass;
+        }
+    }
+
+    /**
+     * {@link Kitt} updating agents in stripes like in parallel, but on a
+     * single thread.
+     *
+     * @author mey
+     *
+     */
+    private static class SingleThreadStripedKitt extends Kitt {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        AgentScheduler createAgentScheduler(EnvironmentDefinition envDef) {
+            return createStripedAgentScheduler(envDef, 1);
+        }
+    }
+
+    /**
+     * Sums the mass of food ingested by agents after they have fed.
+     *
+     * @author mey
+     *
+     */
+    private static class IngestionSystem extends AgentSystem {
+        private double ingestedFoodMass = 0;
+
+        @Override
+        protected void systemUpdate(Entity entity, SimState state) {
+            // killed agents do not feed
+            if (isKilled(entity)) {
+                return;
+            }
+            double ingested = entity.get(Metabolizing.class).getIngestedEnergy()
+                    .divide(entity.get(SpeciesDefinition.class).getEnergyContentFood()).to(UnitConstants.FOOD)
+                    .getEstimatedValue();
+            // sum in the same order on any number of threads
+            AgentScheduler.runOrDefer(() -> ingestedFoodMass += ingested);
+        }
+
+        @Override
+        protected Collection<Class<? extends Component>> getRequiredComponentTypes() {
+            return Arrays.<Class<? extends Component>> asList(Metabolizing.class, SpeciesDefinition.class);
+        }
+
+        @Override
+        public Collection<Class<? extends EntitySystem>> getDependencies() {
+            return Collections.singleton(FeedSystem.class);
+        }
+    }
+
+    /**
+     * Counts agents born and dying.
+     *
+     * @author mey
+     *
+     */
+    private static class PopulationChanges implements Population.Listener {
+        private int births = 0;
+        private int deaths = 0;
+
+        @Override
+        public void onAdd(Entity agent, long id) {
+            births++;
+        }
+
+        @Override
+        public void onRemove(Entity agent, long id) {
+            deaths++;
+        }
+    }
 }
@@ -0,0 +1,58 @@
+package sim.engine;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import sim.util.Bag;
+
+public class TimingWheelTest {
+    private static final Object OBJECT = new Object();
+    private static final long START_TIME = (long) Schedule.BEFORE_SIMULATION;
+
+    private TimingWheel wheel;
+
+    @Before
+    public void setUp() throws Exception {
+        wheel = new TimingWheel(START_TIME);
+    }
+
+    @Test
+    public void dispatchInInnerWheel() {
+        wheel.add(OBJECT, 0);
+        wheel.add(OBJECT, 2);
+
+        assertThat(wheel.dispatch().size(), is(1));
+        assertThat(wheel.dispatch().isEmpty(), is(true));
+        assertThat(wheel.dispatch().size(), is(1));
+        assertThat(wheel.getCurrentTime(), is(2l));
+    }
+
+    @Test
+    public void dispatchFromOuterWheel() {
+        long time = TimingWheel.INNER_SLOTS * 3 + 5;
+        wheel.add(OBJECT, time);
+
+        for (long i = START_TIME + 1; i < time; i++) {
+            assertThat(wheel.dispatch().isEmpty(), is(true));
+        }
+        Bag due = wheel.dispatch();
+        assertThat(due.size(), is(1));
+        assertThat(due.get(0), is(OBJECT));
+    }
+
+    @Test
+    public void isWithinHorizon() {
+        assertThat(wheel.isWithinHorizon(START_TIME), is(false));
+        assertThat(wheel.isWithinHorizon(0), is(true));
+        assertThat(wheel.isWithinHorizon(TimingWheel.INNER_SLOTS * (TimingWheel.OUTER_SLOTS - 1) - 1), is(true));
+        assertThat(wheel.isWithinHorizon(TimingWheel.INNER_SLOTS * TimingWheel.OUTER_SLOTS), is(false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void addBeyondHorizon() {
+        wheel.add(OBJECT, TimingWheel.INNER_SLOTS * TimingWheel.OUTER_SLOTS);
+    }
+}